@@ -186,12 +186,12 @@ public class EntrezGeneIdResolverFactory extends IdResolverFactory
                 File f = new File(resolverFileName);
                 if (f.exists()) {
                     createFromFile(f, taxonIds);
-                    resolver.writeToFile(new File(idResolverCachedFileName));
+                    writeToCachedFile();
                 } else {
                     LOG.warn("Resolver file does not exist: " + resolverFileName);
                 }
             } else {
-                LOG.info("Using previously cached id resolver file: " + idResolverCachedFileName);
+                LOG.info("Using previously cached id resolver file: " + getCachedFile());
             }
         } catch (Exception e) {
             throw new RuntimeException(e);
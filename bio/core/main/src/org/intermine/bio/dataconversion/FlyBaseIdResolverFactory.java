@@ -82,9 +82,9 @@ public class FlyBaseIdResolverFactory extends IdResolverFactory
             if (!isCachedIdResolverRestored || (isCachedIdResolverRestored
                     && !resolver.hasTaxonAndClassNames(taxonId, this.clsCol))) {
                 LOG.info("Creating id resolver from database and caching id resolver to file: "
-                        + idResolverCachedFileName);
+                        + getCachedFile());
                 createFromDb(clsCol, DatabaseFactory.getDatabase(propName));
-                resolver.writeToFile(new File(idResolverCachedFileName));
+                writeToCachedFile();
             }
         } catch (Exception e) {
             throw new RuntimeException(e);
@@ -99,10 +99,10 @@ public class FlyBaseIdResolverFactory extends IdResolverFactory
      */
     protected boolean restoreFromFile(Set<String> clsCol) {
         try {
-            File f = new File(idResolverCachedFileName);
+            File f = getCachedFile();
             if (f.exists()) {
-                LOG.info("Restoring id resolver from cache file: " + idResolverCachedFileName);
-                resolver.populateFromFile(f);
+                LOG.info("Restoring id resolver from cache file: " + f);
+                restoreFromFile(f);
 
                 // if file doesn't contain classes, revisit db
                 Set<String> existedClsSet = resolver.getClassNames();
@@ -114,7 +114,7 @@ public class FlyBaseIdResolverFactory extends IdResolverFactory
                     LOG.info("Query from database for: " + existedClsSet
                             + " and caching id resolver to file.");
                     createFromDb(existedClsSet, DatabaseFactory.getDatabase(propName));
-                    resolver.writeToFile(f);
+                    writeToCachedFile(f);
                 }
                 return true;
             }
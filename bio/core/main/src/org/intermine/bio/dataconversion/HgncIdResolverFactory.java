@@ -79,12 +79,12 @@ public class HgncIdResolverFactory extends IdResolverFactory
                 File f = new File(resolverFileName);
                 if (f.exists()) {
                     createFromFile(f);
-                    resolver.writeToFile(new File(idResolverCachedFileName));
+                    writeToCachedFile();
                 } else {
                     LOG.warn("Resolver file does not exist: " + resolverFileName);
                 }
             } else {
-                LOG.info("Using previously cached id resolver file: " + idResolverCachedFileName);
+                LOG.info("Using previously cached id resolver file: " + getCachedFile());
             }
         } catch (Exception e) {
             throw new RuntimeException(e);
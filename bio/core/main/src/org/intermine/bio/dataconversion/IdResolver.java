@@ -15,6 +15,7 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -37,6 +38,11 @@ import org.apache.log4j.Logger;
  * data model and provide methods to resolved synonyms into corresponding
  * primary identifier(s).
  *
+ * The identifiers of a taxon id and class are held either in maps, when they are added to the
+ * resolver or read from a text cache file, or in a read-only memory-mapped section of a binary
+ * cache file, see mapFromBinaryFile().  Adding identifiers to a mapped taxon id and class copies
+ * it into the maps first.
+ *
  * @author rns
  * @author Fengyuan Hu
  */
@@ -56,6 +62,9 @@ public class IdResolver
     protected Map<MultiKey, Map<String, Set<String>>> orgIdMainMaps = new MultiKeyMap();
     @SuppressWarnings("unchecked")
     protected Map<MultiKey, Map<String, Set<String>>> orgIdSynMaps = new MultiKeyMap();
+    // taxon ids and classes read from a binary cache file, not held in the maps above
+    protected Map<MultiKey, IdResolverSection> orgSections =
+        new LinkedHashMap<MultiKey, IdResolverSection>();
 
     /**
      * Construct and empty IdResolver
@@ -79,7 +88,8 @@ public class IdResolver
      * @param className which class to resolve
      */
     protected void checkTaxonId(String taxonId, String className) {
-        if (!orgIdMaps.containsKey(new MultiKey(taxonId, className))) {
+        MultiKey key = new MultiKey(taxonId, className);
+        if (!orgIdMaps.containsKey(key) && !orgSections.containsKey(key)) {
             throw new IllegalArgumentException(className + " IdResolver has no data for taxonId: '"
                                                + taxonId + "'.");
         }
@@ -94,6 +104,10 @@ public class IdResolver
      */
     public boolean isPrimaryIdentifier(String taxonId, String className, String id) {
         checkTaxonId(taxonId, className);
+        IdResolverSection section = orgSections.get(new MultiKey(taxonId, className));
+        if (section != null) {
+            return section.isPrimaryIdentifier(id);
+        }
         return orgIdMaps.get(new MultiKey(taxonId, className)).containsKey(id);
     }
 
@@ -122,6 +136,14 @@ public class IdResolver
         if (isPrimaryIdentifier(taxonId, className, id)) {
             return Collections.singleton(id);
         }
+        IdResolverSection section = orgSections.get(new MultiKey(taxonId, className));
+        if (section != null) {
+            Set<String> resolved = section.resolveMainId(id);
+            if (resolved == null) {
+                resolved = section.resolveSynonym(id);
+            }
+            return (resolved == null) ? Collections.<String>emptySet() : resolved;
+        }
         if (orgMainMaps.containsKey(new MultiKey(taxonId, className))
             && orgMainMaps.get(new MultiKey(taxonId, className)).containsKey(id)) {
             return orgMainMaps.get(new MultiKey(taxonId, className)).get(id);
@@ -195,6 +217,12 @@ public class IdResolver
         if (!isPrimaryIdentifier(taxonId, className, primaryIdentifier)) {
             return null;
         }
+        IdResolverSection section = orgSections.get(new MultiKey(taxonId, className));
+        if (section != null) {
+            Set<String> ids = new LinkedHashSet<String>(section.getMainIds(primaryIdentifier));
+            ids.addAll(section.getSynonyms(primaryIdentifier));
+            return ids;
+        }
         return orgIdMaps.get(new MultiKey(taxonId, className)).get(primaryIdentifier);
     }
 
@@ -248,7 +276,7 @@ public class IdResolver
      */
     public boolean hasTaxons(Set<String> taxonIds) {
         Set<String> taxonIdSet = new HashSet<String>();
-        for (MultiKey key : orgIdMaps.keySet()) {
+        for (MultiKey key : getKeys()) {
             taxonIdSet.add((String) key.getKey(0));
         }
         return taxonIdSet.containsAll(taxonIds);
@@ -260,7 +288,7 @@ public class IdResolver
      */
     public Set<String> getTaxons() {
         Set<String> taxonIdSet = new LinkedHashSet<String>();
-        for (MultiKey key : orgIdMaps.keySet()) {
+        for (MultiKey key : getKeys()) {
             taxonIdSet.add((String) key.getKey(0));
         }
         return taxonIdSet;
@@ -273,7 +301,7 @@ public class IdResolver
      */
     public boolean hasClassName(String className) {
         Set<String> clsNameSet = new HashSet<String>();
-        for (MultiKey key : orgIdMaps.keySet()) {
+        for (MultiKey key : getKeys()) {
             clsNameSet.add((String) key.getKey(1));
         }
         return clsNameSet.contains(className);
@@ -285,12 +313,19 @@ public class IdResolver
      */
     public Set<String> getClassNames() {
         Set<String> clsNameSet = new HashSet<String>();
-        for (MultiKey key : orgIdMaps.keySet()) {
+        for (MultiKey key : getKeys()) {
             clsNameSet.add((String) key.getKey(1));
         }
         return clsNameSet;
     }
 
+    // the taxon ids and classes held in maps or mapped from a file
+    private Set<MultiKey> getKeys() {
+        Set<MultiKey> keys = new LinkedHashSet<MultiKey>(orgIdMaps.keySet());
+        keys.addAll(orgSections.keySet());
+        return keys;
+    }
+
     /**
      * Check if resolver has taxon id and class name
      * @param taxonId taxon id as string
@@ -298,7 +333,7 @@ public class IdResolver
      * @return true if the resolver has data for this taxon ID and data type
      */
     public boolean hasTaxonAndClassName(String taxonId, String className) {
-        return orgIdMaps.keySet().contains(new MultiKey(taxonId, className));
+        return getKeys().contains(new MultiKey(taxonId, className));
     }
 
     /**
@@ -344,7 +379,7 @@ public class IdResolver
             }
         }
 
-        return orgIdMaps.keySet().containsAll(keySet);
+        return getKeys().containsAll(keySet);
     }
 
     /**
@@ -353,7 +388,7 @@ public class IdResolver
      */
     public Map<String, Set<String>> getTaxonsAndClassNames() {
         Map<String, Set<String>> taxonIdAndClsNameMap = new HashMap<String, Set<String>>();
-        for (MultiKey key : orgIdMaps.keySet()) {
+        for (MultiKey key : getKeys()) {
             String taxonId = (String) key.getKey(0);
             String className = (String) key.getKey(1);
             if (taxonIdAndClsNameMap.get(taxonId) == null) {
@@ -447,6 +482,7 @@ public class IdResolver
     */
     protected void addEntry(String taxonId, String className, String primaryIdentifier,
             Collection<String> ids, Boolean mainId) {
+        copyFromSection(new MultiKey(taxonId, className));
         Map<String, Set<String>> idMap = orgIdMaps.get(new MultiKey(taxonId, className));
         if (idMap == null) {
             idMap = new LinkedHashMap<String, Set<String>>();
@@ -501,7 +537,17 @@ public class IdResolver
         LOG.info("Writing id resolver to file: " + f.getName());
         FileWriter fw = new FileWriter(f, true); // append if true
 //        FileWriter fw = new FileWriter(f);
-        for (MultiKey key : orgIdMaps.keySet()) {
+        for (MultiKey key : getKeys()) {
+            IdResolverSection section = orgSections.get(key);
+            if (section != null) {
+                for (String primaryId : section.getPrimaryIdentifiers()) {
+                    Set<String> mainIds = section.getMainIds(primaryId);
+                    Set<String> synonyms = section.getSynonyms(primaryId);
+                    fw.write(formatLine(key, primaryId, mainIds,
+                            synonyms.isEmpty() ? null : synonyms));
+                }
+                continue;
+            }
 
             // get maps for this organism
             Map<String, Set<String>> idMap = orgIdMaps.get(key);
@@ -509,46 +555,106 @@ public class IdResolver
             Map<String, Set<String>> synonymMap = orgIdSynMaps.get(key);
 
             for (Map.Entry<String, Set<String>> idMapEntry : idMap.entrySet()) {
-                StringBuffer sb = new StringBuffer();
-
                 String primaryId = idMapEntry.getKey();
-
-                sb.append((String) key.getKey(0) + "\t");  // write taxon id
-                sb.append((String) key.getKey(1) + "\t");  // write class name
-                sb.append(primaryId + "\t");  // write primary id
-
-                if (mainIdsMap != null && mainIdsMap.containsKey(primaryId)) {
-                    boolean first = true;
-                    for (String mainId : mainIdsMap.get(primaryId)) {
-                        if (!first) {
-                            sb.append(",");
-                        } else {
-                            first = false;
-                        }
-                        sb.append(mainId);
-                    }
-                }
-
-                if (synonymMap != null && synonymMap.containsKey(primaryId)) {
-                    boolean first = true;
-                    sb.append("\t");
-                    for (String synonym : synonymMap.get(primaryId)) {
-                        if (!first) {
-                            sb.append(",");
-                        } else {
-                            first = false;
-                        }
-                        sb.append(synonym);
-                    }
-                }
-                sb.append(System.getProperty("line.separator"));
-                fw.write(sb.toString());
+                fw.write(formatLine(key, primaryId,
+                        (mainIdsMap == null) ? null : mainIdsMap.get(primaryId),
+                        (synonymMap == null) ? null : synonymMap.get(primaryId)));
             }
         }
         fw.flush();
         fw.close();
     }
 
+    // a line of the text cache file
+    private static String formatLine(MultiKey key, String primaryId, Set<String> mainIds,
+            Set<String> synonyms) {
+        StringBuffer sb = new StringBuffer();
+
+        sb.append((String) key.getKey(0) + "\t");  // write taxon id
+        sb.append((String) key.getKey(1) + "\t");  // write class name
+        sb.append(primaryId + "\t");  // write primary id
+
+        if (mainIds != null) {
+            sb.append(StringUtils.join(mainIds, ","));
+        }
+
+        if (synonyms != null) {
+            sb.append("\t");
+            sb.append(StringUtils.join(synonyms, ","));
+        }
+        sb.append(System.getProperty("line.separator"));
+        return sb.toString();
+    }
+
+    /**
+     * Append the IdResolver contents to a binary cache file, with a section for each taxon id and
+     * class that isn't already in the file.
+     * @param f the file to write to
+     * @throws IOException if fail to write
+     */
+    public void writeToBinaryFile(File f) throws IOException {
+        LOG.info("Writing id resolver to binary file: " + f.getName());
+        List<IdResolverSection.SectionData> sections =
+            new ArrayList<IdResolverSection.SectionData>();
+        for (MultiKey key : getKeys()) {
+            IdResolverSection section = orgSections.get(key);
+            if (section != null) {
+                sections.add(new IdResolverSection.SectionData(section));
+            } else {
+                sections.add(new IdResolverSection.SectionData((String) key.getKey(0),
+                        (String) key.getKey(1), orgIdMaps.get(key).keySet(),
+                        orgIdMainMaps.get(key), orgIdSynMaps.get(key)));
+            }
+        }
+        int written = IdResolverSection.append(f, sections);
+        LOG.info("Wrote " + written + " taxon id and class sections to " + f.getName());
+    }
+
+    /**
+     * Memory-map the taxon ids and classes of a binary cache file written by writeToBinaryFile.
+     * The identifiers stay in the file rather than the heap, so this takes very little time or
+     * memory however large the file.  Taxon ids and classes the resolver already has are not
+     * read.
+     * @param f the file to read from
+     * @throws IOException if problem reading from file
+     */
+    public void mapFromBinaryFile(File f) throws IOException {
+        LOG.info("mapping from binary file: " + f.getAbsolutePath());
+        for (IdResolverSection section : IdResolverSection.map(f)) {
+            MultiKey key = section.getKey();
+            if (!orgIdMaps.containsKey(key) && !orgSections.containsKey(key)) {
+                orgSections.put(key, section);
+            }
+        }
+    }
+
+    /**
+     * Check whether a cache file is in the binary format of writeToBinaryFile, rather than the
+     * text format of writeToFile.
+     * @param f the file
+     * @return true if the file is a binary cache file
+     * @throws IOException if problem reading from file
+     */
+    public static boolean isBinaryFile(File f) throws IOException {
+        return IdResolverSection.isBinaryFile(f);
+    }
+
+    // move a mapped taxon id and class into the maps, so that identifiers can be added to it
+    private void copyFromSection(MultiKey key) {
+        IdResolverSection section = orgSections.remove(key);
+        if (section == null) {
+            return;
+        }
+        String taxonId = section.getTaxonId();
+        String className = section.getClassName();
+        for (String primaryId : section.getPrimaryIdentifiers()) {
+            addEntry(taxonId, className, primaryId, section.getMainIds(primaryId), Boolean.TRUE);
+            Set<String> synonyms = section.getSynonyms(primaryId);
+            if (!synonyms.isEmpty()) {
+                addEntry(taxonId, className, primaryId, synonyms, Boolean.FALSE);
+            }
+        }
+    }
 
     /**
      * Read contents of an IdResolver from file, allows for caching during a build.
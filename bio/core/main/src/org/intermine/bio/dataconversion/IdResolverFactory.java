@@ -16,7 +16,10 @@ import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 
+import org.apache.commons.lang.StringUtils;
+import org.apache.log4j.Logger;
 import org.intermine.sql.Database;
+import org.intermine.util.PropertiesUtil;
 
 /**
  * Create an IdResolver.
@@ -27,6 +30,11 @@ import org.intermine.sql.Database;
  */
 public abstract class IdResolverFactory
 {
+    private static final Logger LOG = Logger.getLogger(IdResolverFactory.class);
+
+    // set in MINE.properties to share one cache file between sources
+    private static final String CACHE_FILE_PROPERTY = "resolver.cache.file";
+
     protected static IdResolver resolver = null;
 
     protected boolean caughtError = false;
@@ -68,7 +76,8 @@ public abstract class IdResolverFactory
     }
 
     /**
-     * Read IdResolver contents from a file, allows for caching during build.
+     * Read IdResolver contents from a file, allows for caching during build.  A binary cache file
+     * is memory-mapped, an older text cache file is read into the resolver.
      *
      * @param f the file to read from
      * @return a created IdResolver
@@ -77,7 +86,11 @@ public abstract class IdResolverFactory
     protected boolean restoreFromFile(File f)
         throws IOException {
         if (f.exists()) {
-            resolver.populateFromFile(f);
+            if (IdResolver.isBinaryFile(f)) {
+                resolver.mapFromBinaryFile(f);
+            } else {
+                resolver.populateFromFile(f);
+            }
             return true;
         }
         return false;
@@ -91,12 +104,50 @@ public abstract class IdResolverFactory
      */
     protected boolean restoreFromFile()
         throws IOException {
-        File f = new File(idResolverCachedFileName);
-        if (f.exists()) {
-            resolver.populateFromFile(f);
-            return true;
+        return restoreFromFile(getCachedFile());
+    }
+
+    /**
+     * Write the IdResolver contents to a binary cache file, adding the taxon ids and classes that
+     * aren't in the file yet.  A text cache file from an earlier build is replaced, as it has
+     * already been read into the resolver.
+     *
+     * @param f the file to write to
+     * @throws IOException if problem writing the file
+     */
+    protected void writeToCachedFile(File f)
+        throws IOException {
+        if (f.exists() && !IdResolver.isBinaryFile(f)) {
+            LOG.info("Replacing text id resolver cache file: " + f.getPath());
+            if (!f.delete()) {
+                throw new IOException("Can't delete " + f.getPath());
+            }
         }
-        return false;
+        resolver.writeToBinaryFile(f);
+    }
+
+    /**
+     * Write the IdResolver contents to the cache file.
+     *
+     * @throws IOException if problem writing the file
+     */
+    protected void writeToCachedFile()
+        throws IOException {
+        writeToCachedFile(getCachedFile());
+    }
+
+    /**
+     * Return the cache file, build/idresolver.cache unless a file to be shared by all the sources
+     * is set by resolver.cache.file in MINE.properties.
+     *
+     * @return the cache file
+     */
+    protected static File getCachedFile() {
+        String sharedFile = PropertiesUtil.getProperties().getProperty(CACHE_FILE_PROPERTY);
+        if (!StringUtils.isBlank(sharedFile)) {
+            return new File(sharedFile.trim());
+        }
+        return new File(idResolverCachedFileName);
     }
 
     /**
@@ -0,0 +1,588 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2017 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.collections.keyvalue.MultiKey;
+
+/**
+ * The identifiers of one taxon id and class of an IdResolver, held in a read-only memory-mapped
+ * section of a binary cache file so that the resolver doesn't need to be rebuilt in the heap of
+ * every converter that uses it.
+ *
+ * A cache file is a sequence of sections, one for each taxon id and class, so sections can be
+ * appended as resolvers for more organisms are created.  Each section has:
+ * <ul>
+ *  <li>a header: magic number, section length, taxon id and class name</li>
+ *  <li>the identifiers of the section, each stored once, sorted by their UTF-8 bytes</li>
+ *  <li>four tables mapping identifiers to identifiers by their position in the sorted list:
+ *  primary identifier to main ids, primary identifier to synonyms, main id to primary
+ *  identifiers and synonym to primary identifiers</li>
+ * </ul>
+ * A table is a sorted array of keys, an array of offsets and an array of values, so a lookup is
+ * a binary search for the identifier followed by a binary search of the table.
+ *
+ * @author chenyian
+ */
+final class IdResolverSection
+{
+    private static final int MAGIC = 0x49445253; // "IDRS"
+    private static final int VERSION = 1;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int MAIN_IDS = 0;
+    private static final int SYNONYMS = 1;
+    private static final int MAIN_LOOKUP = 2;
+    private static final int SYNONYM_LOOKUP = 3;
+
+    private static final Comparator<byte[]> UTF8_ORDER = new Comparator<byte[]>() {
+        @Override
+        public int compare(byte[] a, byte[] b) {
+            int length = Math.min(a.length, b.length);
+            for (int i = 0; i < length; i++) {
+                int diff = (a[i] & 0xff) - (b[i] & 0xff);
+                if (diff != 0) {
+                    return diff;
+                }
+            }
+            return a.length - b.length;
+        }
+    };
+
+    private final String taxonId;
+    private final String className;
+    private final ByteBuffer buffer;
+    private final int stringCount;
+    private final int stringOffsets;
+    private final int stringData;
+    private final int[] tables = new int[4];
+
+    private IdResolverSection(ByteBuffer buffer) {
+        this.buffer = buffer;
+        int pos = 12;
+        int length = buffer.getInt(pos);
+        taxonId = readString(pos + 4, length);
+        pos += 4 + length;
+        length = buffer.getInt(pos);
+        className = readString(pos + 4, length);
+        pos += 4 + length;
+        stringCount = buffer.getInt(pos);
+        stringOffsets = pos + 4;
+        stringData = stringOffsets + 4 * (stringCount + 1);
+        pos = align(stringData + buffer.getInt(stringOffsets + 4 * stringCount));
+        for (int table = 0; table < tables.length; table++) {
+            tables[table] = pos;
+            int keyCount = buffer.getInt(pos);
+            int valueCount = buffer.getInt(pos + 4 + 8 * keyCount);
+            pos += 4 + 4 * keyCount + 4 * (keyCount + 1) + 4 * valueCount;
+        }
+    }
+
+    /**
+     * @return the taxon id of the section
+     */
+    String getTaxonId() {
+        return taxonId;
+    }
+
+    /**
+     * @return the class name of the section
+     */
+    String getClassName() {
+        return className;
+    }
+
+    /**
+     * @return the key of the section, as used by IdResolver
+     */
+    MultiKey getKey() {
+        return new MultiKey(taxonId, className);
+    }
+
+    /**
+     * @param id an identifier
+     * @return true if the identifier is a primary identifier
+     */
+    boolean isPrimaryIdentifier(String id) {
+        int index = findString(id);
+        return index >= 0 && findKey(MAIN_IDS, index) >= 0;
+    }
+
+    /**
+     * @return the primary identifiers of the section
+     */
+    List<String> getPrimaryIdentifiers() {
+        int table = tables[MAIN_IDS];
+        int keyCount = buffer.getInt(table);
+        List<String> ids = new ArrayList<String>(keyCount);
+        for (int i = 0; i < keyCount; i++) {
+            ids.add(getString(buffer.getInt(table + 4 + 4 * i)));
+        }
+        return ids;
+    }
+
+    /**
+     * @param primaryIdentifier a primary identifier
+     * @return the main ids of the primary identifier
+     */
+    Set<String> getMainIds(String primaryIdentifier) {
+        return lookup(MAIN_IDS, primaryIdentifier);
+    }
+
+    /**
+     * @param primaryIdentifier a primary identifier
+     * @return the synonyms of the primary identifier
+     */
+    Set<String> getSynonyms(String primaryIdentifier) {
+        return lookup(SYNONYMS, primaryIdentifier);
+    }
+
+    /**
+     * @param id a main id
+     * @return the primary identifiers with the main id, or null if there are none
+     */
+    Set<String> resolveMainId(String id) {
+        Set<String> resolved = lookup(MAIN_LOOKUP, id);
+        return resolved.isEmpty() ? null : resolved;
+    }
+
+    /**
+     * @param id a synonym
+     * @return the primary identifiers with the synonym, or null if there are none
+     */
+    Set<String> resolveSynonym(String id) {
+        Set<String> resolved = lookup(SYNONYM_LOOKUP, id);
+        return resolved.isEmpty() ? null : resolved;
+    }
+
+    private Set<String> lookup(int tableNo, String id) {
+        int index = findString(id);
+        if (index < 0) {
+            return Collections.emptySet();
+        }
+        int key = findKey(tableNo, index);
+        if (key < 0) {
+            return Collections.emptySet();
+        }
+        int table = tables[tableNo];
+        int keyCount = buffer.getInt(table);
+        int offsets = table + 4 + 4 * keyCount;
+        int values = offsets + 4 * (keyCount + 1);
+        int start = buffer.getInt(offsets + 4 * key);
+        int end = buffer.getInt(offsets + 4 * (key + 1));
+        if (end - start == 1) {
+            return Collections.singleton(getString(buffer.getInt(values + 4 * start)));
+        }
+        Set<String> result = new LinkedHashSet<String>();
+        for (int i = start; i < end; i++) {
+            result.add(getString(buffer.getInt(values + 4 * i)));
+        }
+        return result;
+    }
+
+    // binary search of the keys of a table for the index of an identifier
+    private int findKey(int tableNo, int index) {
+        int table = tables[tableNo];
+        int low = 0;
+        int high = buffer.getInt(table) - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int key = buffer.getInt(table + 4 + 4 * mid);
+            if (key < index) {
+                low = mid + 1;
+            } else if (key > index) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    // binary search of the sorted identifiers
+    private int findString(String id) {
+        if (id == null) {
+            return -1;
+        }
+        byte[] bytes = id.getBytes(UTF_8);
+        int low = 0;
+        int high = stringCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareString(mid, bytes);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private int compareString(int index, byte[] bytes) {
+        int start = stringData + buffer.getInt(stringOffsets + 4 * index);
+        int length = stringData + buffer.getInt(stringOffsets + 4 * (index + 1)) - start;
+        int common = Math.min(length, bytes.length);
+        for (int i = 0; i < common; i++) {
+            int diff = (buffer.get(start + i) & 0xff) - (bytes[i] & 0xff);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return length - bytes.length;
+    }
+
+    private String getString(int index) {
+        int start = stringData + buffer.getInt(stringOffsets + 4 * index);
+        int end = stringData + buffer.getInt(stringOffsets + 4 * (index + 1));
+        return readString(start, end - start);
+    }
+
+    private String readString(int start, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer.get(start + i);
+        }
+        return new String(bytes, UTF_8);
+    }
+
+    // the identifiers of the section, to write them to another file
+    private SectionData toSectionData() {
+        List<String> primaryIds = getPrimaryIdentifiers();
+        Map<String, Set<String>> mainIds = new LinkedHashMap<String, Set<String>>();
+        Map<String, Set<String>> synonyms = new LinkedHashMap<String, Set<String>>();
+        for (String primaryId : primaryIds) {
+            mainIds.put(primaryId, getMainIds(primaryId));
+            Set<String> ids = getSynonyms(primaryId);
+            if (!ids.isEmpty()) {
+                synonyms.put(primaryId, ids);
+            }
+        }
+        return new SectionData(taxonId, className, primaryIds, mainIds, synonyms);
+    }
+
+    private static int align(int pos) {
+        return (pos + 3) & ~3;
+    }
+
+    /**
+     * Check whether a file is a binary resolver cache, rather than the older text format.
+     *
+     * @param f the file
+     * @return true if the file starts with a section
+     * @throws IOException if the file can't be read
+     */
+    static boolean isBinaryFile(File f) throws IOException {
+        if (!f.exists() || f.length() < 4) {
+            return false;
+        }
+        DataInputStream in = new DataInputStream(new FileInputStream(f));
+        try {
+            return in.readInt() == MAGIC;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Map the complete sections of a binary cache file.
+     *
+     * @param f the file
+     * @return the sections
+     * @throws IOException if the file can't be read or is not a binary cache
+     */
+    static List<IdResolverSection> map(File f) throws IOException {
+        List<IdResolverSection> sections = new ArrayList<IdResolverSection>();
+        RandomAccessFile raf = new RandomAccessFile(f, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            // a shared lock, so that no section is half written
+            FileLock lock = channel.lock(0, Long.MAX_VALUE, true);
+            try {
+                for (long[] header : readHeaders(raf, channel.size())) {
+                    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+                            header[0], header[1]);
+                    sections.add(new IdResolverSection(buffer));
+                }
+            } finally {
+                lock.release();
+            }
+        } finally {
+            raf.close();
+        }
+        return sections;
+    }
+
+    // the position and length of every complete section
+    private static List<long[]> readHeaders(RandomAccessFile raf, long size) throws IOException {
+        List<long[]> headers = new ArrayList<long[]>();
+        long pos = 0;
+        while (pos + 8 <= size) {
+            raf.seek(pos);
+            if (raf.readInt() != MAGIC) {
+                throw new IOException("Not an id resolver cache section at " + pos);
+            }
+            long length = raf.readInt() & 0xffffffffL;
+            if (pos + length > size) {
+                break;
+            }
+            headers.add(new long[] {pos, length});
+            pos += length;
+        }
+        return headers;
+    }
+
+    /**
+     * Append sections to a binary cache file, leaving out any whose taxon id and class are
+     * already in the file.  The file is locked while it is written, so several converters can
+     * share a file.
+     *
+     * @param f the file
+     * @param sections the sections to write, each the taxon id, class name, main ids and
+     * synonyms of the primary identifiers
+     * @return the number of sections written
+     * @throws IOException if the file can't be written
+     */
+    static int append(File f, List<SectionData> sections) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(f, "rw");
+        try {
+            FileLock lock = raf.getChannel().lock();
+            try {
+                long size = raf.length();
+                Set<MultiKey> existing = new HashSet<MultiKey>();
+                for (long[] header : readHeaders(raf, size)) {
+                    raf.seek(header[0] + 12);
+                    byte[] taxonBytes = new byte[raf.readInt()];
+                    raf.readFully(taxonBytes);
+                    byte[] classBytes = new byte[raf.readInt()];
+                    raf.readFully(classBytes);
+                    existing.add(new MultiKey(new String(taxonBytes, UTF_8),
+                            new String(classBytes, UTF_8)));
+                    size = header[0] + header[1];
+                }
+                // drop anything left by a writer that failed part way through
+                raf.setLength(size);
+                int written = 0;
+                for (SectionData section : sections) {
+                    if (existing.add(new MultiKey(section.taxonId, section.className))) {
+                        raf.seek(size);
+                        byte[] bytes = encode(section);
+                        raf.write(bytes);
+                        size += bytes.length;
+                        written++;
+                    }
+                }
+                return written;
+            } finally {
+                lock.release();
+            }
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static byte[] encode(SectionData data) throws IOException {
+        SectionData section = (data.source == null) ? data : data.source.toSectionData();
+        // the identifiers, sorted and numbered
+        Set<String> allIds = new HashSet<String>();
+        for (Map.Entry<String, Set<String>> entry : section.mainIds.entrySet()) {
+            allIds.add(entry.getKey());
+            allIds.addAll(entry.getValue());
+        }
+        for (Map.Entry<String, Set<String>> entry : section.synonyms.entrySet()) {
+            allIds.add(entry.getKey());
+            allIds.addAll(entry.getValue());
+        }
+        byte[][] sorted = new byte[allIds.size()][];
+        int n = 0;
+        for (String id : allIds) {
+            sorted[n++] = id.getBytes(UTF_8);
+        }
+        Arrays.sort(sorted, UTF8_ORDER);
+        Map<String, Integer> indexes = new HashMap<String, Integer>();
+        for (int i = 0; i < sorted.length; i++) {
+            indexes.put(new String(sorted[i], UTF_8), Integer.valueOf(i));
+        }
+
+        // the reverse maps, from main ids and synonyms to primary identifiers
+        Map<String, Set<String>> mainLookup = new LinkedHashMap<String, Set<String>>();
+        Map<String, Set<String>> synonymLookup = new LinkedHashMap<String, Set<String>>();
+        for (Map.Entry<String, Set<String>> entry : section.mainIds.entrySet()) {
+            for (String id : entry.getValue()) {
+                addToMapList(mainLookup, id, entry.getKey());
+            }
+        }
+        for (Map.Entry<String, Set<String>> entry : section.synonyms.entrySet()) {
+            for (String id : entry.getValue()) {
+                addToMapList(synonymLookup, id, entry.getKey());
+            }
+        }
+        // every primary identifier has an entry in the main id table, even if it is empty
+        Map<String, Set<String>> mainIds = new LinkedHashMap<String, Set<String>>();
+        for (String primaryId : section.primaryIds) {
+            Set<String> ids = section.mainIds.get(primaryId);
+            mainIds.put(primaryId, (ids == null) ? Collections.<String>emptySet() : ids);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(0); // length, set below
+        out.writeInt(VERSION);
+        writeString(out, section.taxonId);
+        writeString(out, section.className);
+        out.writeInt(sorted.length);
+        int offset = 0;
+        out.writeInt(offset);
+        for (byte[] id : sorted) {
+            offset += id.length;
+            out.writeInt(offset);
+        }
+        for (byte[] id : sorted) {
+            out.write(id);
+        }
+        while (out.size() % 4 != 0) {
+            out.writeByte(0);
+        }
+        writeTable(out, mainIds, indexes);
+        writeTable(out, section.synonyms, indexes);
+        writeTable(out, mainLookup, indexes);
+        writeTable(out, synonymLookup, indexes);
+        out.close();
+
+        byte[] result = bytes.toByteArray();
+        ByteBuffer.wrap(result).putInt(4, result.length);
+        return result;
+    }
+
+    private static void writeTable(DataOutputStream out, Map<String, Set<String>> map,
+            Map<String, Integer> indexes) throws IOException {
+        int[] keys = new int[map.size()];
+        String[] keyIds = new String[map.size()];
+        int n = 0;
+        for (String key : map.keySet()) {
+            keys[n] = indexes.get(key).intValue();
+            keyIds[n] = key;
+            n++;
+        }
+        // sort the keys, keeping each with its identifier
+        Integer[] order = new Integer[keys.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = Integer.valueOf(i);
+        }
+        final int[] sortKeys = keys;
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                int ka = sortKeys[a.intValue()];
+                int kb = sortKeys[b.intValue()];
+                return (ka < kb) ? -1 : ((ka == kb) ? 0 : 1);
+            }
+        });
+        out.writeInt(keys.length);
+        for (Integer i : order) {
+            out.writeInt(keys[i.intValue()]);
+        }
+        int offset = 0;
+        out.writeInt(offset);
+        for (Integer i : order) {
+            offset += map.get(keyIds[i.intValue()]).size();
+            out.writeInt(offset);
+        }
+        for (Integer i : order) {
+            for (String value : map.get(keyIds[i.intValue()])) {
+                out.writeInt(indexes.get(value).intValue());
+            }
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void addToMapList(Map<String, Set<String>> map, String key, String value) {
+        Set<String> set = map.get(key);
+        if (set == null) {
+            set = new LinkedHashSet<String>();
+            map.put(key, set);
+        }
+        set.add(value);
+    }
+
+    /**
+     * The identifiers of one taxon id and class, to be written as a section.
+     */
+    static final class SectionData
+    {
+        final String taxonId;
+        final String className;
+        final Collection<String> primaryIds;
+        final Map<String, Set<String>> mainIds;
+        final Map<String, Set<String>> synonyms;
+        final IdResolverSection source;
+
+        /**
+         * @param taxonId the taxon id
+         * @param className the class name
+         * @param primaryIds all the primary identifiers
+         * @param mainIds the main ids of the primary identifiers
+         * @param synonyms the synonyms of the primary identifiers
+         */
+        SectionData(String taxonId, String className, Collection<String> primaryIds,
+                Map<String, Set<String>> mainIds, Map<String, Set<String>> synonyms) {
+            this.taxonId = taxonId;
+            this.className = className;
+            this.primaryIds = primaryIds;
+            this.mainIds = (mainIds == null) ? new HashMap<String, Set<String>>() : mainIds;
+            this.synonyms = (synonyms == null) ? new HashMap<String, Set<String>>() : synonyms;
+            this.source = null;
+        }
+
+        /**
+         * @param source a mapped section, only read if it has to be written
+         */
+        SectionData(IdResolverSection source) {
+            this.taxonId = source.taxonId;
+            this.className = source.className;
+            this.primaryIds = null;
+            this.mainIds = null;
+            this.synonyms = null;
+            this.source = source;
+        }
+    }
+}
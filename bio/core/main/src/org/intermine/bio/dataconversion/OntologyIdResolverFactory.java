@@ -10,7 +10,6 @@ package org.intermine.bio.dataconversion;
  *
  */
 
-import java.io.File;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -90,7 +89,7 @@ public class OntologyIdResolverFactory extends IdResolverFactory
                     && !resolver.hasTaxonAndClassName(MOCK_TAXON_ID, this.ontology))) {
                 LOG.info("Creating id resolver from database and caching it.");
                 createFromDb(DatabaseFactory.getDatabase(propName));
-                resolver.writeToFile(new File(idResolverCachedFileName));
+                writeToCachedFile();
             }
         } catch (Exception e) {
             throw new RuntimeException(e);
@@ -13,7 +13,6 @@ package org.intermine.bio.task;
 import org.apache.tools.ant.BuildException;
 import org.intermine.bio.dataconversion.OboConverter;
 import org.intermine.dataconversion.ItemWriter;
-import org.intermine.dataconversion.ObjectStoreItemWriter;
 import org.intermine.metadata.Model;
 import org.intermine.objectstore.ObjectStoreWriter;
 import org.intermine.objectstore.ObjectStoreWriterFactory;
@@ -98,7 +97,7 @@ public class OboConverterTask extends ConverterTask
         ItemWriter writer = null;
         try {
             osw = ObjectStoreWriterFactory.getObjectStoreWriter(osName);
-            writer = new ObjectStoreItemWriter(osw);
+            writer = createItemWriter(osw);
             Model model = Model.getInstanceByName(getModelName());
 
             OboConverter converter;
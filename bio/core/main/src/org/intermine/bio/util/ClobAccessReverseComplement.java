@@ -42,6 +42,7 @@ public class ClobAccessReverseComplement extends ClobAccess
         offset = ca.getOffset();
         length = ca.getLengthWithoutInit();
         subSequence = ca.getSubSequence();
+        pageCache = ca.getPageCache();
     }
 
     /**
@@ -123,9 +124,35 @@ public class ClobAccessReverseComplement extends ClobAccess
     public ClobAccessReverseComplement subSequence(int start, int end) {
         init();
         ClobAccess sub = originalClobAccess.subSequence(length - end, length - start);
+        sub.setPageCache(pageCache);
         return new ClobAccessReverseComplement(sub);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void getChars(int srcBegin, int srcEnd, char[] dst, int dstBegin) {
+        init();
+        if (srcBegin < 0 || srcEnd > length || srcEnd < srcBegin) {
+            throw new IndexOutOfBoundsException("Invalid range " + srcBegin + " to " + srcEnd
+                    + " of Clob of length " + length);
+        }
+        // copy the matching characters of the original sequence, then reverse and complement
+        // them in place
+        super.getChars(length - srcEnd, length - srcBegin, dst, dstBegin);
+        int left = dstBegin;
+        int right = dstBegin + srcEnd - srcBegin - 1;
+        while (left < right) {
+            char c = dst[left];
+            dst[left++] = translate(dst[right]);
+            dst[right--] = translate(c);
+        }
+        if (left == right) {
+            dst[left] = translate(dst[left]);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -136,7 +163,7 @@ public class ClobAccessReverseComplement extends ClobAccess
         int lowestPage = offset / CLOB_PAGE_SIZE;
         int highestPage = (offset + length - 1) / CLOB_PAGE_SIZE;
         for (int page = highestPage; page >= lowestPage; page--) {
-            String pageText = (String) results.get(page);
+            String pageText = getPage(page);
             if (page == highestPage) {
                 pageText = pageText.substring(0, offset + length - page * CLOB_PAGE_SIZE);
             }
@@ -161,7 +188,7 @@ public class ClobAccessReverseComplement extends ClobAccess
         int highestPage = (offset + length - 1) / CLOB_PAGE_SIZE;
         for (int page = highestPage; page >= lowestPage; page--) {
             StringBuilder retval = new StringBuilder();
-            String pageText = (String) results.get(page);
+            String pageText = getPage(page);
             if (page == highestPage) {
                 pageText = pageText.substring(0, offset + length - page * CLOB_PAGE_SIZE);
             }
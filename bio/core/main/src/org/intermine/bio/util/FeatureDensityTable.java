@@ -0,0 +1,189 @@
+package org.intermine.bio.util;
+
+/*
+ * Copyright (C) 2002-2017 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Layout of the feature_density table, which holds binned counts of the sequence features of
+ * each organism, chromosome and class at several resolutions.  For every bin two counts are
+ * kept: the features starting in the bin and the features ending in it, in interbase
+ * coordinates.  The number of features overlapping any range can then be found from the running
+ * totals of the two counts: the features starting before the end of the range less those that
+ * ended before its start.
+ *
+ * The table is written by the create-feature-density-table postprocess and read by the JBrowse
+ * endpoint.
+ *
+ * @author chenyian
+ */
+public final class FeatureDensityTable
+{
+    /**
+     * Name of the table.
+     */
+    public static final String TABLE_NAME = "feature_density";
+
+    /**
+     * Bin sizes, in bases, of the levels of the table.
+     */
+    public static final int[] RESOLUTIONS = new int[] {1000, 10000, 100000, 1000000, 10000000};
+
+    private FeatureDensityTable() {
+        // don't
+    }
+
+    /**
+     * @return the SQL to create the table
+     */
+    public static String getCreateTableSql() {
+        return "CREATE TABLE " + TABLE_NAME + " (taxonid integer, chromosome text,"
+            + " chromosomelength integer, featureclass text, resolution integer,"
+            + " starts bytea, ends bytea)";
+    }
+
+    /**
+     * @return the SQL to create the index used to look up the rows of a chromosome
+     */
+    public static String getCreateIndexSql() {
+        return "CREATE INDEX " + TABLE_NAME + "__key ON " + TABLE_NAME
+            + " (taxonid, chromosome, resolution)";
+    }
+
+    /**
+     * Return the bin of an interbase position.
+     *
+     * @param position the position
+     * @param resolution the bin size
+     * @param binCount the number of bins
+     * @return the bin, clamped to the bins of the chromosome
+     */
+    public static int getBin(int position, int resolution, int binCount) {
+        int bin = position / resolution;
+        return Math.max(0, Math.min(binCount - 1, bin));
+    }
+
+    /**
+     * Return the number of bins needed for a chromosome.
+     *
+     * @param length the length of the chromosome
+     * @param resolution the bin size
+     * @return the number of bins, at least 1
+     */
+    public static int getBinCount(int length, int resolution) {
+        return Math.max(1, (int) ((length + (long) resolution - 1) / resolution));
+    }
+
+    /**
+     * Add up the bins of a histogram in groups, to make the histogram of a coarser level.
+     *
+     * @param counts the histogram
+     * @param factor the number of bins to add together
+     * @return the coarser histogram
+     */
+    public static int[] merge(int[] counts, int factor) {
+        int[] merged = new int[(counts.length + factor - 1) / factor];
+        for (int i = 0; i < counts.length; i++) {
+            merged[i / factor] += counts[i];
+        }
+        return merged;
+    }
+
+    /**
+     * Turn a histogram into running totals, where element k is the sum of the bins before k.
+     *
+     * @param counts the histogram
+     * @return an array one longer than counts
+     */
+    public static int[] cumulative(int[] counts) {
+        int[] totals = new int[counts.length + 1];
+        for (int i = 0; i < counts.length; i++) {
+            totals[i + 1] = totals[i] + counts[i];
+        }
+        return totals;
+    }
+
+    /**
+     * Count the features overlapping an interbase range, from the running totals of the start
+     * and end histograms.  The ends of the range are rounded to the nearest bin boundary.
+     *
+     * @param startTotals running totals of the features starting in each bin
+     * @param endTotals running totals of the features ending in each bin
+     * @param resolution the bin size
+     * @param start the start of the range, inclusive
+     * @param end the end of the range, exclusive
+     * @return the number of features
+     */
+    public static int countOverlapping(int[] startTotals, int[] endTotals, int resolution,
+            int start, int end) {
+        int binCount = startTotals.length - 1;
+        int first = Math.max(0, Math.min(binCount, roundToBin(start, resolution)));
+        int last = Math.max(0, Math.min(binCount, roundToBin(end, resolution)));
+        if (last <= first) {
+            // a range smaller than a bin still counts the features of the bin it lies in
+            last = Math.min(binCount, first + 1);
+            first = Math.max(0, last - 1);
+        }
+        return startTotals[last] - endTotals[first];
+    }
+
+    private static int roundToBin(int position, int resolution) {
+        return (int) ((position + (long) resolution / 2) / resolution);
+    }
+
+    /**
+     * Write a histogram as compressed bytes.
+     *
+     * @param counts the histogram
+     * @return the bytes to store
+     * @throws IOException if the bytes cannot be written
+     */
+    public static byte[] encode(int[] counts) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(bytes)));
+        out.writeInt(counts.length);
+        for (int count : counts) {
+            out.writeInt(count);
+        }
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Read a histogram written by encode().
+     *
+     * @param data the stored bytes
+     * @return the histogram
+     * @throws IOException if the bytes are not a histogram
+     */
+    public static int[] decode(byte[] data) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(new ByteArrayInputStream(data))));
+        try {
+            int[] counts = new int[in.readInt()];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = in.readInt();
+            }
+            return counts;
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -224,4 +224,66 @@ public class IdResolverTest extends TestCase
         assertEquals(resolver.orgMainMaps, readFromFile.orgMainMaps);
         assertEquals(resolver.orgSynMaps, readFromFile.orgSynMaps);
     }
+
+    public void testBinaryFileRoundTrip() throws Exception {
+        File f = getResolverCache();
+        f.delete();
+        resolver.writeToBinaryFile(f);
+        assertTrue(IdResolver.isBinaryFile(f));
+
+        IdResolver mapped = new IdResolver();
+        mapped.mapFromBinaryFile(f);
+        assertTrue(mapped.orgIdMaps.isEmpty());
+        assertEquals(resolver.getTaxonsAndClassNames(), mapped.getTaxonsAndClassNames());
+        for (String taxonId : new String[] {taxId1, taxId2}) {
+            for (String id : new String[] {primaryId1, primaryId2, primaryId3, mainId1, mainId2,
+                mainId3, mainId4, synonym1, synonym2, synonym3, synonym4, "unknown"}) {
+                assertEquals(resolver.resolveId(taxonId, clsName1, id),
+                        mapped.resolveId(taxonId, clsName1, id));
+                assertEquals(resolver.isPrimaryIdentifier(taxonId, clsName1, id),
+                        mapped.isPrimaryIdentifier(taxonId, clsName1, id));
+                assertEquals(resolver.getSynonyms(taxonId, clsName1, id),
+                        mapped.getSynonyms(taxonId, clsName1, id));
+            }
+        }
+        assertEquals(2, mapped.countResolutions(taxId1, clsName1, synonym1));
+        assertEquals(Collections.singleton(primaryId3), mapped.resolveId(taxId1, clsName2, mainId1));
+
+        // the text format of a mapped resolver is the same
+        File text = getResolverCache();
+        text.delete();
+        mapped.writeToFile(text);
+        IdResolver readFromFile = new IdResolver();
+        readFromFile.populateFromFile(text);
+        assertEquals(resolver.orgIdMaps, readFromFile.orgIdMaps);
+        assertEquals(resolver.orgMainMaps, readFromFile.orgMainMaps);
+        assertEquals(resolver.orgSynMaps, readFromFile.orgSynMaps);
+    }
+
+    public void testBinaryFileAppend() throws Exception {
+        File f = getResolverCache();
+        f.delete();
+        resolver.writeToBinaryFile(f);
+        long length = f.length();
+        // sections already in the file are not written again
+        resolver.writeToBinaryFile(f);
+        assertEquals(length, f.length());
+
+        IdResolver mapped = new IdResolver();
+        mapped.mapFromBinaryFile(f);
+        mapped.addSynonyms(taxId3, clsName3, "Exon1", Collections.singleton("e1"));
+        // adding to a mapped taxon copies it into memory
+        mapped.addSynonyms(taxId2, clsName1, primaryId1, Collections.singleton(synonym4));
+        assertTrue(mapped.orgIdMaps.containsKey(new MultiKey(taxId2, clsName1)));
+        assertEquals(Collections.singleton(primaryId1), mapped.resolveId(taxId2, clsName1, synonym4));
+        assertEquals(Collections.singleton(primaryId1), mapped.resolveId(taxId2, clsName1, mainId3));
+        mapped.writeToBinaryFile(f);
+
+        IdResolver remapped = new IdResolver();
+        remapped.mapFromBinaryFile(f);
+        assertTrue(remapped.hasTaxonAndClassName(taxId3, clsName3));
+        assertEquals(Collections.singleton("Exon1"), remapped.resolveId(taxId3, clsName3, "e1"));
+        // the first section of a taxon and class is kept
+        assertTrue(remapped.resolveId(taxId2, clsName1, synonym4).isEmpty());
+    }
 }
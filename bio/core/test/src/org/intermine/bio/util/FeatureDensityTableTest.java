@@ -0,0 +1,105 @@
+package org.intermine.bio.util;
+
+/*
+ * Copyright (C) 2002-2017 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class FeatureDensityTableTest extends TestCase
+{
+    private static final int LENGTH = 95000;
+    private static final int RESOLUTION = 1000;
+
+    public void testEncodeDecode() throws Exception {
+        int[] counts = new int[] {0, 3, 0, 0, 17, 1, 250000, 0};
+        assertTrue(Arrays.equals(counts,
+                FeatureDensityTable.decode(FeatureDensityTable.encode(counts))));
+        int[] empty = new int[0];
+        assertTrue(Arrays.equals(empty,
+                FeatureDensityTable.decode(FeatureDensityTable.encode(empty))));
+    }
+
+    public void testBins() throws Exception {
+        assertEquals(1, FeatureDensityTable.getBinCount(0, RESOLUTION));
+        assertEquals(1, FeatureDensityTable.getBinCount(1000, RESOLUTION));
+        assertEquals(2, FeatureDensityTable.getBinCount(1001, RESOLUTION));
+        assertEquals(0, FeatureDensityTable.getBin(999, RESOLUTION, 5));
+        assertEquals(1, FeatureDensityTable.getBin(1000, RESOLUTION, 5));
+        assertEquals(4, FeatureDensityTable.getBin(9000, RESOLUTION, 5));
+        assertEquals(0, FeatureDensityTable.getBin(-1, RESOLUTION, 5));
+    }
+
+    public void testMergeAndCumulative() throws Exception {
+        int[] counts = new int[] {1, 2, 3, 4, 5};
+        assertTrue(Arrays.equals(new int[] {3, 7, 5}, FeatureDensityTable.merge(counts, 2)));
+        assertTrue(Arrays.equals(new int[] {0, 1, 3, 6, 10, 15},
+                FeatureDensityTable.cumulative(counts)));
+    }
+
+    public void testCountOverlapping() throws Exception {
+        Random random = new Random(42);
+        int[][] features = new int[2000][];
+        int binCount = FeatureDensityTable.getBinCount(LENGTH, RESOLUTION);
+        int[] starts = new int[binCount];
+        int[] ends = new int[binCount];
+        for (int i = 0; i < features.length; i++) {
+            int start = random.nextInt(LENGTH - 1);
+            int end = Math.min(LENGTH, start + 1 + random.nextInt(5000));
+            features[i] = new int[] {start, end};
+            starts[FeatureDensityTable.getBin(start, RESOLUTION, binCount)]++;
+            ends[FeatureDensityTable.getBin(end - 1, RESOLUTION, binCount)]++;
+        }
+        int[] startTotals = FeatureDensityTable.cumulative(starts);
+        int[] endTotals = FeatureDensityTable.cumulative(ends);
+        assertEquals(features.length, startTotals[binCount]);
+
+        // exact for ranges on bin boundaries
+        for (int first = 0; first < binCount; first += 7) {
+            for (int last = first + 1; last <= binCount; last += 5) {
+                int start = first * RESOLUTION;
+                int end = last * RESOLUTION;
+                assertEquals(start + ".." + end, countOverlapping(features, start, end),
+                        FeatureDensityTable.countOverlapping(startTotals, endTotals, RESOLUTION,
+                                start, end));
+            }
+        }
+
+        // other ranges are rounded to the nearest boundary
+        assertEquals(countOverlapping(features, 3000, 8000),
+                FeatureDensityTable.countOverlapping(startTotals, endTotals, RESOLUTION, 2600,
+                        8400));
+        // and a range within a bin counts the bin
+        assertEquals(countOverlapping(features, 5000, 6000),
+                FeatureDensityTable.countOverlapping(startTotals, endTotals, RESOLUTION, 5100,
+                        5200));
+        // a coarser level gives the same counts on its own boundaries
+        int factor = 10;
+        int[] coarseStartTotals = FeatureDensityTable.cumulative(
+                FeatureDensityTable.merge(starts, factor));
+        int[] coarseEndTotals = FeatureDensityTable.cumulative(
+                FeatureDensityTable.merge(ends, factor));
+        assertEquals(countOverlapping(features, 20000, 50000),
+                FeatureDensityTable.countOverlapping(coarseStartTotals, coarseEndTotals,
+                        RESOLUTION * factor, 20000, 50000));
+    }
+
+    private static int countOverlapping(int[][] features, int start, int end) {
+        int count = 0;
+        for (int[] feature : features) {
+            if (feature[0] < end && feature[1] > start) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
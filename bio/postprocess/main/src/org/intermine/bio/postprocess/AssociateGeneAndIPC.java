@@ -1,8 +1,10 @@
 package org.intermine.bio.postprocess;
 
 import java.sql.SQLException;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.log4j.Logger;
@@ -10,7 +12,6 @@ import org.intermine.bio.util.Constants;
 import org.intermine.metadata.ClassDescriptor;
 import org.intermine.metadata.ConstraintOp;
 import org.intermine.metadata.Model;
-import org.intermine.model.InterMineObject;
 import org.intermine.model.bio.Gene;
 import org.intermine.objectstore.ObjectStore;
 import org.intermine.objectstore.ObjectStoreException;
@@ -22,6 +23,7 @@ import org.intermine.objectstore.query.ContainsConstraint;
 import org.intermine.objectstore.query.Query;
 import org.intermine.objectstore.query.QueryClass;
 import org.intermine.objectstore.query.QueryCollectionReference;
+import org.intermine.objectstore.query.QueryField;
 import org.intermine.objectstore.query.Results;
 import org.intermine.objectstore.query.ResultsRow;
 import org.intermine.sql.DatabaseUtil;
@@ -35,6 +37,8 @@ public class AssociateGeneAndIPC {
 
 	private static final Logger LOG = Logger.getLogger(AssociateGeneAndIPC.class);
 
+	private static final int BATCH_SIZE = 10000;
+
 	protected ObjectStoreWriter osw;
 
 	private Model model;
@@ -49,40 +53,31 @@ public class AssociateGeneAndIPC {
 
 		Results results = findGeneIntegratedPathwayCluster(osw.getObjectStore());
 		int count = 0;
-		Gene lastGene = null;
-		Set<InterMineObject> newCollection = new HashSet<InterMineObject>();
+		// gene id -> ids of the clusters to add, written with addAllToCollection() in batches
+		Map<Integer, Set<Integer>> newMembers = new HashMap<Integer, Set<Integer>>();
 
 		osw.beginTransaction();
 
 		Iterator<?> resIter = results.iterator();
 		while (resIter.hasNext()) {
 			ResultsRow<?> rr = (ResultsRow<?>) resIter.next();
-			Gene thisGene = (Gene) rr.get(0);
-			InterMineObject gsc = (InterMineObject) rr.get(1);
-			
-//			LOG.info(String.format("Gene: %s - GSC: %s", thisGene.getPrimaryIdentifier(), gsc.getFieldValue("identifier")));
-
-			if (lastGene == null || !thisGene.getId().equals(lastGene.getId())) {
-				if (lastGene != null) {
-					// clone so we don't change the ObjectStore cache
-					Gene tempGene = PostProcessUtil.cloneInterMineObject(lastGene);
-					tempGene.setFieldValue("integratedPathwayClusters", newCollection);
-					osw.store(tempGene);
-					count++;
+			Integer geneId = (Integer) rr.get(0);
+			Integer gscId = (Integer) rr.get(1);
+
+			Set<Integer> members = newMembers.get(geneId);
+			if (members == null) {
+				// the results are in gene order, so a gene is never split between batches
+				if (newMembers.size() >= BATCH_SIZE) {
+					osw.addAllToCollection(Gene.class, "integratedPathwayClusters", newMembers);
+					newMembers.clear();
 				}
-				newCollection = new HashSet<InterMineObject>();
+				members = new HashSet<Integer>();
+				newMembers.put(geneId, members);
+				count++;
 			}
-			newCollection.add(gsc);
-			lastGene = thisGene;
-		}
-
-		if (lastGene != null) {
-			// clone so we don't change the ObjectStore cache
-			Gene tempGene = PostProcessUtil.cloneInterMineObject(lastGene);
-			tempGene.setFieldValue("integratedPathwayClusters", newCollection);
-			osw.store(tempGene);
-			count++;
+			members.add(gscId);
 		}
+		osw.addAllToCollection(Gene.class, "integratedPathwayClusters", newMembers);
 		LOG.info(count + " Genes have been processed.");
 		
 		osw.commitTransaction();
@@ -97,7 +92,7 @@ public class AssociateGeneAndIPC {
 	}
 
 	/**
-	 * Run a query that returns all genes, and associated integrated pathway clusters.
+	 * Run a query that returns the ids of all genes, and of associated integrated pathway clusters.
 	 * 
 	 * @param os
 	 *            the objectstore
@@ -116,8 +111,9 @@ public class AssociateGeneAndIPC {
 		q.addFrom(qcPathway);
 		q.addFrom(qcGsc);
 
-		q.addToSelect(qcGene);
-		q.addToSelect(qcGsc);
+		QueryField qfGeneId = new QueryField(qcGene, "id");
+		q.addToSelect(qfGeneId);
+		q.addToSelect(new QueryField(qcGsc, "id"));
 
 		ConstraintSet cs = new ConstraintSet(ConstraintOp.AND);
 
@@ -129,7 +125,7 @@ public class AssociateGeneAndIPC {
 
 		q.setConstraint(cs);
 		
-		q.addToOrderBy(qcGene);
+		q.addToOrderBy(qfGeneId);
 
 		ObjectStoreInterMineImpl osimi = (ObjectStoreInterMineImpl) os;
 		osimi.precompute(q, Constants.PRECOMPUTE_CATEGORY);
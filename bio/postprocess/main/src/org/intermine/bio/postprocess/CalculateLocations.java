@@ -32,7 +32,6 @@ import org.intermine.objectstore.ObjectStore;
 import org.intermine.objectstore.ObjectStoreException;
 import org.intermine.objectstore.ObjectStoreWriter;
 import org.intermine.objectstore.intermine.ObjectStoreInterMineImpl;
-import org.intermine.objectstore.proxy.ProxyReference;
 import org.intermine.metadata.ConstraintOp;
 import org.intermine.objectstore.query.ConstraintSet;
 import org.intermine.objectstore.query.ContainsConstraint;
@@ -378,6 +377,7 @@ public class CalculateLocations
         SequenceFeature lastFeature = null;
         boolean storeLastFeature = true;  // will get set to false if duplicate locations seen
         Location lastLoc = null;
+        ChromosomeReferences references = new ChromosomeReferences();
 
         while (resIter.hasNext()) {
             ResultsRow<?> rr = (ResultsRow<?>) resIter.next();
@@ -389,7 +389,7 @@ public class CalculateLocations
             if (lastFeature != null && !lsf.getId().equals(lastFeature.getId())) {
                 // not a duplicated so we can set references for last feature
                 if (storeLastFeature) {
-                    setChromosomeReferencesAndStore(lastFeature, lastLoc, lastChrId);
+                    references.add(lastFeature, lastLoc, lastChrId);
                 }
                 storeLastFeature = true;
             } else if (lastFeature != null) {
@@ -403,8 +403,9 @@ public class CalculateLocations
 
         // make sure final feature gets stored
         if (storeLastFeature && lastFeature != null) {
-            setChromosomeReferencesAndStore(lastFeature, lastLoc, lastChrId);
+            references.add(lastFeature, lastLoc, lastChrId);
         }
+        references.store();
 
         osw.commitTransaction();
     }
@@ -430,6 +431,7 @@ public class CalculateLocations
         SequenceFeature lastFeature = null;
         boolean storeLastFeature = true;  // will get set to false if duplicate locations seen
         Location lastLoc = null;
+        ChromosomeReferences references = new ChromosomeReferences();
         int count = 0;
 
         while (resIter.hasNext()) {
@@ -442,7 +444,7 @@ public class CalculateLocations
             if (lastFeature != null && !lsf.getId().equals(lastFeature.getId())) {
                 // not a duplicated so we can set references for last feature
                 if (storeLastFeature) {
-                    setChromosomeReferencesAndStore(lastFeature, lastLoc, lastChrId);
+                    references.add(lastFeature, lastLoc, lastChrId);
                 }
                 storeLastFeature = true;
             } else if (lastFeature != null) {
@@ -457,30 +459,48 @@ public class CalculateLocations
 
         // make sure final feature gets stored
         if (storeLastFeature && lastFeature != null) {
-            setChromosomeReferencesAndStore(lastFeature, lastLoc, lastChrId);
+            references.add(lastFeature, lastLoc, lastChrId);
         }
+        references.store();
         osw.commitTransaction();
         LOG.info("Set missing chromosomeLocation references for " + count + " features.");
     }
 
-    private void setChromosomeReferencesAndStore(SequenceFeature lsf, Location loc,
-                                                 Integer chrId) throws Exception {
-        SequenceFeature lsfClone = PostProcessUtil.cloneInterMineObject(lsf);
-
-        lsfClone.setChromosomeLocation(loc);
-        if (loc.getStart() != null && loc.getEnd() != null) {
-            int end = loc.getEnd().intValue();
-            int start = loc.getStart().intValue();
-            // only set length if it isn't already set to stop eg. mRNA lengths getting broken.
-            // an alternative is to set according to type of feature.
-            if (lsfClone.getLength() == null) {
-                int length = Math.abs(end - start) + 1;
-                lsfClone.setLength(new Integer(length));
+    /**
+     * The chromosome, chromosomeLocation and length fields to set on SequenceFeatures, written
+     * with ObjectStoreWriter.setFieldValues() in batches instead of storing a copy of each feature.
+     */
+    private class ChromosomeReferences
+    {
+        private static final int BATCH_SIZE = 10000;
+        private Map<Integer, Map<String, Object>> fields =
+            new HashMap<Integer, Map<String, Object>>();
+
+        void add(SequenceFeature lsf, Location loc, Integer chrId) throws ObjectStoreException {
+            Map<String, Object> values = new HashMap<String, Object>();
+            values.put("chromosomeLocation", loc.getId());
+            if (loc.getStart() != null && loc.getEnd() != null) {
+                int end = loc.getEnd().intValue();
+                int start = loc.getStart().intValue();
+                // only set length if it isn't already set to stop eg. mRNA lengths getting broken.
+                // an alternative is to set according to type of feature.
+                if (lsf.getLength() == null) {
+                    int length = Math.abs(end - start) + 1;
+                    values.put("length", new Integer(length));
+                }
+            }
+            values.put("chromosome", chrId);
+            fields.put(lsf.getId(), values);
+            if (fields.size() >= BATCH_SIZE) {
+                store();
             }
         }
-        lsfClone.proxyChromosome(new ProxyReference(os, chrId, Chromosome.class));
 
-        osw.store(lsfClone);
+        void store() throws ObjectStoreException {
+            // each feature is rewritten once with all of its new values
+            osw.setFieldValues(SequenceFeature.class, fields);
+            fields.clear();
+        }
     }
 
     /**
@@ -1,17 +1,17 @@
 package org.intermine.bio.postprocess;
 
 import java.io.BufferedReader;
-import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.log4j.Logger;
 import org.intermine.metadata.ConstraintOp;
 import org.intermine.metadata.Model;
-import org.intermine.model.InterMineObject;
 import org.intermine.model.bio.Gene;
 import org.intermine.model.bio.Organism;
 import org.intermine.objectstore.ObjectStore;
@@ -29,6 +29,9 @@ import org.intermine.objectstore.query.ResultsRow;
 import org.intermine.objectstore.query.SimpleConstraint;
 
 /**
+ * Sets the coexp value of human interactions from a file of gene pairs. The file is read into a
+ * GenePairMap, keeping only the pairs of genes that have interactions, and the interactions are
+ * then read as ids and gene identifiers only and updated in batches.
  * 
  * @author chenyian
  *
@@ -37,6 +40,8 @@ public class CoExpressionInteraction {
 	
 	private static final Logger LOG = Logger.getLogger(CoExpressionInteraction.class);
 	
+	private static final int BATCH_SIZE = 10000;
+
 	protected ObjectStoreWriter osw;
 
 	private Model model;
@@ -53,54 +58,67 @@ public class CoExpressionInteraction {
 		System.out.println(results.size() + " Interactions found.");
 		LOG.info(results.size() + " Interactions found.");
 
-		Map<String,InterMineObject> interactionMap = new HashMap<String, InterMineObject>();
+		// only the lines of the file for genes with interactions are kept
+		Set<String> identifiers = new HashSet<String>();
 		Iterator<?> iterator = results.iterator();
 		while (iterator.hasNext()) {
 			ResultsRow<?> result = (ResultsRow<?>) iterator.next();
-			InterMineObject item = (InterMineObject) result.get(0);
-			Gene gene1 = (Gene) result.get(1);
-			Gene gene2 = (Gene) result.get(2);
-
-			interactionMap.put(String.format("%s-%s", gene1.getPrimaryIdentifier(), gene2.getPrimaryIdentifier()), item);
+			identifiers.add((String) result.get(1));
+			identifiers.add((String) result.get(2));
 		}
+		GenePairMap coexpMap = new GenePairMap(false, identifiers);
 			  
 		BufferedReader in = null;
-		int count = 0;
 		try {
-			osw.beginTransaction();
 			in = new BufferedReader(new FileReader(COEXP_FILE_NAME));
-			String line;
-			while ((line = in.readLine()) != null) {
-				line.trim();
-				String[] cols = line.split("\\t");
-				if (interactionMap.get(cols[0] + "-" + cols[1]) != null) {
-					InterMineObject interaction = interactionMap.get(cols[0] + "-" + cols[1]);
-					interaction.setFieldValue("coexp", Float.valueOf(cols[2]));
-					osw.store(interaction);
-					count++;
+			int lines = coexpMap.readFloats(in, 0, 1, 2);
+			LOG.info(lines + " co-expression values read for " + coexpMap.size() + " gene pairs.");
+		} catch (IOException e) {
+			LOG.error(e);
+			return;
+		} finally {
+			if (in != null) {
+				try {
+					in.close();
+				} catch (IOException e) {
+					LOG.error(e);
 				}
-				if (interactionMap.get(cols[1] + "-" + cols[0]) != null) {
-					InterMineObject interaction = interactionMap.get(cols[1] + "-" + cols[0]);
-					interaction.setFieldValue("coexp", Float.valueOf(cols[2]));
-					osw.store(interaction);
+			}
+		}
+
+		Class<?> interactionClass = model.getClassDescriptorByName("Interaction").getType();
+		Map<Integer, Object> values = new HashMap<Integer, Object>();
+		int count = 0;
+		try {
+			osw.beginTransaction();
+			iterator = results.iterator();
+			while (iterator.hasNext()) {
+				ResultsRow<?> result = (ResultsRow<?>) iterator.next();
+				int index = coexpMap.indexOf((String) result.get(1), (String) result.get(2));
+				if (index >= 0) {
+					values.put((Integer) result.get(0), Float.valueOf(coexpMap.getFloatValue(index)));
 					count++;
+					if (values.size() >= BATCH_SIZE) {
+						osw.setFieldValues(interactionClass, "coexp", values);
+						values.clear();
+					}
 				}
 			}
-			in.close();
+			osw.setFieldValues(interactionClass, "coexp", values);
 			osw.commitTransaction();
 			
 			System.out.println(count + " interaction co-expression values were stored.");
 			LOG.info(count + " interaction co-expression values were stored.");
 		} catch (ObjectStoreException e) {
 			e.printStackTrace();
-		} catch (FileNotFoundException e) {
-			LOG.error(e);
-		} catch (IOException e) {
-			LOG.error(e);
 		}
 
 	}
 
+	/**
+	 * Query the id and the identifiers of both genes of the interactions of an organism, in order
+	 * of interaction id.
+	 */
 	private Results queryInteractionByTaxonId(String taxonId) {
 		Query q = new Query();
 		QueryClass qcGene1 = new QueryClass(Gene.class);
@@ -112,6 +130,7 @@ public class CoExpressionInteraction {
 
 		QueryField qfTaxonId1 = new QueryField(qcOrganism1, "taxonId");
 		QueryField qfTaxonId2 = new QueryField(qcOrganism2, "taxonId");
+		QueryField qfInteractionId = new QueryField(qcInteraction, "id");
 
 		q.addFrom(qcInteraction);
 		q.addFrom(qcGene1);
@@ -119,9 +138,10 @@ public class CoExpressionInteraction {
 		q.addFrom(qcOrganism1);
 		q.addFrom(qcOrganism2);
 		
-		q.addToSelect(qcInteraction);
-		q.addToSelect(qcGene1);
-		q.addToSelect(qcGene2);
+		q.addToSelect(qfInteractionId);
+		q.addToSelect(new QueryField(qcGene1, "primaryIdentifier"));
+		q.addToSelect(new QueryField(qcGene2, "primaryIdentifier"));
+		q.addToOrderBy(qfInteractionId);
 
 		ConstraintSet cs = new ConstraintSet(ConstraintOp.AND);
 		QueryObjectReference qor1 = new QueryObjectReference(qcGene1, "organism");
@@ -140,7 +160,9 @@ public class CoExpressionInteraction {
 
 		ObjectStore os = osw.getObjectStore();
 
-		return os.execute(q);
+		Results results = os.execute(q);
+		results.setBatchSize(BATCH_SIZE);
+		return results;
 	}
 
 
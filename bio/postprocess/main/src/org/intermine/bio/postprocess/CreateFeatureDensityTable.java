@@ -0,0 +1,244 @@
+package org.intermine.bio.postprocess;
+
+/*
+ * Copyright (C) 2002-2017 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.intermine.bio.util.FeatureDensityTable;
+import org.intermine.metadata.ConstraintOp;
+import org.intermine.model.bio.Chromosome;
+import org.intermine.model.bio.Location;
+import org.intermine.model.bio.Organism;
+import org.intermine.model.bio.SequenceFeature;
+import org.intermine.objectstore.ObjectStore;
+import org.intermine.objectstore.ObjectStoreWriter;
+import org.intermine.objectstore.intermine.ObjectStoreWriterInterMineImpl;
+import org.intermine.objectstore.query.ConstraintSet;
+import org.intermine.objectstore.query.ContainsConstraint;
+import org.intermine.objectstore.query.Query;
+import org.intermine.objectstore.query.QueryClass;
+import org.intermine.objectstore.query.QueryField;
+import org.intermine.objectstore.query.QueryObjectReference;
+import org.intermine.objectstore.query.QueryValue;
+import org.intermine.objectstore.query.Results;
+import org.intermine.objectstore.query.ResultsRow;
+import org.intermine.objectstore.query.SimpleConstraint;
+import org.intermine.sql.DatabaseUtil;
+
+/**
+ * Count the sequence features of each organism, chromosome and class in bins at several
+ * resolutions, and store the counts in the feature_density table so that the JBrowse endpoint
+ * can draw density tracks without counting features in the database.  See FeatureDensityTable
+ * for the layout.  The chromosomes are counted one at a time, so only the locations and bins of
+ * one chromosome are held in memory.  The locations are read before they are counted because the
+ * length of a chromosome, and so the number of bins, may only be known from its features.
+ *
+ * @author chenyian
+ */
+public class CreateFeatureDensityTable
+{
+    private static final Logger LOG = Logger.getLogger(CreateFeatureDensityTable.class);
+    private static final int BATCH_SIZE = 10000;
+
+    protected ObjectStoreWriterInterMineImpl osw;
+
+    /**
+     * Construct with an ObjectStoreWriter, the table is written to its database.
+     *
+     * @param osw an ObjectStoreWriter
+     */
+    public CreateFeatureDensityTable(ObjectStoreWriter osw) {
+        if (osw instanceof ObjectStoreWriterInterMineImpl) {
+            this.osw = (ObjectStoreWriterInterMineImpl) osw;
+        } else {
+            throw new RuntimeException("The ObjectStoreWriter is not an "
+                                       + "ObjectStoreWriterInterMineImpl");
+        }
+    }
+
+    /**
+     * Create the table, replacing it if it exists.
+     *
+     * @throws SQLException if the table cannot be written
+     * @throws IOException if the counts cannot be encoded
+     */
+    public void create() throws SQLException, IOException {
+        long startTime = System.currentTimeMillis();
+        ObjectStore os = osw.getObjectStore();
+        Connection con = osw.getDatabase().getConnection();
+        try {
+            con.setAutoCommit(false);
+            Statement statement = con.createStatement();
+            if (DatabaseUtil.tableExists(con, FeatureDensityTable.TABLE_NAME)) {
+                statement.execute("DROP TABLE " + FeatureDensityTable.TABLE_NAME);
+            }
+            statement.execute(FeatureDensityTable.getCreateTableSql());
+            statement.close();
+
+            PreparedStatement insert = con.prepareStatement("INSERT INTO "
+                    + FeatureDensityTable.TABLE_NAME + " (taxonid, chromosome, chromosomelength,"
+                    + " featureclass, resolution, starts, ends) VALUES (?, ?, ?, ?, ?, ?, ?)");
+            int rows = 0;
+            for (ChromosomeInfo chr : getChromosomes(os)) {
+                rows += storeChromosome(os, chr, insert);
+            }
+            insert.close();
+
+            statement = con.createStatement();
+            statement.execute(FeatureDensityTable.getCreateIndexSql());
+            statement.execute("ANALYSE " + FeatureDensityTable.TABLE_NAME);
+            statement.close();
+            con.commit();
+            LOG.info("Wrote " + rows + " rows to " + FeatureDensityTable.TABLE_NAME + " in "
+                    + (System.currentTimeMillis() - startTime) + " ms");
+        } catch (SQLException e) {
+            con.rollback();
+            throw e;
+        } finally {
+            con.setAutoCommit(true);
+            con.close();
+        }
+    }
+
+    private List<ChromosomeInfo> getChromosomes(ObjectStore os) {
+        Query q = new Query();
+        QueryClass qcChr = new QueryClass(Chromosome.class);
+        QueryClass qcOrg = new QueryClass(Organism.class);
+        q.addFrom(qcChr);
+        q.addFrom(qcOrg);
+        q.addToSelect(new QueryField(qcChr, "id"));
+        q.addToSelect(new QueryField(qcChr, "primaryIdentifier"));
+        q.addToSelect(new QueryField(qcChr, "length"));
+        q.addToSelect(new QueryField(qcOrg, "taxonId"));
+        q.setConstraint(new ContainsConstraint(new QueryObjectReference(qcChr, "organism"),
+                ConstraintOp.CONTAINS, qcOrg));
+
+        List<ChromosomeInfo> chromosomes = new ArrayList<ChromosomeInfo>();
+        Results results = os.execute(q, BATCH_SIZE, true, false, false);
+        for (Iterator<?> iter = results.iterator(); iter.hasNext();) {
+            ResultsRow<?> row = (ResultsRow<?>) iter.next();
+            ChromosomeInfo chr = new ChromosomeInfo();
+            chr.id = (Integer) row.get(0);
+            chr.primaryIdentifier = (String) row.get(1);
+            chr.length = (Integer) row.get(2);
+            chr.taxonId = (Integer) row.get(3);
+            if (chr.primaryIdentifier != null && chr.taxonId != null) {
+                chromosomes.add(chr);
+            }
+        }
+        return chromosomes;
+    }
+
+    /**
+     * Count the features of one chromosome and write its rows.
+     *
+     * @return the number of rows written
+     */
+    private int storeChromosome(ObjectStore os, ChromosomeInfo chr, PreparedStatement insert)
+        throws SQLException, IOException {
+        Query q = new Query();
+        QueryClass qcChr = new QueryClass(Chromosome.class);
+        QueryClass qcFeature = new QueryClass(SequenceFeature.class);
+        QueryClass qcLoc = new QueryClass(Location.class);
+        q.addFrom(qcFeature);
+        q.addFrom(qcLoc);
+        q.addFrom(qcChr);
+        q.addToSelect(new QueryField(qcFeature, "class"));
+        q.addToSelect(new QueryField(qcLoc, "start"));
+        q.addToSelect(new QueryField(qcLoc, "end"));
+
+        ConstraintSet cs = new ConstraintSet(ConstraintOp.AND);
+        cs.addConstraint(new ContainsConstraint(
+                new QueryObjectReference(qcFeature, "chromosomeLocation"), ConstraintOp.CONTAINS,
+                qcLoc));
+        cs.addConstraint(new ContainsConstraint(new QueryObjectReference(qcLoc, "locatedOn"),
+                ConstraintOp.CONTAINS, qcChr));
+        cs.addConstraint(new SimpleConstraint(new QueryField(qcChr, "id"), ConstraintOp.EQUALS,
+                new QueryValue(chr.id)));
+        q.setConstraint(cs);
+
+        // read the locations first, as the length of the chromosome may not be known
+        Map<String, List<int[]>> locations = new HashMap<String, List<int[]>>();
+        int maxEnd = 0;
+        Results results = os.execute(q, BATCH_SIZE, true, false, false);
+        for (Iterator<?> iter = results.iterator(); iter.hasNext();) {
+            ResultsRow<?> row = (ResultsRow<?>) iter.next();
+            Integer start = (Integer) row.get(1);
+            Integer end = (Integer) row.get(2);
+            if (start == null || end == null) {
+                continue;
+            }
+            String className = ((Class<?>) row.get(0)).getName();
+            List<int[]> classLocations = locations.get(className);
+            if (classLocations == null) {
+                classLocations = new ArrayList<int[]>();
+                locations.put(className, classLocations);
+            }
+            // to interbase coordinates
+            int min = Math.min(start.intValue(), end.intValue()) - 1;
+            int max = Math.max(start.intValue(), end.intValue());
+            classLocations.add(new int[] {min, max});
+            maxEnd = Math.max(maxEnd, max);
+        }
+        if (locations.isEmpty()) {
+            return 0;
+        }
+
+        int length = (chr.length == null) ? maxEnd : Math.max(chr.length.intValue(), maxEnd);
+        int finest = FeatureDensityTable.RESOLUTIONS[0];
+        int binCount = FeatureDensityTable.getBinCount(length, finest);
+        int rows = 0;
+        for (Map.Entry<String, List<int[]>> entry : locations.entrySet()) {
+            int[] starts = new int[binCount];
+            int[] ends = new int[binCount];
+            for (int[] location : entry.getValue()) {
+                starts[FeatureDensityTable.getBin(location[0], finest, binCount)]++;
+                ends[FeatureDensityTable.getBin(location[1] - 1, finest, binCount)]++;
+            }
+            for (int resolution : FeatureDensityTable.RESOLUTIONS) {
+                int factor = resolution / finest;
+                int[] levelStarts = (factor == 1) ? starts
+                    : FeatureDensityTable.merge(starts, factor);
+                int[] levelEnds = (factor == 1) ? ends : FeatureDensityTable.merge(ends, factor);
+                insert.setInt(1, chr.taxonId.intValue());
+                insert.setString(2, chr.primaryIdentifier);
+                insert.setInt(3, length);
+                insert.setString(4, entry.getKey());
+                insert.setInt(5, resolution);
+                insert.setBytes(6, FeatureDensityTable.encode(levelStarts));
+                insert.setBytes(7, FeatureDensityTable.encode(levelEnds));
+                insert.executeUpdate();
+                rows++;
+            }
+        }
+        LOG.info("Counted the features of " + chr.primaryIdentifier + " (taxon " + chr.taxonId
+                + ")");
+        return rows;
+    }
+
+    private static class ChromosomeInfo
+    {
+        Integer id;
+        String primaryIdentifier;
+        Integer length;
+        Integer taxonId;
+    }
+}
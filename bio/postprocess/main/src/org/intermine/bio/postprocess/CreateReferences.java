@@ -10,8 +10,10 @@ package org.intermine.bio.postprocess;
  *
  */
 
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.log4j.Logger;
@@ -47,6 +49,8 @@ import org.intermine.util.DynamicUtil;
 public class CreateReferences
 {
     private static final Logger LOG = Logger.getLogger(CreateReferences.class);
+    // the number of references or collection elements to write at a time
+    private static final int BATCH_SIZE = 10000;
 
     protected ObjectStoreWriter osw;
     private Model model;
@@ -146,28 +150,28 @@ public class CreateReferences
         osw.beginTransaction();
 
         int count = 0;
+        Class<?> destinationCls = model.getClassDescriptorByName(destinationClsName).getType();
+        // set the references in batches rather than storing a copy of every object
+        Map<Integer, Integer> references = new HashMap<Integer, Integer>();
 
         while (resIter.hasNext()) {
             ResultsRow<InterMineObject> rr = resIter.next();
             InterMineObject thisSourceObject = rr.get(0);
             InterMineObject thisDestObject = rr.get(1);
 
-            try {
-                // clone so we don't change the ObjectStore cache
-                InterMineObject tempObject = PostProcessUtil.cloneInterMineObject(thisDestObject);
-                tempObject.setFieldValue(createFieldName, thisSourceObject);
-                count++;
-                if (count % 10000 == 0) {
-                    LOG.info("Created " + count + " references in " + destinationClsName
-                             + " to " + sourceClsName
-                             + " via " + connectingClsName);
-                }
-                osw.store(tempObject);
-            } catch (IllegalAccessException e) {
-                LOG.error("Object with ID: " + thisDestObject.getId()
-                          + " has no " + createFieldName + " field");
+            references.put(thisDestObject.getId(), thisSourceObject.getId());
+            count++;
+            if (count % 10000 == 0) {
+                LOG.info("Created " + count + " references in " + destinationClsName
+                         + " to " + sourceClsName
+                         + " via " + connectingClsName);
+            }
+            if (references.size() >= BATCH_SIZE) {
+                osw.setFieldValues(destinationCls, createFieldName, references);
+                references.clear();
             }
         }
+        osw.setFieldValues(destinationCls, createFieldName, references);
 
         LOG.info("Finished: created " + count + " references in " + destinationClsName
                  + " to " + sourceClsName + " via " + connectingClsName
@@ -236,8 +240,8 @@ public class CreateReferences
         LOG.info("Beginning " + insertMessage);
         long startTime = System.currentTimeMillis();
 
-        // if this is a many to many collection we can use ObjectStore.addToCollection which will
-        // write directly to the database.
+        // if this is a many to many collection we can use ObjectStore.addAllToCollection which
+        // will write directly to the database.
         boolean manyToMany = false;
         ClassDescriptor destCld;
         if (createInFirstClass) {
@@ -268,6 +272,8 @@ public class CreateReferences
         // results will be firstClass ; destClass (ordered by firstClass)
         osw.beginTransaction();
         int count = 0;
+        Map<Integer, Set<Integer>> newMembers = new HashMap<Integer, Set<Integer>>();
+        int memberCount = 0;
 
         while (resIter.hasNext()) {
             ResultsRow<InterMineObject> rr = resIter.next();
@@ -306,8 +312,18 @@ public class CreateReferences
             }
 
             if (manyToMany) {
-                osw.addToCollection(thisDestObject.getId(), destCld.getType(),
-                        createFieldName, thisSourceObject.getId());
+                Set<Integer> members = newMembers.get(thisDestObject.getId());
+                if (members == null) {
+                    members = new HashSet<Integer>();
+                    newMembers.put(thisDestObject.getId(), members);
+                }
+                members.add(thisSourceObject.getId());
+                memberCount++;
+                if (memberCount >= BATCH_SIZE) {
+                    osw.addAllToCollection(destCld.getType(), createFieldName, newMembers);
+                    newMembers.clear();
+                    memberCount = 0;
+                }
             } else {
                 newCollection.add(thisSourceObject);
             }
@@ -315,6 +331,9 @@ public class CreateReferences
             lastDestObject = thisDestObject;
         }
 
+        if (manyToMany) {
+            osw.addAllToCollection(destCld.getType(), createFieldName, newMembers);
+        }
         if (!manyToMany && lastDestObject != null) {
             // clone so we don't change the ObjectStore cache
             InterMineObject tempObject = PostProcessUtil.cloneInterMineObject(lastDestObject);
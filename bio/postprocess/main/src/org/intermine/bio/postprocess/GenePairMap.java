@@ -0,0 +1,239 @@
+package org.intermine.bio.postprocess;
+
+/*
+ * Copyright (C) 2002-2017 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A map from pairs of gene identifiers to int or float values, for joining a large file or query
+ * of gene pairs against objects in the ObjectStore without holding an object or String per pair.
+ * Each identifier is given an int code, each pair is packed into a long, and the pairs and values
+ * are held in open addressed arrays, so an entry takes about 24 bytes.
+ *
+ * If the map is made with a set of identifiers, pairs with any other identifier are ignored, which
+ * keeps only the rows of a file that can match something. An unordered map treats (a, b) and
+ * (b, a) as the same pair.
+ *
+ * @author chenyian
+ */
+public class GenePairMap
+{
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final long EMPTY = -1L;
+
+    private final Map<String, Integer> codes = new HashMap<String, Integer>();
+    private final boolean fixedIdentifiers;
+    private final boolean ordered;
+    private long[] keys;
+    private int[] values;
+    private int size = 0;
+
+    /**
+     * Create a map that accepts any identifiers.
+     *
+     * @param ordered false if (a, b) and (b, a) are the same pair
+     */
+    public GenePairMap(boolean ordered) {
+        this.ordered = ordered;
+        this.fixedIdentifiers = false;
+        keys = newKeys(INITIAL_CAPACITY);
+        values = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Create a map that ignores pairs with identifiers not in the given collection.
+     *
+     * @param ordered false if (a, b) and (b, a) are the same pair
+     * @param identifiers the identifiers of the genes that may be looked up later
+     */
+    public GenePairMap(boolean ordered, Collection<String> identifiers) {
+        this.ordered = ordered;
+        this.fixedIdentifiers = true;
+        for (String identifier : identifiers) {
+            if (identifier != null && !codes.containsKey(identifier)) {
+                codes.put(identifier, Integer.valueOf(codes.size()));
+            }
+        }
+        keys = newKeys(INITIAL_CAPACITY);
+        values = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Add a pair, replacing any value it already has.
+     *
+     * @param a the identifier of the first gene
+     * @param b the identifier of the second gene
+     * @param value the value
+     * @return false if the pair was ignored because an identifier is not in the map
+     */
+    public boolean put(String a, String b, int value) {
+        long key = key(a, b, !fixedIdentifiers);
+        if (key == EMPTY) {
+            return false;
+        }
+        if ((size + 1) * 2 > keys.length) {
+            resize(keys.length * 2);
+        }
+        int slot = slot(keys, key);
+        if (keys[slot] == EMPTY) {
+            keys[slot] = key;
+            size++;
+        }
+        values[slot] = value;
+        return true;
+    }
+
+    /**
+     * Add a pair with a float value, replacing any value it already has.
+     *
+     * @param a the identifier of the first gene
+     * @param b the identifier of the second gene
+     * @param value the value
+     * @return false if the pair was ignored because an identifier is not in the map
+     */
+    public boolean putFloat(String a, String b, float value) {
+        return put(a, b, Float.floatToRawIntBits(value));
+    }
+
+    /**
+     * Returns where a pair is held, to pass to getValue() or getFloatValue().
+     *
+     * @param a the identifier of the first gene
+     * @param b the identifier of the second gene
+     * @return the index of the pair, or -1 if it is not in the map
+     */
+    public int indexOf(String a, String b) {
+        long key = key(a, b, false);
+        if (key == EMPTY) {
+            return -1;
+        }
+        int slot = slot(keys, key);
+        return (keys[slot] == EMPTY) ? -1 : slot;
+    }
+
+    /**
+     * @param index an index returned by indexOf()
+     * @return the value of the pair at that index
+     */
+    public int getValue(int index) {
+        return values[index];
+    }
+
+    /**
+     * @param index an index returned by indexOf()
+     * @return the value of the pair at that index, added with putFloat()
+     */
+    public float getFloatValue(int index) {
+        return Float.intBitsToFloat(values[index]);
+    }
+
+    /**
+     * @return the number of pairs in the map
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Read a tab separated file with a pair of gene identifiers and a number on each line, adding
+     * each line with putFloat(). Later lines replace earlier lines for the same pair.
+     *
+     * @param in the file
+     * @param columnA the column of the first identifier, counting from 0
+     * @param columnB the column of the second identifier
+     * @param valueColumn the column of the value
+     * @return the number of lines added, not counting those with an identifier not in the map
+     * @throws IOException if the file can't be read
+     */
+    public int readFloats(BufferedReader in, int columnA, int columnB, int valueColumn)
+        throws IOException {
+        int maxColumn = Math.max(valueColumn, Math.max(columnA, columnB));
+        int added = 0;
+        String line;
+        while ((line = in.readLine()) != null) {
+            String[] cols = line.split("\t");
+            if (cols.length <= maxColumn) {
+                continue;
+            }
+            String a = cols[columnA].trim();
+            String b = cols[columnB].trim();
+            // only parse the value if the pair is wanted
+            if (fixedIdentifiers && (!codes.containsKey(a) || !codes.containsKey(b))) {
+                continue;
+            }
+            if (putFloat(a, b, Float.parseFloat(cols[valueColumn].trim()))) {
+                added++;
+            }
+        }
+        return added;
+    }
+
+    private long key(String a, String b, boolean add) {
+        int codeA = code(a, add);
+        int codeB = code(b, add);
+        if (codeA < 0 || codeB < 0) {
+            return EMPTY;
+        }
+        if (!ordered && codeA > codeB) {
+            int swap = codeA;
+            codeA = codeB;
+            codeB = swap;
+        }
+        return (((long) codeA) << 32) | (codeB & 0xffffffffL);
+    }
+
+    private int code(String identifier, boolean add) {
+        Integer code = codes.get(identifier);
+        if (code == null) {
+            if (!add || identifier == null) {
+                return -1;
+            }
+            code = Integer.valueOf(codes.size());
+            codes.put(identifier, code);
+        }
+        return code.intValue();
+    }
+
+    private static int slot(long[] keys, long key) {
+        int mask = keys.length - 1;
+        long h = key * 0x9E3779B97F4A7C15L;
+        int slot = (int) (h ^ (h >>> 32)) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = newKeys(capacity);
+        values = new int[capacity];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = slot(keys, oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private static long[] newKeys(int capacity) {
+        long[] newKeys = new long[capacity];
+        Arrays.fill(newKeys, EMPTY);
+        return newKeys;
+    }
+}
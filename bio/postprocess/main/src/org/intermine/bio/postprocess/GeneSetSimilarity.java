@@ -0,0 +1,276 @@
+package org.intermine.bio.postprocess;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pairwise comparison of gene sets (e.g. the genes of each pathway).
+ *
+ * Gene identifiers are interned to ints and each set is stored as a bitset, so intersections
+ * are a matter of AND and bitCount. The pairwise work is split into square tiles of the
+ * triangular matrix, which are handed out to a fixed pool of worker threads.
+ *
+ * @author chenyian
+ *
+ */
+public class GeneSetSimilarity {
+	private static final int TILE = 64;
+
+	private final List<String> identifiers;
+	private final Map<String, Integer> indexes;
+	private final long[][] bits;
+	private final int[] sizes;
+	private final int threads;
+
+	/**
+	 * @param geneSets gene identifiers of each set, keyed by the set identifier
+	 */
+	public GeneSetSimilarity(Map<String, Set<String>> geneSets) {
+		this(geneSets, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param geneSets gene identifiers of each set, keyed by the set identifier
+	 * @param threads number of worker threads for the pairwise calculations
+	 */
+	public GeneSetSimilarity(Map<String, Set<String>> geneSets, int threads) {
+		this.threads = Math.max(1, threads);
+		identifiers = new ArrayList<String>(geneSets.keySet());
+		Collections.sort(identifiers);
+
+		Map<String, Integer> genes = new HashMap<String, Integer>();
+		for (Set<String> geneSet : geneSets.values()) {
+			for (String gene : geneSet) {
+				if (!genes.containsKey(gene)) {
+					genes.put(gene, Integer.valueOf(genes.size()));
+				}
+			}
+		}
+		int words = (genes.size() + 63) >>> 6;
+
+		int n = identifiers.size();
+		indexes = new HashMap<String, Integer>();
+		bits = new long[n][];
+		sizes = new int[n];
+		for (int i = 0; i < n; i++) {
+			String identifier = identifiers.get(i);
+			indexes.put(identifier, Integer.valueOf(i));
+			long[] set = new long[words];
+			for (String gene : geneSets.get(identifier)) {
+				int g = genes.get(gene).intValue();
+				set[g >>> 6] |= 1L << g;
+			}
+			bits[i] = set;
+			sizes[i] = geneSets.get(identifier).size();
+		}
+	}
+
+	/**
+	 * @return the set identifiers in sorted order; the matrices are indexed in this order
+	 */
+	public List<String> getIdentifiers() {
+		return identifiers;
+	}
+
+	public int indexOf(String identifier) {
+		Integer index = indexes.get(identifier);
+		return index == null ? -1 : index.intValue();
+	}
+
+	public int size(int i) {
+		return sizes[i];
+	}
+
+	public int intersection(int i, int j) {
+		long[] a = bits[i];
+		long[] b = bits[j];
+		int count = 0;
+		for (int w = 0; w < a.length; w++) {
+			count += Long.bitCount(a[w] & b[w]);
+		}
+		return count;
+	}
+
+	/**
+	 * @return true if set i contains all members of set j
+	 */
+	public boolean containsAll(int i, int j) {
+		if (sizes[j] > sizes[i]) {
+			return false;
+		}
+		long[] a = bits[i];
+		long[] b = bits[j];
+		for (int w = 0; w < a.length; w++) {
+			if ((b[w] & ~a[w]) != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * The overlap coefficient, |A and B| / min(|A|, |B|), between all pairs of sets.
+	 *
+	 * @return a full n x n matrix, rows in the order of getIdentifiers()
+	 */
+	public double[][] overlapCoefficients() {
+		final int n = identifiers.size();
+		final double[][] ret = new double[n][n];
+		runTiles(n, new TileTask() {
+			@Override
+			public void run(int i, int j) {
+				double min = (double) Math.min(sizes[i], sizes[j]);
+				double d = (double) intersection(i, j) / min;
+				ret[i][j] = d;
+				ret[j][i] = d;
+			}
+		}, true);
+		return ret;
+	}
+
+	/**
+	 * One minus the Pearson correlation between the overlap coefficient profiles of each pair
+	 * of sets.
+	 *
+	 * @return the condensed distance matrix, see HierarchicalClustering.condensedIndex
+	 */
+	public double[] correlationDistances() {
+		final int n = identifiers.size();
+		// standardise each profile so that the correlation is a dot product
+		final double[][] profiles = overlapCoefficients();
+		for (double[] row : profiles) {
+			double mean = 0d;
+			for (double v : row) {
+				mean += v;
+			}
+			mean /= n;
+			double norm = 0d;
+			for (int k = 0; k < n; k++) {
+				row[k] -= mean;
+				norm += row[k] * row[k];
+			}
+			norm = Math.sqrt(norm);
+			for (int k = 0; k < n; k++) {
+				row[k] /= norm;
+			}
+		}
+		final double[] ret = new double[HierarchicalClustering.condensedSize(n)];
+		runTiles(n, new TileTask() {
+			@Override
+			public void run(int i, int j) {
+				double[] a = profiles[i];
+				double[] b = profiles[j];
+				double dot = 0d;
+				for (int k = 0; k < n; k++) {
+					dot += a[k] * b[k];
+				}
+				ret[HierarchicalClustering.condensedIndex(n, i, j)] = 1d - dot;
+			}
+		}, false);
+		return ret;
+	}
+
+	/**
+	 * Find the sets that are contained by another set.
+	 *
+	 * @param order the indexes of the sets to compare, largest first
+	 * @return for each position in order, the positions after it whose sets it contains
+	 */
+	public List<List<Integer>> findSubsets(final int[] order) {
+		final List<List<Integer>> ret = new ArrayList<List<Integer>>(order.length);
+		for (int i = 0; i < order.length; i++) {
+			ret.add(null);
+		}
+		final AtomicInteger nextRow = new AtomicInteger(0);
+		execute(new Runnable() {
+			@Override
+			public void run() {
+				int p;
+				while ((p = nextRow.getAndIncrement()) < order.length) {
+					List<Integer> subsets = new ArrayList<Integer>();
+					for (int q = p + 1; q < order.length; q++) {
+						if (containsAll(order[p], order[q])) {
+							subsets.add(Integer.valueOf(q));
+						}
+					}
+					ret.set(p, subsets);
+				}
+			}
+		});
+		return ret;
+	}
+
+	private interface TileTask {
+		void run(int i, int j);
+	}
+
+	/**
+	 * Run the task for every pair i > j (and i == j if diagonal is set), one tile at a time.
+	 */
+	private void runTiles(int n, final TileTask task, final boolean diagonal) {
+		final int tiles = (n + TILE - 1) / TILE;
+		final int[] tileI = new int[tiles * (tiles + 1) / 2];
+		final int[] tileJ = new int[tileI.length];
+		int t = 0;
+		for (int ti = 0; ti < tiles; ti++) {
+			for (int tj = 0; tj <= ti; tj++) {
+				tileI[t] = ti;
+				tileJ[t] = tj;
+				t++;
+			}
+		}
+		final int size = n;
+		final AtomicInteger nextTile = new AtomicInteger(0);
+		execute(new Runnable() {
+			@Override
+			public void run() {
+				int tile;
+				while ((tile = nextTile.getAndIncrement()) < tileI.length) {
+					int iStart = tileI[tile] * TILE;
+					int iEnd = Math.min(iStart + TILE, size);
+					int jStart = tileJ[tile] * TILE;
+					int jEnd = Math.min(jStart + TILE, size);
+					for (int i = iStart; i < iEnd; i++) {
+						int last = Math.min(jEnd, diagonal ? i + 1 : i);
+						for (int j = jStart; j < last; j++) {
+							task.run(i, j);
+						}
+					}
+				}
+			}
+		});
+	}
+
+	private void execute(Runnable worker) {
+		if (threads == 1) {
+			worker.run();
+			return;
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+			for (int i = 0; i < threads; i++) {
+				futures.add(executor.submit(worker));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while comparing gene sets", e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Failed to compare gene sets", e.getCause());
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
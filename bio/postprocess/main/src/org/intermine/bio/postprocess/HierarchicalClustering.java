@@ -1,95 +1,253 @@
 package org.intermine.bio.postprocess;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.commons.lang.StringUtils;
+
 /**
- * Implement using bottom-up method; the efficiency may not be good
- * 
+ * Average-linkage agglomerative clustering.
+ *
+ * Items are indexed by integers and the pairwise distances are kept in a condensed (upper
+ * triangle) primitive matrix. The dendrogram is built once with the nearest-neighbour-chain
+ * algorithm using Lance-Williams updates, i.e. O(n^2) time and no extra memory beyond the
+ * matrix. The merges are then replayed in order of increasing distance, which gives the same
+ * result as repeatedly merging the closest pair of clusters until the cut-off is exceeded.
+ *
  * @author chenyian
  *
  */
 public class HierarchicalClustering {
-	private Map<String, Map<String, Double>> matrix;
+	private List<String> labels;
+	private double[] distances;
 	private List<Double> distanceList;
 
+	// dendrogram, calculated on the first call of clusteringByAverageLinkage
+	private int[] mergeA;
+	private int[] mergeB;
+	private double[] mergeDistance;
+
 	public List<Double> getDistanceList() {
 		return distanceList;
 	}
 
+	/**
+	 * @param matrix a symmetric distance matrix; items are ordered by their names
+	 */
 	public HierarchicalClustering(Map<String, Map<String, Double>> matrix) {
-		this.matrix = matrix;
-		distanceList = new ArrayList<Double>();
-	}
-	
-	protected List<String> clusteringByAverageLinkage(double cutOff) {
-		distanceList.clear();
-
-		Map<String, Double> previousDistance = new HashMap<String, Double>();
-
 		List<String> items = new ArrayList<String>(matrix.keySet());
 		Collections.sort(items);
-		while (1 < items.size()) {
-			final Map<String, Double> distance = new HashMap<String, Double>();
-
-			for (int i = 1; i < items.size(); i++) {
-				for (int j = 0; j < i; j++) {
-					String pair = String.format("%s--%s", items.get(i), items.get(j));
-					if (previousDistance.containsKey(pair)) {
-						distance.put(pair, previousDistance.get(pair));
-					} else {
-						distance.put(pair, getAverageDistance(items.get(i), items.get(j)));
-					}
-				}
+		int n = items.size();
+		double[] condensed = new double[condensedSize(n)];
+		for (int i = 0; i < n - 1; i++) {
+			Map<String, Double> row = matrix.get(items.get(i));
+			for (int j = i + 1; j < n; j++) {
+				condensed[condensedIndex(n, i, j)] = row.get(items.get(j)).doubleValue();
 			}
+		}
+		init(items, condensed);
+	}
 
-			List<String> pairs = new ArrayList<String>(distance.keySet());
-			Collections.sort(pairs, new Comparator<String>() {
-				@Override
-				public int compare(String o1, String o2) {
-					return distance.get(o1).compareTo(distance.get(o2));
-				}
-			});
-			String closestItems = pairs.get(0);
-			Double shortestDistance = distance.get(closestItems);
+	/**
+	 * @param labels names of the items, in the order they should be reported
+	 * @param condensed upper triangle of the distance matrix, row by row, see
+	 *            {@link #condensedIndex(int, int, int)}; the array is used as a work space
+	 *            and will be modified
+	 */
+	public HierarchicalClustering(List<String> labels, double[] condensed) {
+		if (condensed.length != condensedSize(labels.size())) {
+			throw new IllegalArgumentException("Expected " + condensedSize(labels.size())
+					+ " distances for " + labels.size() + " items, but got " + condensed.length);
+		}
+		init(new ArrayList<String>(labels), condensed);
+	}
 
-			if (shortestDistance.doubleValue() > cutOff) {
-				break;
-			}
+	private void init(List<String> items, double[] condensed) {
+		this.labels = items;
+		this.distances = condensed;
+		distanceList = new ArrayList<Double>();
+	}
 
-			distanceList.add(shortestDistance);
+	public static int condensedSize(int n) {
+		return (int) ((long) n * (n - 1) / 2);
+	}
 
-			String[] tags = closestItems.split("--");
-			items.remove(tags[0]);
-			items.remove(tags[1]);
+	/**
+	 * @return the position of the pair (i, j) in a condensed matrix of n items; i != j
+	 */
+	public static int condensedIndex(int n, int i, int j) {
+		if (i > j) {
+			int t = i;
+			i = j;
+			j = t;
+		}
+		return (int) ((long) n * i - (long) i * (i + 1) / 2 + (j - i - 1));
+	}
 
-			items.add(String.format("%s=%s", tags[0], tags[1]));
+	/**
+	 * Merge clusters until the closest pair is further apart than the cut-off.
+	 *
+	 * @return the clusters; members are joined with '='
+	 */
+	protected List<String> clusteringByAverageLinkage(double cutOff) {
+		distanceList.clear();
+		int n = labels.size();
+		if (mergeDistance == null) {
+			buildDendrogram();
+		}
 
-			previousDistance = new HashMap<String, Double>(distance);
+		// replay the merges from the closest pair; union-find on the slots of the dendrogram
+		Integer[] order = new Integer[n > 0 ? n - 1 : 0];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = Integer.valueOf(i);
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer o1, Integer o2) {
+				return Double.compare(mergeDistance[o1.intValue()], mergeDistance[o2.intValue()]);
+			}
+		});
+
+		int[] parent = new int[n];
+		// the order in which the clusters were created; new clusters go after the existing ones
+		int[] position = new int[n];
+		// members of each cluster as a linked list
+		int[] head = new int[n];
+		int[] tail = new int[n];
+		int[] next = new int[n];
+		for (int i = 0; i < n; i++) {
+			parent[i] = i;
+			position[i] = i;
+			head[i] = i;
+			tail[i] = i;
+			next[i] = -1;
+		}
+		int nextPosition = n;
+		for (Integer m : order) {
+			double d = mergeDistance[m.intValue()];
+			if (d > cutOff) {
+				break;
+			}
+			distanceList.add(Double.valueOf(d));
+
+			int ra = find(parent, mergeA[m.intValue()]);
+			int rb = find(parent, mergeB[m.intValue()]);
+			// the members of the later cluster come first
+			int first = position[ra] > position[rb] ? ra : rb;
+			int second = first == ra ? rb : ra;
+			next[tail[first]] = head[second];
+			tail[first] = tail[second];
+			parent[second] = first;
+			position[first] = nextPosition++;
 		}
 
-		return items;
+		List<Integer> roots = new ArrayList<Integer>();
+		for (int i = 0; i < n; i++) {
+			if (parent[i] == i) {
+				roots.add(Integer.valueOf(i));
+			}
+		}
+		final int[] pos = position;
+		Collections.sort(roots, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer o1, Integer o2) {
+				return pos[o1.intValue()] - pos[o2.intValue()];
+			}
+		});
+
+		List<String> ret = new ArrayList<String>(roots.size());
+		List<String> members = new ArrayList<String>();
+		for (Integer root : roots) {
+			members.clear();
+			for (int i = head[root.intValue()]; i != -1; i = next[i]) {
+				members.add(labels.get(i));
+			}
+			ret.add(StringUtils.join(members, "="));
+		}
+		return ret;
 	}
 
-	protected Double getAverageDistance(String tagA, String tagB) {
-		if (tagA.equals(tagB)) {
-			return Double.valueOf(0d);
+	private static int find(int[] parent, int i) {
+		while (parent[i] != i) {
+			parent[i] = parent[parent[i]];
+			i = parent[i];
 		}
-		String[] itemsA = tagA.split("=");
-		String[] itemsB = tagB.split("=");
-		double count = 0d;
-		double sum = 0d;
-		for (String ta : itemsA) {
-			for (String tb : itemsB) {
-				sum += matrix.get(ta).get(tb).doubleValue();
-				count += 1d;
+		return i;
+	}
+
+	/**
+	 * Nearest-neighbour chain; the merged cluster takes the slot of the second cluster of the
+	 * pair. The distance matrix is released afterwards.
+	 */
+	private void buildDendrogram() {
+		int n = labels.size();
+		double[] d = distances;
+		mergeA = new int[n > 0 ? n - 1 : 0];
+		mergeB = new int[mergeA.length];
+		mergeDistance = new double[mergeA.length];
+
+		int[] size = new int[n];
+		boolean[] active = new boolean[n];
+		Arrays.fill(size, 1);
+		Arrays.fill(active, true);
+		int[] chain = new int[n];
+		int chainLength = 0;
+
+		for (int m = 0; m < mergeA.length; m++) {
+			if (chainLength == 0) {
+				int first = 0;
+				while (!active[first]) {
+					first++;
+				}
+				chain[chainLength++] = first;
+			}
+			int a;
+			int b;
+			double best;
+			while (true) {
+				a = chain[chainLength - 1];
+				// prefer the previous element of the chain on ties, otherwise it may loop
+				b = chainLength > 1 ? chain[chainLength - 2] : -1;
+				best = b == -1 ? Double.POSITIVE_INFINITY : d[condensedIndex(n, a, b)];
+				for (int k = 0; k < n; k++) {
+					if (k == a || !active[k]) {
+						continue;
+					}
+					double dk = d[condensedIndex(n, a, k)];
+					if (dk < best || b == -1) {
+						best = dk;
+						b = k;
+					}
+				}
+				if (chainLength > 1 && b == chain[chainLength - 2]) {
+					break;
+				}
+				chain[chainLength++] = b;
+			}
+			chainLength -= 2;
+
+			mergeA[m] = a;
+			mergeB[m] = b;
+			mergeDistance[m] = best;
+
+			// Lance-Williams update for average linkage
+			double sa = size[a];
+			double sb = size[b];
+			for (int k = 0; k < n; k++) {
+				if (k == a || k == b || !active[k]) {
+					continue;
+				}
+				int kb = condensedIndex(n, k, b);
+				d[kb] = (sa * d[condensedIndex(n, k, a)] + sb * d[kb]) / (sa + sb);
 			}
+			active[a] = false;
+			size[b] += size[a];
 		}
-		return Double.valueOf(sum / count);
+		distances = null;
 	}
 
-}
\ No newline at end of file
+}
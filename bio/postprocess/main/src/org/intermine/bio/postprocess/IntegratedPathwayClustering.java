@@ -14,7 +14,6 @@ import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.lang.StringUtils;
-import org.apache.commons.math3.stat.correlation.PearsonsCorrelation;
 import org.apache.log4j.Logger;
 import org.intermine.metadata.ConstraintOp;
 import org.intermine.metadata.Model;
@@ -38,7 +37,6 @@ import org.intermine.objectstore.query.SimpleConstraint;
 import org.intermine.util.DynamicUtil;
 
 import com.google.common.collect.Sets;
-import com.google.common.primitives.Doubles;
 import com.google.common.primitives.Ints;
 
 /**
@@ -72,11 +70,12 @@ public class IntegratedPathwayClustering {
 
 			System.out.println("Filtered (" + taxonId + "): " + filteredPathwayGene.size());
 
-			Map<String, List<Double>> similarityIndex = calculateSimilarityIndex(filteredPathwayGene);
+			GeneSetSimilarity similarity = new GeneSetSimilarity(filteredPathwayGene);
 
-			Map<String, Map<String, Double>> matrix = calculateCorrelationMatrix(similarityIndex);
+			double[] matrix = similarity.correlationDistances();
 
-			HierarchicalClustering hc = new HierarchicalClustering(matrix);
+			HierarchicalClustering hc = new HierarchicalClustering(similarity.getIdentifiers(),
+					matrix);
 
 			List<String> clusters = hc.clusteringByAverageLinkage(0.7d);
 
@@ -297,46 +296,6 @@ public class IntegratedPathwayClustering {
 		}
 	}
 
-	private Map<String, Map<String, Double>> calculateCorrelationMatrix(
-			Map<String, List<Double>> similarityIndex) {
-		Map<String, Map<String, Double>> matrix = new HashMap<String, Map<String, Double>>();
-		PearsonsCorrelation pc = new PearsonsCorrelation();
-		List<String> pathways = new ArrayList<String>(similarityIndex.keySet());
-		for (String p : pathways) {
-			matrix.put(p, new HashMap<String, Double>());
-		}
-		for (int i = 1; i < pathways.size(); i++) {
-			String p1 = pathways.get(i);
-			matrix.get(p1).put(p1, Double.valueOf(0d));
-			double[] array1 = Doubles.toArray(similarityIndex.get(p1));
-			for (int j = 0; j < i; j++) {
-				String p2 = pathways.get(j);
-				double[] array2 = Doubles.toArray(similarityIndex.get(p2));
-				Double d = Double.valueOf(1d - pc.correlation(array1, array2));
-				matrix.get(p1).put(p2, d);
-				matrix.get(p2).put(p1, d);
-			}
-		}
-		return matrix;
-	}
-
-	private Map<String, List<Double>> calculateSimilarityIndex(
-			final Map<String, Set<String>> pathwayGene) {
-		List<String> pathways = new ArrayList<String>(pathwayGene.keySet());
-		Map<String, List<Double>> ret = new HashMap<String, List<Double>>();
-		for (String p1 : pathways) {
-			ret.put(p1, new ArrayList<Double>());
-			Set<String> geneSet1 = pathwayGene.get(p1);
-			for (String p2 : pathways) {
-				Set<String> geneSet2 = pathwayGene.get(p2);
-				double intersect = (double) Sets.intersection(geneSet1, geneSet2).size();
-				double min = (double) Math.min(geneSet1.size(), geneSet2.size());
-				ret.get(p1).add(Double.valueOf(intersect / min));
-			}
-		}
-		return ret;
-	}
-
 	Map<String, GeneSet> map = new HashMap<String, GeneSet>();
 
 	private Map<String, Set<String>> filterSubsets(final Map<String, Set<String>> pathwayGene) {
@@ -350,18 +309,21 @@ public class IntegratedPathwayClustering {
 
 		});
 
+		GeneSetSimilarity similarity = new GeneSetSimilarity(pathwayGene);
+		int[] order = new int[pathways.size()];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = similarity.indexOf(pathways.get(i));
+		}
+		List<List<Integer>> subsets = similarity.findSubsets(order);
+
 		Set<String> subset = new HashSet<String>();
 		for (int i = 0; i < pathways.size() - 1; i++) {
 			String p1 = pathways.get(i);
-			Set<String> set1 = pathwayGene.get(p1);
 			map.put(p1, getGeneSet(p1));
-			for (int j = i + 1; j < pathways.size(); j++) {
-				String p2 = pathways.get(j);
-				Set<String> set2 = pathwayGene.get(p2);
-				if (set1.containsAll(set2)) {
-					subset.add(p2);
-					map.get(p1).addChildren(getGeneSet(p2));
-				}
+			for (Integer j : subsets.get(i)) {
+				String p2 = pathways.get(j.intValue());
+				subset.add(p2);
+				map.get(p1).addChildren(getGeneSet(p2));
 			}
 		}
 		Map<String, Set<String>> ret = new HashMap<String, Set<String>>();
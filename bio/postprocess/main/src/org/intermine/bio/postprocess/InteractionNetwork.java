@@ -0,0 +1,303 @@
+package org.intermine.bio.postprocess;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.intermine.bio.postprocess.NetworkAnalysisTool.InteractionData;
+
+/**
+ * An undirected interaction network in compressed sparse row form: the neighbours of vertex v
+ * are targets[offsets[v]] .. targets[offsets[v + 1] - 1].
+ *
+ * Betweenness (Brandes) and closeness are calculated with one breadth-first search per source
+ * vertex; the sources are split between a number of worker threads. The scores are the same as
+ * the ones given by JUNG for a SparseMultigraph, i.e. betweenness is summed over ordered pairs
+ * of vertices and closeness is the inverse of the average distance to the reachable vertices.
+ *
+ * @author chenyian
+ *
+ */
+public class InteractionNetwork {
+	private final String[] vertices;
+	private final int[] offsets;
+	private final int[] targets;
+	// self interactions only count towards the degree
+	private final int[] selfLoops;
+
+	private double[] betweenness;
+	private double[] closeness;
+
+	private InteractionNetwork(String[] vertices, int[] offsets, int[] targets, int[] selfLoops) {
+		this.vertices = vertices;
+		this.offsets = offsets;
+		this.targets = targets;
+		this.selfLoops = selfLoops;
+	}
+
+	/**
+	 * Create the network; each InteractionData is one edge between its two genes.
+	 */
+	public static InteractionNetwork create(Collection<InteractionData> data) {
+		Map<String, Integer> index = new HashMap<String, Integer>();
+		List<String> names = new ArrayList<String>();
+		int[] from = new int[data.size()];
+		int[] to = new int[data.size()];
+		int e = 0;
+		for (InteractionData interactionData : data) {
+			List<String> genes = interactionData.getGenes();
+			from[e] = intern(genes.get(0), index, names);
+			to[e] = intern(genes.get(1), index, names);
+			e++;
+		}
+		return build(names.toArray(new String[names.size()]), from, to, e);
+	}
+
+	private static int intern(String name, Map<String, Integer> index, List<String> names) {
+		Integer i = index.get(name);
+		if (i == null) {
+			i = Integer.valueOf(names.size());
+			index.put(name, i);
+			names.add(name);
+		}
+		return i.intValue();
+	}
+
+	private static InteractionNetwork build(String[] vertices, int[] from, int[] to, int edges) {
+		int n = vertices.length;
+		int[] selfLoops = new int[n];
+		int[] offsets = new int[n + 1];
+		for (int e = 0; e < edges; e++) {
+			if (from[e] == to[e]) {
+				selfLoops[from[e]]++;
+			} else {
+				offsets[from[e] + 1]++;
+				offsets[to[e] + 1]++;
+			}
+		}
+		for (int v = 0; v < n; v++) {
+			offsets[v + 1] += offsets[v];
+		}
+		int[] targets = new int[offsets[n]];
+		int[] fill = Arrays.copyOf(offsets, n);
+		for (int e = 0; e < edges; e++) {
+			if (from[e] != to[e]) {
+				targets[fill[from[e]]++] = to[e];
+				targets[fill[to[e]]++] = from[e];
+			}
+		}
+		return new InteractionNetwork(vertices, offsets, targets, selfLoops);
+	}
+
+	public int getVertexCount() {
+		return vertices.length;
+	}
+
+	public int getEdgeCount() {
+		int count = targets.length / 2;
+		for (int loops : selfLoops) {
+			count += loops;
+		}
+		return count;
+	}
+
+	public String getVertex(int v) {
+		return vertices[v];
+	}
+
+	public int degree(int v) {
+		return offsets[v + 1] - offsets[v] + selfLoops[v];
+	}
+
+	/**
+	 * @return the subnetwork induced by the largest connected component
+	 */
+	public InteractionNetwork findLargestComponent() {
+		int n = vertices.length;
+		int[] component = new int[n];
+		Arrays.fill(component, -1);
+		int[] queue = new int[n];
+		int largest = -1;
+		int largestSize = 0;
+		int components = 0;
+		for (int s = 0; s < n; s++) {
+			if (component[s] != -1) {
+				continue;
+			}
+			int head = 0;
+			int tail = 0;
+			queue[tail++] = s;
+			component[s] = components;
+			while (head < tail) {
+				int v = queue[head++];
+				for (int k = offsets[v]; k < offsets[v + 1]; k++) {
+					int w = targets[k];
+					if (component[w] == -1) {
+						component[w] = components;
+						queue[tail++] = w;
+					}
+				}
+			}
+			if (tail > largestSize) {
+				largestSize = tail;
+				largest = components;
+			}
+			components++;
+		}
+
+		int[] newIndex = new int[n];
+		String[] newVertices = new String[largestSize];
+		int m = 0;
+		for (int v = 0; v < n; v++) {
+			if (component[v] == largest) {
+				newIndex[v] = m;
+				newVertices[m++] = vertices[v];
+			}
+		}
+		int[] from = new int[getEdgeCount()];
+		int[] to = new int[from.length];
+		int e = 0;
+		for (int v = 0; v < n; v++) {
+			if (component[v] != largest) {
+				continue;
+			}
+			for (int k = offsets[v]; k < offsets[v + 1]; k++) {
+				if (targets[k] > v) {
+					from[e] = newIndex[v];
+					to[e] = newIndex[targets[k]];
+					e++;
+				}
+			}
+			for (int l = 0; l < selfLoops[v]; l++) {
+				from[e] = newIndex[v];
+				to[e] = newIndex[v];
+				e++;
+			}
+		}
+		return build(newVertices, from, to, e);
+	}
+
+	public double getBetweenness(int v) {
+		return betweenness[v];
+	}
+
+	public double getCloseness(int v) {
+		return closeness[v];
+	}
+
+	/**
+	 * Calculate betweenness and closeness of all vertices. Each thread handles a fixed range
+	 * of source vertices and the partial sums are added up in order, so the results do not
+	 * depend on scheduling.
+	 */
+	public void calculateCentrality(int threads) {
+		final int n = vertices.length;
+		closeness = new double[n];
+		int chunks = Math.max(1, Math.min(threads, n));
+		final double[][] partial = new double[chunks][];
+		if (chunks == 1) {
+			partial[0] = new CentralityWorker(0, n).call();
+		} else {
+			ExecutorService executor = Executors.newFixedThreadPool(chunks);
+			try {
+				List<Future<double[]>> futures = new ArrayList<Future<double[]>>();
+				for (int c = 0; c < chunks; c++) {
+					futures.add(executor.submit(new CentralityWorker((int) ((long) n * c / chunks),
+							(int) ((long) n * (c + 1) / chunks))));
+				}
+				for (int c = 0; c < chunks; c++) {
+					partial[c] = futures.get(c).get();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException("Interrupted while calculating centrality", e);
+			} catch (ExecutionException e) {
+				throw new RuntimeException("Failed to calculate centrality", e.getCause());
+			} finally {
+				executor.shutdown();
+			}
+		}
+		betweenness = partial[0];
+		for (int c = 1; c < chunks; c++) {
+			for (int v = 0; v < n; v++) {
+				betweenness[v] += partial[c][v];
+			}
+		}
+	}
+
+	/**
+	 * Brandes' algorithm for the sources in [start, end); closeness of the sources is written
+	 * directly, the betweenness contributions are returned.
+	 */
+	private class CentralityWorker implements Callable<double[]> {
+		private final int start;
+		private final int end;
+
+		CentralityWorker(int start, int end) {
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		public double[] call() {
+			int n = vertices.length;
+			double[] scores = new double[n];
+			int[] distance = new int[n];
+			double[] sigma = new double[n];
+			double[] delta = new double[n];
+			int[] order = new int[n];
+			Arrays.fill(distance, -1);
+			for (int s = start; s < end; s++) {
+				int head = 0;
+				int tail = 0;
+				order[tail++] = s;
+				distance[s] = 0;
+				sigma[s] = 1d;
+				long sum = 0;
+				while (head < tail) {
+					int v = order[head++];
+					sum += distance[v];
+					for (int k = offsets[v]; k < offsets[v + 1]; k++) {
+						int w = targets[k];
+						if (distance[w] < 0) {
+							distance[w] = distance[v] + 1;
+							order[tail++] = w;
+						}
+						if (distance[w] == distance[v] + 1) {
+							sigma[w] += sigma[v];
+						}
+					}
+				}
+				closeness[s] = sum == 0 ? Double.POSITIVE_INFINITY : (tail - 1d) / sum;
+
+				// accumulate dependencies in order of decreasing distance
+				for (int i = tail - 1; i > 0; i--) {
+					int w = order[i];
+					double coefficient = (1d + delta[w]) / sigma[w];
+					for (int k = offsets[w]; k < offsets[w + 1]; k++) {
+						int v = targets[k];
+						if (distance[v] == distance[w] - 1) {
+							delta[v] += sigma[v] * coefficient;
+						}
+					}
+					scores[w] += delta[w];
+				}
+				for (int i = 0; i < tail; i++) {
+					int v = order[i];
+					distance[v] = -1;
+					sigma[v] = 0d;
+					delta[v] = 0d;
+				}
+			}
+			return scores;
+		}
+	}
+}
@@ -10,11 +10,8 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.text.DecimalFormat;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -46,13 +43,6 @@ import org.intermine.objectstore.query.SimpleConstraint;
 import org.intermine.sql.Database;
 import org.intermine.util.DynamicUtil;
 
-import edu.uci.ics.jung.algorithms.cluster.WeakComponentClusterer;
-import edu.uci.ics.jung.algorithms.filters.FilterUtils;
-import edu.uci.ics.jung.algorithms.scoring.BetweennessCentrality;
-import edu.uci.ics.jung.algorithms.scoring.ClosenessCentrality;
-import edu.uci.ics.jung.graph.Graph;
-import edu.uci.ics.jung.graph.SparseMultigraph;
-
 /**
  * 
  * @author chenyian
@@ -125,10 +115,10 @@ public class NetworkAnalysisTool {
 			System.out.println("HCDP contains " + hcdp.size() + " interactions (" + taxonId + ").");
 			System.out.println("HC contains " + hc.size() + " interactions (" + taxonId + ").");
 
-			Graph<String, String> hcdplcc = findLargestConnectiveNetwork(hcdp);
+			InteractionNetwork hcdplcc = InteractionNetwork.create(hcdp).findLargestComponent();
 			System.out.println("HCDPLCC contains " + hcdplcc.getEdgeCount() + " interactions ("
 					+ taxonId + ").");
-			Graph<String, String> hclcc = findLargestConnectiveNetwork(hc);
+			InteractionNetwork hclcc = InteractionNetwork.create(hc).findLargestComponent();
 			System.out.println("HCLCC contains " + hclcc.getEdgeCount() + " interactions ("
 					+ taxonId + ").");
 
@@ -234,17 +224,6 @@ public class NetworkAnalysisTool {
 		}
 	}
 
-	@SuppressWarnings("unused")
-	private Set<String> getInteractionPairs(Graph<String, String> lcc) {
-		Set<String> ret = new HashSet<String>();
-		Collection<String> edges = lcc.getEdges();
-		for (String edge : edges) {
-			// A-B, B-A have already been filtered
-			ret.add(edge);
-		}
-		return ret;
-	}
-
 	private Set<String> getInteractionPairs(Set<InteractionData> hcppi) {
 		Set<String> ret = new HashSet<String>();
 		for (InteractionData data : hcppi) {
@@ -417,85 +396,33 @@ public class NetworkAnalysisTool {
 
 	}
 
-	private Graph<String, String> findLargestConnectiveNetwork(Collection<InteractionData> data) {
-		Graph<String, String> graph = generateNetworkGraph(data);
-
-		WeakComponentClusterer<String, String> wcc = new WeakComponentClusterer<String, String>();
-		Set<Set<String>> transform = wcc.transform(graph);
-
-		List<Set<String>> list = new ArrayList<Set<String>>(transform);
-
-		Collections.sort(list, new Comparator<Set<String>>() {
-
-			@Override
-			public int compare(Set<String> o1, Set<String> o2) {
-				if (o2.size() == o1.size()) {
-					return 0;
-				}
-				return (o2.size() > o1.size() ? 1 : -1);
-			}
-		});
-
-		Graph<String, String> lcc = FilterUtils.createInducedSubgraph(list.get(0), graph);
-
-		return lcc;
-	}
-
-	private Graph<String, String> generateNetworkGraph(Collection<InteractionData> data) {
-		Graph<String, String> g = new SparseMultigraph<String, String>();
-		Set<String> vertex = new HashSet<String>();
-		Iterator<InteractionData> iterator = data.iterator();
-		while (iterator.hasNext()) {
-			InteractionData interactionData = iterator.next();
-			List<String> genes = interactionData.getGenes();
-			for (String gene : genes) {
-				if (!vertex.contains(gene)) {
-					g.addVertex(gene);
-					vertex.add(gene);
-				}
-			}
-			g.addEdge(String.format("%s-%s", genes.get(0), genes.get(1)), genes.get(0),
-					genes.get(1));
-
-		}
-		return g;
-	}
-
-	private Map<String, NetworkData> calculateNetworkProperties(Graph<String, String> graph) {
-		Collection<String> vertices = graph.getVertices();
-		Set<String> geneIds = new HashSet<String>();
-		for (String id : vertices) {
-			geneIds.add(id);
-		}
-
-		BetweennessCentrality<String, String> bc = new BetweennessCentrality<String, String>(graph);
-
-		ClosenessCentrality<String, String> cc = new ClosenessCentrality<String, String>(graph);
+	private Map<String, NetworkData> calculateNetworkProperties(InteractionNetwork graph) {
+		graph.calculateCentrality(Runtime.getRuntime().availableProcessors());
 
 		int n = graph.getVertexCount();
 		double nor = (n - 1d) * (n - 2d);
 		int pos = n - n / CUT_OFF_PERCENTAGE;
 
-		List<Integer> allDegree = new ArrayList<Integer>();
-		List<Double> allBetweenness = new ArrayList<Double>();
+		int[] allDegree = new int[n];
+		double[] allBetweenness = new double[n];
 		Map<String, NetworkData> ret = new HashMap<String, NetworkData>();
-		for (String id : geneIds) {
-			Double b = bc.getVertexScore(id) / nor;
-			ret.put(id, new NetworkData(id, graph.degree(id), b, cc.getVertexScore(id)));
-			allBetweenness.add(b);
-			allDegree.add(graph.degree(id));
+		for (int v = 0; v < n; v++) {
+			Double b = graph.getBetweenness(v) / nor;
+			ret.put(graph.getVertex(v), new NetworkData(graph.getVertex(v), graph.degree(v), b,
+					graph.getCloseness(v)));
+			allBetweenness[v] = b.doubleValue();
+			allDegree[v] = graph.degree(v);
 		}
-		Collections.sort(allDegree);
-		Collections.sort(allBetweenness);
-		Integer minHub = allDegree.get(pos);
-		Double minBn = allBetweenness.get(pos);
-		Set<String> keys = ret.keySet();
-		for (String key : keys) {
-			if (ret.get(key).getBetweenness() >= minBn) {
-				ret.get(key).setAsBottleneck();
+		Arrays.sort(allDegree);
+		Arrays.sort(allBetweenness);
+		int minHub = allDegree[pos];
+		double minBn = allBetweenness[pos];
+		for (NetworkData data : ret.values()) {
+			if (data.getBetweenness() >= minBn) {
+				data.setAsBottleneck();
 			}
-			if (ret.get(key).getDegree() >= minHub) {
-				ret.get(key).setAsHub();
+			if (data.getDegree() >= minHub) {
+				data.setAsHub();
 			}
 		}
 		return ret;
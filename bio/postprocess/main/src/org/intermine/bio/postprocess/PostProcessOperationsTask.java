@@ -12,10 +12,14 @@ package org.intermine.bio.postprocess;
 
 import java.io.File;
 import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Properties;
 
 import org.apache.log4j.Logger;
 import org.apache.tools.ant.BuildException;
+import org.intermine.dataloader.PrimaryKeyIndex;
+import org.intermine.metadata.Model;
 import org.intermine.modelproduction.MetadataManager;
 import org.intermine.objectstore.ObjectStore;
 import org.intermine.objectstore.ObjectStoreSummary;
@@ -42,6 +46,10 @@ public class PostProcessOperationsTask extends DynamicAttributeTask
     protected String operation, objectStoreWriter, ensemblDb, organisms = null;
     protected File outputFile;
     protected ObjectStoreWriter osw;
+    protected String operations = null;
+    protected int threads = 0;
+    protected File checkpointFile = null;
+    protected boolean keepCheckpoint = false;
 
     /**
      * Sets the value of operation
@@ -79,12 +87,55 @@ public class PostProcessOperationsTask extends DynamicAttributeTask
         this.ensemblDb = ensemblDb;
     }
 
+    /**
+     * Sets a list of operations to run with a PostProcessScheduler instead of a single operation.
+     * Operations that don't use the same classes are run at the same time, each with its own
+     * ObjectStoreWriter.
+     *
+     * @param operations a comma or space separated list of operations
+     */
+    public void setOperations(String operations) {
+        this.operations = operations;
+    }
+
+    /**
+     * Sets the most operations to run at once when a list of operations is given. Defaults to the
+     * postprocess.threads property, or 1.
+     *
+     * @param threads the number of threads
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Sets the file that records which of a list of operations have finished, so that a failed
+     * run can be resumed. Defaults to the postprocess.checkpoint property, or no checkpoints.
+     *
+     * @param checkpointFile the file
+     */
+    public void setCheckpointFile(File checkpointFile) {
+        this.checkpointFile = checkpointFile;
+    }
+
+    /**
+     * Sets whether to keep the checkpoint file once every operation has finished, because the
+     * caller shares it between several lists of operations.
+     *
+     * @param keepCheckpoint true to keep the file
+     */
+    public void setKeepCheckpoint(boolean keepCheckpoint) {
+        this.keepCheckpoint = keepCheckpoint;
+    }
+
     private ObjectStoreWriter getObjectStoreWriter() throws Exception {
         if (objectStoreWriter == null) {
             throw new BuildException("objectStoreWriter attribute is not set");
         }
         if (osw == null) {
             osw = ObjectStoreWriterFactory.getObjectStoreWriter(objectStoreWriter);
+            // operations can change primary key fields, which the index wouldn't see
+            PrimaryKeyIndex.invalidate(osw);
         }
         return osw;
     }
@@ -94,6 +145,10 @@ public class PostProcessOperationsTask extends DynamicAttributeTask
      */
     @Override
     public void execute() {
+        if (operations != null) {
+            executeOperations();
+            return;
+        }
         if (operation == null) {
             throw new BuildException("operation attribute is not set");
         }
@@ -218,6 +273,10 @@ public class PostProcessOperationsTask extends DynamicAttributeTask
                 CreateLocationOverlapIndex cloi =
                         new CreateLocationOverlapIndex(getObjectStoreWriter());
                 cloi.create();
+            } else if ("create-feature-density-table".equals(operation)) {
+                CreateFeatureDensityTable cfdt =
+                        new CreateFeatureDensityTable(getObjectStoreWriter());
+                cfdt.create();
     			// chenyian:
     			} else if ("network-analysis".equals(operation)) {
     				NetworkAnalysisTool nat = new NetworkAnalysisTool(getObjectStoreWriter());
@@ -291,4 +350,63 @@ public class PostProcessOperationsTask extends DynamicAttributeTask
             }
         }
     }
+
+    private void executeOperations() {
+        List<String> operationList = Arrays.asList(operations.trim().split("[\\s,]+"));
+        try {
+            String configFileName = "postprocess_operations.properties";
+            InputStream configStream = PostProcessOperationsTask.class.getClassLoader()
+                .getResourceAsStream(configFileName);
+            if (configStream == null) {
+                throw new BuildException("can't find resource: " + configFileName);
+            }
+            Properties declarations = new Properties();
+            try {
+                declarations.load(configStream);
+            } finally {
+                configStream.close();
+            }
+            // the project.xml can declare operations of its own or override ours
+            for (String name : operationList) {
+                for (String key : new String[] {name + ".reads", name + ".writes"}) {
+                    String value = getProject().getProperty(key);
+                    if (value != null) {
+                        declarations.setProperty(key, value);
+                    }
+                }
+            }
+
+            int threadCount = threads;
+            if (threadCount < 1) {
+                String value = getProject().getProperty("postprocess.threads");
+                threadCount = (value == null) ? 1 : Integer.parseInt(value.trim());
+            }
+            File checkpoint = checkpointFile;
+            if (checkpoint == null && getProject().getProperty("postprocess.checkpoint") != null) {
+                checkpoint = getProject().resolveFile(
+                        getProject().getProperty("postprocess.checkpoint"));
+            }
+
+            PostProcessScheduler scheduler = new PostProcessScheduler(
+                    Model.getInstanceByName("genomic"), declarations, threadCount, checkpoint);
+            scheduler.setKeepCheckpoint(keepCheckpoint);
+            scheduler.run(operationList, new PostProcessScheduler.Runner() {
+                @Override
+                public void run(String name) {
+                    // a task of its own for each operation, so each has its own writer
+                    PostProcessOperationsTask task = new PostProcessOperationsTask();
+                    task.setProject(getProject());
+                    task.setObjectStoreWriter(objectStoreWriter);
+                    task.setOutputFile(outputFile);
+                    task.setEnsemblDb(ensemblDb);
+                    task.setOperation(name);
+                    task.execute();
+                }
+            });
+        } catch (BuildException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new BuildException("Failed postprocess. Operations were: " + operations, e);
+        }
+    }
 }
@@ -0,0 +1,355 @@
+package org.intermine.bio.postprocess;
+
+/*
+ * Copyright (C) 2002-2017 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.log4j.Logger;
+import org.intermine.metadata.ClassDescriptor;
+import org.intermine.metadata.Model;
+
+/**
+ * Runs a list of post-processing operations, overlapping those that don't touch the same classes.
+ *
+ * Each operation declares the classes it reads and the classes it writes with the properties
+ * &lt;operation&gt;.reads and &lt;operation&gt;.writes, as space or comma separated class names,
+ * where "*" means every class. A class conflicts with itself, its superclasses and its
+ * subclasses, and a change to a many-to-many collection counts as a write to both ends. An
+ * operation only starts when every earlier operation in the list that it conflicts with has
+ * finished, so the result is the same as running the list in order. Operations that declare
+ * nothing conflict with everything.
+ *
+ * If a checkpoint file is given, the name of each operation is appended to it when the operation
+ * succeeds, and operations already listed there are skipped. The file is deleted once every
+ * operation has succeeded, unless the caller keeps it to share it between several lists, so a
+ * failed run can be resumed by running the same list again.
+ *
+ * @author chenyian
+ */
+public class PostProcessScheduler
+{
+    private static final Logger LOG = Logger.getLogger(PostProcessScheduler.class);
+
+    /**
+     * The class name that stands for every class.
+     */
+    public static final String ALL = "*";
+
+    private final Model model;
+    private final Properties declarations;
+    private final int threads;
+    private final File checkpointFile;
+    private boolean keepCheckpoint = false;
+
+    /**
+     * Something that performs one operation.
+     */
+    public interface Runner
+    {
+        /**
+         * Perform an operation. May be called from several threads at once.
+         *
+         * @param operation the name of the operation
+         * @throws Exception if the operation fails
+         */
+        void run(String operation) throws Exception;
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param model the model used to find the superclasses and subclasses of declared classes, or
+     * null to compare class names only
+     * @param declarations the reads and writes of each operation
+     * @param threads the most operations to run at once
+     * @param checkpointFile the file that records finished operations, or null
+     */
+    public PostProcessScheduler(Model model, Properties declarations, int threads,
+            File checkpointFile) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1, was " + threads);
+        }
+        this.model = model;
+        this.declarations = declarations;
+        this.threads = threads;
+        this.checkpointFile = checkpointFile;
+    }
+
+    /**
+     * Keep the checkpoint file when every operation has succeeded, for a caller that runs several
+     * lists of operations with the same file and deletes it itself at the end.
+     *
+     * @param keepCheckpoint true to keep the file
+     */
+    public void setKeepCheckpoint(boolean keepCheckpoint) {
+        this.keepCheckpoint = keepCheckpoint;
+    }
+
+    /**
+     * Run the given operations.
+     *
+     * @param operations the operations, in the order they would be run one at a time
+     * @param runner performs each operation
+     * @throws Exception the exception thrown by the first operation to fail, once every operation
+     * that had started has finished; an Error thrown by an operation is rethrown the same way
+     */
+    public void run(List<String> operations, Runner runner) throws Exception {
+        Set<String> finished = readCheckpoint();
+        Set<String> skipped = new HashSet<String>(finished);
+        List<String> todo = new ArrayList<String>();
+        for (String operation : operations) {
+            if (skipped.contains(operation)) {
+                LOG.info("Skipping post-process " + operation + ", already done in "
+                        + checkpointFile);
+            } else {
+                todo.add(operation);
+            }
+        }
+
+        Map<String, Set<String>> waitingFor = new HashMap<String, Set<String>>();
+        for (int i = 0; i < todo.size(); i++) {
+            Set<String> earlier = new HashSet<String>();
+            for (int j = 0; j < i; j++) {
+                if (conflicts(todo.get(j), todo.get(i))) {
+                    earlier.add(todo.get(j));
+                }
+            }
+            waitingFor.put(todo.get(i), earlier);
+        }
+
+        Map<String, Step> steps = new HashMap<String, Step>();
+        Set<String> notStarted = new LinkedHashSet<String>(todo);
+        Step failed = null;
+        int running = 0;
+        long start = System.currentTimeMillis();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads,
+                    Math.max(1, todo.size())));
+        CompletionService<Step> completion = new ExecutorCompletionService<Step>(pool);
+        try {
+            while (true) {
+                if (failed == null) {
+                    for (String operation : new ArrayList<String>(notStarted)) {
+                        if (finished.containsAll(waitingFor.get(operation))) {
+                            Step step = new Step(operation, runner);
+                            steps.put(operation, step);
+                            notStarted.remove(operation);
+                            completion.submit(step);
+                            running++;
+                        }
+                    }
+                }
+                if (running == 0) {
+                    break;
+                }
+                Step step = completion.take().get();
+                running--;
+                if (step.failure == null) {
+                    finished.add(step.operation);
+                    writeCheckpoint(step.operation);
+                } else if (failed == null) {
+                    LOG.error("Post-process " + step.operation + " failed, waiting for running "
+                            + "post-processes to finish", step.failure);
+                    failed = step;
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        report(operations, skipped, steps, System.currentTimeMillis() - start);
+
+        if (failed != null) {
+            if (failed.failure instanceof Error) {
+                throw (Error) failed.failure;
+            }
+            if (failed.failure instanceof Exception) {
+                throw (Exception) failed.failure;
+            }
+            throw new RuntimeException(failed.failure);
+        }
+        if (!keepCheckpoint && checkpointFile != null && checkpointFile.exists()
+                && !checkpointFile.delete()) {
+            LOG.warn("Failed to delete checkpoint file " + checkpointFile);
+        }
+    }
+
+    /**
+     * Returns true if the second operation must wait for the first to finish.
+     *
+     * @param first an operation
+     * @param second an operation that comes after it
+     * @return a boolean
+     */
+    protected boolean conflicts(String first, String second) {
+        if (!isDeclared(first) || !isDeclared(second)) {
+            return true;
+        }
+        Set<String> firstReads = getClasses(first + ".reads");
+        Set<String> firstWrites = getClasses(first + ".writes");
+        Set<String> secondReads = getClasses(second + ".reads");
+        Set<String> secondWrites = getClasses(second + ".writes");
+        return overlaps(firstWrites, secondReads) || overlaps(firstWrites, secondWrites)
+            || overlaps(firstReads, secondWrites);
+    }
+
+    private boolean isDeclared(String operation) {
+        return declarations.getProperty(operation + ".reads") != null
+            || declarations.getProperty(operation + ".writes") != null;
+    }
+
+    private Set<String> getClasses(String key) {
+        String value = declarations.getProperty(key);
+        if (StringUtils.isBlank(value)) {
+            return Collections.emptySet();
+        }
+        Set<String> classes = new HashSet<String>();
+        for (String name : value.trim().split("[\\s,]+")) {
+            classes.add(name);
+        }
+        return classes;
+    }
+
+    private boolean overlaps(Set<String> first, Set<String> second) {
+        for (String a : first) {
+            for (String b : second) {
+                if (related(a, b)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean related(String a, String b) {
+        if (ALL.equals(a) || ALL.equals(b) || a.equals(b)) {
+            return true;
+        }
+        if (model == null) {
+            return false;
+        }
+        ClassDescriptor cldA = model.getClassDescriptorByName(a);
+        ClassDescriptor cldB = model.getClassDescriptorByName(b);
+        if (cldA == null || cldB == null) {
+            return false;
+        }
+        return cldA.equals(cldB) || cldA.getAllSuperDescriptors().contains(cldB)
+            || cldB.getAllSuperDescriptors().contains(cldA);
+    }
+
+    private Set<String> readCheckpoint() throws IOException {
+        Set<String> finished = new HashSet<String>();
+        if (checkpointFile == null || !checkpointFile.exists()) {
+            return finished;
+        }
+        BufferedReader reader = new BufferedReader(new FileReader(checkpointFile));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().length() > 0) {
+                    finished.add(line.trim());
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return finished;
+    }
+
+    private void writeCheckpoint(String operation) throws IOException {
+        if (checkpointFile == null) {
+            return;
+        }
+        Writer writer = new FileWriter(checkpointFile, true);
+        try {
+            writer.write(operation + "\n");
+        } finally {
+            writer.close();
+        }
+    }
+
+    private void report(List<String> operations, Set<String> skipped, Map<String, Step> steps,
+            long wallClock) {
+        StringBuilder sb = new StringBuilder("Post-processing times:\n");
+        long total = 0;
+        for (String operation : operations) {
+            Step step = steps.get(operation);
+            String status;
+            long time = 0;
+            if (step == null) {
+                status = skipped.contains(operation) ? "skipped" : "not run";
+            } else if (step.failure != null) {
+                status = "FAILED";
+                time = step.time;
+            } else {
+                status = "done";
+                time = step.time;
+            }
+            total += time;
+            sb.append(String.format("  %-40s %-8s %10.1fs%n", operation, status,
+                        Double.valueOf(time / 1000.0)));
+        }
+        sb.append(String.format("  %d threads, elapsed %.1fs, sum of operations %.1fs",
+                    Integer.valueOf(threads), Double.valueOf(wallClock / 1000.0),
+                    Double.valueOf(total / 1000.0)));
+        LOG.info(sb.toString());
+    }
+
+    /**
+     * One operation and what happened when it ran.
+     */
+    private static final class Step implements Callable<Step>
+    {
+        private final String operation;
+        private final Runner runner;
+        private volatile long time;
+        private volatile Throwable failure;
+
+        Step(String operation, Runner runner) {
+            this.operation = operation;
+            this.runner = runner;
+        }
+
+        @Override
+        public Step call() {
+            long start = System.currentTimeMillis();
+            LOG.info("Starting post-process " + operation);
+            try {
+                runner.run(operation);
+            } catch (Throwable t) {
+                // an Error has to be recorded too, or the run stops without waiting for the
+                // other operations, reporting or keeping the checkpoint
+                failure = t;
+            }
+            time = System.currentTimeMillis() - start;
+            LOG.info("Finished post-process " + operation + " in " + time + "ms");
+            return this;
+        }
+    }
+}
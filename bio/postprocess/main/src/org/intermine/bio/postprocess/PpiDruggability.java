@@ -7,7 +7,6 @@ import java.util.Map;
 import org.apache.log4j.Logger;
 import org.intermine.metadata.ConstraintOp;
 import org.intermine.metadata.Model;
-import org.intermine.model.InterMineObject;
 import org.intermine.model.bio.Gene;
 import org.intermine.objectstore.ObjectStore;
 import org.intermine.objectstore.ObjectStoreException;
@@ -16,6 +15,7 @@ import org.intermine.objectstore.query.ConstraintSet;
 import org.intermine.objectstore.query.ContainsConstraint;
 import org.intermine.objectstore.query.Query;
 import org.intermine.objectstore.query.QueryClass;
+import org.intermine.objectstore.query.QueryField;
 import org.intermine.objectstore.query.QueryObjectReference;
 import org.intermine.objectstore.query.Results;
 import org.intermine.objectstore.query.ResultsRow;
@@ -32,7 +32,9 @@ public class PpiDruggability {
 
 	private Model model;
 
-	private Map<String, InterMineObject> ppiDruggabilityMap = new HashMap<String, InterMineObject>();
+	private static final int BATCH_SIZE = 10000;
+
+	private GenePairMap ppiDruggabilityMap = new GenePairMap(false);
 
 	public PpiDruggability(ObjectStoreWriter osw) {
 		this.osw = osw;
@@ -47,17 +49,9 @@ public class PpiDruggability {
 		Iterator<?> iterator = results.iterator();
 		while (iterator.hasNext()) {
 			ResultsRow<?> result = (ResultsRow<?>) iterator.next();
-			InterMineObject item = (InterMineObject) result.get(0);
-			Gene gene1 = (Gene) result.get(1);
-			Gene gene2 = (Gene) result.get(2);
-
-			ppiDruggabilityMap.put(
-					String.format("%s-%s", gene1.getPrimaryIdentifier(),
-							gene2.getPrimaryIdentifier()), item);
-			// for the convenience ...
-			ppiDruggabilityMap.put(
-					String.format("%s-%s", gene2.getPrimaryIdentifier(),
-							gene1.getPrimaryIdentifier()), item);
+			// the map is unordered, so either order of the genes finds the PpiDruggability
+			ppiDruggabilityMap.put((String) result.get(1), (String) result.get(2),
+					((Integer) result.get(0)).intValue());
 		}
 	}
 
@@ -71,29 +65,33 @@ public class PpiDruggability {
 
 		Iterator<?> iterator = results.iterator();
 
+		Class<?> interactionClass = model.getClassDescriptorByName("Interaction").getType();
+		Map<Integer, Object> references = new HashMap<Integer, Object>();
 		int count = 0;
 		try {
 			osw.beginTransaction();
 			while (iterator.hasNext()) {
 				ResultsRow<?> result = (ResultsRow<?>) iterator.next();
-				InterMineObject interaction = (InterMineObject) result.get(0);
-				Gene gene1 = (Gene) result.get(1);
-				Gene gene2 = (Gene) result.get(2);
+				String gene1 = (String) result.get(1);
+				String gene2 = (String) result.get(2);
 
-				InterMineObject ppiDruggability = ppiDruggabilityMap.get(String.format("%s-%s",
-						gene1.getPrimaryIdentifier(), gene2.getPrimaryIdentifier()));
+				int index = ppiDruggabilityMap.indexOf(gene1, gene2);
 
-				if (ppiDruggability != null) {
-					interaction.setFieldValue("ppiDruggability", ppiDruggability);
-					osw.store(interaction);
+				if (index >= 0) {
+					references.put((Integer) result.get(0),
+							Integer.valueOf(ppiDruggabilityMap.getValue(index)));
+					if (references.size() >= BATCH_SIZE) {
+						osw.setFieldValues(interactionClass, "ppiDruggability", references);
+						references.clear();
+					}
 
 					count++;
 				} else {
-					LOG.info(String.format("Unfound pair: %s - %s", gene1.getPrimaryIdentifier(),
-							gene2.getPrimaryIdentifier()));
+					LOG.info(String.format("Unfound pair: %s - %s", gene1, gene2));
 				}
 
 			}
+			osw.setFieldValues(interactionClass, "ppiDruggability", references);
 			// osw.abortTransaction();
 			osw.commitTransaction();
 
@@ -119,9 +117,11 @@ public class PpiDruggability {
 		q.addFrom(qcInteraction);
 		q.addFrom(qcGene1);
 		q.addFrom(qcGene2);
-		q.addToSelect(qcInteraction);
-		q.addToSelect(qcGene1);
-		q.addToSelect(qcGene2);
+		QueryField qfId = new QueryField(qcInteraction, "id");
+		q.addToSelect(qfId);
+		q.addToSelect(new QueryField(qcGene1, "primaryIdentifier"));
+		q.addToSelect(new QueryField(qcGene2, "primaryIdentifier"));
+		q.addToOrderBy(qfId);
 
 		ConstraintSet cs = new ConstraintSet(ConstraintOp.AND);
 		QueryObjectReference qor3 = new QueryObjectReference(qcInteraction, "gene1");
@@ -132,7 +132,9 @@ public class PpiDruggability {
 
 		ObjectStore os = osw.getObjectStore();
 
-		return os.execute(q);
+		Results results = os.execute(q);
+		results.setBatchSize(BATCH_SIZE);
+		return results;
 	}
 
 	private Results queryPpiDruggability() {
@@ -145,9 +147,11 @@ public class PpiDruggability {
 		q.addFrom(qcPpiDruggability);
 		q.addFrom(qcGene1);
 		q.addFrom(qcGene2);
-		q.addToSelect(qcPpiDruggability);
-		q.addToSelect(qcGene1);
-		q.addToSelect(qcGene2);
+		QueryField qfId = new QueryField(qcPpiDruggability, "id");
+		q.addToSelect(qfId);
+		q.addToSelect(new QueryField(qcGene1, "primaryIdentifier"));
+		q.addToSelect(new QueryField(qcGene2, "primaryIdentifier"));
+		q.addToOrderBy(qfId);
 
 		ConstraintSet cs = new ConstraintSet(ConstraintOp.AND);
 		QueryObjectReference qor3 = new QueryObjectReference(qcPpiDruggability, "gene1");
@@ -0,0 +1,68 @@
+package org.intermine.bio.postprocess;
+
+/*
+ * Copyright (C) 2002-2017 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class GenePairMapTest extends TestCase
+{
+    public void testOrdered() throws Exception {
+        GenePairMap map = new GenePairMap(true);
+        assertTrue(map.put("1", "2", 12));
+        assertTrue(map.put("2", "1", 21));
+        assertTrue(map.put("1", "2", 120));
+        assertEquals(2, map.size());
+        assertEquals(120, map.getValue(map.indexOf("1", "2")));
+        assertEquals(21, map.getValue(map.indexOf("2", "1")));
+        assertEquals(-1, map.indexOf("1", "3"));
+        assertEquals(-1, map.indexOf("3", "4"));
+    }
+
+    public void testUnordered() throws Exception {
+        GenePairMap map = new GenePairMap(false);
+        map.putFloat("1", "2", 0.5f);
+        map.putFloat("2", "1", -0.25f);
+        assertEquals(1, map.size());
+        assertEquals(-0.25f, map.getFloatValue(map.indexOf("1", "2")), 0.0f);
+        assertEquals(-0.25f, map.getFloatValue(map.indexOf("2", "1")), 0.0f);
+    }
+
+    public void testGrow() throws Exception {
+        GenePairMap map = new GenePairMap(true);
+        for (int i = 0; i < 20000; i++) {
+            map.put("G" + i, "G" + (i + 1), i);
+        }
+        assertEquals(20000, map.size());
+        for (int i = 0; i < 20000; i++) {
+            assertEquals(i, map.getValue(map.indexOf("G" + i, "G" + (i + 1))));
+        }
+        assertEquals(-1, map.indexOf("G1", "G0"));
+    }
+
+    public void testReadFloats() throws Exception {
+        GenePairMap map = new GenePairMap(false, Arrays.asList("1", "2", "3"));
+        String file = "1\t2\t0.5\n"
+            + "2\t4\t0.75\n"
+            + "short line\n"
+            + "3\t1\t0.125\n"
+            + "2\t1\t1.5\n";
+        assertEquals(3, map.readFloats(new BufferedReader(new StringReader(file)), 0, 1, 2));
+        assertEquals(2, map.size());
+        assertEquals(1.5f, map.getFloatValue(map.indexOf("1", "2")), 0.0f);
+        assertEquals(0.125f, map.getFloatValue(map.indexOf("1", "3")), 0.0f);
+        assertEquals(-1, map.indexOf("2", "4"));
+        assertFalse(map.put("4", "1", 0));
+    }
+}
@@ -0,0 +1,78 @@
+package org.intermine.bio.postprocess;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.math3.stat.correlation.PearsonsCorrelation;
+
+/**
+ * Tests for the GeneSetSimilarity class.
+ */
+public class GeneSetSimilarityTest extends TestCase {
+
+	private Map<String, Set<String>> geneSets;
+
+	public void setUp() throws Exception {
+		super.setUp();
+		Random random = new Random(7);
+		geneSets = new HashMap<String, Set<String>>();
+		for (int i = 0; i < 150; i++) {
+			Set<String> genes = new HashSet<String>();
+			int size = 1 + random.nextInt(40);
+			while (genes.size() < size) {
+				genes.add("gene" + random.nextInt(300));
+			}
+			geneSets.put("p" + i, genes);
+		}
+		geneSets.put("sub", new HashSet<String>(Arrays.asList("gene1", "gene2")));
+		geneSets.put("super", new HashSet<String>(Arrays.asList("gene1", "gene2", "gene3")));
+	}
+
+	public void testOverlapCoefficients() throws Exception {
+		GeneSetSimilarity similarity = new GeneSetSimilarity(geneSets, 3);
+		List<String> ids = similarity.getIdentifiers();
+		double[][] overlap = similarity.overlapCoefficients();
+		for (int i = 0; i < ids.size(); i++) {
+			Set<String> set1 = geneSets.get(ids.get(i));
+			for (int j = 0; j < ids.size(); j++) {
+				Set<String> set2 = geneSets.get(ids.get(j));
+				Set<String> intersect = new HashSet<String>(set1);
+				intersect.retainAll(set2);
+				double expected = (double) intersect.size() / Math.min(set1.size(), set2.size());
+				assertEquals(expected, overlap[i][j], 0d);
+			}
+		}
+	}
+
+	public void testCorrelationDistances() throws Exception {
+		GeneSetSimilarity similarity = new GeneSetSimilarity(geneSets, 4);
+		double[][] overlap = similarity.overlapCoefficients();
+		double[] distances = similarity.correlationDistances();
+		int n = overlap.length;
+		PearsonsCorrelation pc = new PearsonsCorrelation();
+		for (int i = 1; i < n; i++) {
+			for (int j = 0; j < i; j++) {
+				double expected = 1d - pc.correlation(overlap[i], overlap[j]);
+				assertEquals(expected,
+						distances[HierarchicalClustering.condensedIndex(n, i, j)], 1e-9);
+			}
+		}
+	}
+
+	public void testFindSubsets() throws Exception {
+		GeneSetSimilarity similarity = new GeneSetSimilarity(geneSets, 2);
+		int[] order = new int[] {similarity.indexOf("super"), similarity.indexOf("sub"),
+			similarity.indexOf("p0")};
+		List<List<Integer>> subsets = similarity.findSubsets(order);
+		assertEquals(Arrays.asList(Integer.valueOf(1)), subsets.get(0));
+		assertTrue(similarity.containsAll(order[0], order[1]));
+		assertFalse(similarity.containsAll(order[1], order[0]));
+	}
+}
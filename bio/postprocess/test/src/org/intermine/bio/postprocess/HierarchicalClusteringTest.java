@@ -0,0 +1,121 @@
+package org.intermine.bio.postprocess;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the HierarchicalClustering class.
+ */
+public class HierarchicalClusteringTest extends TestCase {
+
+	public void testSmallMatrix() throws Exception {
+		Map<String, Map<String, Double>> matrix = new HashMap<String, Map<String, Double>>();
+		String[] items = new String[] {"a", "b", "c", "d"};
+		double[][] values = new double[][] {
+			{0.0, 0.1, 0.9, 0.8},
+			{0.1, 0.0, 0.7, 0.9},
+			{0.9, 0.7, 0.0, 0.2},
+			{0.8, 0.9, 0.2, 0.0}};
+		for (int i = 0; i < items.length; i++) {
+			matrix.put(items[i], new HashMap<String, Double>());
+			for (int j = 0; j < items.length; j++) {
+				matrix.get(items[i]).put(items[j], Double.valueOf(values[i][j]));
+			}
+		}
+		HierarchicalClustering hc = new HierarchicalClustering(matrix);
+		List<String> clusters = hc.clusteringByAverageLinkage(0.5);
+		assertEquals(2, clusters.size());
+		assertEquals("b=a", clusters.get(0));
+		assertEquals("d=c", clusters.get(1));
+		assertEquals(2, hc.getDistanceList().size());
+		assertEquals(0.1, hc.getDistanceList().get(0).doubleValue(), 1e-12);
+		assertEquals(0.2, hc.getDistanceList().get(1).doubleValue(), 1e-12);
+
+		clusters = hc.clusteringByAverageLinkage(1.0);
+		assertEquals(1, clusters.size());
+		assertEquals("d=c=b=a", clusters.get(0));
+		// (0.9 + 0.8 + 0.7 + 0.9) / 4
+		assertEquals(0.825, hc.getDistanceList().get(2).doubleValue(), 1e-12);
+	}
+
+	public void testSameAsPairwiseMerging() throws Exception {
+		Random random = new Random(42);
+		for (int n : new int[] {2, 10, 57}) {
+			Map<String, Map<String, Double>> matrix = randomMatrix(random, n);
+			for (double cutOff : new double[] {0.3, 0.7, 1.0, 2.0}) {
+				List<Double> expectedDistances = new ArrayList<Double>();
+				List<String> expected = naiveClustering(matrix, cutOff, expectedDistances);
+				HierarchicalClustering hc = new HierarchicalClustering(matrix);
+				assertEquals(expected, hc.clusteringByAverageLinkage(cutOff));
+				assertEquals(expectedDistances.size(), hc.getDistanceList().size());
+				for (int i = 0; i < expectedDistances.size(); i++) {
+					assertEquals(expectedDistances.get(i).doubleValue(),
+							hc.getDistanceList().get(i).doubleValue(), 1e-12);
+				}
+			}
+		}
+	}
+
+	private Map<String, Map<String, Double>> randomMatrix(Random random, int n) {
+		Map<String, Map<String, Double>> matrix = new HashMap<String, Map<String, Double>>();
+		for (int i = 0; i < n; i++) {
+			String p1 = String.format("p%03d", i);
+			matrix.put(p1, new HashMap<String, Double>());
+			matrix.get(p1).put(p1, Double.valueOf(0d));
+			for (int j = 0; j < i; j++) {
+				String p2 = String.format("p%03d", j);
+				Double d = Double.valueOf(random.nextDouble() * 2d);
+				matrix.get(p1).put(p2, d);
+				matrix.get(p2).put(p1, d);
+			}
+		}
+		return matrix;
+	}
+
+	/**
+	 * Merge the closest pair of clusters one at a time, averaging over all members.
+	 */
+	private List<String> naiveClustering(Map<String, Map<String, Double>> matrix, double cutOff,
+			List<Double> distances) {
+		List<String> items = new ArrayList<String>(matrix.keySet());
+		Collections.sort(items);
+		while (items.size() > 1) {
+			int bestI = -1;
+			int bestJ = -1;
+			double best = Double.POSITIVE_INFINITY;
+			for (int i = 1; i < items.size(); i++) {
+				for (int j = 0; j < i; j++) {
+					String[] itemsA = items.get(i).split("=");
+					String[] itemsB = items.get(j).split("=");
+					double sum = 0d;
+					for (String ta : itemsA) {
+						for (String tb : itemsB) {
+							sum += matrix.get(ta).get(tb).doubleValue();
+						}
+					}
+					double d = sum / (itemsA.length * itemsB.length);
+					if (d < best) {
+						best = d;
+						bestI = i;
+						bestJ = j;
+					}
+				}
+			}
+			if (best > cutOff) {
+				break;
+			}
+			distances.add(Double.valueOf(best));
+			String merged = items.get(bestI) + "=" + items.get(bestJ);
+			items.remove(bestI);
+			items.remove(bestJ);
+			items.add(merged);
+		}
+		return items;
+	}
+}
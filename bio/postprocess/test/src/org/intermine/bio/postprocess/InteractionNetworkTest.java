@@ -0,0 +1,59 @@
+package org.intermine.bio.postprocess;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.intermine.bio.postprocess.NetworkAnalysisTool.InteractionData;
+
+/**
+ * Tests for the InteractionNetwork class.
+ */
+public class InteractionNetworkTest extends TestCase {
+
+	private InteractionNetwork network;
+
+	public void setUp() throws Exception {
+		super.setUp();
+		// a path A-B-C-D with a self interaction on D, and a separate pair E-F
+		List<InteractionData> data = new ArrayList<InteractionData>();
+		data.add(new InteractionData("A", "B"));
+		data.add(new InteractionData("C", "B"));
+		data.add(new InteractionData("C", "D"));
+		data.add(new InteractionData("D", "D"));
+		data.add(new InteractionData("E", "F"));
+		network = InteractionNetwork.create(data);
+	}
+
+	public void testLargestComponent() throws Exception {
+		assertEquals(6, network.getVertexCount());
+		assertEquals(5, network.getEdgeCount());
+		InteractionNetwork lcc = network.findLargestComponent();
+		assertEquals(4, lcc.getVertexCount());
+		assertEquals(4, lcc.getEdgeCount());
+	}
+
+	public void testCentrality() throws Exception {
+		for (int threads = 1; threads <= 3; threads++) {
+			InteractionNetwork lcc = network.findLargestComponent();
+			lcc.calculateCentrality(threads);
+			for (int v = 0; v < lcc.getVertexCount(); v++) {
+				String gene = lcc.getVertex(v);
+				if ("A".equals(gene)) {
+					assertEquals(1, lcc.degree(v));
+					assertEquals(0d, lcc.getBetweenness(v), 1e-12);
+					assertEquals(3d / 6d, lcc.getCloseness(v), 1e-12);
+				} else if ("B".equals(gene)) {
+					// A-C, A-D in both directions
+					assertEquals(2, lcc.degree(v));
+					assertEquals(4d, lcc.getBetweenness(v), 1e-12);
+					assertEquals(3d / 4d, lcc.getCloseness(v), 1e-12);
+				} else if ("D".equals(gene)) {
+					assertEquals(2, lcc.degree(v));
+					assertEquals(0d, lcc.getBetweenness(v), 1e-12);
+				}
+			}
+		}
+	}
+}
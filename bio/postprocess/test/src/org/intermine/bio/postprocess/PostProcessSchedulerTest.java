@@ -0,0 +1,178 @@
+package org.intermine.bio.postprocess;
+
+/*
+ * Copyright (C) 2002-2017 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+public class PostProcessSchedulerTest extends TestCase
+{
+    private Properties declarations;
+    private File checkpoint;
+
+    public void setUp() throws Exception {
+        declarations = new Properties();
+        declarations.setProperty("genes.reads", "Organism");
+        declarations.setProperty("genes.writes", "Gene");
+        declarations.setProperty("proteins.reads", "Organism");
+        declarations.setProperty("proteins.writes", "Protein");
+        declarations.setProperty("stats.reads", "Gene Protein");
+        declarations.setProperty("stats.writes", "Statistics");
+        declarations.setProperty("summary.reads", "*");
+        declarations.setProperty("summary.writes", "");
+        declarations.setProperty("report.reads", "Gene");
+        checkpoint = File.createTempFile("postprocess", ".checkpoint");
+        checkpoint.delete();
+    }
+
+    public void tearDown() throws Exception {
+        checkpoint.delete();
+    }
+
+    public void testConflicts() throws Exception {
+        PostProcessScheduler scheduler = new PostProcessScheduler(null, declarations, 4, null);
+        assertFalse(scheduler.conflicts("genes", "proteins"));
+        assertTrue(scheduler.conflicts("genes", "stats"));
+        assertTrue(scheduler.conflicts("stats", "genes"));
+        assertTrue(scheduler.conflicts("stats", "summary"));
+        assertFalse(scheduler.conflicts("summary", "report"));
+        assertTrue(scheduler.conflicts("genes", "summary"));
+        assertTrue(scheduler.conflicts("genes", "unknown"));
+        assertTrue(scheduler.conflicts("unknown", "summary"));
+    }
+
+    public void testOverlap() throws Exception {
+        final CountDownLatch bothStarted = new CountDownLatch(2);
+        final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        PostProcessScheduler scheduler = new PostProcessScheduler(null, declarations, 2, null);
+        scheduler.run(Arrays.asList("genes", "proteins", "stats"),
+                new PostProcessScheduler.Runner() {
+                    @Override
+                    public void run(String operation) throws Exception {
+                        if (!"stats".equals(operation)) {
+                            bothStarted.countDown();
+                            // only returns straight away if the other one is running too
+                            assertTrue(bothStarted.await(10, TimeUnit.SECONDS));
+                        }
+                        order.add(operation);
+                    }
+                });
+        assertEquals(3, order.size());
+        assertEquals("stats", order.get(2));
+    }
+
+    public void testOneThread() throws Exception {
+        final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        PostProcessScheduler scheduler = new PostProcessScheduler(null, declarations, 1, null);
+        scheduler.run(Arrays.asList("summary", "unknown", "genes", "proteins", "stats"),
+                new PostProcessScheduler.Runner() {
+                    @Override
+                    public void run(String operation) {
+                        order.add(operation);
+                    }
+                });
+        assertEquals(Arrays.asList("summary", "unknown", "genes", "proteins", "stats"), order);
+    }
+
+    public void testResume() throws Exception {
+        final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        PostProcessScheduler scheduler = new PostProcessScheduler(null, declarations, 1,
+                checkpoint);
+        try {
+            scheduler.run(Arrays.asList("genes", "proteins", "stats"),
+                    new PostProcessScheduler.Runner() {
+                        @Override
+                        public void run(String operation) {
+                            if ("proteins".equals(operation)) {
+                                throw new IllegalStateException("failed");
+                            }
+                            order.add(operation);
+                        }
+                    });
+            fail("Expected an IllegalStateException");
+        } catch (IllegalStateException e) {
+            assertEquals("failed", e.getMessage());
+        }
+        // stats depends on proteins so it was not started
+        assertEquals(Arrays.asList("genes"), order);
+        assertTrue(checkpoint.exists());
+
+        order.clear();
+        scheduler.run(Arrays.asList("genes", "proteins", "stats"),
+                new PostProcessScheduler.Runner() {
+                    @Override
+                    public void run(String operation) {
+                        order.add(operation);
+                    }
+                });
+        assertEquals(Arrays.asList("proteins", "stats"), order);
+        assertFalse(checkpoint.exists());
+    }
+
+    public void testKeepCheckpoint() throws Exception {
+        PostProcessScheduler scheduler = new PostProcessScheduler(null, declarations, 2,
+                checkpoint);
+        scheduler.setKeepCheckpoint(true);
+        scheduler.run(Arrays.asList("genes", "proteins"), new PostProcessScheduler.Runner() {
+            @Override
+            public void run(String operation) {
+                // nothing to do
+            }
+        });
+        assertTrue(checkpoint.exists());
+
+        final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        scheduler.run(Arrays.asList("genes", "proteins", "stats"),
+                new PostProcessScheduler.Runner() {
+                    @Override
+                    public void run(String operation) {
+                        order.add(operation);
+                    }
+                });
+        assertEquals(Arrays.asList("stats"), order);
+        assertTrue(checkpoint.exists());
+    }
+
+    public void testError() throws Exception {
+        final CountDownLatch errorThrown = new CountDownLatch(1);
+        final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        PostProcessScheduler scheduler = new PostProcessScheduler(null, declarations, 2,
+                checkpoint);
+        try {
+            scheduler.run(Arrays.asList("genes", "proteins", "stats"),
+                    new PostProcessScheduler.Runner() {
+                        @Override
+                        public void run(String operation) throws Exception {
+                            if ("genes".equals(operation)) {
+                                errorThrown.countDown();
+                                throw new OutOfMemoryError("failed");
+                            }
+                            // still running when genes fails
+                            assertTrue(errorThrown.await(10, TimeUnit.SECONDS));
+                            order.add(operation);
+                        }
+                    });
+            fail("Expected an OutOfMemoryError");
+        } catch (OutOfMemoryError e) {
+            assertEquals("failed", e.getMessage());
+        }
+        assertEquals(Arrays.asList("proteins"), order);
+        assertTrue(checkpoint.exists());
+    }
+}
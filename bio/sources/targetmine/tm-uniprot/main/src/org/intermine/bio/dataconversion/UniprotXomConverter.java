@@ -1,20 +1,30 @@
 package org.intermine.bio.dataconversion;
 
 import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import nu.xom.Builder;
-import nu.xom.Document;
 import nu.xom.Element;
 import nu.xom.Elements;
 import nu.xom.ParsingException;
@@ -31,6 +41,11 @@ import org.intermine.xml.full.Item;
  * A new UniProt XML parser using XOM library Some settings were hard-coded which may be only
  * suitable for TargetMine
  * 
+ * The file is processed as a pipeline: one thread splits the file into entries, a pool of
+ * threads parses the entries (XOM document, sequence checksum, PTM keywords) and the calling
+ * thread creates and stores the items in file order. Only the last stage touches the maps of
+ * already created items, so the items are the same as when the entries are processed one by one.
+ * 
  * @author chenyian
  * 
  */
@@ -44,6 +59,11 @@ public class UniprotXomConverter extends BioFileConverter {
 	private static final int POSTGRES_INDEX_SIZE = 2712;
 	private static final String FEATURE_TYPES = "initiator methionine, signal peptide, transit peptide, propeptide, chain, peptide, topological domain, transmembrane region, intramembrane region, domain, repeat, calcium-binding region, zinc finger region, DNA-binding region, nucleotide phosphate-binding region, region of interest, coiled-coil region, short sequence motif, compositionally biased region, active site, metal ion-binding site, binding site, site, non-standard amino acid, modified residue, lipid moiety-binding region, glycosylation site, disulfide bond, cross-link";
 
+	// number of parsed entries waiting to be stored, per parser thread
+	private static final int QUEUE_SIZE_PER_THREAD = 64;
+	// marks the end of the file in the queue of parsed entries
+	private static final UniprotEntry END_OF_FILE = new UniprotEntry();
+
 	private String dataSource;
 	private Set<String> featureTypes = new HashSet<String>(Arrays.asList(FEATURE_TYPES
 			.split(",\\s*")));
@@ -61,6 +81,16 @@ public class UniprotXomConverter extends BioFileConverter {
 
 	private Set<Item> synonymsAndXrefs = new HashSet<Item>();
 
+	private int parserThreads = Runtime.getRuntime().availableProcessors();
+
+	// XOM builders are not thread safe, each parser thread has its own
+	private final ThreadLocal<Builder> builders = new ThreadLocal<Builder>() {
+		@Override
+		protected Builder initialValue() {
+			return new Builder();
+		}
+	};
+
 	// for logging
 	private int numOfNewEntries = 0;
 
@@ -75,16 +105,97 @@ public class UniprotXomConverter extends BioFileConverter {
 		}
 	}
 
+	/**
+	 * Set the number of threads parsing entries, by default the number of processors.
+	 * 
+	 * @param parserThreads
+	 */
+	public void setParserThreads(String parserThreads) {
+		this.parserThreads = Math.max(1, Integer.parseInt(parserThreads.trim()));
+	}
+
 	@Override
 	public void process(Reader reader) throws Exception {
 		if (ptmListMap == null || ptmListMap.isEmpty()) {
 			loadPtmListFile();
 		}
-		
+
+		BufferedReader br = new BufferedReader(reader);
+		ExecutorService parsers = Executors.newFixedThreadPool(parserThreads);
+		// entries in file order; a full queue holds up the splitter
+		BlockingQueue<Future<UniprotEntry>> queue = new ArrayBlockingQueue<Future<UniprotEntry>>(
+				parserThreads * QUEUE_SIZE_PER_THREAD);
+		Thread splitter = new Thread(new EntrySplitter(br, parsers, queue), "uniprot-splitter");
+		splitter.start();
 		try {
-			BufferedReader br = new BufferedReader(reader);
+			UniprotEntry entry;
+			while ((entry = queue.take().get()) != END_OF_FILE) {
+				processEntry(entry);
+			}
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof ParsingException || cause instanceof IOException) {
+				cause.printStackTrace();
+			} else {
+				throw new RuntimeException("Failed to parse UniProt entry", cause);
+			}
+		} finally {
+			// stop the splitter before the parsers it submits to
+			splitter.interrupt();
+			splitter.join();
+			parsers.shutdownNow();
+			br.close();
+		}
+
+		String info = "Create " + numOfNewEntries + " entries.";
+		System.out.println(info);
+		LOG.info(info);
 
-			StringBuffer sb = new StringBuffer();
+	}
+
+	/**
+	 * Cut the file into entries and hand them to the parsers. The futures of the parsed entries
+	 * are queued in file order, followed by END_OF_FILE or by a failed future if the file cannot
+	 * be read.
+	 */
+	private class EntrySplitter implements Runnable {
+		private final BufferedReader br;
+		private final ExecutorService parsers;
+		private final BlockingQueue<Future<UniprotEntry>> queue;
+
+		EntrySplitter(BufferedReader br, ExecutorService parsers,
+				BlockingQueue<Future<UniprotEntry>> queue) {
+			this.br = br;
+			this.parsers = parsers;
+			this.queue = queue;
+		}
+
+		@Override
+		public void run() {
+			try {
+				try {
+					split();
+					queue.put(done(new Callable<UniprotEntry>() {
+						@Override
+						public UniprotEntry call() {
+							return END_OF_FILE;
+						}
+					}));
+				} catch (final IOException e) {
+					queue.put(done(new Callable<UniprotEntry>() {
+						@Override
+						public UniprotEntry call() throws IOException {
+							throw e;
+						}
+					}));
+				}
+			} catch (InterruptedException e) {
+				// the entries are no longer wanted
+			}
+		}
+
+		private void split() throws IOException, InterruptedException {
+			StringBuilder sb = new StringBuilder();
 			String line;
 			boolean flag = false;
 			long lineNum = 0;
@@ -96,409 +207,499 @@ public class UniprotXomConverter extends BioFileConverter {
 				}
 				if (line.startsWith("<entry")) {
 					flag = true;
-					sb = new StringBuffer();
+					sb = new StringBuilder();
 				}
 				if (flag) {
-					sb.append(line + "\n");
+					sb.append(line).append('\n');
 				}
 				if (line.startsWith("</entry>")) {
-					// process
-					Builder parser = new Builder();
-					Document doc = parser.build(new ByteArrayInputStream(sb.toString().getBytes()));
-					Element entry = doc.getRootElement();
-
-					Elements accessions = entry.getChildElements("accession", NAMESPACE_URI);
-					String accession = accessions.get(0).getValue();
-					Set<String> otherAccessions = new HashSet<String>();
-					for (int i = 1; i < accessions.size(); i++) {
-						otherAccessions.add(accessions.get(i).getValue());
-					}
-					// should not find duplicated primary accessions
-					if (!doneEntries.contains(accession)) {
-						// create Protein items
-						Item protein = createItem("Protein");
-
-						protein.addToCollection(
-								"dataSets",
-								getDataSet(entry.getAttributeValue("dataset") + " data set",
-										dataSource));
-
-						/* primaryAccession, primaryIdentifier, name, etc */
-						String primaryIdentifier = entry.getFirstChildElement("name", NAMESPACE_URI).getValue();
-
-						Element proteinElement = entry.getFirstChildElement("protein", NAMESPACE_URI);
-						Elements nameElements = proteinElement.getChildElements();
-						String proteinName = nameElements.get(0).getFirstChildElement("fullName", NAMESPACE_URI)
-								.getValue();
-						protein.setAttribute("name", proteinName);
-						for (int i = 0; i < nameElements.size(); i++) {
-							// these are synonyms; there are two types:
-							// recommendedName; submittedName; alternativeName --> fullName,
-							// shortName
-							// allergenName; biotechName; cdAntigenName; innName
-							Element e = nameElements.get(i);
-							if (e.getLocalName().endsWith("Name")) {
-								Elements childElements = e.getChildElements();
-								if (childElements.size() > 0) {
-									for (int c = 0; c < childElements.size(); c++) {
-										String value = childElements.get(c).getValue();
-										if (!proteinName.equals(value)) {
-											addSynonym(protein.getIdentifier(), value);
-										}
-									}
-								} else {
-									String value = e.getValue();
-									addSynonym(protein.getIdentifier(), value);
-								}
-							}
+					final String text = sb.toString();
+					queue.put(parsers.submit(new Callable<UniprotEntry>() {
+						@Override
+						public UniprotEntry call() throws ParsingException, IOException {
+							return parseEntry(builders.get().build(new StringReader(text))
+									.getRootElement());
 						}
+					}));
+				}
+			}
+		}
 
-						protein.setAttribute("uniprotAccession", accession);
-						protein.setAttribute("primaryAccession", accession);
-						for (String acc : otherAccessions) {
-							// other accessions are synonyms
-							addSynonym(protein.getIdentifier(), acc);
-						}
+		private Future<UniprotEntry> done(Callable<UniprotEntry> callable) {
+			FutureTask<UniprotEntry> future = new FutureTask<UniprotEntry>(callable);
+			future.run();
+			return future;
+		}
+	}
 
-						protein.setAttribute("primaryIdentifier", primaryIdentifier);
-						protein.setAttribute("uniprotName", primaryIdentifier);
-
-						protein.setAttribute("isUniprotCanonical", "true");
-
-						/* sequence */
-						Element sequence = entry.getFirstChildElement("sequence", NAMESPACE_URI);
-						protein.setAttribute("isFragment",
-								sequence.getAttributeValue("fragment") == null ? "false" : "true");
-						String length = sequence.getAttributeValue("length");
-						protein.setAttribute("length", length);
-						protein.setAttribute("molecularWeight", sequence.getAttributeValue("mass"));
-
-						String aaSeq = sequence.getValue();
-						String md5Checksum = getSequence(aaSeq);
-						protein.setReference("sequence", allSequences.get(md5Checksum));
-						protein.setAttribute("md5checksum", md5Checksum);
-
-						String taxonId = entry.getFirstChildElement("organism", NAMESPACE_URI)
-								.getFirstChildElement("dbReference", NAMESPACE_URI).getAttributeValue("id");
-						protein.setReference("organism", getOrganism(taxonId));
-
-						/* publications */
-						Elements publications = entry.getChildElements("reference", NAMESPACE_URI);
-						for (int i = 0; i < publications.size(); i++) {
-							Elements dbRefs = publications.get(i).getFirstChildElement("citation", NAMESPACE_URI)
-									.getChildElements("dbReference", NAMESPACE_URI);
-							for (int d = 0; d < dbRefs.size(); d++) {
-								if ("PubMed".equals(dbRefs.get(d).getAttributeValue("type"))) {
-									String pubMedId = dbRefs.get(d).getAttributeValue("id");
-									protein.addToCollection("publications",
-											getPublication(pubMedId));
-								}
-							}
-						}
+	/**
+	 * The values of one entry. Everything that does not depend on the items created so far is
+	 * worked out here, by the parser threads.
+	 */
+	private static class UniprotEntry {
+		String dataSet;
+		String accession;
+		Set<String> otherAccessions = new HashSet<String>();
+		String primaryIdentifier;
+		String proteinName;
+		List<String> nameSynonyms = new ArrayList<String>();
+		String isFragment;
+		String length;
+		String molecularWeight;
+		String residues;
+		String md5Checksum;
+		String taxonId;
+		List<String> pubMedIds = new ArrayList<String>();
+		List<EntryComment> comments = new ArrayList<EntryComment>();
+		// keyword id -> title
+		List<String[]> keywords = new ArrayList<String[]>();
+		List<String> xrefSynonyms = new ArrayList<String>();
+		Set<String> geneIds = new HashSet<String>();
+		List<EntryFeature> features = new ArrayList<EntryFeature>();
+		List<String> componentNames = new ArrayList<String>();
+	}
 
-						// Extract pubmedId from evidence
-						// Only looking for ECO:0000269, which means 
-						// "manually curated information for which there is published experimental evidence"
-						Elements evidences = entry.getChildElements("evidence", NAMESPACE_URI);
-						Map<String,String> evidPubMap = new HashMap<String, String>();
-						for (int i = 0; i < evidences.size(); i++) {
-							Element evidenceEle = evidences.get(i);
-							String key = evidenceEle.getAttributeValue("key");
-							String type = evidenceEle.getAttributeValue("type");
-							if (type.equals("ECO:0000269")) {
-								Element sourceEle = evidenceEle.getFirstChildElement("source", NAMESPACE_URI);
-								if (sourceEle != null) {
-									Element dbReferenceEle = sourceEle.getFirstChildElement("dbReference", NAMESPACE_URI);
-									if (dbReferenceEle != null && "PubMed".equals(dbReferenceEle.getAttributeValue("type"))) {
-										evidPubMap.put(key, dbReferenceEle.getAttributeValue("id"));
-									}
-								}
-							}
-						}
+	private static class EntryComment {
+		String type;
+		String description;
+		List<String> pubMedIds = new ArrayList<String>();
+	}
 
-						/* comments */
-						Elements comments = entry.getChildElements("comment", NAMESPACE_URI);
-						for (int i = 0; i < comments.size(); i++) {
-							Element comment = comments.get(i);
-							Element text = comment.getFirstChildElement("text", NAMESPACE_URI);
-							if (text != null) {
-								String commentText = text.getValue();
-								Item item = createItem("Comment");
-								item.setAttribute("type", comment.getAttributeValue("type"));
-								if (commentText.length() > POSTGRES_INDEX_SIZE) {
-									// comment text is a string
-									String ellipses = "...";
-									String choppedComment = commentText.substring(0,
-											POSTGRES_INDEX_SIZE - ellipses.length());
-									item.setAttribute("description", choppedComment + ellipses);
-								} else {
-									item.setAttribute("description", commentText);
-								}
-								// TODO add publications for comments (not confirmed)
-								String evidStringIds = text.getAttributeValue("evidence");
-								if (evidStringIds != null) {
-									for (String eId : evidStringIds.split(" ")) {
-										if (evidPubMap.get(eId) != null) {
-											item.addToCollection("publications", getPublication(evidPubMap.get(eId)));
-										}
-									}
-								}
-								
-								store(item);
-								protein.addToCollection("comments", item);
-							}
-						}
+	private static class EntryFeature {
+		String type;
+		String description;
+		String start;
+		String end;
+		String modiPos;
+		// PTM keywords separated by "; ", or null
+		String modificationTypes;
+		Set<String> pubMedIds = new LinkedHashSet<String>();
+	}
 
-						/* keywords */
-						Elements keywordElements = entry.getChildElements("keyword", NAMESPACE_URI);
-						for (int i = 0; i < keywordElements.size(); i++) {
-							String title = keywordElements.get(i).getValue();
-							String id = keywordElements.get(i).getAttributeValue("id");
-							String refId = keywords.get(id);
-							if (refId == null) {
-								Item item = createItem("OntologyTerm");
-								item.setAttribute("identifier", id);
-								item.setAttribute("name", title);
-								item.setReference("ontology", ontologies.get("UniProtKeyword"));
-								refId = item.getIdentifier();
-								keywords.put(id, refId);
-								store(item);
-							}
-							protein.addToCollection("keywords", refId);
-						}
+	private UniprotEntry parseEntry(Element entry) {
+		UniprotEntry ret = new UniprotEntry();
+		ret.dataSet = entry.getAttributeValue("dataset");
 
-						/* dbrefs */
-						Set<String> geneIds = new HashSet<String>();
-						Elements dbReferences = entry.getChildElements("dbReference", NAMESPACE_URI);
-						for (int i = 0; i < dbReferences.size(); i++) {
-							Element dbRef = dbReferences.get(i);
-							String type = dbRef.getAttributeValue("type");
-							String id = dbRef.getAttributeValue("id");
-							// if (xrefs.contains(type)) {
-							// Item item = createCrossReference(protein.getIdentifier(),
-							// id, type, false);
-							// if (item != null) {
-							// synonymsAndXrefs.add(item);
-							// }
-							// }
-							if (type.equals("GeneID")) {
-								geneIds.add(id);
-							} else if (type.equals("Ensembl")) {
-								Elements properties = dbRef.getChildElements("property", NAMESPACE_URI);
-								for (int p = 0; p < properties.size(); p++) {
-									if (properties.get(p).getAttributeValue("type")
-											.equals("protein sequence ID")) {
-										addSynonym(protein.getIdentifier(), properties.get(p)
-												.getAttributeValue("value"));
-									}
-								}
-							} else if (type.equals("RefSeq")) {
-								addSynonym(protein.getIdentifier(), id);
-							}
-						}
+		Elements accessions = entry.getChildElements("accession", NAMESPACE_URI);
+		ret.accession = accessions.get(0).getValue();
+		for (int i = 1; i < accessions.size(); i++) {
+			ret.otherAccessions.add(accessions.get(i).getValue());
+		}
 
-						/* genes */
-
-						if (geneIds.isEmpty()) {
-							LOG.error("no valid gene identifiers found for " + accession);
-						} else {
-							for (String identifier : geneIds) {
-								if (StringUtils.isEmpty(identifier)) {
-									continue;
-								}
-								String geneRefId = genes.get(identifier);
-								if (geneRefId == null) {
-									Item gene = createItem("Gene");
-									gene.setAttribute("primaryIdentifier", identifier);
-									gene.setReference("organism", getOrganism(taxonId));
-									geneRefId = gene.getIdentifier();
-									genes.put(identifier, geneRefId);
-									store(gene);
-								}
-								protein.addToCollection("genes", geneRefId);
-							}
+		/* primaryAccession, primaryIdentifier, name, etc */
+		ret.primaryIdentifier = entry.getFirstChildElement("name", NAMESPACE_URI).getValue();
+
+		Element proteinElement = entry.getFirstChildElement("protein", NAMESPACE_URI);
+		Elements nameElements = proteinElement.getChildElements();
+		String proteinName = nameElements.get(0).getFirstChildElement("fullName", NAMESPACE_URI)
+				.getValue();
+		ret.proteinName = proteinName;
+		for (int i = 0; i < nameElements.size(); i++) {
+			// these are synonyms; there are two types:
+			// recommendedName; submittedName; alternativeName --> fullName,
+			// shortName
+			// allergenName; biotechName; cdAntigenName; innName
+			Element e = nameElements.get(i);
+			if (e.getLocalName().endsWith("Name")) {
+				Elements childElements = e.getChildElements();
+				if (childElements.size() > 0) {
+					for (int c = 0; c < childElements.size(); c++) {
+						String value = childElements.get(c).getValue();
+						if (!proteinName.equals(value)) {
+							ret.nameSynonyms.add(value);
 						}
+					}
+				} else {
+					ret.nameSynonyms.add(e.getValue());
+				}
+			}
+		}
 
-						/* features */
-						Elements features = entry.getChildElements("feature", NAMESPACE_URI);
-						Set<String> modificationSet = new HashSet<String>();
-						for (int i = 0; i < features.size(); i++) {
-							Element feature = features.get(i);
-							String type = feature.getAttributeValue("type");
-							if (!featureTypes.contains(type)) {
-								continue;
-							}
-							
-							String description = feature.getAttributeValue("description");
-							String status = feature.getAttributeValue("status");
-
-							Item featureItem = createItem("UniProtFeature");
-							featureItem.setAttribute("type", type);
-							featureItem.setAttribute("regionType", "feature");
-//							String keywordRefId = getKeyword(type);
-//							featureItem.setReference("feature", keywordRefId);
-							String featureDescription = description;
-							if (status != null) {
-								featureDescription = (description == null ? status : description
-										+ " (" + status + ")");
-							}
-							if (!StringUtils.isEmpty(featureDescription)) {
-								featureItem.setAttribute("description", featureDescription);
-							}
-							Element location = feature.getFirstChildElement("location", NAMESPACE_URI);
-							Element position = location.getFirstChildElement("position", NAMESPACE_URI);
-							String modiPos = null;
-							if (position != null) {
-								modiPos = position.getAttributeValue("position");
-								featureItem.setAttribute("start", modiPos);
-								featureItem.setAttribute("end", modiPos);
-							} else {
-								Element beginElement = location.getFirstChildElement("begin", NAMESPACE_URI);
-								Element endElement = location.getFirstChildElement("end", NAMESPACE_URI);
-								if (beginElement != null && endElement != null) {
-									// beware that some entries contain unknown position
-									// e.g. <end status="unknown"/>
-									String begin = beginElement.getAttributeValue("position");
-									if (begin != null) {
-										featureItem.setAttribute("start", begin);
-									}
-									String end = endElement.getAttributeValue("position");
-									if (end != null) {
-										featureItem.setAttribute("end", end);
-									}
-									if (begin != null && begin.equals(end)) {
-										modiPos = begin;
-										// should not happen?
-										LOG.info("Protein " + accession + " contains the same begin and end values.");
-									}
-								}
-							}
-							featureItem.setReference("protein", protein);
-
-							// example:
-							// <feature evidence="9 10 13 20 21 22" description="Phosphoserine; by AURKB, AURKC and RPS6KA5" type="modified residue">
-							Set<String> pubRefIds = new HashSet<String>();
-							String evidStringIds = feature.getAttributeValue("evidence");
-							if (evidStringIds != null) {
-								for (String eId : evidStringIds.split(" ")) {
-									if (evidPubMap.get(eId) != null) {
-										pubRefIds.add(getPublication(evidPubMap.get(eId)));
-									}
-								}
-							}
-
-							if (modiPos != null) {
-								String kw = ptmListMap.get(description);
-								
-								if (kw == null) {
-									// TODO slightly tricky?
-									if (type.equals("glycosylation site")) {
-										kw = "Glycosylation";
-									} else if (!StringUtils.isEmpty(description)) {
-										kw = searchPtmListMap(description);
-									}
-								}
-								
-								if (kw != null) {
-									for (String modType: kw.split("; ")) {
-										if (modType.equals("Phosphoprotein")) {
-											modType = "Phosphorylation";
-										}
-										
-										String key = String.format("%s-%s", modiPos, modType);
-										if (!modificationSet.contains(key)) {
-											Item modification = createItem("Modification");
-											modification.setReference("protein", protein);
-											modification.setAttribute("type", modType);
-											modification.setAttribute("position", modiPos);
-											modification.setAttribute("start", modiPos);
-											modification.setAttribute("end", modiPos);
-											modification.setAttribute("regionType", "modification");
-											
-											int pos = Integer.valueOf(modiPos).intValue();
-											modification.setAttribute("residue", aaSeq.substring(pos - 1, pos));
-											
-											modification.addToCollection(
-													"dataSets",
-													getDataSet(entry.getAttributeValue("dataset")
-															+ " data set", dataSource));
-											for (String refId: pubRefIds) {
-												modification.addToCollection("publications", refId);
-											}
-											
-											store(modification);
-											
-											protein.addToCollection("modifications", modification);
-											
-											modificationSet.add(key);
-										}
-									}
-								}
-							}
-							for (String refId: pubRefIds) {
-								featureItem.addToCollection("publications", refId);
-							}
-							store(featureItem);
-
-							protein.addToCollection("features", featureItem);
-						}
+		/* sequence */
+		Element sequence = entry.getFirstChildElement("sequence", NAMESPACE_URI);
+		ret.isFragment = sequence.getAttributeValue("fragment") == null ? "false" : "true";
+		ret.length = sequence.getAttributeValue("length");
+		ret.molecularWeight = sequence.getAttributeValue("mass");
+		ret.residues = sequence.getValue();
+		ret.md5Checksum = Util.getMd5checksum(ret.residues);
+
+		ret.taxonId = entry.getFirstChildElement("organism", NAMESPACE_URI)
+				.getFirstChildElement("dbReference", NAMESPACE_URI).getAttributeValue("id");
+
+		/* publications */
+		Elements publications = entry.getChildElements("reference", NAMESPACE_URI);
+		for (int i = 0; i < publications.size(); i++) {
+			Elements dbRefs = publications.get(i).getFirstChildElement("citation", NAMESPACE_URI)
+					.getChildElements("dbReference", NAMESPACE_URI);
+			for (int d = 0; d < dbRefs.size(); d++) {
+				if ("PubMed".equals(dbRefs.get(d).getAttributeValue("type"))) {
+					ret.pubMedIds.add(dbRefs.get(d).getAttributeValue("id"));
+				}
+			}
+		}
 
-						store(protein);
-						// actually, the main accession should not be duplicated
-						doneEntries.add(accession);
-
-						/* components */
-						Elements components = proteinElement.getChildElements("component", NAMESPACE_URI);
-						for (int i = 0; i < components.size(); i++) {
-							Element ele = components.get(i).getFirstChildElement("recommendedName", NAMESPACE_URI);
-							if (ele != null) {
-								Item item = createItem("Component");
-								item.setAttribute("name", ele.getFirstChildElement("fullName", NAMESPACE_URI)
-										.getValue());
-								item.setReference("protein", protein);
-								store(item);
-							}
-						}
+		// Extract pubmedId from evidence
+		// Only looking for ECO:0000269, which means 
+		// "manually curated information for which there is published experimental evidence"
+		Elements evidences = entry.getChildElements("evidence", NAMESPACE_URI);
+		Map<String,String> evidPubMap = new HashMap<String, String>();
+		for (int i = 0; i < evidences.size(); i++) {
+			Element evidenceEle = evidences.get(i);
+			String key = evidenceEle.getAttributeValue("key");
+			String type = evidenceEle.getAttributeValue("type");
+			if (type.equals("ECO:0000269")) {
+				Element sourceEle = evidenceEle.getFirstChildElement("source", NAMESPACE_URI);
+				if (sourceEle != null) {
+					Element dbReferenceEle = sourceEle.getFirstChildElement("dbReference", NAMESPACE_URI);
+					if (dbReferenceEle != null && "PubMed".equals(dbReferenceEle.getAttributeValue("type"))) {
+						evidPubMap.put(key, dbReferenceEle.getAttributeValue("id"));
+					}
+				}
+			}
+		}
 
-						for (String acc : otherAccessions) {
-							// other accessions are synonyms
-							Item item = createItem("ProteinAccession");
-							item.setAttribute("accession", acc);
-							item.setReference("protein", protein);
-							store(item);
-						}
-						
-						numOfNewEntries++;
-						LOG.info("Entry " + accession + " created.");
-
-						// store all synonyms
-						for (Item item : synonymsAndXrefs) {
-							if (item == null) {
-								continue;
-							}
-							store(item);
+		/* comments */
+		Elements comments = entry.getChildElements("comment", NAMESPACE_URI);
+		for (int i = 0; i < comments.size(); i++) {
+			Element comment = comments.get(i);
+			Element text = comment.getFirstChildElement("text", NAMESPACE_URI);
+			if (text != null) {
+				String commentText = text.getValue();
+				EntryComment item = new EntryComment();
+				item.type = comment.getAttributeValue("type");
+				if (commentText.length() > POSTGRES_INDEX_SIZE) {
+					// comment text is a string
+					String ellipses = "...";
+					String choppedComment = commentText.substring(0,
+							POSTGRES_INDEX_SIZE - ellipses.length());
+					item.description = choppedComment + ellipses;
+				} else {
+					item.description = commentText;
+				}
+				// TODO add publications for comments (not confirmed)
+				String evidStringIds = text.getAttributeValue("evidence");
+				if (evidStringIds != null) {
+					for (String eId : evidStringIds.split(" ")) {
+						if (evidPubMap.get(eId) != null) {
+							item.pubMedIds.add(evidPubMap.get(eId));
 						}
+					}
+				}
+				ret.comments.add(item);
+			}
+		}
+
+		/* keywords */
+		Elements keywordElements = entry.getChildElements("keyword", NAMESPACE_URI);
+		for (int i = 0; i < keywordElements.size(); i++) {
+			ret.keywords.add(new String[] {keywordElements.get(i).getAttributeValue("id"),
+					keywordElements.get(i).getValue()});
+		}
+
+		/* dbrefs */
+		Elements dbReferences = entry.getChildElements("dbReference", NAMESPACE_URI);
+		for (int i = 0; i < dbReferences.size(); i++) {
+			Element dbRef = dbReferences.get(i);
+			String type = dbRef.getAttributeValue("type");
+			String id = dbRef.getAttributeValue("id");
+			if (type.equals("GeneID")) {
+				ret.geneIds.add(id);
+			} else if (type.equals("Ensembl")) {
+				Elements properties = dbRef.getChildElements("property", NAMESPACE_URI);
+				for (int p = 0; p < properties.size(); p++) {
+					if (properties.get(p).getAttributeValue("type")
+							.equals("protein sequence ID")) {
+						ret.xrefSynonyms.add(properties.get(p).getAttributeValue("value"));
+					}
+				}
+			} else if (type.equals("RefSeq")) {
+				ret.xrefSynonyms.add(id);
+			}
+		}
 
-						// reset
-						synonymsAndXrefs = new HashSet<Item>();
+		/* features */
+		Elements features = entry.getChildElements("feature", NAMESPACE_URI);
+		for (int i = 0; i < features.size(); i++) {
+			Element feature = features.get(i);
+			String type = feature.getAttributeValue("type");
+			if (!featureTypes.contains(type)) {
+				continue;
+			}
+
+			EntryFeature featureItem = new EntryFeature();
+			String description = feature.getAttributeValue("description");
+			String status = feature.getAttributeValue("status");
+			featureItem.type = type;
+			String featureDescription = description;
+			if (status != null) {
+				featureDescription = (description == null ? status : description
+						+ " (" + status + ")");
+			}
+			featureItem.description = featureDescription;
+			Element location = feature.getFirstChildElement("location", NAMESPACE_URI);
+			Element position = location.getFirstChildElement("position", NAMESPACE_URI);
+			String modiPos = null;
+			if (position != null) {
+				modiPos = position.getAttributeValue("position");
+				featureItem.start = modiPos;
+				featureItem.end = modiPos;
+			} else {
+				Element beginElement = location.getFirstChildElement("begin", NAMESPACE_URI);
+				Element endElement = location.getFirstChildElement("end", NAMESPACE_URI);
+				if (beginElement != null && endElement != null) {
+					// beware that some entries contain unknown position
+					// e.g. <end status="unknown"/>
+					String begin = beginElement.getAttributeValue("position");
+					featureItem.start = begin;
+					String end = endElement.getAttributeValue("position");
+					featureItem.end = end;
+					if (begin != null && begin.equals(end)) {
+						modiPos = begin;
+						// should not happen?
+						LOG.info("Protein " + ret.accession + " contains the same begin and end values.");
+					}
+				}
+			}
+			featureItem.modiPos = modiPos;
+
+			// example:
+			// <feature evidence="9 10 13 20 21 22" description="Phosphoserine; by AURKB, AURKC and RPS6KA5" type="modified residue">
+			String evidStringIds = feature.getAttributeValue("evidence");
+			if (evidStringIds != null) {
+				for (String eId : evidStringIds.split(" ")) {
+					if (evidPubMap.get(eId) != null) {
+						featureItem.pubMedIds.add(evidPubMap.get(eId));
 					}
+				}
+			}
 
+			if (modiPos != null) {
+				String kw = ptmListMap.get(description);
+				
+				if (kw == null) {
+					// TODO slightly tricky?
+					if (type.equals("glycosylation site")) {
+						kw = "Glycosylation";
+					} else if (!StringUtils.isEmpty(description)) {
+						kw = searchPtmListMap(description);
+					}
 				}
+				featureItem.modificationTypes = kw;
+			}
+			ret.features.add(featureItem);
+		}
 
+		/* components */
+		Elements components = proteinElement.getChildElements("component", NAMESPACE_URI);
+		for (int i = 0; i < components.size(); i++) {
+			Element ele = components.get(i).getFirstChildElement("recommendedName", NAMESPACE_URI);
+			if (ele != null) {
+				ret.componentNames.add(ele.getFirstChildElement("fullName", NAMESPACE_URI)
+						.getValue());
 			}
+		}
+		return ret;
+	}
 
-			br.close();
+	private void processEntry(UniprotEntry entry) throws ObjectStoreException {
+		String accession = entry.accession;
+		// should not find duplicated primary accessions
+		if (doneEntries.contains(accession)) {
+			return;
+		}
+		// create Protein items
+		Item protein = createItem("Protein");
 
-		} catch (ParsingException e) {
-			e.printStackTrace();
-		} catch (IOException e) {
-			e.printStackTrace();
+		protein.addToCollection("dataSets", getDataSet(entry.dataSet + " data set", dataSource));
+
+		/* primaryAccession, primaryIdentifier, name, etc */
+		protein.setAttribute("name", entry.proteinName);
+		for (String value : entry.nameSynonyms) {
+			addSynonym(protein.getIdentifier(), value);
 		}
 
-		String info = "Create " + numOfNewEntries + " entries.";
-		System.out.println(info);
-		LOG.info(info);
+		protein.setAttribute("uniprotAccession", accession);
+		protein.setAttribute("primaryAccession", accession);
+		for (String acc : entry.otherAccessions) {
+			// other accessions are synonyms
+			addSynonym(protein.getIdentifier(), acc);
+		}
+
+		protein.setAttribute("primaryIdentifier", entry.primaryIdentifier);
+		protein.setAttribute("uniprotName", entry.primaryIdentifier);
+
+		protein.setAttribute("isUniprotCanonical", "true");
+
+		/* sequence */
+		protein.setAttribute("isFragment", entry.isFragment);
+		protein.setAttribute("length", entry.length);
+		protein.setAttribute("molecularWeight", entry.molecularWeight);
+
+		String md5Checksum = getSequence(entry.residues, entry.md5Checksum);
+		protein.setReference("sequence", allSequences.get(md5Checksum));
+		protein.setAttribute("md5checksum", md5Checksum);
+
+		String taxonId = entry.taxonId;
+		protein.setReference("organism", getOrganism(taxonId));
+
+		/* publications */
+		for (String pubMedId : entry.pubMedIds) {
+			protein.addToCollection("publications", getPublication(pubMedId));
+		}
+
+		/* comments */
+		for (EntryComment comment : entry.comments) {
+			Item item = createItem("Comment");
+			item.setAttribute("type", comment.type);
+			item.setAttribute("description", comment.description);
+			for (String pubMedId : comment.pubMedIds) {
+				item.addToCollection("publications", getPublication(pubMedId));
+			}
+			
+			store(item);
+			protein.addToCollection("comments", item);
+		}
+
+		/* keywords */
+		for (String[] keyword : entry.keywords) {
+			String id = keyword[0];
+			String refId = keywords.get(id);
+			if (refId == null) {
+				Item item = createItem("OntologyTerm");
+				item.setAttribute("identifier", id);
+				item.setAttribute("name", keyword[1]);
+				item.setReference("ontology", ontologies.get("UniProtKeyword"));
+				refId = item.getIdentifier();
+				keywords.put(id, refId);
+				store(item);
+			}
+			protein.addToCollection("keywords", refId);
+		}
+
+		/* dbrefs */
+		for (String synonym : entry.xrefSynonyms) {
+			addSynonym(protein.getIdentifier(), synonym);
+		}
+
+		/* genes */
+
+		if (entry.geneIds.isEmpty()) {
+			LOG.error("no valid gene identifiers found for " + accession);
+		} else {
+			for (String identifier : entry.geneIds) {
+				if (StringUtils.isEmpty(identifier)) {
+					continue;
+				}
+				String geneRefId = genes.get(identifier);
+				if (geneRefId == null) {
+					Item gene = createItem("Gene");
+					gene.setAttribute("primaryIdentifier", identifier);
+					gene.setReference("organism", getOrganism(taxonId));
+					geneRefId = gene.getIdentifier();
+					genes.put(identifier, geneRefId);
+					store(gene);
+				}
+				protein.addToCollection("genes", geneRefId);
+			}
+		}
+
+		/* features */
+		Set<String> modificationSet = new HashSet<String>();
+		for (EntryFeature feature : entry.features) {
+			Item featureItem = createItem("UniProtFeature");
+			featureItem.setAttribute("type", feature.type);
+			featureItem.setAttribute("regionType", "feature");
+			if (!StringUtils.isEmpty(feature.description)) {
+				featureItem.setAttribute("description", feature.description);
+			}
+			if (feature.start != null) {
+				featureItem.setAttribute("start", feature.start);
+			}
+			if (feature.end != null) {
+				featureItem.setAttribute("end", feature.end);
+			}
+			featureItem.setReference("protein", protein);
+
+			Set<String> pubRefIds = new HashSet<String>();
+			for (String pubMedId : feature.pubMedIds) {
+				pubRefIds.add(getPublication(pubMedId));
+			}
+
+			String modiPos = feature.modiPos;
+			if (modiPos != null && feature.modificationTypes != null) {
+				for (String modType: feature.modificationTypes.split("; ")) {
+					if (modType.equals("Phosphoprotein")) {
+						modType = "Phosphorylation";
+					}
+					
+					String key = String.format("%s-%s", modiPos, modType);
+					if (!modificationSet.contains(key)) {
+						Item modification = createItem("Modification");
+						modification.setReference("protein", protein);
+						modification.setAttribute("type", modType);
+						modification.setAttribute("position", modiPos);
+						modification.setAttribute("start", modiPos);
+						modification.setAttribute("end", modiPos);
+						modification.setAttribute("regionType", "modification");
+						
+						int pos = Integer.valueOf(modiPos).intValue();
+						modification.setAttribute("residue", entry.residues.substring(pos - 1, pos));
+						
+						modification.addToCollection("dataSets",
+								getDataSet(entry.dataSet + " data set", dataSource));
+						for (String refId: pubRefIds) {
+							modification.addToCollection("publications", refId);
+						}
+						
+						store(modification);
+						
+						protein.addToCollection("modifications", modification);
+						
+						modificationSet.add(key);
+					}
+				}
+			}
+			for (String refId: pubRefIds) {
+				featureItem.addToCollection("publications", refId);
+			}
+			store(featureItem);
+
+			protein.addToCollection("features", featureItem);
+		}
+
+		store(protein);
+		// actually, the main accession should not be duplicated
+		doneEntries.add(accession);
+
+		/* components */
+		for (String name : entry.componentNames) {
+			Item item = createItem("Component");
+			item.setAttribute("name", name);
+			item.setReference("protein", protein);
+			store(item);
+		}
+
+		for (String acc : entry.otherAccessions) {
+			// other accessions are synonyms
+			Item item = createItem("ProteinAccession");
+			item.setAttribute("accession", acc);
+			item.setReference("protein", protein);
+			store(item);
+		}
+		
+		numOfNewEntries++;
+		LOG.info("Entry " + accession + " created.");
+
+		// store all synonyms
+		for (Item item : synonymsAndXrefs) {
+			if (item == null) {
+				continue;
+			}
+			store(item);
+		}
 
+		// reset
+		synonymsAndXrefs = new HashSet<Item>();
 	}
 
 	private String searchPtmListMap(String description) {
@@ -566,11 +767,11 @@ public class UniprotXomConverter extends BioFileConverter {
 	 * Create Sequence item if not existed.
 	 * 
 	 * @param residues
+	 * @param md5Checksum checksum of the residues
 	 * @return md5Checksum as the key of the Sequence item in the allSequences map.
 	 * @throws ObjectStoreException
 	 */
-	private String getSequence(String residues) throws ObjectStoreException {
-		String md5Checksum = Util.getMd5checksum(residues);
+	private String getSequence(String residues, String md5Checksum) throws ObjectStoreException {
 		if (!allSequences.containsKey(md5Checksum)) {
 			Item item = createItem("Sequence");
 			item.setAttribute("residues", residues);
@@ -0,0 +1,111 @@
+package org.intermine.bio.web.logic;
+
+/*
+ * Copyright (C) 2002-2017 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.intermine.bio.web.logic.GenomicRegionSearchIndex.ChromosomeIntervals;
+import org.intermine.bio.web.logic.GenomicRegionSearchIndex.Interval;
+import org.junit.Test;
+
+public class GenomicRegionSearchIndexTest {
+
+    @Test
+    public void testEmptyChromosome() {
+        ChromosomeIntervals intervals = new ChromosomeIntervals(new ArrayList<Interval>());
+        assertEquals(0, intervals.overlap(1, 1000).length);
+        assertEquals(0, intervals.overlap(0, 0).length);
+    }
+
+    @Test
+    public void testTouchingEndpoints() {
+        ChromosomeIntervals intervals = create(new int[][] {{100, 200}, {200, 300}, {301, 400}});
+        assertEquals(ids(1, 2), overlap(intervals, 200, 200));
+        assertEquals(ids(2), overlap(intervals, 300, 300));
+        assertEquals(ids(2, 3), overlap(intervals, 300, 301));
+        assertEquals(ids(1), overlap(intervals, 50, 100));
+        assertEquals(ids(3), overlap(intervals, 400, 500));
+        assertEquals(ids(), overlap(intervals, 401, 500));
+        assertEquals(ids(), overlap(intervals, 1, 99));
+    }
+
+    @Test
+    public void testZeroLength() {
+        ChromosomeIntervals intervals = create(new int[][] {{50, 50}, {10, 100}, {51, 51}});
+        assertEquals(ids(1, 2), overlap(intervals, 50, 50));
+        assertEquals(ids(1, 2, 3), overlap(intervals, 50, 51));
+        assertEquals(ids(2), overlap(intervals, 52, 60));
+    }
+
+    @Test
+    public void testAgainstScan() {
+        Random random = new Random(42);
+        // sizes either side of powers of 2, where the implicit tree has missing right children
+        for (int n : new int[] {1, 2, 3, 7, 8, 9, 15, 16, 17, 100, 1000, 1023, 1025}) {
+            int[][] locations = new int[n][];
+            for (int i = 0; i < n; i++) {
+                int start = random.nextInt(10000);
+                // mostly short features with a few long ones
+                int length = random.nextInt(10) == 0 ? random.nextInt(5000) : random.nextInt(50);
+                locations[i] = new int[] {start, start + length};
+            }
+            ChromosomeIntervals intervals = create(locations);
+            for (int q = 0; q < 500; q++) {
+                int start = random.nextInt(11000) - 500;
+                int end = start + (q % 5 == 0 ? 0 : random.nextInt(500));
+                assertEquals("n = " + n + ", region " + start + ".." + end,
+                        scan(locations, start, end), overlap(intervals, start, end));
+            }
+        }
+    }
+
+    // the location at index i of the array has feature id i + 1
+    private static ChromosomeIntervals create(int[][] locations) {
+        List<Interval> list = new ArrayList<Interval>();
+        for (int i = 0; i < locations.length; i++) {
+            Interval interval = new Interval();
+            interval.featureId = i + 1;
+            interval.start = locations[i][0];
+            interval.end = locations[i][1];
+            list.add(interval);
+        }
+        return new ChromosomeIntervals(list);
+    }
+
+    private static Set<Integer> overlap(ChromosomeIntervals intervals, int start, int end) {
+        Set<Integer> ids = new TreeSet<Integer>();
+        for (int i : intervals.overlap(start, end)) {
+            ids.add(Integer.valueOf(intervals.featureIds[i]));
+        }
+        return ids;
+    }
+
+    private static Set<Integer> scan(int[][] locations, int start, int end) {
+        Set<Integer> ids = new TreeSet<Integer>();
+        for (int i = 0; i < locations.length; i++) {
+            if (locations[i][0] <= end && locations[i][1] >= start) {
+                ids.add(Integer.valueOf(i + 1));
+            }
+        }
+        return ids;
+    }
+
+    private static Set<Integer> ids(Integer... ids) {
+        return new TreeSet<Integer>(Arrays.asList(ids));
+    }
+}
@@ -113,6 +113,7 @@ public class BEDHttpExporter extends HttpExporterBase implements TableHttpExport
             try {
                 iter = getResultRows(pt, request);
                 iter.goFaster();
+                iter.prefetch();
 
                 // path collections are not in use in BED exporter
                 exporter.export(iter, unionPathCollection, newPathCollection);
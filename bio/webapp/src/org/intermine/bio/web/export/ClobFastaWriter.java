@@ -0,0 +1,103 @@
+package org.intermine.bio.web.export;
+
+/*
+ * Copyright (C) 2002-2017 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+import org.intermine.bio.util.ClobAccessReverseComplement;
+import org.intermine.model.bio.Chromosome;
+import org.intermine.objectstore.query.ClobAccess;
+import org.intermine.objectstore.query.ClobPageCache;
+
+/**
+ * Writes segments of chromosome sequences in FASTA format straight from the pages of the
+ * sequence Clob, without making a String of the chromosome or the segment.  The output is the
+ * same as writing a biojava DNA sequence with SeqIOTools.writeFasta(): lower case residues in
+ * lines of 60.
+ *
+ * The pages of the chromosomes are held in a bounded ClobPageCache, so one writer should be
+ * used for a whole export.
+ *
+ * @author chenyian
+ */
+public class ClobFastaWriter
+{
+    private static final int LINE_WIDTH = 60;
+    // pages of 7000 characters, so about 14MB of chromosome sequence
+    private static final int PAGE_CACHE_SIZE = 1000;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final OutputStream out;
+    private final ClobPageCache pageCache = new ClobPageCache(PAGE_CACHE_SIZE);
+    private final char[] chars = new char[LINE_WIDTH];
+    private final byte[] line = new byte[LINE_WIDTH + 1];
+
+    /**
+     * Constructor.
+     *
+     * @param out the stream to write to
+     */
+    public ClobFastaWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Find a segment of the sequence of a chromosome.
+     *
+     * @param chr the chromosome
+     * @param start the start of the segment, counting from 1
+     * @param end the end of the segment, inclusive
+     * @param reverseComplement true to return the reverse complement of the segment
+     * @return the segment, or null if the chromosome has no sequence
+     */
+    public ClobAccess getSegment(Chromosome chr, int start, int end, boolean reverseComplement) {
+        if (chr.getSequence() == null || chr.getSequence().getResidues() == null) {
+            return null;
+        }
+        ClobAccess residues = chr.getSequence().getResidues();
+        ClobAccess segment = residues.subSequence(start - 1, end);
+        // the residues are shared through the object cache, so only the new segment reads
+        // through the page cache of this writer
+        if (segment != residues) {
+            segment.setPageCache(pageCache);
+        }
+        if (reverseComplement) {
+            return new ClobAccessReverseComplement(segment);
+        }
+        return segment;
+    }
+
+    /**
+     * Write a sequence in FASTA format.
+     *
+     * @param description the description line, without the '>'
+     * @param residues the sequence
+     * @throws IOException if the sequence cannot be written
+     */
+    public void write(String description, ClobAccess residues) throws IOException {
+        out.write('>');
+        out.write(description.getBytes(UTF_8));
+        out.write('\n');
+        int length = residues.length();
+        for (int pos = 0; pos < length; pos += LINE_WIDTH) {
+            int lineEnd = Math.min(pos + LINE_WIDTH, length);
+            residues.getChars(pos, lineEnd, chars, 0);
+            int lineLength = lineEnd - pos;
+            for (int i = 0; i < lineLength; i++) {
+                line[i] = (byte) Character.toLowerCase(chars[i]);
+            }
+            line[lineLength] = '\n';
+            out.write(line, 0, lineLength + 1);
+        }
+    }
+}
@@ -14,21 +14,15 @@ import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 
-import org.apache.commons.collections.keyvalue.MultiKey;
-import org.biojava.bio.seq.DNATools;
-import org.biojava.bio.seq.Sequence;
-import org.biojava.bio.seq.io.FastaFormat;
-import org.biojava.bio.seq.io.SeqIOTools;
 import org.intermine.bio.web.model.GenomicRegion;
 import org.intermine.metadata.StringUtil;
 import org.intermine.model.bio.Chromosome;
 import org.intermine.model.bio.Organism;
 import org.intermine.objectstore.ObjectStore;
+import org.intermine.objectstore.query.ClobAccess;
 import org.intermine.util.DynamicUtil;
 
 /**
@@ -40,8 +34,6 @@ public class GenomicRegionSequenceExporter
 {
     private ObjectStore os;
     private OutputStream out;
-    // Map to hold DNA sequence of a whole chromosome in memory
-    private static Map<MultiKey, String> chromosomeSequenceMap = new HashMap<MultiKey, String>();
 
     /**
      * Instructor
@@ -67,6 +59,8 @@ public class GenomicRegionSequenceExporter
 
         org = os.getObjectByExample(org, Collections.singleton("shortName"));
 
+        ClobFastaWriter fastaWriter = new ClobFastaWriter(out);
+
         for (GenomicRegion gr : grList) {
             Chromosome chr = (Chromosome) DynamicUtil.createObject(
                     Collections.singleton(Chromosome.class));
@@ -76,19 +70,6 @@ public class GenomicRegionSequenceExporter
             chr = os.getObjectByExample(chr,
                         new HashSet<String>(Arrays.asList("primaryIdentifier", "organism")));
 
-            String chrResidueString;
-            if (chromosomeSequenceMap.get(new MultiKey(gr.getChr(), gr
-                    .getOrganism())) == null) {
-                chrResidueString = chr.getSequence().getResidues()
-                        .toString();
-                chromosomeSequenceMap.put(
-                        new MultiKey(gr.getChr(), gr.getOrganism()), chr
-                                .getSequence().getResidues().toString());
-            } else {
-                chrResidueString = chromosomeSequenceMap.get(new MultiKey(
-                        gr.getChr(), gr.getOrganism()));
-            }
-
             int chrLength = chr.getLength();
             int start;
             int end;
@@ -110,18 +91,10 @@ public class GenomicRegionSequenceExporter
             headerBits.add(gr.getOrganism());
             String header = StringUtil.join(headerBits, " ");
 
-            String seqName = "genomic_region_" + gr.getChr() + "_"
-                    + start + "_" + end + "_"
-                    + gr.getOrganism().replace("\\. ", "_");
-
-            Sequence chrSeg = DNATools.createDNASequence(
-                chrResidueString.substring(start - 1, end),
-                seqName);
-            chrSeg.getAnnotation().setProperty(
-                    FastaFormat.PROPERTY_DESCRIPTIONLINE, header);
-
-            // write it out
-            SeqIOTools.writeFasta(out, chrSeg);
+            ClobAccess residues = fastaWriter.getSegment(chr, start, end, false);
+            if (residues != null) {
+                fastaWriter.write(header, residues);
+            }
         }
         out.flush();
     }
@@ -10,26 +10,22 @@ package org.intermine.bio.web.export;
  *
  */
 
+import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
-import org.apache.commons.collections.keyvalue.MultiKey;
 import org.apache.log4j.Logger;
 import org.biojava.bio.Annotation;
-import org.biojava.bio.seq.DNATools;
 import org.biojava.bio.seq.Sequence;
 import org.biojava.bio.seq.io.FastaFormat;
 import org.biojava.bio.seq.io.SeqIOTools;
-import org.biojava.bio.symbol.IllegalAlphabetException;
 import org.biojava.bio.symbol.IllegalSymbolException;
-import org.biojava.bio.symbol.SymbolList;
 import org.intermine.api.config.ClassKeyHelper;
 import org.intermine.api.results.ResultElement;
 import org.intermine.bio.web.biojava.BioSequence;
@@ -44,6 +40,7 @@ import org.intermine.model.bio.Location;
 import org.intermine.model.bio.Protein;
 import org.intermine.model.bio.SequenceFeature;
 import org.intermine.objectstore.ObjectStore;
+import org.intermine.objectstore.query.ClobAccess;
 import org.intermine.pathquery.Path;
 import org.intermine.util.IntPresentSet;
 import org.intermine.web.logic.export.ExportException;
@@ -67,8 +64,6 @@ public class SequenceExporter implements Exporter
     private final Map<String, List<FieldDescriptor>> classKeys;
     private static final String NEGATIVE_STRAND = "-1";
     private int extension; // must > 0
-    // Map to hold DNA sequence of a whole chromosome in memory
-    private static Map<MultiKey, String> chromosomeSequenceMap = new HashMap<MultiKey, String>();
     private List<Path> paths = Collections.emptyList();
     private static final Logger LOG = Logger.getLogger(SequenceExporter.class);
 
@@ -140,6 +135,8 @@ public class SequenceExporter implements Exporter
         // IDs of the features we have successfully output - used to avoid
         // duplicates
         IntPresentSet exportedIDs = new IntPresentSet();
+        // flanked sequences are written straight from the chromosome sequence pages
+        ClobFastaWriter fastaWriter = new ClobFastaWriter(out);
 
         try {
             while (resultIt.hasNext()) {
@@ -163,8 +160,12 @@ public class SequenceExporter implements Exporter
 
                 if (object instanceof SequenceFeature) {
                     if (extension > 0) {
-                        bioSequence = createSequenceFeatureWithExtension(header, object,
-                                row, unionPathCollection, newPathCollection);
+                        if (writeSequenceFeatureWithExtension(fastaWriter, object, row,
+                                unionPathCollection, newPathCollection)) {
+                            writtenResultsCount++;
+                            exportedIDs.add(objectId);
+                        }
+                        continue;
                     } else {
                         bioSequence = createSequenceFeature(header, object,
                                 row, unionPathCollection, newPathCollection);
@@ -239,59 +240,45 @@ public class SequenceExporter implements Exporter
         return bioSequence;
     }
 
-    private Sequence createSequenceFeatureWithExtension(StringBuffer header,
-            Object object, List<ResultElement> row,
-            Collection<Path> unionPathCollection,
+    /**
+     * Write the sequence of a feature and its flanking regions, reverse complemented if the
+     * feature is on the minus strand.
+     *
+     * @return false if the feature has no chromosome sequence
+     */
+    private boolean writeSequenceFeatureWithExtension(ClobFastaWriter fastaWriter,
+            Object object, List<ResultElement> row, Collection<Path> unionPathCollection,
             Collection<Path> newPathCollection)
-        throws IllegalSymbolException {
+        throws IOException {
 
         SequenceFeature feature = (SequenceFeature) object;
 
         Chromosome chr = feature.getChromosome();
-        String chrName = chr.getPrimaryIdentifier();
-        int chrLength = chr.getLength();
-        int start = feature.getChromosomeLocation().getStart();
-        int end = feature.getChromosomeLocation().getEnd();
-        String org = feature.getOrganism().getShortName();
-        String strand = feature.getChromosomeLocation().getStrand();
-
-        String chrResidueString;
-        if (chromosomeSequenceMap.get(new MultiKey(chrName, org)) == null) {
-            chrResidueString = chr.getSequence().getResidues()
-                    .toString();
-            chromosomeSequenceMap.put(
-                    new MultiKey(chrName, strand, org), chr.getSequence().getResidues().toString());
-        } else {
-            chrResidueString = chromosomeSequenceMap.get(new MultiKey(chrName, strand, org));
-        }
-
-        if (extension > 0) {
-            start = start - extension;
-            end = end + extension;
+        Location loc = feature.getChromosomeLocation();
+        if (chr == null || loc == null) {
+            return false;
         }
+        int chrLength = chr.getLength();
+        int start = loc.getStart() - extension;
+        int end = loc.getEnd() + extension;
 
         end = Math.min(end, chrLength);
         start = Math.max(start, 1);
 
-        String seqName = "genomic_region_" + chrName + "_"
-                + start + "_" + end + "_"
-                + org.replace("\\. ", "_");
-
-        Sequence seq = DNATools.createDNASequence(chrResidueString.substring(start - 1, end),
-                        seqName);
-
-        if (NEGATIVE_STRAND.equals(strand)) {
-            try {
-                SymbolList flippedSeq = DNATools.reverseComplement(seq);
-                seq = DNATools.createDNASequence(flippedSeq.seqString(), seqName);
-            } catch (IllegalAlphabetException e) {
-                LOG.error("Export failed, Invalid sequence", e);
-                return null;
-            }
+        ClobAccess residues = fastaWriter.getSegment(chr, start, end,
+                NEGATIVE_STRAND.equals(loc.getStrand()));
+        if (residues == null) {
+            return false;
         }
 
+        StringBuffer header = new StringBuffer();
         makeHeader(header, object, row, unionPathCollection, newPathCollection);
-        return seq;
+        String headerString = header.toString();
+        if (headerString.length() == 0) {
+            headerString = feature.getPrimaryIdentifier();
+        }
+        fastaWriter.write(headerString, residues);
+        return true;
     }
 
     /**
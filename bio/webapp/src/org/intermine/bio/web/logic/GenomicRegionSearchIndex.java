@@ -0,0 +1,447 @@
+package org.intermine.bio.web.logic;
+
+/*
+ * Copyright (C) 2002-2017 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.apache.commons.collections.keyvalue.MultiKey;
+import org.apache.log4j.Logger;
+import org.intermine.metadata.ConstraintOp;
+import org.intermine.model.bio.Chromosome;
+import org.intermine.model.bio.Location;
+import org.intermine.model.bio.Organism;
+import org.intermine.model.bio.SequenceFeature;
+import org.intermine.objectstore.ObjectStore;
+import org.intermine.objectstore.query.ConstraintSet;
+import org.intermine.objectstore.query.ContainsConstraint;
+import org.intermine.objectstore.query.Query;
+import org.intermine.objectstore.query.QueryClass;
+import org.intermine.objectstore.query.QueryField;
+import org.intermine.objectstore.query.QueryObjectReference;
+import org.intermine.objectstore.query.QueryValue;
+import org.intermine.objectstore.query.Results;
+import org.intermine.objectstore.query.ResultsRow;
+import org.intermine.objectstore.query.SimpleConstraint;
+import org.intermine.util.CacheMap;
+
+/**
+ * The chromosome locations of all the sequence features of an organism, held in memory so that
+ * genomic region search can find the features overlapping many regions without running a query
+ * for each of them.  The locations of each chromosome are kept in primitive arrays sorted by
+ * start, laid out as an implicit interval tree (every node records the largest end in its
+ * subtree) so an overlap search only visits the branches that can contain a hit.
+ *
+ * The index of an organism is loaded by one query the first time it is needed. Indexes are
+ * cached per ObjectStore and organism and held softly, so they are dropped again if the heap runs
+ * short, and clear() drops them all, for example after the production database has been changed.
+ *
+ * @author chenyian
+ */
+public final class GenomicRegionSearchIndex
+{
+    private static final Logger LOG = Logger.getLogger(GenomicRegionSearchIndex.class);
+
+    // (ObjectStore, organism) -> index
+    private static final Map<MultiKey, GenomicRegionSearchIndex> INDEXES = Collections
+        .synchronizedMap(new CacheMap<MultiKey, GenomicRegionSearchIndex>(
+                "GenomicRegionSearchIndex"));
+    // the indexes being loaded, so each is only loaded once while the others can still be used
+    private static final Map<MultiKey, FutureTask<GenomicRegionSearchIndex>> LOADING =
+        new HashMap<MultiKey, FutureTask<GenomicRegionSearchIndex>>();
+
+    private final Map<String, ChromosomeIntervals> chromosomes;
+
+    private GenomicRegionSearchIndex(Map<String, ChromosomeIntervals> chromosomes) {
+        this.chromosomes = chromosomes;
+    }
+
+    /**
+     * Get the index of an organism, loading it from the database if this is the first search
+     * for the organism.  Searches for other organisms aren't held up while it loads.
+     *
+     * @param os the ObjectStore
+     * @param orgName short name of the organism
+     * @param batchSize the query batch size to use
+     * @return the index
+     */
+    public static GenomicRegionSearchIndex getIndex(final ObjectStore os, final String orgName,
+            final int batchSize) {
+        final MultiKey key = new MultiKey(os, orgName);
+        GenomicRegionSearchIndex index = INDEXES.get(key);
+        if (index != null) {
+            return index;
+        }
+        FutureTask<GenomicRegionSearchIndex> task;
+        boolean loader = false;
+        synchronized (LOADING) {
+            // a loader puts the index in INDEXES before it leaves LOADING
+            index = INDEXES.get(key);
+            if (index != null) {
+                return index;
+            }
+            task = LOADING.get(key);
+            if (task == null) {
+                task = new FutureTask<GenomicRegionSearchIndex>(
+                        new Callable<GenomicRegionSearchIndex>() {
+                            @Override
+                            public GenomicRegionSearchIndex call() {
+                                GenomicRegionSearchIndex loaded = load(os, orgName, batchSize);
+                                INDEXES.put(key, loaded);
+                                return loaded;
+                            }
+                        });
+                LOADING.put(key, task);
+                loader = true;
+            }
+        }
+        if (loader) {
+            try {
+                task.run();
+            } finally {
+                synchronized (LOADING) {
+                    LOADING.remove(key);
+                }
+            }
+        }
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted waiting for the genomic region search index"
+                    + " of " + orgName, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new RuntimeException("Failed to load the genomic region search index of "
+                    + orgName, e.getCause());
+        }
+    }
+
+    /**
+     * Drop all the indexes, so that they are loaded again from the database when next used.
+     */
+    public static void clear() {
+        INDEXES.clear();
+    }
+
+    /**
+     * Find the locations that overlap a region.  The rows have the same columns as the queries
+     * created by GenomicRegionSearchUtil.createQueryList(), ordered by start: feature id,
+     * primaryIdentifier, symbol, class, chromosome, start, end and strand.
+     *
+     * @param chr primaryIdentifier of the chromosome
+     * @param start start of the region
+     * @param end end of the region
+     * @param featureTypes the classes of feature to return
+     * @param strand the strand of the locations to return, or null for both strands
+     * @return a list of rows, empty if nothing overlaps
+     */
+    public List<List<Object>> getOverlaps(String chr, int start, int end,
+            Set<Class<?>> featureTypes, String strand) {
+        ChromosomeIntervals intervals = chromosomes.get(chr);
+        if (intervals == null) {
+            return Collections.emptyList();
+        }
+        int[] hits = intervals.overlap(start, end);
+        List<List<Object>> rows = new ArrayList<List<Object>>();
+        for (int i : hits) {
+            if (!featureTypes.contains(intervals.classes[i])) {
+                continue;
+            }
+            if (strand != null && !strand.equals(intervals.strands[i])) {
+                continue;
+            }
+            List<Object> row = new ArrayList<Object>(8);
+            row.add(Integer.valueOf(intervals.featureIds[i]));
+            row.add(intervals.primaryIdentifiers[i]);
+            row.add(intervals.symbols[i]);
+            row.add(intervals.classes[i]);
+            row.add(chr);
+            row.add(Integer.valueOf(intervals.starts[i]));
+            row.add(Integer.valueOf(intervals.ends[i]));
+            row.add(intervals.strands[i]);
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private static GenomicRegionSearchIndex load(ObjectStore os, String orgName, int batchSize) {
+        long startTime = System.currentTimeMillis();
+
+        Query q = new Query();
+        QueryClass qcOrg = new QueryClass(Organism.class);
+        QueryClass qcChr = new QueryClass(Chromosome.class);
+        QueryClass qcFeature = new QueryClass(SequenceFeature.class);
+        QueryClass qcLoc = new QueryClass(Location.class);
+        q.addFrom(qcFeature);
+        q.addFrom(qcChr);
+        q.addFrom(qcOrg);
+        q.addFrom(qcLoc);
+
+        q.addToSelect(new QueryField(qcFeature, "id"));
+        q.addToSelect(new QueryField(qcFeature, "primaryIdentifier"));
+        q.addToSelect(new QueryField(qcFeature, "symbol"));
+        q.addToSelect(new QueryField(qcFeature, "class"));
+        q.addToSelect(new QueryField(qcChr, "primaryIdentifier"));
+        q.addToSelect(new QueryField(qcLoc, "start"));
+        q.addToSelect(new QueryField(qcLoc, "end"));
+        q.addToSelect(new QueryField(qcLoc, "strand"));
+
+        ConstraintSet constraints = new ConstraintSet(ConstraintOp.AND);
+        q.setConstraint(constraints);
+        constraints.addConstraint(new ContainsConstraint(
+                new QueryObjectReference(qcFeature, "organism"), ConstraintOp.CONTAINS, qcOrg));
+        constraints.addConstraint(new SimpleConstraint(new QueryField(qcOrg, "shortName"),
+                ConstraintOp.EQUALS, new QueryValue(orgName)));
+        constraints.addConstraint(new ContainsConstraint(
+                new QueryObjectReference(qcLoc, "feature"), ConstraintOp.CONTAINS, qcFeature));
+        constraints.addConstraint(new ContainsConstraint(
+                new QueryObjectReference(qcLoc, "locatedOn"), ConstraintOp.CONTAINS, qcChr));
+
+        Map<String, List<Interval>> byChromosome = new HashMap<String, List<Interval>>();
+        // share the strings that repeat for every location
+        Map<String, String> strands = new HashMap<String, String>();
+        int count = 0;
+        Results results = os.execute(q, batchSize, true, false, false);
+        for (Iterator<?> iter = results.iterator(); iter.hasNext();) {
+            ResultsRow<?> row = (ResultsRow<?>) iter.next();
+            Integer locStart = (Integer) row.get(5);
+            Integer locEnd = (Integer) row.get(6);
+            if (locStart == null || locEnd == null) {
+                continue;
+            }
+            String chr = (String) row.get(4);
+            List<Interval> intervals = byChromosome.get(chr);
+            if (intervals == null) {
+                intervals = new ArrayList<Interval>();
+                byChromosome.put(chr, intervals);
+            }
+            Interval interval = new Interval();
+            interval.featureId = ((Integer) row.get(0)).intValue();
+            interval.primaryIdentifier = (String) row.get(1);
+            interval.symbol = (String) row.get(2);
+            interval.cls = (Class<?>) row.get(3);
+            interval.start = locStart.intValue();
+            interval.end = locEnd.intValue();
+            String strand = (String) row.get(7);
+            if (strand != null) {
+                String shared = strands.get(strand);
+                if (shared == null) {
+                    strands.put(strand, strand);
+                    shared = strand;
+                }
+                interval.strand = shared;
+            }
+            intervals.add(interval);
+            count++;
+        }
+
+        Map<String, ChromosomeIntervals> chromosomes = new HashMap<String, ChromosomeIntervals>();
+        for (Map.Entry<String, List<Interval>> entry : byChromosome.entrySet()) {
+            chromosomes.put(entry.getKey(), new ChromosomeIntervals(entry.getValue()));
+        }
+        LOG.info("Loaded " + count + " locations on " + chromosomes.size()
+                + " chromosomes of " + orgName + " for genomic region search in "
+                + (System.currentTimeMillis() - startTime) + " ms");
+        return new GenomicRegionSearchIndex(chromosomes);
+    }
+
+    /**
+     * A location, only used while loading.
+     */
+    static class Interval
+    {
+        int featureId;
+        String primaryIdentifier;
+        String symbol;
+        Class<?> cls;
+        int start;
+        int end;
+        String strand;
+    }
+
+    /**
+     * The locations on one chromosome.
+     */
+    static class ChromosomeIntervals
+    {
+        // small subtrees are scanned rather than walked
+        private static final int SCAN_LEVEL = 3;
+
+        final int[] starts;
+        final int[] ends;
+        // largest end in the subtree of each node
+        final int[] maxEnds;
+        final int[] featureIds;
+        final String[] primaryIdentifiers;
+        final String[] symbols;
+        final Class<?>[] classes;
+        final String[] strands;
+        final int maxLevel;
+
+        /**
+         * @param intervals the locations on the chromosome
+         */
+        ChromosomeIntervals(List<Interval> intervals) {
+            Collections.sort(intervals, new Comparator<Interval>() {
+                @Override
+                public int compare(Interval a, Interval b) {
+                    if (a.start != b.start) {
+                        return a.start < b.start ? -1 : 1;
+                    }
+                    return a.featureId < b.featureId ? -1 : (a.featureId == b.featureId ? 0 : 1);
+                }
+            });
+            int n = intervals.size();
+            starts = new int[n];
+            ends = new int[n];
+            maxEnds = new int[n];
+            featureIds = new int[n];
+            primaryIdentifiers = new String[n];
+            symbols = new String[n];
+            classes = new Class<?>[n];
+            strands = new String[n];
+            for (int i = 0; i < n; i++) {
+                Interval interval = intervals.get(i);
+                starts[i] = interval.start;
+                ends[i] = interval.end;
+                featureIds[i] = interval.featureId;
+                primaryIdentifiers[i] = interval.primaryIdentifier;
+                symbols[i] = interval.symbol;
+                classes[i] = interval.cls;
+                strands[i] = interval.strand;
+            }
+            maxLevel = index();
+        }
+
+        /**
+         * Fill in maxEnds.  In the implicit tree the nodes at level k are the indexes with k
+         * trailing 1 bits, and the children of node i at level k are i - 2^(k-1) and
+         * i + 2^(k-1).  When n isn't a power of 2 the missing right children take the largest
+         * end of the last node.
+         *
+         * @return the level of the root
+         */
+        private int index() {
+            int n = starts.length;
+            if (n == 0) {
+                return -1;
+            }
+            int lastI = 0;
+            int last = 0;
+            for (int i = 0; i < n; i += 2) {
+                lastI = i;
+                last = ends[i];
+                maxEnds[i] = last;
+            }
+            for (int i = 1; i < n; i += 2) {
+                maxEnds[i] = ends[i];
+            }
+            int k;
+            for (k = 1; (1L << k) <= n; k++) {
+                int x = 1 << (k - 1);
+                long i0 = (x << 1) - 1;
+                long step = ((long) x) << 2;
+                for (long l = i0; l < n; l += step) {
+                    int i = (int) l;
+                    int left = maxEnds[i - x];
+                    int right = (l + x < n) ? maxEnds[i + x] : last;
+                    maxEnds[i] = Math.max(ends[i], Math.max(left, right));
+                }
+                lastI = ((lastI >> k & 1) != 0) ? lastI - x : lastI + x;
+                if (lastI < n && maxEnds[lastI] > last) {
+                    last = maxEnds[lastI];
+                }
+            }
+            return k - 1;
+        }
+
+        /**
+         * Find the locations that overlap a region, counting both ends as inside.
+         *
+         * @param start start of the region
+         * @param end end of the region
+         * @return indexes of the overlapping locations in ascending order
+         */
+        int[] overlap(int start, int end) {
+            int n = starts.length;
+            if (n == 0) {
+                return new int[0];
+            }
+            int[] hits = new int[16];
+            int hitCount = 0;
+            // each stack frame is node, level and whether the left child has been done
+            long[] stackNode = new long[64 * 2];
+            int[] stackLevel = new int[64 * 2];
+            boolean[] stackLeftDone = new boolean[64 * 2];
+            int t = 0;
+            stackNode[t] = (1L << maxLevel) - 1;
+            stackLevel[t] = maxLevel;
+            stackLeftDone[t++] = false;
+            while (t > 0) {
+                t--;
+                long x = stackNode[t];
+                int k = stackLevel[t];
+                boolean leftDone = stackLeftDone[t];
+                if (k <= SCAN_LEVEL) {
+                    long i0 = x >> k << k;
+                    long i1 = Math.min(i0 + (1L << (k + 1)) - 1, n);
+                    for (long l = i0; l < i1 && starts[(int) l] <= end; l++) {
+                        if (ends[(int) l] >= start) {
+                            if (hitCount == hits.length) {
+                                hits = Arrays.copyOf(hits, hitCount * 2);
+                            }
+                            hits[hitCount++] = (int) l;
+                        }
+                    }
+                } else if (!leftDone) {
+                    long y = x - (1L << (k - 1));
+                    stackNode[t] = x;
+                    stackLevel[t] = k;
+                    stackLeftDone[t++] = true;
+                    if (y >= n || maxEnds[(int) y] >= start) {
+                        stackNode[t] = y;
+                        stackLevel[t] = k - 1;
+                        stackLeftDone[t++] = false;
+                    }
+                } else if (x < n && starts[(int) x] <= end) {
+                    if (ends[(int) x] >= start) {
+                        if (hitCount == hits.length) {
+                            hits = Arrays.copyOf(hits, hitCount * 2);
+                        }
+                        hits[hitCount++] = (int) x;
+                    }
+                    stackNode[t] = x + (1L << (k - 1));
+                    stackLevel[t] = k - 1;
+                    stackLeftDone[t++] = false;
+                }
+            }
+            int[] result = Arrays.copyOf(hits, hitCount);
+            Arrays.sort(result);
+            return result;
+        }
+    }
+}
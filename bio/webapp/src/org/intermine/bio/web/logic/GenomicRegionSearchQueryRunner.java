@@ -60,6 +60,7 @@ public class GenomicRegionSearchQueryRunner implements Runnable
     private String spanUUIDString = null;
     private GenomicRegionSearchConstraint grsc = null;
     private Map<GenomicRegion, Query> queryMap = null;
+    private boolean useIndex = false;
     private static Map<String, Map<String, ChromosomeInfo>> chrInfoMap = null;
 
     /**
@@ -79,6 +80,16 @@ public class GenomicRegionSearchQueryRunner implements Runnable
         this.queryMap = queryMap;
     }
 
+    /**
+     * Answer the search from the in-memory GenomicRegionSearchIndex of the organism rather than
+     * running the query of each region.
+     *
+     * @param useIndex true to use the index
+     */
+    public void setUseIndex(boolean useIndex) {
+        this.useIndex = useIndex;
+    }
+
     /**
      * Main body of db search
      */
@@ -162,55 +173,89 @@ public class GenomicRegionSearchQueryRunner implements Runnable
                 ObjectStore os = SessionMethods.getInterMineAPI(
                         request.getSession()).getObjectStore();
 
-                for (Entry<GenomicRegion, Query> e : queryMap.entrySet()) {
-                    Results results = os.execute(e.getValue());
+                if (useIndex) {
+                    GenomicRegionSearchIndex index = GenomicRegionSearchIndex.getIndex(os,
+                            grsc.getOrgName(),
+                            GenomicRegionSearchService.DEFAULT_REGION_INIT_BATCH_SIZE);
+                    for (GenomicRegion span : queryMap.keySet()) {
+                        int start = span.getStart();
+                        int end = span.getEnd();
+                        if (grsc.getExtendedRegionSize() > 0) {
+                            start = span.getExtendedStart();
+                            end = span.getExtendedEnd();
+                        }
+                        String strand = null;
+                        if (grsc.getStrandSpecific()) {
+                            strand = span.getMinusStrand() ? "-1" : "1";
+                        }
+                        addSpanResults(span, index.getOverlaps(span.getChr(), start, end,
+                                grsc.getFeatureTypes(), strand), spanOverlapResultDisplayMap,
+                                spanOverlapResultStatMap);
+                    }
+                } else {
+                    for (Entry<GenomicRegion, Query> e : queryMap.entrySet()) {
+                        addSpanResults(e.getKey(), os.execute(e.getValue()),
+                                spanOverlapResultDisplayMap, spanOverlapResultStatMap);
+                    }
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Convert the rows found for a span to strings and count the feature classes.
+     *
+     * @param span the genomic region
+     * @param results the rows of the span query, or the same columns from the index
+     * @param spanOverlapResultDisplayMap map to add the rows to
+     * @param spanOverlapResultStatMap map to add the class counts to
+     */
+    private void addSpanResults(GenomicRegion span, List<?> results,
+            Map<GenomicRegion, List<List<String>>> spanOverlapResultDisplayMap,
+            Map<GenomicRegion, Map<String, Integer>> spanOverlapResultStatMap) {
+        List<List<String>> spanResults = new ArrayList<List<String>>();
 
-                    List<List<String>> spanResults = new ArrayList<List<String>>();
+        Map<String, Integer> spanStatMap = new HashMap<String, Integer>();
+        ValueComparator bvc =  new ValueComparator(spanStatMap);
+        TreeMap<String, Integer> sortedStatMap = new TreeMap<String, Integer>(bvc);
 
-                    Map<String, Integer> spanStatMap = new HashMap<String, Integer>();
-                    ValueComparator bvc =  new ValueComparator(spanStatMap);
-                    TreeMap<String, Integer> sortedStatMap = new TreeMap<String, Integer>(bvc);
+        if (results == null || results.isEmpty()) {
+            spanOverlapResultDisplayMap.put(span, null);
+        }
+        else {
+            for (Iterator<?> iter = results.iterator(); iter.hasNext();) {
+                List<?> row = (List<?>) iter.next();
 
-                    if (results == null || results.isEmpty()) {
-                        spanOverlapResultDisplayMap.put(e.getKey(), null);
-                    }
-                    else {
-                        for (Iterator<?> iter = results.iterator(); iter.hasNext();) {
-                            ResultsRow<?> row = (ResultsRow<?>) iter.next();
-
-                            List<String> resultRow = new ArrayList<String>();
-
-                            for (Object o : row) {
-                                String item = new String();
-
-                                // NULL for symbol or PID
-                                o = o == null ? new String() : o;
-
-                                if (o instanceof Class) {
-                                    item = ((Class) o).getSimpleName();
-                                    // add class stat to spanStatMap
-                                    if (spanStatMap.containsKey(item)) {
-                                        spanStatMap.put(item, spanStatMap.get(item) + 1);
-                                    } else {
-                                        spanStatMap.put(item, 1);
-                                    }
-                                } else {
-                                    item = o.toString();
-                                }
-
-                                resultRow.add(item);
-                            }
-                            spanResults.add(resultRow);
-                        }
-                        spanOverlapResultDisplayMap.put(e.getKey(), spanResults);
+                List<String> resultRow = new ArrayList<String>();
 
-                        sortedStatMap.putAll(spanStatMap);
-                        spanOverlapResultStatMap.put(e.getKey(), sortedStatMap);
+                for (Object o : row) {
+                    String item = new String();
+
+                    // NULL for symbol or PID
+                    o = o == null ? new String() : o;
+
+                    if (o instanceof Class) {
+                        item = ((Class) o).getSimpleName();
+                        // add class stat to spanStatMap
+                        if (spanStatMap.containsKey(item)) {
+                            spanStatMap.put(item, spanStatMap.get(item) + 1);
+                        } else {
+                            spanStatMap.put(item, 1);
+                        }
+                    } else {
+                        item = o.toString();
                     }
+
+                    resultRow.add(item);
                 }
-            } catch (Exception e) {
-                e.printStackTrace();
+                spanResults.add(resultRow);
             }
+            spanOverlapResultDisplayMap.put(span, spanResults);
+
+            sortedStatMap.putAll(spanStatMap);
+            spanOverlapResultStatMap.put(span, sortedStatMap);
         }
     }
 
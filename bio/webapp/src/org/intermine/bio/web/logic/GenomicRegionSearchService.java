@@ -1787,6 +1787,15 @@ public class GenomicRegionSearchService
         return false;
     }
 
+    /**
+     * Test if searches should be answered from the in-memory GenomicRegionSearchIndex
+     * @return boolean
+     */
+    public boolean isInMemoryIndexEnabled() {
+        String inMemoryIndex = webProperties.getProperty("genomicRegionSearch.inMemoryIndex");
+        return inMemoryIndex != null && "true".equals(inMemoryIndex.trim());
+    }
+
     /**
      * Get jbrowse track information from web.properties
      * @return a map: key - feature type, value - track name
@@ -210,6 +210,7 @@ public class GenomicRegionSearchAction extends InterMineAction
 
         GenomicRegionSearchQueryRunner grsqRunner = new GenomicRegionSearchQueryRunner(
                 request, spanUUIDString, grsService.getConstraint(), queryMap);
+        grsqRunner.setUseIndex(grsService.isInMemoryIndexEnabled());
 
         grsqRunner.search();
 
@@ -137,6 +137,7 @@ public abstract class AbstractRegionExportService extends GenomicRegionSearchSer
             PathQueryExecutor executor = this.im.getPathQueryExecutor(profile);
             iter = executor.execute(pq, 0, WebServiceRequestParser.DEFAULT_LIMIT);
             iter.goFaster();
+            iter.prefetch();
             exporter.export(iter);
         } catch (ObjectStoreQueryDurationException e) {
             throw new ServiceException("Query would take too long to run.", e);
@@ -192,6 +192,7 @@ public abstract class BioQueryService extends AbstractQueryService
         try {
             iter = executor.execute(pathQuery, 0, WebServiceRequestParser.DEFAULT_LIMIT);
             iter.goFaster();
+            iter.prefetch();
             exporter.export(iter);
         } finally {
             if (iter != null) {
@@ -99,20 +99,14 @@ public class Engine extends CommandRunner
     @Override
     public void stats(Command command) {
         Map<String, Object> stats;
-        Query q = getStatsQuery(command);
+        checkFeatureType(command);
         // Stats can be expensive to calculate, so they are independently cached.
         synchronized (STATS_CACHE) {
             stats = STATS_CACHE.get(command);
             if (stats == null) {
-                stats = new HashMap<String, Object>();
-                try {
-                    List<?> results = getAPI().getObjectStore().execute(q, 0, 1, false, false,
-                            ObjectStore.SEQUENCE_IGNORE);
-                    List<?> row = (List<?>) results.get(0);
-                    stats.put("featureDensity", row.get(0));
-                    stats.put("featureCount",   row.get(1));
-                } catch (ObjectStoreException e) {
-                    throw new RuntimeException("Error getting statistics.", e);
+                stats = getPrecomputedStats(command);
+                if (stats == null) {
+                    stats = getStatsFromQuery(command);
                 }
                 LOG.debug("caching " + stats);
                 STATS_CACHE.put(command, stats);
@@ -121,6 +115,21 @@ public class Engine extends CommandRunner
         sendMap(stats);
     }
 
+    private Map<String, Object> getStatsFromQuery(Command command) {
+        Map<String, Object> stats = new HashMap<String, Object>();
+        Query q = getStatsQuery(command);
+        try {
+            List<?> results = getAPI().getObjectStore().execute(q, 0, 1, false, false,
+                    ObjectStore.SEQUENCE_IGNORE);
+            List<?> row = (List<?>) results.get(0);
+            stats.put("featureDensity", row.get(0));
+            stats.put("featureCount",   row.get(1));
+        } catch (ObjectStoreException e) {
+            throw new RuntimeException("Error getting statistics.", e);
+        }
+        return stats;
+    }
+
     private void sendMap(Map<String, Object> map) {
         Iterator<Entry<String, Object>> it = map.entrySet().iterator();
         while (it.hasNext()) {
@@ -198,24 +207,30 @@ public class Engine extends CommandRunner
     @Override
     public void densities(Command command) {
         final int nSlices = getNumberOfSlices(command);
-        List<PathQuery> segmentQueries = getSliceQueries(command, nSlices);
-        List<Future<Integer>> pending = countInParallel(segmentQueries);
-        List<Integer> results = new ArrayList<Integer>();
+        // Use the counts of the feature_density table if it has a fine enough level, and only
+        // count the features of each slice in the database if not.
+        List<Integer> results = getPrecomputedCounts(command, nSlices);
+        if (results == null) {
+            List<PathQuery> segmentQueries = getSliceQueries(command, nSlices);
+            List<Future<Integer>> pending = countInParallel(segmentQueries);
+            results = new ArrayList<Integer>();
+            for (Future<Integer> future: pending) {
+                try {
+                    results.add(future.get());
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                } catch (ExecutionException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }
 
         int max = 0, sum = 0;
-        for (Future<Integer> future: pending) {
-            try {
-                Integer r = future.get();
-                if (r != null && r > max) {
-                    max = r;
-                }
-                sum += r;
-                results.add(r);
-            } catch (InterruptedException e) {
-                throw new RuntimeException(e);
-            } catch (ExecutionException e) {
-                throw new RuntimeException(e);
+        for (Integer r: results) {
+            if (r != null && r > max) {
+                max = r;
             }
+            sum += r;
         }
         double mean = Double.valueOf(sum) / results.size();
 
@@ -259,6 +274,71 @@ public class Engine extends CommandRunner
         return width / numBPB;
     }
 
+    // The bins of a densities command, from the feature_density table, or null if the table
+    // cannot be used. The table level is chosen to have at least 10 bins to a slice.
+    private List<Integer> getPrecomputedCounts(Command command, int nSlices) {
+        Segment segment = command.getSegment();
+        if (segment == Segment.NEGATIVE_SEGMENT || segment.getSection() == null
+                || segment.getWidth() == null || nSlices < 1) {
+            return null;
+        }
+        FeatureDensities featureDensities =
+                FeatureDensities.getInstance(getAPI().getObjectStore());
+        if (featureDensities == null) {
+            return null;
+        }
+        Integer resolution = featureDensities.getResolution(segment.getWidth() / nSlices / 10);
+        if (resolution == null) {
+            return null;
+        }
+        FeatureDensities.Densities densities = featureDensities.getDensities(
+                command.getDomain(), segment.getSection(), command.getType("SequenceFeature"),
+                resolution);
+        if (densities == null) {
+            return null;
+        }
+        List<Integer> counts = new ArrayList<Integer>();
+        for (Segment slice: sliceUp(nSlices, segment)) {
+            counts.add(densities.count(slice.getStart(), slice.getEnd()));
+        }
+        return counts;
+    }
+
+    // The statistics of a chromosome or a range of one, from the finest level of the
+    // feature_density table, or null if the table cannot be used.
+    private Map<String, Object> getPrecomputedStats(Command command) {
+        Segment seg = command.getSegment();
+        if (seg == Segment.GLOBAL_SEGMENT || seg == Segment.NEGATIVE_SEGMENT
+                || seg.getSection() == null
+                || (seg.getWidth() == null && (seg.getStart() != null || seg.getEnd() != null))) {
+            return null;
+        }
+        FeatureDensities featureDensities =
+                FeatureDensities.getInstance(getAPI().getObjectStore());
+        if (featureDensities == null || featureDensities.getFinestResolution() == null) {
+            return null;
+        }
+        FeatureDensities.Densities densities = featureDensities.getDensities(
+                command.getDomain(), seg.getSection(), command.getType("SequenceFeature"),
+                featureDensities.getFinestResolution());
+        if (densities == null) {
+            return null;
+        }
+        int count;
+        int length;
+        if (seg.getWidth() == null) {
+            count = densities.getFeatureCount();
+            length = densities.getLength();
+        } else {
+            count = densities.count(seg.getStart(), seg.getEnd());
+            length = seg.getWidth();
+        }
+        Map<String, Object> stats = new HashMap<String, Object>();
+        stats.put("featureDensity", (length > 0) ? Double.valueOf(count) / length : 0.0);
+        stats.put("featureCount", Integer.valueOf(count));
+        return stats;
+    }
+
     private List<PathQuery> getSliceQueries(Command command, final int nSlices) {
         if (command.getSegment() == Segment.NEGATIVE_SEGMENT) {
             return Collections.emptyList();
@@ -316,16 +396,7 @@ public class Engine extends CommandRunner
     // A Query that produces a single row: (featureDensity :: double, featureCount :: integer)
     private Query getStatsQuery(Command command) {
 
-        String featureType = command.getType("SequenceFeature");
-        ClassDescriptor seqf = model.getClassDescriptorByName("SequenceFeature");
-        ClassDescriptor fcd = model.getClassDescriptorByName(featureType);
-        // Check type conditions.
-        if (fcd == null) {
-            throw new RuntimeException(featureType + " is not in the model.");
-        }
-        if (fcd != seqf && !fcd.getAllSuperDescriptors().contains(seqf)) {
-            throw new RuntimeException(featureType + " is not a sequence feature");
-        }
+        checkFeatureType(command);
 
         QueryClass organisms = new QueryClass(model.getClassDescriptorByName("Organism").getType());
 
@@ -384,6 +455,19 @@ public class Engine extends CommandRunner
         return q;
     }
 
+    private void checkFeatureType(Command command) {
+        String featureType = command.getType("SequenceFeature");
+        ClassDescriptor seqf = model.getClassDescriptorByName("SequenceFeature");
+        ClassDescriptor fcd = model.getClassDescriptorByName(featureType);
+        // Check type conditions.
+        if (fcd == null) {
+            throw new RuntimeException(featureType + " is not in the model.");
+        }
+        if (fcd != seqf && !fcd.getAllSuperDescriptors().contains(seqf)) {
+            throw new RuntimeException(featureType + " is not a sequence feature");
+        }
+    }
+
     private static PathConstraintRange makeRangeConstraint(String type, Segment seg) {
         return new PathConstraintRange(String.format("%s.chromosomeLocation", type),
                 ConstraintOp.OVERLAPS, Collections.singleton(seg.toRangeString()));
@@ -0,0 +1,268 @@
+package org.intermine.webservice.server.jbrowse.genomic;
+
+/*
+ * Copyright (C) 2002-2017 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.apache.commons.collections.keyvalue.MultiKey;
+import org.apache.log4j.Logger;
+import org.intermine.bio.util.FeatureDensityTable;
+import org.intermine.metadata.ClassDescriptor;
+import org.intermine.metadata.Model;
+import org.intermine.objectstore.ObjectStore;
+import org.intermine.objectstore.intermine.ObjectStoreInterMineImpl;
+import org.intermine.sql.Database;
+import org.intermine.sql.DatabaseUtil;
+import org.intermine.util.CacheMap;
+
+/**
+ * Reads the binned feature counts written to the feature_density table by the
+ * create-feature-density-table postprocess, so that densities and statistics of a chromosome can
+ * be calculated without counting features in the database.
+ *
+ * @author chenyian
+ */
+public final class FeatureDensities
+{
+    private static final Logger LOG = Logger.getLogger(FeatureDensities.class);
+
+    private static FeatureDensities instance = null;
+    // true once the database has been looked at, so a missing table is only looked for once
+    private static boolean checked = false;
+
+    private final Database db;
+    private final Model model;
+    private final SortedSet<Integer> resolutions;
+    // (taxonId, chromosome, type, resolution) -> the densities of the type
+    private final Map<MultiKey, Densities> cache = Collections.synchronizedMap(
+            new CacheMap<MultiKey, Densities>("jbrowse.genomic.FeatureDensities"));
+
+    private FeatureDensities(Database db, Model model, SortedSet<Integer> resolutions) {
+        this.db = db;
+        this.model = model;
+        this.resolutions = resolutions;
+    }
+
+    /**
+     * Return the densities of the ObjectStore, or null if the feature_density table has not been
+     * created. Whether the table exists is only checked once, the table isn't expected to appear
+     * while the webapp is running.
+     *
+     * @param os the ObjectStore
+     * @return a FeatureDensities, or null
+     */
+    public static synchronized FeatureDensities getInstance(ObjectStore os) {
+        if (!checked && os instanceof ObjectStoreInterMineImpl) {
+            Database db = ((ObjectStoreInterMineImpl) os).getDatabase();
+            SortedSet<Integer> resolutions = new TreeSet<Integer>();
+            Connection con = null;
+            try {
+                con = db.getConnection();
+                if (!DatabaseUtil.tableExists(con, FeatureDensityTable.TABLE_NAME)) {
+                    LOG.info(FeatureDensityTable.TABLE_NAME + " table not found, feature densities"
+                            + " will be counted in the database");
+                    checked = true;
+                    return null;
+                }
+                Statement statement = con.createStatement();
+                ResultSet res = statement.executeQuery("SELECT DISTINCT resolution FROM "
+                        + FeatureDensityTable.TABLE_NAME);
+                while (res.next()) {
+                    resolutions.add(Integer.valueOf(res.getInt(1)));
+                }
+                statement.close();
+            } catch (SQLException e) {
+                LOG.warn("Could not read " + FeatureDensityTable.TABLE_NAME, e);
+                return null;
+            } finally {
+                closeConnection(con);
+            }
+            instance = new FeatureDensities(db, os.getModel(), resolutions);
+            checked = true;
+        }
+        return instance;
+    }
+
+    /**
+     * Return the coarsest resolution with bins no larger than maxResolution.
+     *
+     * @param maxResolution the largest acceptable bin size
+     * @return a resolution, or null if all the levels are coarser
+     */
+    public Integer getResolution(int maxResolution) {
+        SortedSet<Integer> fineEnough = resolutions.headSet(Integer.valueOf(maxResolution + 1));
+        if (fineEnough.isEmpty()) {
+            return null;
+        }
+        return fineEnough.last();
+    }
+
+    /**
+     * Return the finest resolution in the table.
+     *
+     * @return a resolution, or null if the table is empty
+     */
+    public Integer getFinestResolution() {
+        return resolutions.isEmpty() ? null : resolutions.first();
+    }
+
+    /**
+     * Get the densities of the features of a type, and its subclasses, on a chromosome.
+     *
+     * @param taxonId the taxon id of the organism
+     * @param chromosome primaryIdentifier of the chromosome
+     * @param type name of a SequenceFeature class
+     * @param resolution the resolution to use
+     * @return the densities, or null if the table has no counts for the chromosome
+     */
+    public Densities getDensities(String taxonId, String chromosome, String type,
+            int resolution) {
+        ClassDescriptor typeCd = model.getClassDescriptorByName(type);
+        if (typeCd == null) {
+            return null;
+        }
+        MultiKey key = new MultiKey(taxonId, chromosome, typeCd.getName(),
+                Integer.valueOf(resolution));
+        Densities densities = cache.get(key);
+        if (densities == null) {
+            try {
+                densities = readDensities(Integer.parseInt(taxonId), chromosome, typeCd,
+                        resolution);
+            } catch (NumberFormatException e) {
+                return null;
+            } catch (SQLException e) {
+                throw new RuntimeException("Error reading " + FeatureDensityTable.TABLE_NAME, e);
+            } catch (IOException e) {
+                throw new RuntimeException("Error reading " + FeatureDensityTable.TABLE_NAME, e);
+            }
+            if (densities == null) {
+                return null;
+            }
+            cache.put(key, densities);
+        }
+        return densities;
+    }
+
+    private Densities readDensities(int taxonId, String chromosome, ClassDescriptor typeCd,
+            int resolution) throws SQLException, IOException {
+        Connection con = db.getConnection();
+        try {
+            PreparedStatement statement = con.prepareStatement("SELECT featureclass,"
+                    + " chromosomelength, starts, ends FROM " + FeatureDensityTable.TABLE_NAME
+                    + " WHERE taxonid = ? AND chromosome = ? AND resolution = ?");
+            statement.setInt(1, taxonId);
+            statement.setString(2, chromosome);
+            statement.setInt(3, resolution);
+            ResultSet res = statement.executeQuery();
+            int[] starts = null;
+            int[] ends = null;
+            int length = 0;
+            boolean found = false;
+            while (res.next()) {
+                found = true;
+                length = res.getInt(2);
+                ClassDescriptor cd = model.getClassDescriptorByName(res.getString(1));
+                if (cd == null || (cd != typeCd && !cd.getAllSuperDescriptors().contains(typeCd))) {
+                    continue;
+                }
+                starts = add(starts, FeatureDensityTable.decode(res.getBytes(3)));
+                ends = add(ends, FeatureDensityTable.decode(res.getBytes(4)));
+            }
+            statement.close();
+            if (!found) {
+                return null;
+            }
+            int binCount = FeatureDensityTable.getBinCount(length, resolution);
+            if (starts == null) {
+                starts = new int[binCount];
+                ends = new int[binCount];
+            }
+            return new Densities(resolution, length, FeatureDensityTable.cumulative(starts),
+                    FeatureDensityTable.cumulative(ends));
+        } finally {
+            closeConnection(con);
+        }
+    }
+
+    private static int[] add(int[] total, int[] counts) {
+        if (total == null) {
+            return counts;
+        }
+        for (int i = 0; i < counts.length && i < total.length; i++) {
+            total[i] += counts[i];
+        }
+        return total;
+    }
+
+    private static void closeConnection(Connection con) {
+        if (con != null) {
+            try {
+                con.close();
+            } catch (SQLException e) {
+                LOG.warn("Could not close connection", e);
+            }
+        }
+    }
+
+    /**
+     * The running totals of the features of a type starting and ending in each bin of a
+     * chromosome.
+     */
+    public static final class Densities
+    {
+        private final int resolution;
+        private final int length;
+        private final int[] startTotals;
+        private final int[] endTotals;
+
+        Densities(int resolution, int length, int[] startTotals, int[] endTotals) {
+            this.resolution = resolution;
+            this.length = length;
+            this.startTotals = startTotals;
+            this.endTotals = endTotals;
+        }
+
+        /**
+         * @return the length of the chromosome
+         */
+        public int getLength() {
+            return length;
+        }
+
+        /**
+         * @return the number of features on the chromosome
+         */
+        public int getFeatureCount() {
+            return startTotals[startTotals.length - 1];
+        }
+
+        /**
+         * Count the features overlapping a range, to the nearest bin.
+         *
+         * @param start the interbase start of the range
+         * @param end the interbase end of the range
+         * @return the number of features
+         */
+        public int count(int start, int end) {
+            return FeatureDensityTable.countOverlapping(startTotals, endTotals, resolution, start,
+                    end);
+        }
+    }
+}
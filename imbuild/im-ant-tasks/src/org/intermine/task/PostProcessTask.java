@@ -10,10 +10,19 @@ package org.intermine.task;
  *
  */
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Properties;
+import java.util.Set;
 
 import org.apache.tools.ant.BuildException;
 import org.apache.tools.ant.Task;
@@ -46,6 +55,19 @@ public class PostProcessTask extends Task
      */
     public static final String POSTPROCESSOR_CLASS = "postprocessor.class";
 
+    /**
+     * The property that sets how many post processes may run at once. If it is more than one,
+     * post processes that don't use the same classes overlap.
+     */
+    public static final String THREADS = "postprocess.threads";
+
+    /**
+     * The property that names a file recording finished post processes, including do-sources, so
+     * that a failed run with more than one thread can be resumed. The file is deleted when every
+     * post process has finished.
+     */
+    public static final String CHECKPOINT = "postprocess.checkpoint";
+
     private Reference classPathRef;
     private File projectXml;
     private Project project;
@@ -104,13 +126,39 @@ public class PostProcessTask extends Task
 
         // Default - do it all
         if ("".equals(action)) {
-            for (String name: project.getPostProcesses().keySet()) {
-                System.out.print(" executing post process: " + name + "\n");
-
-                if (DO_SOURCES.equals(name)) {
-                    doAllSourcePostProcessing();
-                } else {
-                    doCorePostProcess(name);
+            if (getThreads() > 1) {
+                // hand each run of core post processes to the scheduler, which overlaps those
+                // that don't touch the same classes
+                File checkpoint = getCheckpointFile();
+                List<String> names = new ArrayList<String>();
+                for (String name: project.getPostProcesses().keySet()) {
+                    if (DO_SOURCES.equals(name)) {
+                        doCorePostProcesses(names, checkpoint);
+                        names.clear();
+                        if (readCheckpoint(checkpoint).contains(DO_SOURCES)) {
+                            System.err.print("Skipping " + DO_SOURCES + ", already done in "
+                                    + checkpoint + "\n");
+                        } else {
+                            doAllSourcePostProcessing();
+                            writeCheckpoint(checkpoint, DO_SOURCES);
+                        }
+                    } else {
+                        names.add(name);
+                    }
+                }
+                doCorePostProcesses(names, checkpoint);
+                if (checkpoint != null && checkpoint.exists() && !checkpoint.delete()) {
+                    System.err.print("Failed to delete checkpoint file " + checkpoint + "\n");
+                }
+            } else {
+                for (String name: project.getPostProcesses().keySet()) {
+                    System.out.print(" executing post process: " + name + "\n");
+
+                    if (DO_SOURCES.equals(name)) {
+                        doAllSourcePostProcessing();
+                    } else {
+                        doCorePostProcess(name);
+                    }
                 }
             }
 
@@ -151,6 +199,112 @@ public class PostProcessTask extends Task
         }
     }
 
+    private void doCorePostProcesses(List<String> postProcessNames, File checkpoint) {
+        if (postProcessNames.isEmpty()) {
+            return;
+        }
+        System.err.print("Performing postprocesses: " + postProcessNames + " with "
+                + getThreads() + " threads\n");
+
+        try {
+            Task pp = newPostProcessTask();
+            StringBuilder operations = new StringBuilder();
+            for (String postProcessName : postProcessNames) {
+                PostProcess p = project.getPostProcesses().get(postProcessName);
+                for (UserProperty up: p.getUserProperties()) {
+                    if (up.isLocation()) {
+                        pp.getProject().setUserProperty(up.getName(), up.getLocation());
+                    } else {
+                        pp.getProject().setUserProperty(up.getName(), up.getValue());
+                    }
+                }
+                operations.append(postProcessName).append(' ');
+            }
+            setProperty(pp, "operations", operations.toString().trim());
+            if (checkpoint != null) {
+                // the file is shared by every run of core post processes and do-sources, so only
+                // this task deletes it
+                setProperty(pp, "checkpointFile", checkpoint);
+                pp.getClass().getMethod("setKeepCheckpoint", new Class[] {Boolean.TYPE})
+                    .invoke(pp, new Object[] {Boolean.TRUE});
+            }
+            pp.getClass().getMethod("setThreads", new Class[] {Integer.TYPE})
+                .invoke(pp, new Object[] {Integer.valueOf(getThreads())});
+
+            pp.getClass().getMethod("execute", new Class[0]).invoke(pp, new Object[0]);
+        } catch (Exception err) {
+            throw new BuildException("error running PostProcessTask (actions: "
+                    + postProcessNames + ")", err);
+        }
+    }
+
+    /**
+     * The number of post processes to run at once, from the postprocess.threads property of the
+     * project.xml or the build.
+     */
+    private int getThreads() {
+        String threads = getProjectProperty(THREADS);
+        if (threads == null) {
+            return 1;
+        }
+        try {
+            return Integer.parseInt(threads.trim());
+        } catch (NumberFormatException e) {
+            throw new BuildException(THREADS + " must be a number, was: " + threads);
+        }
+    }
+
+    private File getCheckpointFile() {
+        String checkpoint = getProjectProperty(CHECKPOINT);
+        return (checkpoint == null) ? null : getProject().resolveFile(checkpoint);
+    }
+
+    private Set<String> readCheckpoint(File checkpoint) {
+        Set<String> finished = new HashSet<String>();
+        if (checkpoint == null || !checkpoint.exists()) {
+            return finished;
+        }
+        try {
+            BufferedReader reader = new BufferedReader(new FileReader(checkpoint));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    finished.add(line.trim());
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            throw new BuildException("Failed to read checkpoint file " + checkpoint, e);
+        }
+        return finished;
+    }
+
+    private void writeCheckpoint(File checkpoint, String name) {
+        if (checkpoint == null) {
+            return;
+        }
+        try {
+            Writer writer = new FileWriter(checkpoint, true);
+            try {
+                writer.write(name + "\n");
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            throw new BuildException("Failed to write checkpoint file " + checkpoint, e);
+        }
+    }
+
+    private String getProjectProperty(String name) {
+        for (UserProperty up : project.getProperties()) {
+            if (name.equals(up.getName())) {
+                return up.isLocation() ? up.getLocation() : up.getValue();
+            }
+        }
+        return getProject().getProperty(name);
+    }
+
     private void doAllSourcePostProcessing() {
         for (String thisSource : project.getSources().keySet()) {
             doSourcePostProcess(thisSource);
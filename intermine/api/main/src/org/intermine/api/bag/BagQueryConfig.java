@@ -28,6 +28,8 @@ public class BagQueryConfig
     private final Map<String, List<BagQuery>> preDefaultBagQueries;
     private Map<String, Set<AdditionalConverter>> additionalConverters;
     private boolean matchOnFirst = true;
+    private int chunkSize = 0;
+    private int chunkThreads = 1;
 
     /**
      * Create a new BagQueryConfig object.
@@ -152,4 +154,37 @@ public class BagQueryConfig
     public boolean getMatchOnFirst() {
         return matchOnFirst;
     }
+
+    /**
+     * Set the largest number of identifiers to look up in one query. Larger uploads are split
+     * into chunks which can run in parallel, see setChunkThreads().
+     * @param chunkSize the number of identifiers, or 0 to look them all up in one query
+     */
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Get the largest number of identifiers to look up in one query.
+     * @return the number of identifiers, or 0 if they are all looked up in one query
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Set the number of chunks of identifiers of one upload to look up at the same time.
+     * @param chunkThreads the number of threads, 1 to run the chunks one after another
+     */
+    public void setChunkThreads(int chunkThreads) {
+        this.chunkThreads = chunkThreads;
+    }
+
+    /**
+     * Get the number of chunks of identifiers of one upload to look up at the same time.
+     * @return the number of threads
+     */
+    public int getChunkThreads() {
+        return chunkThreads;
+    }
 }
@@ -81,6 +81,21 @@ public class BagQueryHandler extends DefaultHandler
     @Override
     public void startElement(String uri, String localName, String qName, Attributes attrs)
         throws SAXException {
+        if ("bag-queries".equals(qName)) {
+            String chunkSizeStr = attrs.getValue("chunkSize");
+            String chunkThreadsStr = attrs.getValue("chunkThreads");
+            try {
+                if (StringUtils.isNotEmpty(chunkSizeStr)) {
+                    bagQueryConfig.setChunkSize(Integer.parseInt(chunkSizeStr));
+                }
+                if (StringUtils.isNotEmpty(chunkThreadsStr)) {
+                    bagQueryConfig.setChunkThreads(Integer.parseInt(chunkThreadsStr));
+                }
+            } catch (NumberFormatException e) {
+                throw new SAXException("chunkSize and chunkThreads must be integers: "
+                        + chunkSizeStr + ", " + chunkThreadsStr);
+            }
+        }
         if ("bag-type".equals(qName)) {
             type = attrs.getValue("type");
             if (!model.hasClassDescriptor(pkg + "." + type)) {
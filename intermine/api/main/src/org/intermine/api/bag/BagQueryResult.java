@@ -82,6 +82,8 @@ public class BagQueryResult
 
     private final Set<String> unresolved = new LinkedHashSet<String>();
 
+    private final Map<String, Long> timings = new LinkedHashMap<String, Long>();
+
     /**
      * Get any results that require some user input before adding to the bag.
      * [issue type -&gt; [query -&gt; [input string -&gt; List of InterMineObjects]]] or for issue
@@ -336,4 +338,23 @@ public class BagQueryResult
     public void addUnresolved(Collection<String> unresolvedIdentifiers) {
         unresolved.addAll(unresolvedIdentifiers);
     }
+
+    /**
+     * Add to the time taken by a phase of resolving the input, such as running the queries for
+     * exact matches or fetching the objects found.
+     * @param phase the name of the phase
+     * @param millis the time taken in milliseconds
+     */
+    public void addTiming(String phase, long millis) {
+        Long total = timings.get(phase);
+        timings.put(phase, Long.valueOf((total == null ? 0 : total.longValue()) + millis));
+    }
+
+    /**
+     * Get the time taken by each phase of resolving the input, in the order they first ran.
+     * @return a map from phase name to milliseconds
+     */
+    public Map<String, Long> getTimings() {
+        return Collections.unmodifiableMap(timings);
+    }
 }
@@ -18,9 +18,17 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.regex.Pattern;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang.StringUtils;
+import org.apache.log4j.Logger;
 import org.intermine.InterMineException;
 import org.intermine.api.template.ApiTemplate;
 import org.intermine.api.template.TemplateManager;
@@ -44,11 +52,18 @@ import org.intermine.util.CollectionUtil;
  */
 public class BagQueryRunner
 {
+    private static final Logger LOG = Logger.getLogger(BagQueryRunner.class);
+    private static final String EXACT_PHASE = "exact";
+    private static final String WILDCARD_PHASE = "wildcards";
+    private static final String RESULTS_PHASE = "results";
+    private static final long CHUNK_THREAD_KEEP_ALIVE = 60;
+
     private ObjectStore os;
     private Model model;
     private Map<String, List<FieldDescriptor>> classKeys;
     private BagQueryConfig bagQueryConfig;
     private TemplateManager templateManager;
+    private ExecutorService chunkPool = null;
 
     /**
      * Construct with configured bag queries and a map of type -&gt; key fields.
@@ -132,10 +147,10 @@ public class BagQueryRunner
             boolean doWildcards, boolean caseSensitive, boolean ignoreConfig)
         throws ClassNotFoundException, InterMineException {
 
+        long startTime = System.currentTimeMillis();
         Map<String, String> lowerCaseInput = new HashMap<String, String>();
         List<String> cleanInput = new ArrayList<String>();
         List<String> wildcardInput = new ArrayList<String>();
-        Map<String, Pattern> patterns = new HashMap<String, Pattern>();
 
         for (String inputString : input) {
             if (StringUtils.isNotEmpty(inputString)) {
@@ -148,13 +163,11 @@ public class BagQueryRunner
                 // wildcard + a string
                 } else {
                     wildcardInput.add(inputString);
-                    String patternString = inputString.toLowerCase().replaceAll("\\*", "\\.\\*");
-                    patternString = patternString.replaceAll("\\(", "\\.\\*");
-                    patternString = patternString.replaceAll("\\)", "\\.\\*");
-                    patterns.put(inputString, Pattern.compile(patternString));
                 }
             }
         }
+        Set<String> cleanInputSet = new HashSet<String>(cleanInput);
+        WildcardMatcher wildcardMatcher = new WildcardMatcher(wildcardInput);
 
         // TODO tidy up using type String and Class
 
@@ -184,29 +197,31 @@ public class BagQueryRunner
             // run the next query on identifiers not yet resolved
             // OR all identifiers if matchOnFirst = FALSE
             if (!unresolved.isEmpty() || !matchOnFirst) {
+                long phaseStart = System.currentTimeMillis();
                 Map<String, Set<Integer>> resMap = new HashMap<String, Set<Integer>>();
                 try {
                     Set<String> toProcess = (matchOnFirst) ? unresolved : unresolvedOriginal;
-                    Query q = bq.getQuery(toProcess, extraFieldValue);
-                    Results res = os.execute(q, 10000, true, true, false);
-                    for (Object rowObj : res) {
-                        ResultsRow<?> row = (ResultsRow<?>) rowObj;
-                        Integer id = (Integer) row.get(0);
-                        for (int i = 1; i < row.size(); i++) {
-                            final Object fieldObject = row.get(i);
-                            if (fieldObject != null) {
-                                String field = String.valueOf(fieldObject);
-                                String lowerField = field.toLowerCase();
-                                if (caseSensitive) {
-                                    if (cleanInput.contains(field)) {
-                                        processMatch(resMap, unresolved, id, field);
+                    for (Iterable<?> res : executeInChunks(bq, toProcess, extraFieldValue)) {
+                        for (Object rowObj : res) {
+                            ResultsRow<?> row = (ResultsRow<?>) rowObj;
+                            Integer id = (Integer) row.get(0);
+                            for (int i = 1; i < row.size(); i++) {
+                                final Object fieldObject = row.get(i);
+                                if (fieldObject != null) {
+                                    String field = String.valueOf(fieldObject);
+                                    if (caseSensitive) {
+                                        if (cleanInputSet.contains(field)) {
+                                            processMatch(resMap, unresolved, id, field);
+                                        }
+                                        continue;
                                     }
-                                } else if (lowerCaseInput.containsKey(lowerField)) {
                                     // because we are converting to lower case we need to match
                                     // to original input so that 'h' matches 'H' and 'h' becomes
                                     // a duplicate.
-                                    String originalInput = lowerCaseInput.get(lowerField);
-                                    processMatch(resMap, unresolved, id, originalInput);
+                                    String originalInput = lowerCaseInput.get(field.toLowerCase());
+                                    if (originalInput != null) {
+                                        processMatch(resMap, unresolved, id, originalInput);
+                                    }
                                 }
                             }
                         }
@@ -214,10 +229,14 @@ public class BagQueryRunner
                 } catch (IllegalArgumentException e) {
                     // Query couldn't handle extra value
                 }
+                bqr.addTiming(EXACT_PHASE, System.currentTimeMillis() - phaseStart);
+                phaseStart = System.currentTimeMillis();
                 addResults(resMap, unresolved, bqr, bq.getMessage(), typeCls, false,
                             matchOnFirst, bq.matchesAreIssues());
+                bqr.addTiming(RESULTS_PHASE, System.currentTimeMillis() - phaseStart);
             }
-            if (!wildcardInput.isEmpty()) {
+            if (!wildcardMatcher.isEmpty()) {
+                long phaseStart = System.currentTimeMillis();
                 Map<String, Set<Integer>> resMap = new HashMap<String, Set<Integer>>();
 
                 Query q = bq.getQueryForWildcards(wildcardInput, extraFieldValue);
@@ -227,20 +246,23 @@ public class BagQueryRunner
                     ResultsRow<?> row = (ResultsRow<?>) rowObj;
                     Integer id = (Integer) row.get(0);
                     for (int i = 1; i < row.size(); i++) {
-                        String field = "" + row.get(i);
-                        String lowerField = field.toLowerCase();
-                        for (String wildcard : wildcardInput) {
-                            Pattern pattern = patterns.get(wildcard);
-                            if (pattern.matcher(lowerField).matches()) {
+                        Object fieldObject = row.get(i);
+                        if (fieldObject != null) {
+                            String lowerField = String.valueOf(fieldObject).toLowerCase();
+                            for (String wildcard : wildcardMatcher.match(lowerField)) {
                                 processMatch(resMap, wildcardUnresolved, id, wildcard);
                             }
                         }
                     }
                 }
+                bqr.addTiming(WILDCARD_PHASE, System.currentTimeMillis() - phaseStart);
+                phaseStart = System.currentTimeMillis();
                 for (Map.Entry<String, Set<Integer>> entry : resMap.entrySet()) {
                     // This is a dummy issue just to give a message when running queries
                     bqr.addIssue(BagQueryResult.WILDCARD, bq.getMessage(),
                             entry.getKey(), new ArrayList<Object>(entry.getValue()));
+                }
+                if (!resMap.isEmpty()) {
                     if (matchOnFirst) {
                         addResults(resMap, wildcardUnresolved, bqr, bq.getMessage(),
                                 typeCls, true, matchOnFirst, bq.matchesAreIssues());
@@ -248,18 +270,101 @@ public class BagQueryRunner
                         addResults(resMap, wildcardUnresolvedOriginal, bqr, bq.getMessage(),
                                 typeCls, true, matchOnFirst, bq.matchesAreIssues());
                     }
-
                 }
-
+                bqr.addTiming(RESULTS_PHASE, System.currentTimeMillis() - phaseStart);
             }
         }
 
         unresolved.addAll(wildcardUnresolved);
         bqr.addUnresolved(unresolved);
 
+        LOG.info("Resolved " + cleanInput.size() + " identifiers and " + wildcardInput.size()
+                + " wildcards of type " + type + " in " + (System.currentTimeMillis() - startTime)
+                + "ms " + bqr.getTimings());
         return bqr;
     }
 
+    /**
+     * Run a bag query for a collection of identifiers. If there are more identifiers than the
+     * configured chunk size the query is run for each chunk of them, in parallel if more than one
+     * chunk thread is configured.
+     */
+    private List<Iterable<?>> executeInChunks(BagQuery bq, Collection<String> identifiers,
+            String extraFieldValue) throws ClassNotFoundException, InterMineException {
+        int chunkSize = bagQueryConfig.getChunkSize();
+        List<Iterable<?>> results = new ArrayList<Iterable<?>>();
+        if (chunkSize <= 0 || identifiers.size() <= chunkSize) {
+            results.add(os.execute(bq.getQuery(identifiers, extraFieldValue), 10000, true, true,
+                        false));
+            return results;
+        }
+        // build all the queries first, so that a query that can't handle the extra value fails
+        // before any are run
+        List<Query> chunkQueries = new ArrayList<Query>();
+        List<String> chunk = new ArrayList<String>();
+        for (String identifier : identifiers) {
+            chunk.add(identifier);
+            if (chunk.size() == chunkSize) {
+                chunkQueries.add(bq.getQuery(chunk, extraFieldValue));
+                chunk = new ArrayList<String>();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            chunkQueries.add(bq.getQuery(chunk, extraFieldValue));
+        }
+        if (bagQueryConfig.getChunkThreads() <= 1) {
+            for (Query q : chunkQueries) {
+                results.add(os.execute(q, 10000, true, true, false));
+            }
+            return results;
+        }
+        List<Future<List<Object>>> futures = new ArrayList<Future<List<Object>>>();
+        ExecutorService pool = getChunkPool();
+        for (final Query q : chunkQueries) {
+            futures.add(pool.submit(new Callable<List<Object>>() {
+                @Override
+                public List<Object> call() {
+                    return new ArrayList<Object>(os.execute(q, 10000, true, true, false));
+                }
+            }));
+        }
+        try {
+            for (Future<List<Object>> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterMineException("Interrupted while running " + bq, e);
+        } catch (ExecutionException e) {
+            throw new InterMineException("Error running " + bq, e.getCause());
+        } finally {
+            for (Future<List<Object>> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return results;
+    }
+
+    private synchronized ExecutorService getChunkPool() {
+        if (chunkPool == null) {
+            int threads = bagQueryConfig.getChunkThreads();
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads,
+                    CHUNK_THREAD_KEEP_ALIVE, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread thread = new Thread(r, "BagQueryRunner chunk");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+            // runners are created per request, so idle threads must not outlive them
+            pool.allowCoreThreadTimeOut(true);
+            chunkPool = pool;
+        }
+        return chunkPool;
+    }
+
     private static void processMatch(Map<String, Set<Integer>> resMap, Set<String> unresolved,
         Integer id, String field) {
         Set<Integer> ids = resMap.get(field);
@@ -0,0 +1,224 @@
+package org.intermine.api.bag;
+
+/*
+ * Copyright (C) 2002-2017 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Matches strings against a set of wildcard identifiers in one pass. A '*', '(' or ')' in an
+ * identifier matches any sequence of characters and all other characters match themselves,
+ * ignoring case.
+ *
+ * The longest literal part of every wildcard is put into an Aho-Corasick automaton, so scanning
+ * a string once finds the only wildcards that can match it. Those are then checked against the
+ * anchored glob, which is a few calls to indexOf. This replaces matching every string with one
+ * regular expression per wildcard.
+ *
+ * @author chenyian
+ */
+public class WildcardMatcher
+{
+    private final List<String> wildcards = new ArrayList<String>();
+    private final List<Glob> globs = new ArrayList<Glob>();
+    // wildcards without any literal part, such as "**", which match everything
+    private final List<Integer> matchAll = new ArrayList<Integer>();
+
+    // the automaton: node 0 is the root
+    private final List<Map<Character, Integer>> transitions =
+        new ArrayList<Map<Character, Integer>>();
+    private final List<List<Integer>> outputs = new ArrayList<List<Integer>>();
+    private int[] failures;
+
+    /**
+     * Compile a collection of wildcard identifiers.
+     *
+     * @param wildcards the identifiers, as entered
+     */
+    public WildcardMatcher(Collection<String> wildcards) {
+        addNode();
+        for (String wildcard : wildcards) {
+            int index = this.wildcards.size();
+            this.wildcards.add(wildcard);
+            Glob glob = new Glob(wildcard.toLowerCase());
+            globs.add(glob);
+            String key = glob.getLongestSegment();
+            if (key == null) {
+                matchAll.add(Integer.valueOf(index));
+            } else {
+                addKey(key, index);
+            }
+        }
+        buildFailures();
+    }
+
+    /**
+     * Find the wildcards that match a string.
+     *
+     * @param lowerField the string, already in lower case
+     * @return the matching wildcards, as entered, in the order they were given
+     */
+    public List<String> match(String lowerField) {
+        BitSet candidates = new BitSet(wildcards.size());
+        for (Integer index : matchAll) {
+            candidates.set(index.intValue());
+        }
+        int node = 0;
+        for (int i = 0; i < lowerField.length(); i++) {
+            Character c = Character.valueOf(lowerField.charAt(i));
+            Integer next = transitions.get(node).get(c);
+            while (next == null && node != 0) {
+                node = failures[node];
+                next = transitions.get(node).get(c);
+            }
+            node = (next == null) ? 0 : next.intValue();
+            for (Integer index : outputs.get(node)) {
+                candidates.set(index.intValue());
+            }
+        }
+        if (candidates.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> matches = new ArrayList<String>();
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            if (globs.get(i).matches(lowerField)) {
+                matches.add(wildcards.get(i));
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * @return true if there are no wildcards to match
+     */
+    public boolean isEmpty() {
+        return wildcards.isEmpty();
+    }
+
+    private int addNode() {
+        transitions.add(new HashMap<Character, Integer>());
+        outputs.add(new ArrayList<Integer>());
+        return transitions.size() - 1;
+    }
+
+    private void addKey(String key, int index) {
+        int node = 0;
+        for (int i = 0; i < key.length(); i++) {
+            Character c = Character.valueOf(key.charAt(i));
+            Integer next = transitions.get(node).get(c);
+            if (next == null) {
+                next = Integer.valueOf(addNode());
+                transitions.get(node).put(c, next);
+            }
+            node = next.intValue();
+        }
+        outputs.get(node).add(Integer.valueOf(index));
+    }
+
+    // breadth first, so the failure of a node's parent is always known before the node
+    private void buildFailures() {
+        failures = new int[transitions.size()];
+        LinkedList<Integer> queue = new LinkedList<Integer>();
+        for (Integer child : transitions.get(0).values()) {
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int node = queue.removeFirst().intValue();
+            for (Map.Entry<Character, Integer> entry : transitions.get(node).entrySet()) {
+                int child = entry.getValue().intValue();
+                queue.add(Integer.valueOf(child));
+                int failure = failures[node];
+                Integer next = transitions.get(failure).get(entry.getKey());
+                while (next == null && failure != 0) {
+                    failure = failures[failure];
+                    next = transitions.get(failure).get(entry.getKey());
+                }
+                failures[child] = (next == null) ? 0 : next.intValue();
+                outputs.get(child).addAll(outputs.get(failures[child]));
+            }
+        }
+    }
+
+    /**
+     * A wildcard split into the literal parts between its '*'s.
+     */
+    static class Glob
+    {
+        private final String[] segments;
+        private final boolean anchoredStart;
+        private final boolean anchoredEnd;
+
+        Glob(String wildcard) {
+            String pattern = wildcard.replace('(', '*').replace(')', '*');
+            List<String> parts = new ArrayList<String>();
+            for (String part : pattern.split("\\*")) {
+                if (part.length() > 0) {
+                    parts.add(part);
+                }
+            }
+            segments = parts.toArray(new String[parts.size()]);
+            anchoredStart = !pattern.startsWith("*");
+            anchoredEnd = !pattern.endsWith("*");
+        }
+
+        String getLongestSegment() {
+            String longest = null;
+            for (String segment : segments) {
+                if (longest == null || segment.length() > longest.length()) {
+                    longest = segment;
+                }
+            }
+            return longest;
+        }
+
+        boolean matches(String text) {
+            if (segments.length == 0) {
+                return !(anchoredStart && anchoredEnd) || text.length() == 0;
+            }
+            if (segments.length == 1 && anchoredStart && anchoredEnd) {
+                return text.equals(segments[0]);
+            }
+            int first = 0;
+            int last = segments.length - 1;
+            int pos = 0;
+            int end = text.length();
+            if (anchoredStart) {
+                if (!text.startsWith(segments[0])) {
+                    return false;
+                }
+                pos = segments[0].length();
+                first++;
+            }
+            if (anchoredEnd) {
+                if (!text.endsWith(segments[last])
+                        || text.length() - segments[last].length() < pos) {
+                    return false;
+                }
+                end = text.length() - segments[last].length();
+                last--;
+            }
+            for (int i = first; i <= last; i++) {
+                int found = text.indexOf(segments[i], pos);
+                if (found < 0 || found + segments[i].length() > end) {
+                    return false;
+                }
+                pos = found + segments[i].length();
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package org.intermine.api.idresolution;
+
+/*
+ * Copyright (C) 2002-2017 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+/**
+ * The jobs waiting to be run, with a queue for each owner. Jobs are taken from the owners in turn,
+ * so one user submitting many large uploads only delays their own jobs.
+ *
+ * @author chenyian
+ */
+class FairJobQueue
+{
+    private final Map<String, LinkedList<Job>> queues = new HashMap<String, LinkedList<Job>>();
+    // the owners with waiting jobs, in the order they will next be served
+    private final LinkedList<String> owners = new LinkedList<String>();
+    private int size = 0;
+
+    /**
+     * Add a job to the end of its owner's queue, unless the queues are full.
+     *
+     * @param owner the owner of the job
+     * @param job the job
+     * @param maxSize the largest number of jobs waiting
+     * @param maxPerOwner the largest number of jobs waiting for one owner
+     * @return false if the job was not added
+     */
+    synchronized boolean offer(String owner, Job job, int maxSize, int maxPerOwner) {
+        LinkedList<Job> queue = queues.get(owner);
+        if (size >= maxSize || (queue != null && queue.size() >= maxPerOwner)) {
+            return false;
+        }
+        if (queue == null) {
+            queue = new LinkedList<Job>();
+            queues.put(owner, queue);
+            owners.addLast(owner);
+        }
+        queue.addLast(job);
+        size++;
+        return true;
+    }
+
+    /**
+     * Take the next job of the next owner.
+     *
+     * @return a job, or null if there are none waiting
+     */
+    synchronized Job poll() {
+        String owner = owners.poll();
+        if (owner == null) {
+            return null;
+        }
+        LinkedList<Job> queue = queues.get(owner);
+        Job job = queue.removeFirst();
+        size--;
+        if (queue.isEmpty()) {
+            queues.remove(owner);
+        } else {
+            owners.addLast(owner);
+        }
+        return job;
+    }
+
+    /**
+     * Remove a job that is waiting.
+     *
+     * @param job the job
+     * @return true if the job was waiting
+     */
+    synchronized boolean remove(Job job) {
+        for (Map.Entry<String, LinkedList<Job>> entry : queues.entrySet()) {
+            LinkedList<Job> queue = entry.getValue();
+            if (queue.remove(job)) {
+                size--;
+                if (queue.isEmpty()) {
+                    owners.remove(entry.getKey());
+                    queues.remove(entry.getKey());
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of jobs waiting
+     */
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @param owner an owner
+     * @return the number of jobs waiting for the owner
+     */
+    synchronized int size(String owner) {
+        LinkedList<Job> queue = queues.get(owner);
+        return queue == null ? 0 : queue.size();
+    }
+}
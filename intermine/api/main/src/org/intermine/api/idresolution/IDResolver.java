@@ -10,27 +10,56 @@ package org.intermine.api.idresolution;
  *
  */
 
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Properties;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.apache.log4j.Logger;
 import org.intermine.api.bag.BagQueryRunner;
 import org.intermine.api.bag.BagQueryUpgrade;
+import org.intermine.util.PropertiesUtil;
 
 /**
+ * Runs ID resolution jobs on a fixed number of worker threads. Waiting jobs are queued per user
+ * and served in turn, submissions are refused with a JobQueueFullException when too many jobs are
+ * waiting, and finished jobs are expired after a while if nobody removes them.
+ *
+ * The limits can be set with the idresolver.workers, idresolver.queue.max,
+ * idresolver.queue.maxPerUser and idresolver.results.ttl (in minutes) properties.
  *
  * @author Alex
  *
  */
 public final class IDResolver
 {
+    private static final Logger LOG = Logger.getLogger(IDResolver.class);
+
+    static final String WORKERS_PROPERTY = "idresolver.workers";
+    static final String MAX_QUEUED_PROPERTY = "idresolver.queue.max";
+    static final String MAX_QUEUED_PER_USER_PROPERTY = "idresolver.queue.maxPerUser";
+    static final String TTL_PROPERTY = "idresolver.results.ttl";
+
+    private static final int DEFAULT_WORKERS = 4;
+    private static final int DEFAULT_MAX_QUEUED = 200;
+    private static final int DEFAULT_MAX_QUEUED_PER_USER = 20;
+    private static final int DEFAULT_TTL_MINUTES = 180;
+    private static final String ANONYMOUS = "";
 
     /**
      * list of jobs
      */
     private final Map<UUID, Job> jobs = new ConcurrentHashMap<UUID, Job>();
+    // uid -> the time the job finished
+    private final Map<String, Long> finishedAt = new ConcurrentHashMap<String, Long>();
+    private final FairJobQueue queue = new FairJobQueue();
 
     private static IDResolver instance = new IDResolver();
 
@@ -43,9 +72,56 @@ public final class IDResolver
     }
 
     private ExecutorService threadPool;
+    private final int maxQueued;
+    private final int maxQueuedPerUser;
+    private final long ttl;
+
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong runTime = new AtomicLong();
+    private final AtomicLong identifiers = new AtomicLong();
 
     private IDResolver() {
-        this.threadPool = Executors.newCachedThreadPool();
+        this(PropertiesUtil.getProperties());
+    }
+
+    /**
+     * Construct a resolver configured by a set of properties.
+     *
+     * @param props the properties
+     */
+    IDResolver(Properties props) {
+        int workers = getIntProperty(props, WORKERS_PROPERTY, DEFAULT_WORKERS);
+        maxQueued = getIntProperty(props, MAX_QUEUED_PROPERTY, DEFAULT_MAX_QUEUED);
+        maxQueuedPerUser = getIntProperty(props, MAX_QUEUED_PER_USER_PROPERTY,
+                DEFAULT_MAX_QUEUED_PER_USER);
+        ttl = getIntProperty(props, TTL_PROPERTY, DEFAULT_TTL_MINUTES) * 60L * 1000L;
+        this.threadPool = Executors.newFixedThreadPool(Math.max(1, workers),
+                new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "IDResolver-" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+    }
+
+    private static int getIntProperty(Properties props, String name, int defaultValue) {
+        String value = (props == null) ? null : props.getProperty(name);
+        if (value == null || value.trim().length() == 0) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            LOG.warn("Invalid value for " + name + ": " + value + ", using " + defaultValue);
+            return defaultValue;
+        }
     }
 
     /**
@@ -81,9 +157,21 @@ public final class IDResolver
      * @return job
      */
     public Job submit(BagQueryRunner runner, JobInput input) {
+        return submit(runner, input, null);
+    }
+
+    /**
+     *
+     * @param runner bag query runner
+     * @param input input
+     * @param owner the user or client submitting the job, or null if anonymous
+     * @return job
+     * @throws JobQueueFullException if too many jobs are waiting
+     */
+    public Job submit(BagQueryRunner runner, JobInput input, String owner) {
         UUID id = UUID.randomUUID();
         Job job = new ResolutionJob(id, runner, input);
-        return submitJob(id, job);
+        return submitJob(id, job, owner);
     }
 
     /**
@@ -92,17 +180,89 @@ public final class IDResolver
      * @return job
      */
     public Job submit(BagQueryUpgrade upgrade) {
+        return submit(upgrade, null);
+    }
+
+    /**
+     *
+     * @param upgrade upgrade
+     * @param owner the user or client submitting the job, or null if anonymous
+     * @return job
+     * @throws JobQueueFullException if too many jobs are waiting
+     */
+    public Job submit(BagQueryUpgrade upgrade, String owner) {
         UUID id = UUID.randomUUID();
         Job job = new UpgradeJob(id, upgrade);
-        return submitJob(id, job);
+        return submitJob(id, job, owner);
     }
 
-    private Job submitJob(UUID id, Job job) {
+    private Job submitJob(UUID id, Job job, String owner) {
+        expireJobs();
         jobs.put(id, job);
-        threadPool.submit(job);
+        if (!queue.offer(owner == null ? ANONYMOUS : owner, job, maxQueued, maxQueuedPerUser)) {
+            jobs.remove(id);
+            rejected.incrementAndGet();
+            throw new JobQueueFullException("Too many identifier resolution jobs are waiting,"
+                    + " please try again later");
+        }
+        threadPool.execute(new Runnable() {
+            @Override
+            public void run() {
+                runNextJob();
+            }
+        });
         return job;
     }
 
+    // one of these runs for each job submitted, but the queue decides which job it is
+    private void runNextJob() {
+        Job job = queue.poll();
+        if (job == null) {
+            // removed before it started
+            return;
+        }
+        running.incrementAndGet();
+        long start = System.currentTimeMillis();
+        try {
+            job.run();
+        } finally {
+            long now = System.currentTimeMillis();
+            running.decrementAndGet();
+            runTime.addAndGet(now - start);
+            if (job.wasSuccessful()) {
+                completed.incrementAndGet();
+                if (job instanceof ResolutionJob) {
+                    identifiers.addAndGet(((ResolutionJob) job).getInput().getIds().size());
+                }
+            } else {
+                failed.incrementAndGet();
+            }
+            finishedAt.put(job.getUid(), Long.valueOf(now));
+            LOG.debug("Job " + job.getUid() + " finished in " + (now - start) + "ms");
+        }
+    }
+
+    /**
+     * Remove the jobs that finished longer ago than the configured time to live.
+     *
+     * @return the number of jobs removed
+     */
+    public int expireJobs() {
+        long cutOff = System.currentTimeMillis() - ttl;
+        int expired = 0;
+        Iterator<Job> iter = jobs.values().iterator();
+        while (iter.hasNext()) {
+            Job job = iter.next();
+            Long finished = finishedAt.get(job.getUid());
+            if (finished != null && finished.longValue() < cutOff) {
+                iter.remove();
+                finishedAt.remove(job.getUid());
+                expired++;
+            }
+        }
+        return expired;
+    }
+
     /**
      *
      * @param uid id
@@ -113,10 +273,52 @@ public final class IDResolver
             return null;
         }
         try {
-            return jobs.remove(UUID.fromString(uid));
+            Job job = jobs.remove(UUID.fromString(uid));
+            if (job != null) {
+                queue.remove(job);
+                finishedAt.remove(uid);
+            }
+            return job;
         } catch (IllegalArgumentException e) {
             return null;
         }
     }
 
+    /**
+     * @return the number of jobs waiting to run
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * @return the number of jobs running
+     */
+    public int getRunningCount() {
+        return running.get();
+    }
+
+    /**
+     * Get statistics about the jobs run so far: the number queued, running, completed successfully,
+     * failed and rejected, the average run time in milliseconds and the number of identifiers
+     * resolved per second of run time.
+     *
+     * @return a map from name to value
+     */
+    public Map<String, Number> getMetrics() {
+        Map<String, Number> metrics = new LinkedHashMap<String, Number>();
+        long completedCount = completed.get();
+        long finishedCount = completedCount + failed.get();
+        long totalTime = runTime.get();
+        metrics.put("queued", Integer.valueOf(getQueueDepth()));
+        metrics.put("running", Integer.valueOf(getRunningCount()));
+        metrics.put("completed", Long.valueOf(completedCount));
+        metrics.put("failed", Long.valueOf(failed.get()));
+        metrics.put("rejected", Long.valueOf(rejected.get()));
+        metrics.put("averageRunTime", Long.valueOf(finishedCount == 0 ? 0
+                : totalTime / finishedCount));
+        metrics.put("identifiersPerSecond", Double.valueOf(totalTime == 0 ? 0
+                : identifiers.get() * 1000.0 / totalTime));
+        return metrics;
+    }
 }
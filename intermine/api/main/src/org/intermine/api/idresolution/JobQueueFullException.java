@@ -0,0 +1,31 @@
+package org.intermine.api.idresolution;
+
+/*
+ * Copyright (C) 2002-2017 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+/**
+ * Exception thrown when a job is submitted to the IDResolver while too many jobs, or too many
+ * jobs of the same user, are already waiting to run.
+ *
+ * @author chenyian
+ */
+public class JobQueueFullException extends RuntimeException
+{
+    private static final long serialVersionUID = -2931704870187653154L;
+
+    /**
+     * Constructs a JobQueueFullException with the specified detail message.
+     *
+     * @param msg the detail message
+     */
+    public JobQueueFullException(String msg) {
+        super(msg);
+    }
+}
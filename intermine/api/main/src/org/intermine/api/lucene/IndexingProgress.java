@@ -0,0 +1,96 @@
+package org.intermine.api.lucene;
+
+/*
+ * Copyright (C) 2002-2017 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Counts the documents created for the keyword search index, shared by all fetcher threads.
+ * For each class the time spent fetching objects and creating their documents is recorded, so
+ * the rate of each class can be compared.
+ * @author chenyian
+ */
+public class IndexingProgress
+{
+    private static final Logger LOG = Logger.getLogger(IndexingProgress.class);
+    private static final int LOG_INTERVAL = 100000;
+
+    private final long start = System.currentTimeMillis();
+    // class name -> {documents, nanoseconds}
+    private final Map<String, long[]> classes = new HashMap<String, long[]>();
+    private long documents = 0;
+
+    /**
+     * Record a document.
+     * @param className unqualified name of the class of the object
+     * @param nanos time spent fetching the object and creating its document
+     */
+    public synchronized void add(String className, long nanos) {
+        long[] counts = classes.get(className);
+        if (counts == null) {
+            counts = new long[2];
+            classes.put(className, counts);
+        }
+        counts[0]++;
+        counts[1] += nanos;
+        documents++;
+        if (documents % LOG_INTERVAL == 0) {
+            LOG.info("Created " + documents + " documents in " + getElapsed() + " ms ("
+                    + rate(documents, getElapsed() * 1000000L) + " docs/s)");
+        }
+    }
+
+    /**
+     * @return the number of documents created so far
+     */
+    public synchronized long getDocuments() {
+        return documents;
+    }
+
+    /**
+     * Log the number of documents and the rate of each class, largest classes first.
+     */
+    public synchronized void logSummary() {
+        List<Map.Entry<String, long[]>> entries =
+            new ArrayList<Map.Entry<String, long[]>>(classes.entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<String, long[]>>() {
+            @Override
+            public int compare(Map.Entry<String, long[]> o1, Map.Entry<String, long[]> o2) {
+                return Long.valueOf(o2.getValue()[0]).compareTo(Long.valueOf(o1.getValue()[0]));
+            }
+        });
+        LOG.info("Created " + documents + " documents in " + getElapsed() + " ms ("
+                + rate(documents, getElapsed() * 1000000L) + " docs/s)");
+        for (Map.Entry<String, long[]> entry : entries) {
+            long[] counts = entry.getValue();
+            LOG.info("  " + entry.getKey() + ": " + counts[0] + " documents, "
+                    + rate(counts[0], counts[1]) + " docs/s per thread");
+        }
+    }
+
+    private long getElapsed() {
+        return System.currentTimeMillis() - start;
+    }
+
+    private static long rate(long count, long nanos) {
+        if (nanos <= 0) {
+            return 0;
+        }
+        return (long) (count * 1000000000.0 / nanos);
+    }
+}
@@ -45,8 +45,10 @@ import org.intermine.objectstore.query.QueryClass;
 import org.intermine.objectstore.query.QueryCollectionReference;
 import org.intermine.objectstore.query.QueryField;
 import org.intermine.objectstore.query.QueryObjectReference;
+import org.intermine.objectstore.query.QueryValue;
 import org.intermine.objectstore.query.Results;
 import org.intermine.objectstore.query.ResultsRow;
+import org.intermine.objectstore.query.SimpleConstraint;
 import org.intermine.pathquery.PathException;
 import org.intermine.util.ObjectPipe;
 
@@ -75,6 +77,9 @@ public class InterMineObjectFetcher extends Thread
     final Map<Class<?>, Vector<ClassAttributes>> decomposedClassesCache =
             new HashMap<Class<?>, Vector<ClassAttributes>>();
     private Map<String, String> attributePrefixes = null;
+    private Integer minId = null;
+    private Integer maxId = null;
+    private IndexingProgress progress = null;
 
     Field idField = null;
     Field categoryField = null;
@@ -125,6 +130,24 @@ public class InterMineObjectFetcher extends Thread
         this.attributePrefixes = attributePrefixes;
     }
 
+    /**
+     * Only fetch the objects with ids in a range, so that several fetchers can index a
+     * partition of the database each.  The references are also only queried for this range.
+     * @param minId the lowest id, inclusive
+     * @param maxId the highest id, exclusive
+     */
+    public void setIdRange(int minId, int maxId) {
+        this.minId = new Integer(minId);
+        this.maxId = new Integer(maxId);
+    }
+
+    /**
+     * @param progress counts of created documents, may be shared with other fetchers
+     */
+    public void setProgress(IndexingProgress progress) {
+        this.progress = progress;
+    }
+
     /**
      * get list of fields contained in the fetched documents
      * @return fields
@@ -142,7 +165,12 @@ public class InterMineObjectFetcher extends Thread
         try {
             long time = System.currentTimeMillis();
             long objectParseTime = 0;
-            LOG.info("Fetching all InterMineObjects...");
+            if (minId == null) {
+                LOG.info("Fetching all InterMineObjects...");
+            } else {
+                LOG.info("Fetching InterMineObjects with ids from " + minId + " to " + maxId
+                        + "...");
+            }
 
             HashSet<Class<? extends InterMineObject>> seenClasses =
                     new HashSet<Class<? extends InterMineObject>>();
@@ -157,7 +185,10 @@ public class InterMineObjectFetcher extends Thread
                 q.addToSelect(qc);
 
                 QueryField qf = new QueryField(qc, "class");
-                q.setConstraint(new BagConstraint(qf, ConstraintOp.NOT_IN, ignoredClasses));
+                ConstraintSet cs = new ConstraintSet(ConstraintOp.AND);
+                cs.addConstraint(new BagConstraint(qf, ConstraintOp.NOT_IN, ignoredClasses));
+                addIdRange(cs, new QueryField(qc, "id"));
+                q.setConstraint(cs);
 
                 LOG.info("QUERY: " + q.toString());
 
@@ -194,6 +225,15 @@ public class InterMineObjectFetcher extends Thread
         indexingQueue.finish();
     }
 
+    private void addIdRange(ConstraintSet cs, QueryField id) {
+        if (minId != null) {
+            cs.addConstraint(new SimpleConstraint(id, ConstraintOp.GREATER_THAN_EQUALS,
+                    new QueryValue(minId)));
+            cs.addConstraint(new SimpleConstraint(id, ConstraintOp.LESS_THAN,
+                    new QueryValue(maxId)));
+        }
+    }
+
     private void setException(Exception e) {
         this.error = e;
     }
@@ -395,6 +435,7 @@ public class InterMineObjectFetcher extends Thread
 
         //iterate over objects
         while (it.hasNext()) {
+            long fetchStart = System.nanoTime();
             ResultsRow<InterMineObject> row = it.next();
 
             if (i % 10000 == 1) {
@@ -405,6 +446,9 @@ public class InterMineObjectFetcher extends Thread
 
             for (InterMineObject object : row) {
                 Document doc = handleObject(object, seenClasses, referenceResults);
+                if (progress != null) {
+                    progress.add(doc.get("Category"), System.nanoTime() - fetchStart);
+                }
 
                 // finally add doc to queue
                 indexingQueue.put(doc);
@@ -625,6 +669,7 @@ public class InterMineObjectFetcher extends Thread
                 QueryField topId = new QueryField(queryClass, "id");
                 q.addToSelect(topId);
                 q.addToOrderBy(topId); // important for optimization in run()
+                addIdRange(constraints, topId);
             } else {
                 if (parentClassDescriptor == null) {
                     continue;
@@ -21,6 +21,7 @@ import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -30,8 +31,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
+import java.util.Queue;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 import java.util.zip.ZipEntry;
@@ -56,18 +59,24 @@ import org.apache.lucene.search.Explanation;
 import org.apache.lucene.search.TermsFilter;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.MMapDirectory;
 import org.apache.lucene.store.RAMDirectory;
 import org.apache.lucene.util.Version;
 import org.intermine.api.InterMineAPI;
 import org.intermine.api.data.Objects;
 import org.intermine.metadata.ClassDescriptor;
 import org.intermine.metadata.FieldDescriptor;
+import org.intermine.metadata.Util;
 import org.intermine.model.InterMineObject;
 import org.intermine.modelproduction.MetadataManager;
 import org.intermine.modelproduction.MetadataManager.LargeObjectOutputStream;
 import org.intermine.objectstore.ObjectStore;
 import org.intermine.objectstore.ObjectStoreException;
 import org.intermine.objectstore.intermine.ObjectStoreInterMineImpl;
+import org.intermine.objectstore.query.Query;
+import org.intermine.objectstore.query.QueryClass;
+import org.intermine.objectstore.query.QueryField;
+import org.intermine.objectstore.query.QueryFunction;
 import org.intermine.sql.Database;
 import org.intermine.util.ObjectPipe;
 
@@ -100,6 +109,8 @@ import com.browseengine.bobo.facets.impl.SimpleFacetHandler;
 public final class KeywordSearch
 {
     private static final String LUCENE_INDEX_DIR = "keyword_search_index";
+    // more partitions than threads so that the threads finish at about the same time
+    private static final int PARTITIONS_PER_THREAD = 4;
 
     /**
      * maximum number of hits returned
@@ -120,6 +131,8 @@ public final class KeywordSearch
 
     private static Properties properties = null;
     private static String tempDirectory = null;
+    private static String indexDirectory = null;
+    private static int indexThreads = 1;
     private static Map<Class<? extends InterMineObject>, String[]> specialReferences;
     private static Set<Class<? extends InterMineObject>> ignoredClasses;
     private static Map<Class<? extends InterMineObject>, Set<String>> ignoredFields;
@@ -254,6 +267,9 @@ public final class KeywordSearch
                     }
 
                     tempDirectory = properties.getProperty("index.temp.directory", "");
+                    indexDirectory = properties.getProperty("index.directory", "");
+                    indexThreads = Integer.parseInt(properties.getProperty("index.threads",
+                            "1").trim());
                 }
             } catch (IOException e) {
                 LOG.error("keyword_search.properties: errow while loading file '" + configFileName
@@ -291,6 +307,8 @@ public final class KeywordSearch
 
         LOG.info("Search - Debug mode: " + debugOutput);
         LOG.info("Indexing - Temp Dir: " + tempDirectory);
+        LOG.info("Indexing - Index Dir: " + indexDirectory);
+        LOG.info("Indexing - Threads: " + indexThreads);
     }
 
     private static void addAttributePrefix(String classAndAttribute, String prefix) {
@@ -313,6 +331,9 @@ public final class KeywordSearch
      */
     public static synchronized void initKeywordSearch(InterMineAPI im, String path) {
         try {
+            if (properties == null) {
+                parseProperties(im.getObjectStore());
+            }
 
             if (index == null) {
                 // try to load index from database first
@@ -324,38 +345,9 @@ public final class KeywordSearch
                 return;
             }
 
-            if (properties == null) {
-                parseProperties(im.getObjectStore());
-            }
-
             if (reader == null) {
                 reader = IndexReader.open(index.getDirectory(), true);
             }
-
-            if (boboIndexReader == null) {
-                // prepare faceting
-                HashSet<FacetHandler<?>> facetHandlers = new HashSet<FacetHandler<?>>();
-                facetHandlers.add(new SimpleFacetHandler("Category"));
-                for (KeywordSearchFacetData facet : facets) {
-                    if (facet.getType().equals(KeywordSearchFacetType.MULTI)) {
-                        facetHandlers.add(new MultiValueFacetHandler(facet.getField()));
-                    } else if (facet.getType().equals(KeywordSearchFacetType.PATH)) {
-                        facetHandlers.add(new PathFacetHandler("path_"
-                                + facet.getName().toLowerCase()));
-                    } else {
-                        facetHandlers.add(new SimpleFacetHandler(facet.getField()));
-                    }
-                }
-
-                boboIndexReader = BoboIndexReader.getInstance(reader, facetHandlers);
-
-                LOG.debug("Fields:"
-                        + Arrays.toString(boboIndexReader.getFieldNames(FieldOption.ALL)
-                                .toArray()));
-                LOG.debug("Indexed fields:"
-                        + Arrays.toString(boboIndexReader.getFieldNames(FieldOption.INDEXED)
-                                .toArray()));
-            }
         } catch (CorruptIndexException e) {
             LOG.error(e);
         } catch (IOException e) {
@@ -363,6 +355,41 @@ public final class KeywordSearch
         }
     }
 
+    /**
+     * The facet handlers load all values of the facet fields into memory, so they are only
+     * created when the first search is run rather than when the index is opened.
+     */
+    private static synchronized BoboIndexReader getBoboIndexReader() throws IOException {
+        if (boboIndexReader == null) {
+            long time = System.currentTimeMillis();
+            // prepare faceting
+            HashSet<FacetHandler<?>> facetHandlers = new HashSet<FacetHandler<?>>();
+            facetHandlers.add(new SimpleFacetHandler("Category"));
+            for (KeywordSearchFacetData facet : facets) {
+                if (facet.getType().equals(KeywordSearchFacetType.MULTI)) {
+                    facetHandlers.add(new MultiValueFacetHandler(facet.getField()));
+                } else if (facet.getType().equals(KeywordSearchFacetType.PATH)) {
+                    facetHandlers.add(new PathFacetHandler("path_"
+                            + facet.getName().toLowerCase()));
+                } else {
+                    facetHandlers.add(new SimpleFacetHandler(facet.getField()));
+                }
+            }
+
+            boboIndexReader = BoboIndexReader.getInstance(reader, facetHandlers);
+            LOG.info("Loaded " + facetHandlers.size() + " search facets in "
+                    + (System.currentTimeMillis() - time) + " ms");
+
+            LOG.debug("Fields:"
+                    + Arrays.toString(boboIndexReader.getFieldNames(FieldOption.ALL)
+                            .toArray()));
+            LOG.debug("Indexed fields:"
+                    + Arrays.toString(boboIndexReader.getFieldNames(FieldOption.INDEXED)
+                            .toArray()));
+        }
+        return boboIndexReader;
+    }
+
     private static void writeObjectToDB(ObjectStore os, String key, Object object)
         throws IOException, SQLException {
         LOG.debug("Saving stream to database...");
@@ -408,6 +435,9 @@ public final class KeywordSearch
             if (index == null) {
                 createIndex(os, classKeys);
             }
+            if ("MMapDirectory".equals(index.getDirectoryType())) {
+                index.setChecksum(checksum(new File(index.getLocation())));
+            }
 
             LOG.debug("Deleting previous search index dirctory blob from db...");
             long startTime = System.currentTimeMillis();
@@ -498,6 +528,11 @@ public final class KeywordSearch
                 LOG.debug("Saving RAM directory to database...");
                 writeObjectToDB(os, MetadataManager.SEARCH_INDEX_DIRECTORY, index.getDirectory());
                 LOG.debug("Successfully saved RAM directory to database.");
+            } else if ("MMapDirectory".equals(index.getDirectoryType())) {
+                // the webapp opens the directory itself, remove any copy saved before
+                MetadataManager.deleteLargeBinary(db, MetadataManager.SEARCH_INDEX_DIRECTORY);
+                LOG.info("Search index directory saved in " + index.getLocation()
+                        + ", checksum " + index.getChecksum());
             }
         } catch (IOException e) {
             LOG.error(null, e);
@@ -726,7 +761,7 @@ public final class KeywordSearch
             // execute query and return result
             Browsable browser = null;
             try {
-                browser = new BoboBrowser(boboIndexReader);
+                browser = new BoboBrowser(getBoboIndexReader());
                 result = browser.browse(browseRequest);
             } finally {
                 if (browser != null) {
@@ -802,7 +837,12 @@ public final class KeywordSearch
 
                 if (ret != null) {
                     String indexDirectoryType = ret.getDirectoryType();
-                    Directory dir = restoreSearchDirectory(indexDirectoryType, path, db);
+                    Directory dir;
+                    if ("MMapDirectory".equals(indexDirectoryType)) {
+                        dir = openMappedDirectory(ret);
+                    } else {
+                        dir = restoreSearchDirectory(indexDirectoryType, path, db);
+                    }
                     if (dir == null) {
                         LOG.error("Could not load directory");
                         return null;
@@ -850,6 +890,52 @@ public final class KeywordSearch
         return null;
     }
 
+    private static Directory openMappedDirectory(LuceneIndexContainer container)
+        throws IOException {
+        long time = System.currentTimeMillis();
+        File directoryPath = new File(container.getLocation());
+        if (!StringUtils.isBlank(indexDirectory)) {
+            // the release directory may have been copied somewhere else on this machine
+            directoryPath = new File(indexDirectory, directoryPath.getName());
+        }
+        LOG.debug("Directory path: " + directoryPath);
+
+        if (!directoryPath.isDirectory()) {
+            LOG.error("Search index directory not found: " + directoryPath);
+            return null;
+        }
+        String checksum = checksum(directoryPath);
+        if (!checksum.equals(container.getChecksum())) {
+            LOG.error("Search index directory " + directoryPath + " was not built for this"
+                    + " database, checksum is " + checksum + " but expected "
+                    + container.getChecksum());
+            return null;
+        }
+        MMapDirectory directory = new MMapDirectory(directoryPath);
+
+        LOG.info("Successfully opened search index directory " + directoryPath + " in "
+                + (System.currentTimeMillis() - time) + " ms");
+        return directory;
+    }
+
+    /**
+     * Checksum of the names and sizes of the files in an index directory.  The name of the
+     * segments file changes with every commit, so this tells indexes apart without reading them.
+     */
+    private static String checksum(File directoryPath) throws IOException {
+        String[] files = directoryPath.list();
+        if (files == null) {
+            throw new IOException("Could not list search index directory " + directoryPath);
+        }
+        Arrays.sort(files);
+        StringBuilder sb = new StringBuilder();
+        for (String file : files) {
+            sb.append(file).append('\t').append(new File(directoryPath, file).length())
+                .append('\n');
+        }
+        return Util.getMd5checksum(sb.toString());
+    }
+
     private static FSDirectory readFSDirectory(String path, InputStream is)
         throws IOException, FileNotFoundException {
         long time = System.currentTimeMillis();
@@ -973,26 +1059,24 @@ public final class KeywordSearch
 
         parseProperties(os);
 
-        LOG.info("Starting fetcher thread...");
-        InterMineObjectFetcher fetchThread =
-                new InterMineObjectFetcher(os, classKeys, indexingQueue, ignoredClasses,
-                        ignoredFields, specialReferences, classBoost, facets, attributePrefixes);
-        fetchThread.start();
-
         // index the docs queued by the fetchers
         LOG.info("Preparing indexer...");
         index = new LuceneIndexContainer();
-        try {
-            tempFile = makeTempFile(tempDirectory);
-        } catch (IOException e) {
-            String tmpDir = System.getProperty("java.io.tmpdir");
-            LOG.warn("Failed to create temp directory " + tempDirectory + " trying " + tmpDir
-                    + " instead", e);
+        if (!StringUtils.isBlank(indexDirectory)) {
+            tempFile = makeReleaseDirectory(os, indexDirectory);
+        } else {
             try {
-                tempFile = makeTempFile(tmpDir);
-            } catch (IOException ee) {
-                LOG.warn("Failed to create temp directory in " + tmpDir, ee);
-                throw ee;
+                tempFile = makeTempFile(tempDirectory);
+            } catch (IOException e) {
+                String tmpDir = System.getProperty("java.io.tmpdir");
+                LOG.warn("Failed to create temp directory " + tempDirectory + " trying " + tmpDir
+                        + " instead", e);
+                try {
+                    tempFile = makeTempFile(tmpDir);
+                } catch (IOException ee) {
+                    LOG.warn("Failed to create temp directory in " + tmpDir, ee);
+                    throw ee;
+                }
             }
         }
 
@@ -1005,41 +1089,55 @@ public final class KeywordSearch
         writer.setRAMBufferSizeMB(64); //flush to disk when docs take up X MB
 
         int indexed = 0;
+        IndexingProgress progress = new IndexingProgress();
 
-        // loop and index while we still have fetchers running
-        LOG.debug("Starting to index...");
-        while (indexingQueue.hasNext()) {
-            Document doc = indexingQueue.next();
-
-            // nothing in the queue?
-            if (doc != null) {
-                try {
-                    writer.addDocument(doc);
-                    indexed++;
-                } catch (IOException e) {
-                    LOG.error("Failed to submit #" + doc.getFieldable("id") + " to the index",
-                            e);
-                }
+        if (indexThreads > 1) {
+            indexed = indexPartitions(os, classKeys, writer, tempFile, progress);
+        } else {
+            LOG.info("Starting fetcher thread...");
+            InterMineObjectFetcher fetchThread =
+                    new InterMineObjectFetcher(os, classKeys, indexingQueue, ignoredClasses,
+                            ignoredFields, specialReferences, classBoost, facets,
+                            attributePrefixes);
+            fetchThread.setProgress(progress);
+            fetchThread.start();
+
+            // loop and index while we still have fetchers running
+            LOG.debug("Starting to index...");
+            while (indexingQueue.hasNext()) {
+                Document doc = indexingQueue.next();
+
+                // nothing in the queue?
+                if (doc != null) {
+                    try {
+                        writer.addDocument(doc);
+                        indexed++;
+                    } catch (IOException e) {
+                        LOG.error("Failed to submit #" + doc.getFieldable("id")
+                                + " to the index", e);
+                    }
 
-                if (indexed % 10000 == 1) {
-                    LOG.info("docs indexed=" + indexed + "; thread state="
-                            + fetchThread.getState() + "; docs/ms=" + indexed * 1.0F
-                            / (System.currentTimeMillis() - time) + "; memory="
-                            + Runtime.getRuntime().freeMemory() / 1024 + "k/"
-                            + Runtime.getRuntime().maxMemory() / 1024 + "k" + "; time="
-                            + (System.currentTimeMillis() - time) + "ms");
+                    if (indexed % 10000 == 1) {
+                        LOG.info("docs indexed=" + indexed + "; thread state="
+                                + fetchThread.getState() + "; docs/ms=" + indexed * 1.0F
+                                / (System.currentTimeMillis() - time) + "; memory="
+                                + Runtime.getRuntime().freeMemory() / 1024 + "k/"
+                                + Runtime.getRuntime().maxMemory() / 1024 + "k" + "; time="
+                                + (System.currentTimeMillis() - time) + "ms");
+                    }
                 }
             }
-        }
-        if (fetchThread.getException() != null) {
-            try {
-                writer.close();
-            } catch (Exception e) {
-                LOG.error("Error closing writer while handling exception.", e);
+            if (fetchThread.getException() != null) {
+                try {
+                    writer.close();
+                } catch (Exception e) {
+                    LOG.error("Error closing writer while handling exception.", e);
+                }
+                throw new RuntimeException("Indexing failed.", fetchThread.getException());
             }
-            throw new RuntimeException("Indexing failed.", fetchThread.getException());
+            index.getFieldNames().addAll(fetchThread.getFieldNames());
         }
-        index.getFieldNames().addAll(fetchThread.getFieldNames());
+        progress.logSummary();
         LOG.debug("Indexing done, optimizing index files...");
         try {
             writer.optimize();
@@ -1056,6 +1154,173 @@ public final class KeywordSearch
         return tempFile;
     }
 
+    /**
+     * Index the database with several threads.  The range of object ids is split into
+     * partitions that the threads take in turn; each partition has its own fetcher and reference
+     * queries, and each thread writes the documents into its own index, which are added to the
+     * main index at the end.
+     */
+    private static int indexPartitions(ObjectStore os,
+            Map<String, List<FieldDescriptor>> classKeys, IndexWriter writer, File indexDir,
+            IndexingProgress progress) throws IOException {
+        int[] idRange = getIdRange(os);
+        if (idRange == null) {
+            LOG.warn("No objects to index");
+            return 0;
+        }
+        int partitions = indexThreads * PARTITIONS_PER_THREAD;
+        long width = ((long) idRange[1] - idRange[0]) / partitions + 1;
+        Queue<int[]> ranges = new ConcurrentLinkedQueue<int[]>();
+        for (long start = idRange[0]; start < idRange[1]; start += width) {
+            ranges.add(new int[] {(int) start, (int) Math.min(start + width, idRange[1])});
+        }
+        LOG.info("Indexing ids " + idRange[0] + " to " + idRange[1] + " in " + ranges.size()
+                + " partitions with " + indexThreads + " threads");
+
+        List<PartitionIndexer> indexers = new ArrayList<PartitionIndexer>();
+        for (int i = 0; i < indexThreads; i++) {
+            File dir = new File(indexDir.getParentFile(), indexDir.getName() + "_part" + i);
+            PartitionIndexer indexer = new PartitionIndexer(os, classKeys, ranges, dir, progress);
+            indexers.add(indexer);
+            indexer.start();
+        }
+        int indexed = 0;
+        Throwable error = null;
+        Directory[] directories = new Directory[indexers.size()];
+        for (int i = 0; i < indexers.size(); i++) {
+            PartitionIndexer indexer = indexers.get(i);
+            try {
+                indexer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while indexing", e);
+            }
+            if (indexer.error != null && error == null) {
+                error = indexer.error;
+            }
+            indexed += indexer.indexed;
+            index.getFieldNames().addAll(indexer.fieldNames);
+            directories[i] = indexer.directory;
+        }
+        if (error != null) {
+            try {
+                writer.close();
+            } catch (Exception e) {
+                LOG.error("Error closing writer while handling exception.", e);
+            }
+            throw new RuntimeException("Indexing failed.", error);
+        }
+
+        long time = System.currentTimeMillis();
+        LOG.info("Merging " + directories.length + " partial indexes...");
+        writer.addIndexesNoOptimize(directories);
+        LOG.info("Merged partial indexes in " + (System.currentTimeMillis() - time) + " ms");
+        for (PartitionIndexer indexer : indexers) {
+            indexer.directory.close();
+            deleteDirectory(indexer.directory.getFile());
+        }
+        return indexed;
+    }
+
+    private static int[] getIdRange(ObjectStore os) {
+        Query q = new Query();
+        QueryClass qc = new QueryClass(InterMineObject.class);
+        q.addFrom(qc);
+        q.addToSelect(new QueryFunction(new QueryField(qc, "id"), QueryFunction.MIN));
+        q.addToSelect(new QueryFunction(new QueryField(qc, "id"), QueryFunction.MAX));
+        List<?> row = (List<?>) os.execute(q).get(0);
+        if (row.get(0) == null) {
+            return null;
+        }
+        return new int[] {((Number) row.get(0)).intValue(), ((Number) row.get(1)).intValue() + 1};
+    }
+
+    private static void deleteDirectory(File dir) {
+        String[] files = dir.list();
+        if (files != null) {
+            for (String file : files) {
+                new File(dir, file).delete();
+            }
+        }
+        dir.delete();
+    }
+
+    /**
+     * Indexes partitions taken from a shared queue into an index of its own.
+     */
+    private static class PartitionIndexer extends Thread
+    {
+        private final ObjectStore os;
+        private final Map<String, List<FieldDescriptor>> classKeys;
+        private final Queue<int[]> ranges;
+        private final IndexingProgress progress;
+        private final FSDirectory directory;
+        private final Set<String> fieldNames = new HashSet<String>();
+        private int indexed = 0;
+        private volatile Throwable error = null;
+
+        PartitionIndexer(ObjectStore os, Map<String, List<FieldDescriptor>> classKeys,
+                Queue<int[]> ranges, File dir, IndexingProgress progress) throws IOException {
+            super("PartitionIndexer " + dir.getName());
+            this.os = os;
+            this.classKeys = classKeys;
+            this.ranges = ranges;
+            this.progress = progress;
+            this.directory = FSDirectory.open(dir);
+        }
+
+        @Override
+        public void run() {
+            IndexWriter writer = null;
+            try {
+                writer = new IndexWriter(directory, new WhitespaceAnalyzer(), true,
+                        IndexWriter.MaxFieldLength.UNLIMITED);
+                writer.setRAMBufferSizeMB(64);
+                int[] range;
+                while (error == null && (range = ranges.poll()) != null) {
+                    ObjectPipe<Document> queue = new ObjectPipe<Document>(10000);
+                    InterMineObjectFetcher fetchThread =
+                        new InterMineObjectFetcher(os, classKeys, queue, ignoredClasses,
+                                ignoredFields, specialReferences, classBoost, facets,
+                                attributePrefixes);
+                    fetchThread.setIdRange(range[0], range[1]);
+                    fetchThread.setProgress(progress);
+                    fetchThread.start();
+                    while (queue.hasNext()) {
+                        Document doc = queue.next();
+                        if (doc != null) {
+                            try {
+                                writer.addDocument(doc);
+                                indexed++;
+                            } catch (IOException e) {
+                                LOG.error("Failed to submit #" + doc.getFieldable("id")
+                                        + " to the index", e);
+                            }
+                        }
+                    }
+                    if (fetchThread.getException() != null) {
+                        error = fetchThread.getException();
+                    }
+                    fieldNames.addAll(fetchThread.getFieldNames());
+                }
+            } catch (Throwable t) {
+                LOG.error("Error indexing partition", t);
+                error = t;
+            } finally {
+                if (writer != null) {
+                    try {
+                        writer.close();
+                    } catch (IOException e) {
+                        LOG.error("Error closing partial index " + directory, e);
+                        if (error == null) {
+                            error = e;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
     private static File makeTempFile(String tempDir) throws IOException {
         LOG.debug("Creating search index tmp dir: " + tempDir);
         File tempFile = File.createTempFile("search_index", "", new File(tempDir));
@@ -1079,6 +1344,44 @@ public final class KeywordSearch
         return tempFile;
     }
 
+    /**
+     * Create the directory for an index that is kept on disk and memory-mapped by the webapp
+     * instead of being saved in the database.  There is one directory for each release of the
+     * database, named after its serial number.
+     */
+    private static File makeReleaseDirectory(ObjectStore os, String parent) throws IOException {
+        String release = null;
+        if (os instanceof ObjectStoreInterMineImpl) {
+            try {
+                release = MetadataManager.retrieve(((ObjectStoreInterMineImpl) os).getDatabase(),
+                        MetadataManager.SERIAL_NUMBER);
+            } catch (SQLException e) {
+                LOG.warn("Could not read the serial number of the database", e);
+            }
+        }
+        if (release == null) {
+            release = Long.toString(System.currentTimeMillis());
+        }
+        File directoryPath = new File(parent, LUCENE_INDEX_DIR + "_" + release);
+        LOG.debug("Creating search index dir: " + directoryPath);
+
+        // make sure we start with a new index
+        if (directoryPath.exists()) {
+            String[] files = directoryPath.list();
+            for (int i = 0; i < files.length; i++) {
+                LOG.info("Deleting old file: " + files[i]);
+                new File(directoryPath, files[i]).delete();
+            }
+        } else if (!directoryPath.mkdirs()) {
+            throw new IOException("Could not create search index directory " + directoryPath);
+        }
+
+        index.setDirectory(FSDirectory.open(directoryPath));
+        index.setDirectoryType("MMapDirectory");
+        index.setLocation(directoryPath.getAbsolutePath());
+        return directoryPath;
+    }
+
     /**
      * recurse into class descriptor and add all subclasses to ignoredClasses
      * @param ignoredClassMap
@@ -1188,6 +1491,8 @@ public final class KeywordSearch
         index = null;
         properties = null;
         tempDirectory = null;
+        indexDirectory = null;
+        indexThreads = 1;
         specialReferences = null;
         ignoredClasses = null;
         ignoredFields = null;
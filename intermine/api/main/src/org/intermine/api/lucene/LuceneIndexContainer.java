@@ -27,6 +27,8 @@ class LuceneIndexContainer implements Serializable
     private static final long serialVersionUID = 1L;
     private transient Directory directory;
     private String directoryType;
+    private String location;
+    private String checksum;
     private HashSet<String> fieldNames = new HashSet<String>();
     private HashMap<String, Float> fieldBoosts = new HashMap<String, Float>();
 
@@ -49,7 +51,7 @@ class LuceneIndexContainer implements Serializable
 
     /**
      * get type of directory
-     * @return 'FSDirectory' or 'RAMDirectory'
+     * @return 'FSDirectory', 'RAMDirectory' or 'MMapDirectory'
      */
     public String getDirectoryType() {
         return directoryType;
@@ -64,6 +66,42 @@ class LuceneIndexContainer implements Serializable
         this.directoryType = directoryType;
     }
 
+    /**
+     * get the path of an index that is opened where it was built rather than restored from
+     * the database
+     * @return path of the index directory or null
+     */
+    public String getLocation() {
+        return location;
+    }
+
+    /**
+     * set the path of the index directory
+     * @param location
+     *            absolute path of the directory
+     */
+    public void setLocation(String location) {
+        this.location = location;
+    }
+
+    /**
+     * get checksum of the files in the index directory, used to check that the directory found
+     * at the location is the one that was built
+     * @return checksum or null
+     */
+    public String getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * set checksum of the files in the index directory
+     * @param checksum
+     *            checksum
+     */
+    public void setChecksum(String checksum) {
+        this.checksum = checksum;
+    }
+
     /**
      * get list of fields in the index
      * @return fields
@@ -100,7 +138,7 @@ class LuceneIndexContainer implements Serializable
 
     @Override
     public String toString() {
-        return "INDEX [[" + directory + "" + ", fields = " + fieldNames + "" + ", boosts = "
-                + fieldBoosts + "" + "]]";
+        return "INDEX [[" + directory + "" + ", location = " + location + ", fields = "
+                + fieldNames + "" + ", boosts = " + fieldBoosts + "" + "]]";
     }
 }
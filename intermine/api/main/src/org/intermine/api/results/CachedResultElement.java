@@ -0,0 +1,80 @@
+package org.intermine.api.results;
+
+/*
+ * Copyright (C) 2002-2017 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import org.intermine.pathquery.Path;
+
+/**
+ * A ResultElement read from a ColumnarResults table. It has the value, id and type of the
+ * original element but not the object, so getObject() returns null.
+ *
+ * @author chenyian
+ */
+public class CachedResultElement extends ResultElement
+{
+    private static final long serialVersionUID = 1L;
+    private final Integer id;
+    private final String type;
+
+    /**
+     * Construct a CachedResultElement.
+     *
+     * @param field the value of the field
+     * @param id the id of the object the value came from, or null if it has none
+     * @param type the unqualified class name of the object
+     * @param path the path of the field
+     * @param isKeyField true if this is an identifying field
+     */
+    public CachedResultElement(Object field, Integer id, String type, Path path,
+            boolean isKeyField) {
+        super(null, path, isKeyField);
+        this.field = field;
+        this.id = id;
+        this.type = type;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Integer getId() {
+        return id;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof CachedResultElement) {
+            CachedResultElement other = (CachedResultElement) obj;
+            return (field == null ? other.field == null : field.equals(other.field))
+                && (id == null ? other.id == null : id.equals(other.id));
+        }
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        return (field == null ? 0 : field.hashCode()) + (id == null ? 0 : 3 * id.hashCode());
+    }
+}
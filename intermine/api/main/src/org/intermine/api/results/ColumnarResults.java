@@ -0,0 +1,613 @@
+package org.intermine.api.results;
+
+/*
+ * Copyright (C) 2002-2017 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.intermine.api.results.flatouterjoins.MultiRow;
+import org.intermine.api.results.flatouterjoins.MultiRowFirstValue;
+import org.intermine.api.results.flatouterjoins.MultiRowValue;
+import org.intermine.objectstore.query.ResultsRow;
+import org.intermine.pathquery.Path;
+
+/**
+ * An in-memory copy of the rows of a WebTable, stored by column. Integer, long, double and boolean
+ * values are kept in primitive arrays and strings are dictionary encoded, so a table of a few
+ * hundred thousand rows can be paged, sorted and summarised without running its query again.
+ *
+ * Only the values, ids, types and link redirects of the cells are kept, not the objects, so the
+ * rows returned contain CachedResultElements. Tables with outer joined collections, which have
+ * rows spanning several lines, can not be stored.
+ *
+ * @author chenyian
+ */
+public final class ColumnarResults
+{
+    private final int rowCount;
+    private final ColumnData[] values;
+    private final ColumnData[] ids;
+    private final ColumnData[] types;
+    private final ColumnData[] links;
+    // the cells that have a ResultElement
+    private final BitSet[] present;
+    private final Path[] paths;
+    private final boolean[] keyFields;
+
+    private ColumnarResults(int rowCount, ColumnData[] values, ColumnData[] ids,
+            ColumnData[] types, ColumnData[] links, BitSet[] present, Path[] paths,
+            boolean[] keyFields) {
+        this.rowCount = rowCount;
+        this.values = values;
+        this.ids = ids;
+        this.types = types;
+        this.links = links;
+        this.present = present;
+        this.paths = paths;
+        this.keyFields = keyFields;
+    }
+
+    /**
+     * Copy the rows of a table.
+     *
+     * @param table the table
+     * @param maxRows the largest number of rows to copy
+     * @param maxBytes the most memory the copy may use
+     * @return the copy, or null if the table has more rows or needs more memory, or has rows
+     * that span several lines
+     */
+    public static ColumnarResults build(WebTable table, int maxRows, long maxBytes) {
+        int columnCount = table.getColumnsPath().size();
+        ColumnData[] values = new ColumnData[columnCount];
+        ColumnData[] ids = new ColumnData[columnCount];
+        ColumnData[] types = new ColumnData[columnCount];
+        ColumnData[] links = new ColumnData[columnCount];
+        BitSet[] present = new BitSet[columnCount];
+        Path[] paths = new Path[columnCount];
+        boolean[] keyFields = new boolean[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            values[i] = new ColumnData();
+            ids[i] = new ColumnData();
+            types[i] = new ColumnData();
+            links[i] = new ColumnData();
+            present[i] = new BitSet();
+        }
+        int rowCount = 0;
+        for (MultiRow<ResultsRow<MultiRowValue<ResultElement>>> multiRow : table) {
+            if (multiRow.size() != 1 || rowCount >= maxRows) {
+                return null;
+            }
+            ResultsRow<MultiRowValue<ResultElement>> row = multiRow.get(0);
+            for (int i = 0; i < columnCount; i++) {
+                MultiRowValue<ResultElement> cell = row.get(i);
+                if (!(cell instanceof MultiRowFirstValue)) {
+                    return null;
+                }
+                ResultElement element = cell.getValue();
+                if (element == null) {
+                    values[i].add(null);
+                    ids[i].add(null);
+                    types[i].add(null);
+                    links[i].add(null);
+                } else {
+                    present[i].set(rowCount);
+                    values[i].add(element.getField());
+                    ids[i].add(element.getId());
+                    types[i].add(element.getType());
+                    links[i].add(element.getLinkRedirect());
+                    if (paths[i] == null) {
+                        paths[i] = element.getPath();
+                        keyFields[i] = element.isKeyField();
+                    }
+                }
+            }
+            rowCount++;
+            // check the size now and then
+            if (rowCount % 10000 == 0 && getSizeInBytes(values, ids, types, links) > maxBytes) {
+                return null;
+            }
+        }
+        for (int i = 0; i < columnCount; i++) {
+            values[i].finish();
+            ids[i].finish();
+            types[i].finish();
+            links[i].finish();
+        }
+        if (getSizeInBytes(values, ids, types, links) > maxBytes) {
+            return null;
+        }
+        return new ColumnarResults(rowCount, values, ids, types, links, present, paths,
+                keyFields);
+    }
+
+    /**
+     * @return the number of rows
+     */
+    public int size() {
+        return rowCount;
+    }
+
+    /**
+     * @return the number of columns
+     */
+    public int getColumnCount() {
+        return values.length;
+    }
+
+    /**
+     * Get a row in the form returned by WebTable.getResultElements().
+     *
+     * @param index the index of the row
+     * @return the row
+     */
+    public MultiRow<ResultsRow<MultiRowValue<ResultElement>>> getResultElements(int index) {
+        if (index < 0 || index >= rowCount) {
+            throw new IndexOutOfBoundsException("Row " + index + " of " + rowCount);
+        }
+        ResultsRow<MultiRowValue<ResultElement>> row
+            = new ResultsRow<MultiRowValue<ResultElement>>();
+        for (int i = 0; i < values.length; i++) {
+            ResultElement element = null;
+            if (present[i].get(index)) {
+                element = new CachedResultElement(values[i].get(index),
+                        (Integer) ids[i].get(index), (String) types[i].get(index), paths[i],
+                        keyFields[i]);
+                element.setLinkRedirect((String) links[i].get(index));
+            }
+            row.add(new MultiRowFirstValue<ResultElement>(element, 1));
+        }
+        MultiRow<ResultsRow<MultiRowValue<ResultElement>>> multiRow
+            = new MultiRow<ResultsRow<MultiRowValue<ResultElement>>>();
+        multiRow.add(row);
+        return multiRow;
+    }
+
+    /**
+     * Get the value of a cell.
+     *
+     * @param index the index of the row
+     * @param column the index of the column
+     * @return the value
+     */
+    public Object getValue(int index, int column) {
+        return values[column].get(index);
+    }
+
+    /**
+     * Get the order of the rows sorted by the values of a column. Nulls are sorted last and rows
+     * with equal values keep their order.
+     *
+     * @param column the index of the column
+     * @param ascending false to sort in descending order
+     * @return the indexes of the rows in sorted order
+     */
+    public int[] sort(int column, final boolean ascending) {
+        final ColumnData data = values[column];
+        Integer[] order = new Integer[rowCount];
+        for (int i = 0; i < rowCount; i++) {
+            order[i] = Integer.valueOf(i);
+        }
+        // Arrays.sort on objects is a stable merge sort
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer row1, Integer row2) {
+                return data.compare(row1.intValue(), row2.intValue(), ascending);
+            }
+        });
+        int[] sorted = new int[rowCount];
+        for (int i = 0; i < rowCount; i++) {
+            sorted[i] = order[i].intValue();
+        }
+        return sorted;
+    }
+
+    /**
+     * Count the distinct values of a column.
+     *
+     * @param column the index of the column
+     * @return a map from value to number of rows, most frequent first, without nulls
+     */
+    public Map<Object, Integer> getValueCounts(int column) {
+        final Map<Object, Integer> counts = values[column].countValues(rowCount);
+        List<Object> keys = new ArrayList<Object>(counts.keySet());
+        Collections.sort(keys, new Comparator<Object>() {
+            @Override
+            public int compare(Object o1, Object o2) {
+                return counts.get(o2).compareTo(counts.get(o1));
+            }
+        });
+        Map<Object, Integer> sorted = new LinkedHashMap<Object, Integer>();
+        for (Object key : keys) {
+            sorted.put(key, counts.get(key));
+        }
+        return sorted;
+    }
+
+    /**
+     * Summarise a numeric column.
+     *
+     * @param column the index of the column
+     * @return a map with the min, max, average, stdev and count of the non-null values, or null
+     * if the column is not numeric
+     */
+    public Map<String, Number> getNumericSummary(int column) {
+        ColumnData data = values[column];
+        if (!data.isNumeric()) {
+            return null;
+        }
+        double min = Double.NaN;
+        double max = Double.NaN;
+        double sum = 0;
+        double sumOfSquares = 0;
+        int count = 0;
+        for (int i = 0; i < rowCount; i++) {
+            if (!data.isNull(i)) {
+                double value = data.getDouble(i);
+                min = (count == 0) ? value : Math.min(min, value);
+                max = (count == 0) ? value : Math.max(max, value);
+                sum += value;
+                sumOfSquares += value * value;
+                count++;
+            }
+        }
+        Map<String, Number> summary = new LinkedHashMap<String, Number>();
+        double average = (count == 0) ? Double.NaN : sum / count;
+        summary.put("min", Double.valueOf(min));
+        summary.put("max", Double.valueOf(max));
+        summary.put("average", Double.valueOf(average));
+        summary.put("stdev", Double.valueOf(count == 0 ? Double.NaN
+                : Math.sqrt(Math.max(0, sumOfSquares / count - average * average))));
+        summary.put("count", Integer.valueOf(count));
+        return summary;
+    }
+
+    /**
+     * @return an estimate of the memory used by this table
+     */
+    public long getSizeInBytes() {
+        return getSizeInBytes(values, ids, types, links);
+    }
+
+    private static long getSizeInBytes(ColumnData[]... columnSets) {
+        long size = 0;
+        for (ColumnData[] columns : columnSets) {
+            for (ColumnData column : columns) {
+                size += column.getSizeInBytes();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * The values of one column. The type of the column is chosen by its first non-null value and
+     * changes to OBJECT if a value of another type is added later.
+     */
+    static final class ColumnData
+    {
+        static final int NONE = 0;
+        static final int INT = 1;
+        static final int LONG = 2;
+        static final int DOUBLE = 3;
+        static final int BOOLEAN = 4;
+        static final int STRING = 5;
+        static final int OBJECT = 6;
+
+        private int kind = NONE;
+        private int size = 0;
+        private final BitSet nulls = new BitSet();
+        private int[] ints;
+        private long[] longs;
+        private double[] doubles;
+        private Object[] objects;
+        // STRING columns store an index into the dictionary in ints
+        private List<String> dictionary;
+        private Map<String, Integer> codes;
+        private long dictionaryBytes;
+        // the position of each dictionary entry in sorted order
+        private int[] ranks;
+
+        void add(Object value) {
+            if (value == null) {
+                nulls.set(size);
+            } else {
+                if (kind == NONE) {
+                    start(kindOf(value));
+                } else if (kind != OBJECT && kindOf(value) != kind) {
+                    convertToObjects();
+                }
+            }
+            ensureCapacity(size + 1);
+            if (value != null) {
+                set(size, value);
+            }
+            size++;
+        }
+
+        private static int kindOf(Object value) {
+            Class<?> c = value.getClass();
+            if (c == Integer.class) {
+                return INT;
+            } else if (c == Long.class) {
+                return LONG;
+            } else if (c == Double.class) {
+                return DOUBLE;
+            } else if (c == Boolean.class) {
+                return BOOLEAN;
+            } else if (c == String.class) {
+                return STRING;
+            }
+            return OBJECT;
+        }
+
+        private void start(int newKind) {
+            kind = newKind;
+            int capacity = Math.max(16, size + 1);
+            switch (kind) {
+                case LONG:
+                    longs = new long[capacity];
+                    break;
+                case DOUBLE:
+                    doubles = new double[capacity];
+                    break;
+                case OBJECT:
+                    objects = new Object[capacity];
+                    break;
+                case STRING:
+                    dictionary = new ArrayList<String>();
+                    codes = new HashMap<String, Integer>();
+                    ints = new int[capacity];
+                    break;
+                default:
+                    ints = new int[capacity];
+            }
+        }
+
+        private void convertToObjects() {
+            Object[] converted = new Object[Math.max(16, size + 1)];
+            for (int i = 0; i < size; i++) {
+                converted[i] = get(i);
+            }
+            ints = null;
+            longs = null;
+            doubles = null;
+            dictionary = null;
+            codes = null;
+            dictionaryBytes = 0;
+            objects = converted;
+            kind = OBJECT;
+        }
+
+        private void ensureCapacity(int capacity) {
+            switch (kind) {
+                case NONE:
+                    break;
+                case LONG:
+                    if (longs.length < capacity) {
+                        longs = Arrays.copyOf(longs, capacity * 2);
+                    }
+                    break;
+                case DOUBLE:
+                    if (doubles.length < capacity) {
+                        doubles = Arrays.copyOf(doubles, capacity * 2);
+                    }
+                    break;
+                case OBJECT:
+                    if (objects.length < capacity) {
+                        objects = Arrays.copyOf(objects, capacity * 2);
+                    }
+                    break;
+                default:
+                    if (ints.length < capacity) {
+                        ints = Arrays.copyOf(ints, capacity * 2);
+                    }
+            }
+        }
+
+        private void set(int index, Object value) {
+            switch (kind) {
+                case INT:
+                    ints[index] = ((Integer) value).intValue();
+                    break;
+                case LONG:
+                    longs[index] = ((Long) value).longValue();
+                    break;
+                case DOUBLE:
+                    doubles[index] = ((Double) value).doubleValue();
+                    break;
+                case BOOLEAN:
+                    ints[index] = ((Boolean) value).booleanValue() ? 1 : 0;
+                    break;
+                case STRING:
+                    String string = (String) value;
+                    Integer code = codes.get(string);
+                    if (code == null) {
+                        code = Integer.valueOf(dictionary.size());
+                        dictionary.add(string);
+                        codes.put(string, code);
+                        dictionaryBytes += 48 + 2 * string.length();
+                    }
+                    ints[index] = code.intValue();
+                    break;
+                default:
+                    objects[index] = value;
+            }
+        }
+
+        // trim the arrays and rank the dictionary, once all the values have been added
+        void finish() {
+            switch (kind) {
+                case LONG:
+                    longs = Arrays.copyOf(longs, size);
+                    break;
+                case DOUBLE:
+                    doubles = Arrays.copyOf(doubles, size);
+                    break;
+                case OBJECT:
+                    objects = Arrays.copyOf(objects, size);
+                    break;
+                case NONE:
+                    break;
+                default:
+                    ints = Arrays.copyOf(ints, size);
+            }
+            if (kind == STRING) {
+                codes = null;
+                Integer[] sorted = new Integer[dictionary.size()];
+                for (int i = 0; i < sorted.length; i++) {
+                    sorted[i] = Integer.valueOf(i);
+                }
+                Arrays.sort(sorted, new Comparator<Integer>() {
+                    @Override
+                    public int compare(Integer code1, Integer code2) {
+                        return dictionary.get(code1.intValue()).compareTo(
+                                dictionary.get(code2.intValue()));
+                    }
+                });
+                ranks = new int[sorted.length];
+                for (int i = 0; i < sorted.length; i++) {
+                    ranks[sorted[i].intValue()] = i;
+                }
+            }
+        }
+
+        boolean isNull(int index) {
+            return kind == NONE || nulls.get(index);
+        }
+
+        boolean isNumeric() {
+            return kind == INT || kind == LONG || kind == DOUBLE;
+        }
+
+        double getDouble(int index) {
+            switch (kind) {
+                case INT:
+                    return ints[index];
+                case LONG:
+                    return longs[index];
+                default:
+                    return doubles[index];
+            }
+        }
+
+        Object get(int index) {
+            if (isNull(index)) {
+                return null;
+            }
+            switch (kind) {
+                case INT:
+                    return Integer.valueOf(ints[index]);
+                case LONG:
+                    return Long.valueOf(longs[index]);
+                case DOUBLE:
+                    return Double.valueOf(doubles[index]);
+                case BOOLEAN:
+                    return Boolean.valueOf(ints[index] == 1);
+                case STRING:
+                    return dictionary.get(ints[index]);
+                default:
+                    return objects[index];
+            }
+        }
+
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        int compare(int row1, int row2, boolean ascending) {
+            boolean null1 = isNull(row1);
+            boolean null2 = isNull(row2);
+            if (null1 || null2) {
+                return (null1 == null2) ? 0 : (null1 ? 1 : -1);
+            }
+            int result;
+            switch (kind) {
+                case INT:
+                case BOOLEAN:
+                    result = compareInts(ints[row1], ints[row2]);
+                    break;
+                case STRING:
+                    result = compareInts(ranks[ints[row1]], ranks[ints[row2]]);
+                    break;
+                case LONG:
+                    result = (longs[row1] < longs[row2]) ? -1
+                            : ((longs[row1] == longs[row2]) ? 0 : 1);
+                    break;
+                case DOUBLE:
+                    result = Double.compare(doubles[row1], doubles[row2]);
+                    break;
+                default:
+                    Object o1 = objects[row1];
+                    Object o2 = objects[row2];
+                    if (o1 instanceof Comparable && o1.getClass() == o2.getClass()) {
+                        result = ((Comparable) o1).compareTo(o2);
+                    } else {
+                        result = String.valueOf(o1).compareTo(String.valueOf(o2));
+                    }
+            }
+            return ascending ? result : -result;
+        }
+
+        private static int compareInts(int i1, int i2) {
+            return (i1 < i2) ? -1 : ((i1 == i2) ? 0 : 1);
+        }
+
+        Map<Object, Integer> countValues(int rowCount) {
+            Map<Object, Integer> counts = new HashMap<Object, Integer>();
+            if (kind == STRING) {
+                int[] codeCounts = new int[dictionary.size()];
+                for (int i = 0; i < rowCount; i++) {
+                    if (!nulls.get(i)) {
+                        codeCounts[ints[i]]++;
+                    }
+                }
+                for (int i = 0; i < codeCounts.length; i++) {
+                    if (codeCounts[i] > 0) {
+                        counts.put(dictionary.get(i), Integer.valueOf(codeCounts[i]));
+                    }
+                }
+                return counts;
+            }
+            for (int i = 0; i < rowCount; i++) {
+                Object value = get(i);
+                if (value != null) {
+                    Integer count = counts.get(value);
+                    counts.put(value, Integer.valueOf(count == null ? 1 : count.intValue() + 1));
+                }
+            }
+            return counts;
+        }
+
+        long getSizeInBytes() {
+            long bytes = 64 + size / 8;
+            if (ints != null) {
+                bytes += 4L * ints.length;
+            }
+            if (longs != null) {
+                bytes += 8L * longs.length;
+            }
+            if (doubles != null) {
+                bytes += 8L * doubles.length;
+            }
+            if (objects != null) {
+                // a reference and a small object, we can't tell how big they are
+                bytes += 32L * objects.length;
+            }
+            if (ranks != null) {
+                bytes += 4L * ranks.length;
+            }
+            return bytes + dictionaryBytes;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package org.intermine.api.results;
+
+/*
+ * Copyright (C) 2002-2017 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.log4j.Logger;
+import org.intermine.objectstore.ObjectStoreException;
+import org.intermine.pathquery.PathQuery;
+import org.intermine.util.PropertiesUtil;
+
+/**
+ * The ColumnarResults of recently viewed queries, shared by all sessions and keyed by the XML of
+ * the PathQuery. The least recently used tables are dropped when the total size of the tables
+ * would be more than the configured number of megabytes.
+ *
+ * The cache is off unless the results.columnar.cache.size property (in megabytes) is set. Tables
+ * with more rows than results.columnar.maxRows are not cached, nor are queries that constrain a
+ * list, as the contents of a list can change without the query changing.
+ *
+ * @author chenyian
+ */
+public final class ColumnarResultsCache
+{
+    private static final Logger LOG = Logger.getLogger(ColumnarResultsCache.class);
+
+    static final String SIZE_PROPERTY = "results.columnar.cache.size";
+    static final String MAX_ROWS_PROPERTY = "results.columnar.maxRows";
+    private static final int DEFAULT_MAX_ROWS = 500000;
+
+    private static ColumnarResultsCache instance = null;
+
+    private final long maxBytes;
+    private final int maxRows;
+    private final LinkedHashMap<String, ColumnarResults> tables
+        = new LinkedHashMap<String, ColumnarResults>(16, 0.75f, true);
+    private long totalBytes = 0;
+
+    /**
+     * Construct a cache.
+     *
+     * @param maxBytes the most memory the cached tables may use, 0 to disable the cache
+     * @param maxRows the largest number of rows of a table to cache
+     */
+    ColumnarResultsCache(long maxBytes, int maxRows) {
+        this.maxBytes = maxBytes;
+        this.maxRows = maxRows;
+    }
+
+    /**
+     * @return the cache, configured from the properties
+     */
+    public static synchronized ColumnarResultsCache getInstance() {
+        if (instance == null) {
+            Properties props = PropertiesUtil.getProperties();
+            long megabytes = 0;
+            int rows = DEFAULT_MAX_ROWS;
+            try {
+                String size = props.getProperty(SIZE_PROPERTY);
+                if (size != null && size.trim().length() > 0) {
+                    megabytes = Long.parseLong(size.trim());
+                }
+                String maxRowsString = props.getProperty(MAX_ROWS_PROPERTY);
+                if (maxRowsString != null && maxRowsString.trim().length() > 0) {
+                    rows = Integer.parseInt(maxRowsString.trim());
+                }
+            } catch (NumberFormatException e) {
+                LOG.warn("Invalid " + SIZE_PROPERTY + " or " + MAX_ROWS_PROPERTY
+                        + ", columnar results cache disabled", e);
+                megabytes = 0;
+            }
+            instance = new ColumnarResultsCache(megabytes * 1024 * 1024, rows);
+        }
+        return instance;
+    }
+
+    /**
+     * @return true if tables will be cached
+     */
+    public boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    /**
+     * Get the columnar copy of a table, copying the table if it is not already cached. Two
+     * sessions asking for the same uncached table at the same time may both copy it.
+     *
+     * @param table the table
+     * @return the copy, or null if the cache is disabled or the table can't be cached
+     */
+    public ColumnarResults get(WebTable table) {
+        PathQuery pathQuery = table.getPathQuery();
+        if (!isEnabled() || pathQuery == null || !pathQuery.getBagNames().isEmpty()) {
+            return null;
+        }
+        String key = pathQuery.toXml(PathQuery.USERPROFILE_VERSION);
+        synchronized (this) {
+            ColumnarResults cached = tables.get(key);
+            if (cached != null) {
+                return cached.getColumnCount() == table.getColumnsPath().size() ? cached : null;
+            }
+        }
+        if (table.getEstimatedSize() > maxRows) {
+            return null;
+        }
+        long start = System.currentTimeMillis();
+        ColumnarResults columnar = build(table);
+        if (columnar == null) {
+            return null;
+        }
+        LOG.info("Cached " + columnar.size() + " rows (" + columnar.getSizeInBytes()
+                + " bytes) in " + (System.currentTimeMillis() - start) + "ms");
+        put(key, columnar);
+        return columnar;
+    }
+
+    private ColumnarResults build(WebTable table) {
+        WebResults webResults = (table instanceof WebResults) ? (WebResults) table : null;
+        try {
+            if (webResults != null) {
+                webResults.goFaster();
+            }
+            return ColumnarResults.build(table, maxRows, maxBytes);
+        } catch (ObjectStoreException e) {
+            LOG.warn("Could not cache results", e);
+            return null;
+        } finally {
+            if (webResults != null) {
+                try {
+                    webResults.releaseGoFaster();
+                } catch (ObjectStoreException e) {
+                    LOG.warn("Could not release results", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Add a table, dropping the least recently used tables to make room.
+     *
+     * @param key the XML of the query
+     * @param columnar the table
+     */
+    synchronized void put(String key, ColumnarResults columnar) {
+        ColumnarResults old = tables.put(key, columnar);
+        if (old != null) {
+            totalBytes -= old.getSizeInBytes();
+        }
+        totalBytes += columnar.getSizeInBytes();
+        Iterator<Map.Entry<String, ColumnarResults>> iter = tables.entrySet().iterator();
+        while (totalBytes > maxBytes && iter.hasNext()) {
+            Map.Entry<String, ColumnarResults> entry = iter.next();
+            totalBytes -= entry.getValue().getSizeInBytes();
+            iter.remove();
+        }
+    }
+
+    /**
+     * Drop all the cached tables, for example after the data has changed.
+     */
+    public synchronized void clear() {
+        tables.clear();
+        totalBytes = 0;
+    }
+
+    /**
+     * @return the number of tables cached
+     */
+    public synchronized int size() {
+        return tables.size();
+    }
+
+    /**
+     * @return the memory used by the cached tables
+     */
+    public synchronized long getSizeInBytes() {
+        return totalBytes;
+    }
+}
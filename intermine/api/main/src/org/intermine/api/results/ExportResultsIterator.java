@@ -14,8 +14,14 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.log4j.Logger;
 import org.intermine.model.FastPathObject;
@@ -30,17 +36,29 @@ import org.intermine.objectstore.query.Results;
 import org.intermine.pathquery.Path;
 import org.intermine.pathquery.PathException;
 import org.intermine.pathquery.PathQuery;
+import org.intermine.util.PropertiesUtil;
 
 /**
  * An Iterator that produces data in a format suitable for exporting. The data is flattened, so if
  * there are outer joined collections, there may be more rows than in the original results.
  *
+ * Large exports can call prefetch() to have the rows fetched and decoded on a background thread
+ * while the caller writes out the ones it already has.
+ *
  * @author Matthew Wakeling
  */
 public class ExportResultsIterator implements Iterator<List<ResultElement>>
 {
     private static final Logger LOG = Logger.getLogger(ExportResultsIterator.class);
 
+    static final String PREFETCH_BUFFERS_PROPERTY = "export.prefetch.buffers";
+    private static final int DEFAULT_PREFETCH_BUFFERS = 2;
+    // how long the background thread waits for a caller that has stopped reading
+    private static final long ABANDON_TIMEOUT = 10 * 60 * 1000L;
+    // how long releaseGoFaster() waits for the background thread to finish its current batch
+    private static final long STOP_TIMEOUT = 60 * 1000L;
+    private static final AtomicInteger PREFETCH_THREADS = new AtomicInteger();
+
     private Iterator<List> osIter;
     protected Iterator<List<ResultElement>> subIter;
     // This object contains a description of the collections in the input.
@@ -51,6 +69,8 @@ public class ExportResultsIterator implements Iterator<List<ResultElement>>
     protected final Results results;
     private boolean isGoingFaster = false;
     protected final PathQuery originatingQuery;
+    private Prefetcher prefetcher = null;
+    private Thread prefetchThread = null;
 
      /**
      * Constructor for ExportResultsIterator. This creates a new instance from the given
@@ -109,6 +129,16 @@ public class ExportResultsIterator implements Iterator<List<ResultElement>>
      */
     @Override
     public boolean hasNext() {
+        if (prefetcher != null) {
+            while (!subIter.hasNext()) {
+                List<List<ResultElement>> batch = prefetcher.take();
+                if (batch == null) {
+                    return false;
+                }
+                subIter = batch.iterator();
+            }
+            return true;
+        }
         while ((!subIter.hasNext()) && osIter.hasNext()) {
             subIter = decodeRow(osIter.next()).iterator();
         }
@@ -120,6 +150,12 @@ public class ExportResultsIterator implements Iterator<List<ResultElement>>
      */
     @Override
     public List<ResultElement> next() {
+        if (prefetcher != null) {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return subIter.next();
+        }
         while ((!subIter.hasNext()) && osIter.hasNext()) {
             subIter = decodeRow(osIter.next()).iterator();
         }
@@ -152,11 +188,13 @@ public class ExportResultsIterator implements Iterator<List<ResultElement>>
     }
 
     /**
-     * Switches off the goFaster mode in the objectstore for this query.
+     * Switches off the goFaster mode in the objectstore for this query, first stopping any
+     * background prefetching.
      *
      * @throws RuntimeException if something goes wrong
      */
     public void releaseGoFaster() {
+        stopPrefetching();
         try {
             if (isGoingFaster) {
                 ((ObjectStoreInterMineImpl) results.getObjectStore()).releaseGoFaster(results
@@ -167,6 +205,226 @@ public class ExportResultsIterator implements Iterator<List<ResultElement>>
         }
     }
 
+    /**
+     * Fetch and decode the rest of the rows on a background thread while the caller writes out the
+     * rows it already has. Rows are handed over a batch (of the Results batch size) at a time
+     * through a bounded queue, so the database and the caller can each work while the other does,
+     * without the background thread getting more than a few batches ahead. The number of batches
+     * that may wait in the queue is set by the export.prefetch.buffers property (default 2, 0 to
+     * switch prefetching off). Nothing is done for results that fit in one batch.
+     *
+     * Call releaseGoFaster() or stopPrefetching() when finished, so that the background thread
+     * stops if the caller did not read all the rows.
+     */
+    public void prefetch() {
+        int buffers = DEFAULT_PREFETCH_BUFFERS;
+        String value = PropertiesUtil.getProperties().getProperty(PREFETCH_BUFFERS_PROPERTY);
+        if (value != null && value.trim().length() > 0) {
+            try {
+                buffers = Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                LOG.warn("Invalid value for " + PREFETCH_BUFFERS_PROPERTY + ": " + value);
+            }
+        }
+        if (!results.isSingleBatch()) {
+            prefetch(results.getBatchSize(), buffers);
+        }
+    }
+
+    /**
+     * Start prefetching.
+     *
+     * @param batchSize the number of rows to hand over at a time
+     * @param buffers the number of batches that may wait to be read, 0 to do nothing
+     */
+    synchronized void prefetch(int batchSize, int buffers) {
+        if (prefetcher != null || buffers < 1) {
+            return;
+        }
+        prefetcher = new Prefetcher(Math.max(1, batchSize), buffers);
+        prefetchThread = new Thread(prefetcher, "ExportPrefetch-"
+                + PREFETCH_THREADS.incrementAndGet());
+        prefetchThread.setDaemon(true);
+        prefetchThread.start();
+    }
+
+    /**
+     * Stop the background prefetching started by prefetch(), waiting a while for the thread to
+     * finish fetching the batch it is on. Rows already read are not affected, but no more can be
+     * read once prefetching has stopped.
+     */
+    public synchronized void stopPrefetching() {
+        if (prefetcher == null || prefetchThread == null) {
+            return;
+        }
+        prefetcher.stop();
+        try {
+            prefetchThread.join(STOP_TIMEOUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (prefetchThread.isAlive()) {
+            LOG.warn("Prefetching thread " + prefetchThread.getName() + " did not stop within "
+                    + STOP_TIMEOUT + "ms");
+        }
+        prefetchThread = null;
+    }
+
+    /**
+     * Get statistics about prefetching: the number of batches and rows fetched, the milliseconds
+     * the background thread spent waiting because the queue was full (the caller was the slower
+     * side), the milliseconds the caller spent waiting because the queue was empty (the database
+     * was the slower side), and the largest number of batches waiting at once.
+     *
+     * @return a map from name to value, empty if prefetching was not used
+     */
+    public Map<String, Number> getPrefetchMetrics() {
+        Map<String, Number> metrics = new LinkedHashMap<String, Number>();
+        Prefetcher current = prefetcher;
+        if (current != null) {
+            metrics.put("batches", Integer.valueOf(current.batches));
+            metrics.put("rows", Long.valueOf(current.rows));
+            metrics.put("producerWaitMillis", Long.valueOf(current.producerWait));
+            metrics.put("consumerWaitMillis", Long.valueOf(current.consumerWait));
+            metrics.put("maxQueued", Integer.valueOf(current.maxQueued));
+        }
+        return metrics;
+    }
+
+    /**
+     * Reads the underlying results on a background thread, decoding the rows and queueing them in
+     * batches for hasNext() and next() to take.
+     */
+    private class Prefetcher implements Runnable
+    {
+        // put on the queue after the last batch, compared by identity
+        private final List<List<ResultElement>> end = new ArrayList<List<ResultElement>>(0);
+        private final BlockingQueue<List<List<ResultElement>>> queue;
+        private final int batchSize;
+        private volatile boolean stopped = false;
+        private volatile long lastTaken = System.currentTimeMillis();
+        private volatile Throwable failure = null;
+        private boolean finished = false;
+
+        // written by one thread each, read for reporting
+        private volatile int batches = 0;
+        private volatile long rows = 0;
+        private volatile long producerWait = 0;
+        private volatile long consumerWait = 0;
+        private volatile int maxQueued = 0;
+
+        Prefetcher(int batchSize, int buffers) {
+            this.batchSize = batchSize;
+            this.queue = new ArrayBlockingQueue<List<List<ResultElement>>>(buffers);
+        }
+
+        @Override
+        public void run() {
+            try {
+                List<List<ResultElement>> batch = new ArrayList<List<ResultElement>>(batchSize);
+                while (!stopped && osIter.hasNext()) {
+                    batch.addAll(decodeRow(osIter.next()));
+                    if (batch.size() >= batchSize) {
+                        if (!put(batch)) {
+                            return;
+                        }
+                        batch = new ArrayList<List<ResultElement>>(batchSize);
+                    }
+                }
+                if (!batch.isEmpty() && !put(batch)) {
+                    return;
+                }
+            } catch (Throwable t) {
+                if (stopped) {
+                    LOG.debug("Prefetching failed after being stopped", t);
+                    return;
+                }
+                failure = t;
+            }
+            put(end);
+        }
+
+        // returns false if the caller has gone away
+        private boolean put(List<List<ResultElement>> batch) {
+            long start = System.currentTimeMillis();
+            try {
+                while (!stopped) {
+                    if (queue.offer(batch, 1, TimeUnit.SECONDS)) {
+                        if (batch != end) {
+                            batches++;
+                            rows += batch.size();
+                        }
+                        maxQueued = Math.max(maxQueued, queue.size());
+                        return true;
+                    }
+                    if (System.currentTimeMillis() - lastTaken > ABANDON_TIMEOUT) {
+                        String message = "Nothing read from prefetched results for "
+                            + ABANDON_TIMEOUT + "ms, stopped fetching";
+                        LOG.warn(message);
+                        failure = new IllegalStateException(message);
+                        stopped = true;
+                    }
+                }
+            } catch (InterruptedException e) {
+                stopped = true;
+            } finally {
+                producerWait += System.currentTimeMillis() - start;
+            }
+            return false;
+        }
+
+        // the next batch, or null if there are no more
+        List<List<ResultElement>> take() {
+            if (finished) {
+                return null;
+            }
+            long start = System.currentTimeMillis();
+            List<List<ResultElement>> batch = null;
+            try {
+                while (batch == null) {
+                    if (stopped) {
+                        finished = true;
+                        rethrowFailure();
+                        return null;
+                    }
+                    batch = queue.poll(1, TimeUnit.SECONDS);
+                }
+            } catch (InterruptedException e) {
+                stop();
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for results", e);
+            } finally {
+                lastTaken = System.currentTimeMillis();
+                consumerWait += lastTaken - start;
+            }
+            if (batch != end) {
+                return batch;
+            }
+            finished = true;
+            LOG.info("Prefetched " + rows + " rows in " + batches + " batches, waited "
+                    + producerWait + "ms for the reader and " + consumerWait
+                    + "ms for the database, at most " + maxQueued + " batches waiting");
+            rethrowFailure();
+            return null;
+        }
+
+        private void rethrowFailure() {
+            Throwable t = failure;
+            if (t instanceof RuntimeException) {
+                throw (RuntimeException) t;
+            } else if (t instanceof Error) {
+                throw (Error) t;
+            } else if (t != null) {
+                throw new RuntimeException("Error fetching results", t);
+            }
+        }
+
+        void stop() {
+            stopped = true;
+            queue.clear();
+        }
+    }
+
     /** Analyses the select list to predict what the structure of the results will be. It produces
      *  a list with a disjoint type of element.
      *
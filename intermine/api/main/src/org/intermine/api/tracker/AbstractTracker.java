@@ -78,10 +78,9 @@ public abstract class AbstractTracker implements Tracker
     public void storeTrack(Track track) {
         if (trackTableName != null) {
             if (track.validate()) {
-                try {
-                    trackQueue.add(track);
-                } catch (IllegalStateException ise) {
-                    LOG.error("Problem adding the track to the queue", ise);
+                // a full queue drops the track, the TrackerLogger reports how many
+                if (!trackQueue.offer(track)) {
+                    LOG.debug("Track not stored, the queue is full");
                 }
             } else {
                 LOG.error("Failed to write to track table: input non valid");
@@ -18,11 +18,13 @@ import java.sql.Timestamp;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Queue;
+import java.util.Set;
 
 import org.apache.log4j.Logger;
 import org.intermine.api.profile.Profile;
@@ -43,6 +45,10 @@ public class TemplateTracker extends AbstractTracker
     private static final Logger LOG = Logger.getLogger(TemplateTracker.class);
     private static TemplateTracker templateTracker = null;
     private static TemplatesExecutionMap templatesExecutionCache;
+    // the last ranks calculated, with the cache version and public templates they are valid for
+    private Map<String, Integer> lastRank = null;
+    private long lastRankVersion;
+    private Set<String> lastRankTemplates = null;
 
     /**
      *
@@ -123,32 +129,20 @@ public class TemplateTracker extends AbstractTracker
     }
 
     /**
-     * Return the number of executions for each public template
-     * @param con db connection
+     * Return the number of executions for each public template, from the executions held in
+     * memory rather than the database
+     * @param templateManager the template manager used to retrieve the global templates
      * @return map with key the template name and executions number
      */
-    protected Map<String, Integer> getAccessCounter(Connection con) {
-        ResultSet rs = null;
-        Statement stm = null;
-        Map<String, Integer> templateRank = new HashMap<String, Integer>();
-        try {
-            stm = con.createStatement();
-            String sql = "SELECT tt.templatename, COUNT(tt.templatename) as accessnumbers "
-                        + "FROM templatetrack tt, tag t "
-                        + "WHERE tt.templatename=t.objectidentifier "
-                        + "AND t.tagname LIKE '%public' AND t.type='template' "
-                        + "GROUP BY tt.templatename";
-            rs = stm.executeQuery(sql);
-            while (rs.next()) {
-                templateRank.put(rs.getString(1), rs.getInt(2));
-            }
-            return templateRank;
-        } catch (SQLException sqle) {
-            LOG.error("Error in getAccessCounter method: ", sqle);
-        } finally {
-            releaseResources(rs, stm);
+    protected Map<String, Integer> getAccessCounter(TemplateManager templateManager) {
+        return templatesExecutionCache.getExecutionCounts(getPublicTemplateNames(templateManager));
+    }
+
+    private static Set<String> getPublicTemplateNames(TemplateManager templateManager) {
+        if (templateManager == null) {
+            return new HashSet<String>();
         }
-        return null;
+        return new HashSet<String>(templateManager.getValidGlobalTemplates().keySet());
     }
 
     /**
@@ -157,14 +151,33 @@ public class TemplateTracker extends AbstractTracker
      * rank is calculated by summing the logarithm of the templates executions launched by the
      * single users, if the user is logged in, or otherwise, by summing the logarithm of the
      * templates executions during the same http session. The function is called only by the
-     * super user
+     * super user. The ranks are only calculated again when a template has been executed or the
+     * public templates have changed.
      * @param templateManager the template manager used to retrieve the global templates
      * @return map with key the template name and rank
      */
     protected Map<String, Integer> getRank(TemplateManager templateManager) {
+        Set<String> publicTemplates = getPublicTemplateNames(templateManager);
+        long version = templatesExecutionCache.getVersion();
+        synchronized (this) {
+            if (lastRank != null && lastRankVersion == version
+                    && lastRankTemplates.equals(publicTemplates)) {
+                return new HashMap<String, Integer>(lastRank);
+            }
+        }
+        Map<String, Integer> templateRank = calculateRank(publicTemplates);
+        synchronized (this) {
+            lastRank = templateRank;
+            lastRankVersion = version;
+            lastRankTemplates = publicTemplates;
+        }
+        return new HashMap<String, Integer>(templateRank);
+    }
+
+    private static Map<String, Integer> calculateRank(Set<String> publicTemplates) {
         Map<String, Integer> templateRank = new HashMap<String, Integer>();
-        Map<String, Double> templateMergedRank = templatesExecutionCache.getLogarithmMap(null,
-                                                                              templateManager);
+        Map<String, Double> templateMergedRank =
+            templatesExecutionCache.getLogarithmMap(publicTemplates);
 
         //order the templateMergedRank by value descending
         List<Entry<String, Double>> listOrdered =
@@ -272,6 +285,7 @@ public class TemplateTracker extends AbstractTracker
                         + " SET templatename = '" + newTemplateName + "'"
                         + " WHERE templatename = '" + oldTemplateName + "'";
             stm.executeUpdate(sql);
+            templatesExecutionCache.renameTemplate(oldTemplateName, newTemplateName);
         } catch (SQLException sqe) {
             LOG.error("Problem during updating templatename in updateTemplateName() ,method", sqe);
         } finally {
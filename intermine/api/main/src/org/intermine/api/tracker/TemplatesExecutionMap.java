@@ -11,6 +11,7 @@ package org.intermine.api.tracker;
  */
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 import org.intermine.api.tracker.track.TemplateTrack;
 import org.intermine.api.template.ApiTemplate;
@@ -19,19 +20,22 @@ import org.intermine.api.template.TemplateManager;
 /**
  * Class for saving the template executions into the memory. The template executions are saved into
  * an Map containing as a value an hashmap having as a key the user's name (or the session
- * identifier) and as a value the number of executions for that user's name (or session identifier)
+ * identifier) and as a value the number of executions for that user's name (or session identifier).
+ * The map is updated by the request threads, so all the methods are synchronized, and every
+ * change increments a version number that callers can use to cache values derived from it.
  * @author dbutano
  */
 public class TemplatesExecutionMap
 {
     protected Map<String, Map<String, Integer>> templateExecutions =
                                               new HashMap<String, Map<String, Integer>>();
+    private long version = 0;
 
     /**
      * Add a new template track into the map
      * @param templateTrack the template track to add
      */
-    public void addExecution(TemplateTrack templateTrack) {
+    public synchronized void addExecution(TemplateTrack templateTrack) {
         String executionKey = (templateTrack.getUserName() != null
                               && !"".equals(templateTrack.getUserName()))
                               ? templateTrack.getUserName()
@@ -51,6 +55,58 @@ public class TemplatesExecutionMap
                 execution.put(executionKey, execution.get(executionKey).intValue() + 1);
             }
         }
+        version++;
+    }
+
+    /**
+     * Move the executions of a template to its new name
+     * @param oldTemplateName the old name
+     * @param newTemplateName the new name
+     */
+    public synchronized void renameTemplate(String oldTemplateName, String newTemplateName) {
+        Map<String, Integer> oldExecution = templateExecutions.remove(oldTemplateName);
+        if (oldExecution == null) {
+            return;
+        }
+        Map<String, Integer> execution = templateExecutions.get(newTemplateName);
+        if (execution == null) {
+            templateExecutions.put(newTemplateName, oldExecution);
+        } else {
+            for (Map.Entry<String, Integer> entry : oldExecution.entrySet()) {
+                Integer count = execution.get(entry.getKey());
+                execution.put(entry.getKey(), (count == null) ? entry.getValue()
+                        : count.intValue() + entry.getValue().intValue());
+            }
+        }
+        version++;
+    }
+
+    /**
+     * Return the version of the map, which changes whenever an execution is added
+     * @return the version
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * Return the number of executions of each of the templates specified in input
+     * @param templateNames the names of the templates to count
+     * @return map having as key the template's name and as value the number of executions
+     */
+    public synchronized Map<String, Integer> getExecutionCounts(Set<String> templateNames) {
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        for (String templateName : templateNames) {
+            Map<String, Integer> execution = templateExecutions.get(templateName);
+            if (execution != null) {
+                int count = 0;
+                for (Integer executions : execution.values()) {
+                    count += executions.intValue();
+                }
+                counts.put(templateName, count);
+            }
+        }
+        return counts;
     }
 
     /**
@@ -63,23 +119,16 @@ public class TemplatesExecutionMap
      */
     public Map<String, Double> getLogarithmMap(String executionKey,
                                                TemplateManager templateManager) {
-        Map<String, Double> logarithmMap = new HashMap<String, Double>();
         if (executionKey == null) {
             if (templateManager != null) {
                 Map<String, ApiTemplate> publicTemplates =
                     templateManager.getValidGlobalTemplates();
-                for (String templateName : templateExecutions.keySet()) {
-                    if (publicTemplates.containsKey(templateName)) {
-                        Map<String, Integer> execution = templateExecutions.get(templateName);
-                        double accessLn = 0;
-                        for (String key : execution.keySet()) {
-                            accessLn = accessLn + Math.log(execution.get(key) + 1);
-                        }
-                        logarithmMap.put(templateName, accessLn);
-                    }
-                }
+                return getLogarithmMap(publicTemplates.keySet());
             }
-        } else {
+            return new HashMap<String, Double>();
+        }
+        Map<String, Double> logarithmMap = new HashMap<String, Double>();
+        synchronized (this) {
             for (String templateName : templateExecutions.keySet()) {
                 Map<String, Integer> execution = templateExecutions.get(templateName);
                 if (execution.containsKey(executionKey)) {
@@ -90,4 +139,25 @@ public class TemplatesExecutionMap
         }
         return logarithmMap;
     }
+
+    /**
+     * Return a map containing the logarithm's sum of the executions of the templates specified in
+     * input, launched by the same users or during the same sessions.
+     * @param templateNames the names of the templates, usually the public ones
+     * @return map having as key the template's name and as value the logarithm sum
+     */
+    public synchronized Map<String, Double> getLogarithmMap(Set<String> templateNames) {
+        Map<String, Double> logarithmMap = new HashMap<String, Double>();
+        for (String templateName : templateExecutions.keySet()) {
+            if (templateNames.contains(templateName)) {
+                Map<String, Integer> execution = templateExecutions.get(templateName);
+                double accessLn = 0;
+                for (String key : execution.keySet()) {
+                    accessLn = accessLn + Math.log(execution.get(key) + 1);
+                }
+                logarithmMap.put(templateName, accessLn);
+            }
+        }
+        return logarithmMap;
+    }
 }
@@ -13,19 +13,17 @@ import java.lang.ref.WeakReference;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Queue;
 
 import org.apache.log4j.Logger;
 import org.intermine.api.profile.Profile;
 import org.intermine.api.template.TemplateManager;
 import org.intermine.api.tracker.factory.TrackerFactory;
 import org.intermine.api.tracker.track.ListTrack;
-import org.intermine.api.tracker.track.Track;
 import org.intermine.api.tracker.util.ListBuildMode;
 import org.intermine.api.tracker.util.ListTrackerEvent;
+import org.intermine.api.tracker.util.TrackQueue;
 import org.intermine.api.tracker.util.TrackerUtil;
 import org.intermine.objectstore.ObjectStoreWriter;
 import org.intermine.objectstore.intermine.ObjectStoreWriterInterMineImpl;
@@ -34,16 +32,21 @@ import org.intermine.util.Shutdownable;
 
 /**
  * Intermediate class which decouples the tracker components from the code that uses them.
+ * The trackers put the tracks into a bounded queue, which a TrackerLogger thread stores in
+ * batches; the tracks still queued are stored when the delegate is closed.
  * @author dbutano
  *
  */
 public class TrackerDelegate implements Shutdownable
 {
     private static final Logger LOG = Logger.getLogger(TrackerDelegate.class);
+    /** the largest number of tracks waiting to be stored, further tracks are dropped **/
+    public static final int QUEUE_CAPACITY = 10000;
     protected Map<String, Tracker> trackers = new HashMap<String, Tracker>();
     protected ObjectStoreWriter osw;
     protected final Connection connection;
     protected Thread trackerLoggerThread;
+    protected final TrackQueue trackQueue = new TrackQueue(QUEUE_CAPACITY);
     private boolean isClosed = false;
 
     /**
@@ -52,7 +55,6 @@ public class TrackerDelegate implements Shutdownable
      * @param osw the object store witer used to retrieve the connections
      */
     public TrackerDelegate(String[] trackerClassNames, ObjectStoreWriter osw) {
-        Queue<Track> trackQueue = new LinkedList<Track>();
         this.osw = osw;
         ShutdownHook.registerObject(new WeakReference<Object>(this));
         try {
@@ -126,25 +128,35 @@ public class TrackerDelegate implements Shutdownable
     }
 
     /**
-     * Return the rank associated to the templates
-     * @return map with key the template name and value the rank associated
+     * Return the number of executions of each public template, counted in memory without
+     * querying the database
+     * @param templateManager the template manager
+     * @return map with key the template name and value the number of executions
      */
-    public Map<String, Integer> getAccessCounter() {
+    public Map<String, Integer> getAccessCounter(TemplateManager templateManager) {
         TemplateTracker tt = getTemplateTracker();
         if (tt != null) {
-            Connection conn = null;
-            try {
-                conn = getConnection();
-                return tt.getAccessCounter(conn);
-            } catch (SQLException sqle) {
-                LOG.error("Problems retrieving connection for getAccessCounter ", sqle);
-            } finally {
-                releaseConnection(conn);
-            }
+            return tt.getAccessCounter(templateManager);
         }
         return null;
     }
 
+    /**
+     * Return the number of tracks waiting to be stored
+     * @return the number of tracks
+     */
+    public int getQueuedTrackCount() {
+        return trackQueue.size();
+    }
+
+    /**
+     * Return the number of tracks dropped because too many were waiting to be stored
+     * @return the number of tracks
+     */
+    public long getDroppedTrackCount() {
+        return trackQueue.getDroppedCount();
+    }
+
     /**
      * Return the rank associated to the templates
      * @param templateManager the template manager
@@ -353,9 +365,9 @@ public class TrackerDelegate implements Shutdownable
     }
 
     /**
-     * Release the db connection when done. Once this connection is released, it will be sent
-     * back to the connection pool and reassigned to someone else. So we need to be careful to
-     * not close a connection someone else is using!
+     * Store the tracks still queued and release the db connection when done. Once this
+     * connection is released, it will be sent back to the connection pool and reassigned to
+     * someone else. So we need to be careful to not close a connection someone else is using!
      */
     public synchronized void close() {
         if (isClosed) {
@@ -10,21 +10,40 @@ package org.intermine.api.tracker;
  *
  */
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 
+import org.apache.log4j.Logger;
 import org.intermine.api.tracker.track.Track;
+import org.intermine.api.tracker.util.TrackQueue;
+import org.intermine.api.tracker.util.TrackerUtil;
 
 /**
  * Runnable object providing insertion into the database. TrackerLogger is created
  * for a specific connection and table.
+ *
+ * The tracks are taken from the queue in batches: everything waiting, up to BATCH_SIZE tracks,
+ * is inserted with one JDBC batch per table in a single transaction, so a busy web application
+ * needs a round trip per batch rather than per track. When the thread is interrupted the tracks
+ * still in the queue are stored before it finishes.
  * @author dbutano
  *
  */
 public class TrackerLogger implements Runnable
 {
+    private static final Logger LOG = Logger.getLogger(TrackerLogger.class);
+    /** the largest number of tracks inserted in one transaction **/
+    public static final int BATCH_SIZE = 500;
+    private static final long IDLE_WAIT = 10;
 
     private Connection connection;
     private Queue<Track> trackQueue;
+    private long droppedLogged = 0;
 
     /**
      * Construct a TrackerLogger for a specific connection and table
@@ -44,21 +63,115 @@ public class TrackerLogger implements Runnable
      */
     @Override
     public void run() {
+        List<Track> batch = new ArrayList<Track>(BATCH_SIZE);
         for (;;) {
             if (Thread.interrupted()) {
+                drain(batch);
                 return;
             }
+            takeBatch(batch);
+            if (batch.isEmpty()) {
+                try {
+                    Thread.sleep(IDLE_WAIT);
+                } catch (InterruptedException e) {
+                    drain(batch);
+                    return;
+                }
+            } else {
+                storeBatch(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    // store everything left in the queue
+    private void drain(List<Track> batch) {
+        takeBatch(batch);
+        while (!batch.isEmpty()) {
+            storeBatch(batch);
+            batch.clear();
+            takeBatch(batch);
+        }
+    }
+
+    private void takeBatch(List<Track> batch) {
+        if (trackQueue instanceof TrackQueue) {
+            ((TrackQueue) trackQueue).drainTo(batch, BATCH_SIZE);
+        } else {
+            Track track;
+            while (batch.size() < BATCH_SIZE && (track = trackQueue.poll()) != null) {
+                batch.add(track);
+            }
+        }
+    }
 
-            Track track = trackQueue.poll();
-            if (track != null) {
+    /**
+     * Insert a batch of tracks, with one statement for each table. If the batch fails the
+     * tracks are stored one at a time, so that one bad track doesn't lose the others.
+     * @param batch the tracks to store
+     */
+    protected void storeBatch(List<Track> batch) {
+        Map<String, List<Track>> tracksByTable = new LinkedHashMap<String, List<Track>>();
+        for (Track track : batch) {
+            List<Track> tableTracks = tracksByTable.get(track.getTableName());
+            if (tableTracks == null) {
+                tableTracks = new ArrayList<Track>();
+                tracksByTable.put(track.getTableName(), tableTracks);
+            }
+            tableTracks.add(track);
+        }
+        try {
+            connection.setAutoCommit(false);
+            for (Map.Entry<String, List<Track>> entry : tracksByTable.entrySet()) {
+                List<Track> tableTracks = entry.getValue();
+                PreparedStatement stm = connection.prepareStatement(
+                        TrackerUtil.getInsertStatement(entry.getKey(),
+                                tableTracks.get(0).getFormattedTrack().length));
+                try {
+                    for (Track track : tableTracks) {
+                        TrackerUtil.setValues(stm, track.getFormattedTrack());
+                        stm.addBatch();
+                    }
+                    stm.executeBatch();
+                } finally {
+                    stm.close();
+                }
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            LOG.warn("Problem storing a batch of " + batch.size() + " tracks, storing them"
+                    + " one at a time", e);
+            rollback();
+            for (Track track : batch) {
                 track.store(connection);
             }
+        } finally {
             try {
-                Thread.sleep(10);
-            } catch (InterruptedException e) {
-                return;
+                connection.setAutoCommit(true);
+            } catch (SQLException e) {
+                LOG.error("Problem resetting autocommit on the tracker connection", e);
             }
+        }
+        logDropped();
+    }
 
+    private void rollback() {
+        try {
+            connection.rollback();
+            connection.setAutoCommit(true);
+        } catch (SQLException e) {
+            LOG.error("Problem rolling back the tracker connection", e);
+        }
+    }
+
+    private void logDropped() {
+        if (trackQueue instanceof TrackQueue) {
+            long dropped = ((TrackQueue) trackQueue).getDroppedCount();
+            if (dropped > droppedLogged) {
+                LOG.warn((dropped - droppedLogged) + " tracks dropped because the queue of "
+                        + ((TrackQueue) trackQueue).getCapacity() + " tracks was full");
+                droppedLogged = dropped;
+            }
         }
     }
 }
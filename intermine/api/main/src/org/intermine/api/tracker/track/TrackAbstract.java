@@ -16,6 +16,7 @@ import java.sql.SQLException;
 import java.sql.Timestamp;
 
 import org.apache.log4j.Logger;
+import org.intermine.api.tracker.util.TrackerUtil;
 
 /**
  * Class representing the track
@@ -33,27 +34,11 @@ public abstract class TrackAbstract implements Track
     public void store(Connection con) {
         String sql = "";
         PreparedStatement stm = null;
-        StringBuffer valuesBuffer = new StringBuffer();
         Object[] values = getFormattedTrack();
-        int valuesSize = values.length;
-        for (int index = 0; index < valuesSize; index++) {
-            valuesBuffer = valuesBuffer.append("?,");
-        }
-        valuesBuffer = valuesBuffer.deleteCharAt(valuesBuffer.length() - 1);
         try {
-            sql = "INSERT INTO " + getTableName() + " VALUES(" + valuesBuffer + ")";
+            sql = TrackerUtil.getInsertStatement(getTableName(), values.length);
             stm = con.prepareStatement(sql);
-            Object value = null;
-            for (int index = 0; index < valuesSize; ) {
-                value = values[index];
-                if (value instanceof Integer) {
-                    stm.setInt(++index, (Integer) value);
-                } else if (value instanceof Timestamp) {
-                    stm.setTimestamp(++index, (Timestamp) value);
-                } else {
-                    stm.setString(++index, value.toString());
-                }
-            }
+            TrackerUtil.setValues(stm, values);
             stm.executeUpdate();
         } catch (SQLException sqe) {
             LOG.error("Problem executing the statement: " + sql, sqe);
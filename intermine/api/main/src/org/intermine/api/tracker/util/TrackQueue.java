@@ -0,0 +1,153 @@
+package org.intermine.api.tracker.util;
+
+/*
+ * Copyright (C) 2002-2017 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.intermine.api.tracker.track.Track;
+
+/**
+ * The queue between the request threads that create tracks and the TrackerLogger thread that
+ * stores them. Adding a track never blocks or takes a lock: when the queue is full the track is
+ * dropped and counted instead, so a burst of requests cannot run the web application out of
+ * memory if the database is slow.
+ *
+ * @author chenyian
+ */
+public class TrackQueue extends AbstractQueue<Track>
+{
+    private final Queue<Track> tracks = new ConcurrentLinkedQueue<Track>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+    private final int capacity;
+
+    /**
+     * Construct a queue.
+     *
+     * @param capacity the largest number of tracks waiting to be stored
+     */
+    public TrackQueue(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1");
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Add a track, unless the queue is full.
+     *
+     * @param track the track
+     * @return false if the queue is full and the track has been dropped
+     */
+    @Override
+    public boolean offer(Track track) {
+        if (track == null) {
+            throw new NullPointerException("track may not be null");
+        }
+        if (size.incrementAndGet() > capacity) {
+            size.decrementAndGet();
+            dropped.incrementAndGet();
+            return false;
+        }
+        tracks.offer(track);
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Track poll() {
+        Track track = tracks.poll();
+        if (track != null) {
+            size.decrementAndGet();
+        }
+        return track;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Track peek() {
+        return tracks.peek();
+    }
+
+    /**
+     * Move up to maxTracks tracks from the head of the queue to a collection.
+     *
+     * @param collection the collection to add the tracks to
+     * @param maxTracks the largest number of tracks to move
+     * @return the number of tracks moved
+     */
+    public int drainTo(Collection<? super Track> collection, int maxTracks) {
+        int moved = 0;
+        Track track;
+        while (moved < maxTracks && (track = poll()) != null) {
+            collection.add(track);
+            moved++;
+        }
+        return moved;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterator<Track> iterator() {
+        final Iterator<Track> iterator = tracks.iterator();
+        return new Iterator<Track>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public Track next() {
+                return iterator.next();
+            }
+
+            @Override
+            public void remove() {
+                iterator.remove();
+                size.decrementAndGet();
+            }
+        };
+    }
+
+    /**
+     * @return the largest number of tracks waiting to be stored
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the number of tracks dropped because the queue was full
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+}
@@ -10,6 +10,10 @@ package org.intermine.api.tracker.util;
  *
  */
 
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
 /**
  *
  * @author Daniela
@@ -40,4 +44,39 @@ public final class TrackerUtil
     private TrackerUtil() {
         // just don't
     }
+
+    /**
+     * Return the statement inserting a track into its table
+     * @param tableName the table where the track is saved
+     * @param valuesSize the number of values of the track
+     * @return String sql statement
+     */
+    public static String getInsertStatement(String tableName, int valuesSize) {
+        StringBuffer valuesBuffer = new StringBuffer();
+        for (int index = 0; index < valuesSize; index++) {
+            valuesBuffer.append("?,");
+        }
+        valuesBuffer.deleteCharAt(valuesBuffer.length() - 1);
+        return "INSERT INTO " + tableName + " VALUES(" + valuesBuffer + ")";
+    }
+
+    /**
+     * Set the parameters of an insert statement to the values of a track
+     * @param stm the statement created with getInsertStatement
+     * @param values the formatted track
+     * @throws SQLException if a parameter can't be set
+     */
+    public static void setValues(PreparedStatement stm, Object[] values) throws SQLException {
+        Object value = null;
+        for (int index = 0; index < values.length; ) {
+            value = values[index];
+            if (value instanceof Integer) {
+                stm.setInt(++index, (Integer) value);
+            } else if (value instanceof Timestamp) {
+                stm.setTimestamp(++index, (Timestamp) value);
+            } else {
+                stm.setString(++index, value.toString());
+            }
+        }
+    }
 }
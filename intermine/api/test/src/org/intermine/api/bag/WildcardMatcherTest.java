@@ -0,0 +1,75 @@
+package org.intermine.api.bag;
+
+/*
+ * Copyright (C) 2002-2017 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import junit.framework.TestCase;
+
+public class WildcardMatcherTest extends TestCase
+{
+    public void testMatch() throws Exception {
+        WildcardMatcher matcher = new WildcardMatcher(Arrays.asList("EmployeeA*", "*B3",
+                "*ploy*", "e*e*a1", "zdc(*)", "**"));
+        assertEquals(Arrays.asList("EmployeeA*", "*ploy*", "e*e*a1", "**"),
+                matcher.match("employeea1"));
+        assertEquals(Arrays.asList("*B3", "*ploy*", "**"), matcher.match("employeeb3"));
+        assertEquals(Arrays.asList("zdc(*)", "**"), matcher.match("zdc-1"));
+        assertEquals(Collections.singletonList("**"), matcher.match(""));
+        assertFalse(matcher.isEmpty());
+        assertTrue(new WildcardMatcher(new ArrayList<String>()).isEmpty());
+    }
+
+    public void testAnchors() throws Exception {
+        WildcardMatcher matcher = new WildcardMatcher(Arrays.asList("ab*ba", "a*a*a"));
+        assertEquals(Collections.emptyList(), matcher.match("aba"));
+        assertEquals(Collections.singletonList("ab*ba"), matcher.match("abba"));
+        assertEquals(Collections.singletonList("a*a*a"), matcher.match("aaa"));
+        assertEquals(Collections.emptyList(), matcher.match("aa"));
+        assertEquals(Arrays.asList("ab*ba", "a*a*a"), matcher.match("abaaba"));
+    }
+
+    public void testSameAsRegularExpressions() throws Exception {
+        Random random = new Random(7);
+        List<String> wildcards = new ArrayList<String>();
+        for (int i = 0; i < 200; i++) {
+            wildcards.add(randomString(random, 1 + random.nextInt(4), "abcAB*"));
+        }
+        List<Pattern> patterns = new ArrayList<Pattern>();
+        for (String wildcard : wildcards) {
+            patterns.add(Pattern.compile(wildcard.toLowerCase().replaceAll("\\*", "\\.\\*")));
+        }
+        WildcardMatcher matcher = new WildcardMatcher(wildcards);
+        for (int i = 0; i < 2000; i++) {
+            String field = randomString(random, random.nextInt(8), "abc");
+            List<String> expected = new ArrayList<String>();
+            for (int j = 0; j < wildcards.size(); j++) {
+                if (patterns.get(j).matcher(field).matches()) {
+                    expected.add(wildcards.get(j));
+                }
+            }
+            assertEquals(field, expected, matcher.match(field));
+        }
+    }
+
+    private static String randomString(Random random, int length, String alphabet) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,99 @@
+package org.intermine.api.idresolution;
+
+/*
+ * Copyright (C) 2002-2017 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.Properties;
+import java.util.UUID;
+
+import junit.framework.TestCase;
+
+import org.intermine.api.bag.BagQueryUpgrade;
+
+public class IDResolverTest extends TestCase
+{
+    public void testTurns() throws Exception {
+        FairJobQueue queue = new FairJobQueue();
+        Job a1 = job(), a2 = job(), a3 = job(), b1 = job(), c1 = job();
+        assertTrue(queue.offer("a", a1, 10, 10));
+        assertTrue(queue.offer("a", a2, 10, 10));
+        assertTrue(queue.offer("a", a3, 10, 10));
+        assertTrue(queue.offer("b", b1, 10, 10));
+        assertTrue(queue.offer("c", c1, 10, 10));
+        assertEquals(5, queue.size());
+        assertEquals(3, queue.size("a"));
+
+        assertSame(a1, queue.poll());
+        assertSame(b1, queue.poll());
+        assertSame(c1, queue.poll());
+        assertSame(a2, queue.poll());
+        assertSame(a3, queue.poll());
+        assertNull(queue.poll());
+        assertEquals(0, queue.size());
+    }
+
+    public void testLimits() throws Exception {
+        FairJobQueue queue = new FairJobQueue();
+        assertTrue(queue.offer("a", job(), 3, 2));
+        assertTrue(queue.offer("a", job(), 3, 2));
+        assertFalse(queue.offer("a", job(), 3, 2));
+        assertTrue(queue.offer("b", job(), 3, 2));
+        assertFalse(queue.offer("c", job(), 3, 2));
+        assertEquals(3, queue.size());
+    }
+
+    public void testRemove() throws Exception {
+        FairJobQueue queue = new FairJobQueue();
+        Job a1 = job(), b1 = job(), b2 = job();
+        queue.offer("a", a1, 10, 10);
+        queue.offer("b", b1, 10, 10);
+        queue.offer("b", b2, 10, 10);
+        assertTrue(queue.remove(a1));
+        assertFalse(queue.remove(a1));
+        assertEquals(0, queue.size("a"));
+        assertSame(b1, queue.poll());
+        assertSame(b2, queue.poll());
+        assertNull(queue.poll());
+    }
+
+    public void testExpiry() throws Exception {
+        Properties props = new Properties();
+        props.setProperty(IDResolver.WORKERS_PROPERTY, "1");
+        props.setProperty(IDResolver.TTL_PROPERTY, "0");
+        IDResolver resolver = new IDResolver(props);
+        // a job without an upgrade fails as soon as it runs
+        Job job = resolver.submit((BagQueryUpgrade) null, "a");
+        long deadline = System.currentTimeMillis() + 10000;
+        while (resolver.getMetrics().get("failed").intValue() == 0) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Job did not finish within 10 seconds: " + resolver.getMetrics());
+            }
+            Thread.sleep(10);
+        }
+        assertEquals(Job.JobStatus.ERROR, job.getStatus());
+        assertEquals(0, resolver.getMetrics().get("completed").intValue());
+        // the job is counted as failed just before its finishing time is recorded, so it may not
+        // be ready to expire straight away
+        int expired = 0;
+        while (expired == 0) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Job did not expire within 10 seconds: " + resolver.getMetrics());
+            }
+            Thread.sleep(10);
+            expired = resolver.expireJobs();
+        }
+        assertEquals(1, expired);
+        assertNull(resolver.getJobById(job.getUid()));
+    }
+
+    private static Job job() {
+        return new UpgradeJob(UUID.randomUUID(), null);
+    }
+}
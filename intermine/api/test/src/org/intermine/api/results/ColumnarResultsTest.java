@@ -0,0 +1,175 @@
+package org.intermine.api.results;
+
+/*
+ * Copyright (C) 2002-2017 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.intermine.api.bag.BagQueryResult;
+import org.intermine.api.results.flatouterjoins.MultiRow;
+import org.intermine.api.results.flatouterjoins.MultiRowFirstValue;
+import org.intermine.api.results.flatouterjoins.MultiRowValue;
+import org.intermine.objectstore.query.ResultsInfo;
+import org.intermine.objectstore.query.ResultsRow;
+import org.intermine.pathquery.Path;
+import org.intermine.pathquery.PathQuery;
+
+public class ColumnarResultsTest extends TestCase
+{
+    private static final Object[][] ROWS = new Object[][] {
+        {"b", Integer.valueOf(3), Double.valueOf(1.5), Long.valueOf(7), Boolean.TRUE},
+        {"a", null, Double.valueOf(-2.0), Long.valueOf(5), "mixed"},
+        {"b", Integer.valueOf(1), null, null, Boolean.FALSE},
+        {null, Integer.valueOf(2), Double.valueOf(0.5), Long.valueOf(6), null},
+    };
+
+    public void testRows() throws Exception {
+        ColumnarResults columnar = ColumnarResults.build(new Table(ROWS), 10, 100000);
+        assertEquals(4, columnar.size());
+        assertEquals(5, columnar.getColumnCount());
+        for (int i = 0; i < ROWS.length; i++) {
+            ResultsRow<MultiRowValue<ResultElement>> row = columnar.getResultElements(i).get(0);
+            for (int j = 0; j < ROWS[i].length; j++) {
+                assertEquals(i + "," + j, ROWS[i][j], columnar.getValue(i, j));
+                ResultElement element = row.get(j).getValue();
+                if (ROWS[i][j] == null) {
+                    assertNull(element);
+                } else {
+                    assertEquals(ROWS[i][j], element.getField());
+                }
+            }
+        }
+        try {
+            columnar.getResultElements(4);
+            fail("Expected an IndexOutOfBoundsException");
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+
+    public void testSort() throws Exception {
+        ColumnarResults columnar = ColumnarResults.build(new Table(ROWS), 10, 100000);
+        // nulls last, equal values keep their order
+        assertTrue(Arrays.equals(new int[] {1, 0, 2, 3}, columnar.sort(0, true)));
+        assertTrue(Arrays.equals(new int[] {0, 2, 1, 3}, columnar.sort(0, false)));
+        assertTrue(Arrays.equals(new int[] {2, 3, 0, 1}, columnar.sort(1, true)));
+        assertTrue(Arrays.equals(new int[] {1, 3, 0, 2}, columnar.sort(2, true)));
+        assertTrue(Arrays.equals(new int[] {0, 3, 1, 2}, columnar.sort(3, false)));
+    }
+
+    public void testSummaries() throws Exception {
+        ColumnarResults columnar = ColumnarResults.build(new Table(ROWS), 10, 100000);
+        Map<Object, Integer> counts = columnar.getValueCounts(0);
+        assertEquals(Arrays.asList("b", "a"), new ArrayList<Object>(counts.keySet()));
+        assertEquals(Integer.valueOf(2), counts.get("b"));
+        Map<String, Number> summary = columnar.getNumericSummary(1);
+        assertEquals(1.0, summary.get("min").doubleValue(), 0.0001);
+        assertEquals(3.0, summary.get("max").doubleValue(), 0.0001);
+        assertEquals(2.0, summary.get("average").doubleValue(), 0.0001);
+        assertEquals(3, summary.get("count").intValue());
+        assertNull(columnar.getNumericSummary(0));
+    }
+
+    public void testLimits() throws Exception {
+        assertNull(ColumnarResults.build(new Table(ROWS), 3, 100000));
+        assertNull(ColumnarResults.build(new Table(ROWS), 10, 100));
+    }
+
+    public void testCacheEviction() throws Exception {
+        ColumnarResults columnar = ColumnarResults.build(new Table(ROWS), 10, 100000);
+        long size = columnar.getSizeInBytes();
+        ColumnarResultsCache cache = new ColumnarResultsCache(size * 2, 10);
+        cache.put("q1", columnar);
+        cache.put("q2", columnar);
+        assertEquals(2, cache.size());
+        cache.put("q3", columnar);
+        assertEquals(2, cache.size());
+        assertEquals(size * 2, cache.getSizeInBytes());
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertFalse(new ColumnarResultsCache(0, 10).isEnabled());
+    }
+
+    private static class Table extends ArrayList<MultiRow<ResultsRow<MultiRowValue<ResultElement>>>>
+        implements WebTable
+    {
+        private final int columnCount;
+
+        Table(Object[][] rows) {
+            columnCount = rows[0].length;
+            for (Object[] values : rows) {
+                ResultsRow<MultiRowValue<ResultElement>> row
+                    = new ResultsRow<MultiRowValue<ResultElement>>();
+                for (Object value : values) {
+                    row.add(new MultiRowFirstValue<ResultElement>(
+                                value == null ? null : new ResultElement(value), 1));
+                }
+                MultiRow<ResultsRow<MultiRowValue<ResultElement>>> multiRow
+                    = new MultiRow<ResultsRow<MultiRowValue<ResultElement>>>();
+                multiRow.add(row);
+                add(multiRow);
+            }
+        }
+
+        public boolean isSingleBatch() {
+            return true;
+        }
+
+        public MultiRow<ResultsRow<MultiRowValue<ResultElement>>> getResultElements(int index) {
+            return get(index);
+        }
+
+        public List<Column> getColumns() {
+            return Collections.emptyList();
+        }
+
+        public boolean isSizeEstimate() {
+            return false;
+        }
+
+        public int getEstimatedSize() {
+            return size();
+        }
+
+        public int getMaxRetrievableIndex() {
+            return size();
+        }
+
+        public Map<String, BagQueryResult> getPathToBagQueryResult() {
+            return null;
+        }
+
+        public PathQuery getPathQuery() {
+            return null;
+        }
+
+        public ResultsInfo getInfo() {
+            return null;
+        }
+
+        public List<Path> getColumnsPath() {
+            List<Path> paths = new ArrayList<Path>();
+            for (int i = 0; i < columnCount; i++) {
+                paths.add(null);
+            }
+            return paths;
+        }
+
+        public void addColumns(List<Path> columnPaths) {
+            // not needed
+        }
+    }
+}
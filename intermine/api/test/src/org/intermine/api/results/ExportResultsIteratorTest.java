@@ -331,6 +331,64 @@ public class ExportResultsIteratorTest extends TestCase
         assertEquals(expected, got);
     }
 
+    public void testPrefetch() throws Exception {
+        ObjectStoreDummyImpl os = new ObjectStoreDummyImpl();
+        os.setResultsSize(20);
+
+        Company company1 = (Company) DynamicUtil.createObject(Collections.singleton(Company.class));
+        company1.setName("Company1");
+        company1.setId(new Integer(1));
+
+        PathQuery pq = new PathQuery(model);
+        pq.addViews("Department.name", "Department.company.name");
+        Path p1 = pq.makePath("Department.name");
+        Path p2 = pq.makePath("Department.company.name");
+
+        List expected = new ArrayList();
+        for (int i = 0; i < 20; i++) {
+            Department department = new Department();
+            department.setName("Department" + i);
+            department.setId(new Integer(i + 2));
+            ResultsRow row = new ResultsRow();
+            row.add(department);
+            row.add(company1);
+            os.addRow(row);
+            expected.add(Arrays.asList(new ResultElement(department, p1, false),
+                        new ResultElement(company1, p2, false)));
+        }
+
+        Map pathToQueryNode = new HashMap();
+        Query q = MainHelper.makeQuery(pq, new HashMap(), pathToQueryNode, null, null);
+        List resultList = os.execute(q, 0, 20, true, true, new HashMap());
+        Results results = new DummyResults(q, resultList);
+
+        ExportResultsIterator iter = new ExportResultsIterator(pq, q, results, pathToQueryNode);
+        // read one row before starting, as QueryResultService does
+        assertTrue(iter.hasNext());
+        iter.prefetch(3, 2);
+        List got = new ArrayList();
+        for (List gotRow : new IteratorIterable<List<ResultElement>>(iter)) {
+            got.add(gotRow);
+        }
+        assertEquals(expected, got);
+        // the first row was read before prefetching started
+        assertEquals(new Long(19), iter.getPrefetchMetrics().get("rows"));
+        iter.releaseGoFaster();
+
+        // stopping early
+        iter = new ExportResultsIterator(pq, q, new DummyResults(q, resultList), pathToQueryNode);
+        iter.prefetch(3, 1);
+        assertEquals(expected.get(0), iter.next());
+        iter.stopPrefetching();
+        int more = 0;
+        while (iter.hasNext()) {
+            iter.next();
+            more++;
+        }
+        // only the rest of the batch already handed over
+        assertEquals(2, more);
+    }
+
     public void testReferenceReference() throws Exception {
         ObjectStoreDummyImpl os = new ObjectStoreDummyImpl();
         os.setResultsSize(2);
@@ -135,8 +135,9 @@ public class TrackerDelegateTest extends InterMineAPITestCase
         stm.close();
 
         //template1 is public, template2 not
-        assertEquals(4, trackerDelegate.getAccessCounter().get("template1").intValue());
-        assertNull(trackerDelegate.getAccessCounter().get("template2"));
+        assertEquals(4,
+                trackerDelegate.getAccessCounter(templateManager).get("template1").intValue());
+        assertNull(trackerDelegate.getAccessCounter(templateManager).get("template2"));
 
         // test rank
         assertEquals(1, trackerDelegate.getRank(templateManager).get("template1").intValue());
@@ -0,0 +1,87 @@
+package org.intermine.api.tracker.util;
+
+/*
+ * Copyright (C) 2002-2017 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.intermine.api.tracker.track.LoginTrack;
+import org.intermine.api.tracker.track.Track;
+
+public class TrackQueueTest extends TestCase
+{
+    public void testBounded() throws Exception {
+        TrackQueue queue = new TrackQueue(3);
+        for (int i = 0; i < 5; i++) {
+            boolean added = queue.offer(new LoginTrack("user" + i,
+                    new Timestamp(System.currentTimeMillis())));
+            assertEquals(i < 3, added);
+        }
+        assertEquals(3, queue.size());
+        assertEquals(2, queue.getDroppedCount());
+        try {
+            queue.add(new LoginTrack("user", new Timestamp(System.currentTimeMillis())));
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertEquals(3, queue.getDroppedCount());
+
+        assertEquals("user0", queue.poll().getFormattedTrack()[0]);
+        assertEquals(2, queue.size());
+        assertTrue(queue.offer(new LoginTrack("user5", new Timestamp(0))));
+        assertEquals(3, queue.size());
+    }
+
+    public void testDrainTo() throws Exception {
+        TrackQueue queue = new TrackQueue(10);
+        for (int i = 0; i < 7; i++) {
+            queue.offer(new LoginTrack("user" + i, new Timestamp(0)));
+        }
+        List<Track> batch = new ArrayList<Track>();
+        assertEquals(5, queue.drainTo(batch, 5));
+        assertEquals(2, queue.size());
+        assertEquals(2, queue.drainTo(batch, 5));
+        assertEquals(7, batch.size());
+        assertEquals("user6", batch.get(6).getFormattedTrack()[0]);
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+    }
+
+    public void testConcurrentProducers() throws Exception {
+        final TrackQueue queue = new TrackQueue(1000);
+        final int perThread = 500;
+        Thread[] producers = new Thread[4];
+        for (int t = 0; t < producers.length; t++) {
+            producers[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < perThread; i++) {
+                        queue.offer(new LoginTrack("user", new Timestamp(0)));
+                    }
+                }
+            };
+            producers[t].start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        assertEquals(1000, queue.size());
+        assertEquals(producers.length * perThread - 1000, queue.getDroppedCount());
+        List<Track> batch = new ArrayList<Track>();
+        queue.drainTo(batch, Integer.MAX_VALUE);
+        assertEquals(1000, batch.size());
+        assertEquals(0, queue.size());
+    }
+}
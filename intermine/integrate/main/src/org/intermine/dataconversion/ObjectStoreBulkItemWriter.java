@@ -0,0 +1,301 @@
+package org.intermine.dataconversion;
+
+/*
+ * Copyright (C) 2002-2017 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.log4j.Logger;
+import org.intermine.metadata.AttributeDescriptor;
+import org.intermine.metadata.ClassDescriptor;
+import org.intermine.metadata.Model;
+import org.intermine.metadata.ReferenceDescriptor;
+import org.intermine.model.FastPathObject;
+import org.intermine.model.fulldata.Attribute;
+import org.intermine.model.fulldata.Item;
+import org.intermine.model.fulldata.Reference;
+import org.intermine.model.fulldata.ReferenceList;
+import org.intermine.objectstore.ObjectStoreException;
+import org.intermine.objectstore.intermine.DatabaseSchema;
+import org.intermine.objectstore.intermine.ObjectStoreInterMineImpl;
+import org.intermine.objectstore.intermine.ObjectStoreWriterInterMineImpl;
+import org.intermine.sql.DatabaseUtil;
+import org.intermine.sql.writebatch.Batch;
+import org.intermine.sql.writebatch.BatchWriterPostgresCopyImpl;
+
+/**
+ * Stores Items in an items database by writing rows straight into the item, attribute,
+ * reference and referencelist tables with a Batch using COPY, rather than storing every object
+ * through an ObjectStoreWriter.  The rows are the same as the ones ObjectStoreWriterInterMineImpl
+ * would write for a new object, but the columns of each table are only worked out once and the
+ * values are read without reflection.
+ *
+ * The ids of Items are taken from the serial sequence, which hands them out in blocks.  The rows
+ * are written on a connection of their own and committed every 10 million rows and on close(),
+ * so a large load becomes visible in the database a part at a time, although the ObjectStore is
+ * only told that the tables have changed on close().  Items are assumed to be new, as they are
+ * when a converter writes to an empty items database, so no existing rows are deleted.
+ *
+ * @author chenyian
+ */
+public class ObjectStoreBulkItemWriter implements ItemWriter
+{
+    private static final Logger LOG = Logger.getLogger(ObjectStoreBulkItemWriter.class);
+    private static final int TRANSACTION_BATCH_SIZE = 10000000;
+
+    private final ObjectStoreInterMineImpl os;
+    private final DatabaseSchema schema;
+    private final Map<Class<?>, TableInfo> tables = new HashMap<Class<?>, TableInfo>();
+    private final Set<Object> tablesAltered = new HashSet<Object>();
+    private Connection c;
+    private Batch batch;
+    private int transactionCounter = 0;
+    private long rowCount = 0;
+
+    /**
+     * Constructs the ItemWriter for the ObjectStore of an ObjectStoreWriter.
+     *
+     * @param osw the ObjectStoreWriter for the items database
+     * @throws ObjectStoreException if there is no connection to the database
+     */
+    public ObjectStoreBulkItemWriter(ObjectStoreWriterInterMineImpl osw)
+        throws ObjectStoreException {
+        os = (ObjectStoreInterMineImpl) osw.getObjectStore();
+        schema = os.getSchema();
+        Model model = os.getModel();
+        tables.put(Item.class, getTableInfo(model, Item.class));
+        tables.put(Attribute.class, getTableInfo(model, Attribute.class));
+        tables.put(Reference.class, getTableInfo(model, Reference.class));
+        tables.put(ReferenceList.class, getTableInfo(model, ReferenceList.class));
+        try {
+            c = os.getDatabase().getConnection();
+            c.setAutoCommit(false);
+        } catch (SQLException e) {
+            throw new ObjectStoreException("Could not get connection to database", e);
+        }
+        batch = new Batch(new BatchWriterPostgresCopyImpl());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Integer store(Item item) throws ObjectStoreException {
+        if (StringUtils.isEmpty(item.getClassName())
+            && StringUtils.isEmpty(item.getImplementations())) {
+            throw new RuntimeException("className not set for item: " + item.getIdentifier());
+        }
+        if (item.getId() == null) {
+            item.setId(os.getSerial());
+        }
+        Integer itemId = item.getId();
+        addRow(item, itemId, itemId);
+        for (Attribute a : item.getAttributes()) {
+            addRow(a, null, itemId);
+        }
+        for (Reference r : item.getReferences()) {
+            addRow(r, null, itemId);
+        }
+        for (ReferenceList r : item.getCollections()) {
+            addRow(r, null, itemId);
+        }
+        return itemId;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void store(ReferenceList refList, Integer itemId) throws ObjectStoreException {
+        addRow(refList, null, itemId);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void store(Reference ref, Integer itemId) throws ObjectStoreException {
+        addRow(ref, null, itemId);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void store(Attribute att, Integer itemId) throws ObjectStoreException {
+        addRow(att, null, itemId);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void storeAll(Collection<Item> items) throws ObjectStoreException {
+        for (Item item : items) {
+            store(item);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void close() throws ObjectStoreException {
+        if (c == null) {
+            return;
+        }
+        try {
+            batch.flush(c);
+            c.commit();
+            batch.close(c);
+            os.databaseAltered(tablesAltered);
+            LOG.info("Wrote " + rowCount + " rows to " + tablesAltered);
+        } catch (SQLException e) {
+            batch.clear();
+            try {
+                batch.close(c);
+                c.rollback();
+            } catch (SQLException e2) {
+                LOG.error("Could not roll back transaction", e2);
+            }
+            throw new ObjectStoreException("Error writing items", e);
+        } finally {
+            try {
+                c.setAutoCommit(true);
+                c.close();
+            } catch (SQLException e) {
+                LOG.error("Could not close connection", e);
+            }
+            c = null;
+        }
+    }
+
+    /**
+     * Add the row for an object to the batch.
+     *
+     * @param o an Item, Attribute, Reference or ReferenceList
+     * @param id the id of the object, for Items
+     * @param itemId the id of the Item, used for the item reference of the other objects
+     */
+    private void addRow(FastPathObject o, Integer id, Integer itemId)
+        throws ObjectStoreException {
+        if (c == null) {
+            throw new ObjectStoreException("ItemWriter is closed");
+        }
+        TableInfo tableInfo = tables.get(o.getClass());
+        if (tableInfo == null) {
+            throw new ObjectStoreException("Cannot store " + o.getClass() + " in items database");
+        }
+        Object[] values = new Object[tableInfo.colNames.length];
+        for (int colNo = 0; colNo < values.length; colNo++) {
+            switch (tableInfo.colTypes[colNo]) {
+                case TableInfo.OBJECT:
+                    values[colNo] = ((Item) o).getoBJECT();
+                    break;
+                case TableInfo.CLASS:
+                    values[colNo] = o.getClass().getName();
+                    break;
+                case TableInfo.TABLE_CLASS:
+                    values[colNo] = tableInfo.className;
+                    break;
+                case TableInfo.ITEM:
+                    values[colNo] = itemId;
+                    break;
+                default:
+                    try {
+                        values[colNo] = o.getFieldValue(tableInfo.fieldNames[colNo]);
+                    } catch (IllegalAccessException e) {
+                        throw new ObjectStoreException("Illegal access to value while storing", e);
+                    }
+            }
+        }
+        try {
+            batch.addRow(c, tableInfo.tableName, id, tableInfo.colNames, values);
+            tablesAltered.add(tableInfo.tableName);
+            rowCount++;
+            transactionCounter++;
+            if (transactionCounter >= TRANSACTION_BATCH_SIZE) {
+                LOG.info("Committing transaction after " + rowCount + " rows");
+                batch.batchCommit(c);
+                transactionCounter = 0;
+            }
+        } catch (SQLException e) {
+            throw new ObjectStoreException("Error while storing", e);
+        }
+    }
+
+    /**
+     * Work out the columns of a table the same way as ObjectStoreWriterInterMineImpl.
+     */
+    private TableInfo getTableInfo(Model model, Class<?> cls) throws ObjectStoreException {
+        ClassDescriptor tableMaster = schema.getTableMaster(model.getClassDescriptorByName(cls
+                    .getName()));
+        TableInfo retval = new TableInfo();
+        retval.tableName = DatabaseUtil.getTableName(tableMaster);
+        retval.className = tableMaster.getName();
+        if (schema.getMissingTables().contains(retval.tableName.toLowerCase())) {
+            throw new ObjectStoreException("Table " + retval.tableName + " is missing from the "
+                    + "items database");
+        }
+        DatabaseSchema.Fields allColumns = schema.getTableFields(tableMaster);
+        boolean isTruncated = schema.isTruncated(tableMaster);
+        boolean isFlatMode = schema.isFlatMode(tableMaster.getType());
+        boolean hasObject = !(schema.isMissingNotXml() || isFlatMode);
+        int colCount = allColumns.getAttributes().size() + allColumns.getReferences().size()
+            + (hasObject ? 1 : 0) + (isTruncated ? 2 : (isFlatMode ? 0 : 1));
+        retval.colNames = new String[colCount];
+        retval.fieldNames = new String[colCount];
+        retval.colTypes = new int[colCount];
+        int colNo = 0;
+        if (hasObject) {
+            retval.colNames[colNo] = "OBJECT";
+            retval.colTypes[colNo++] = TableInfo.OBJECT;
+        }
+        if (isTruncated || !isFlatMode) {
+            retval.colNames[colNo] = "class";
+            retval.colTypes[colNo++] = TableInfo.CLASS;
+        }
+        if (isTruncated) {
+            retval.colNames[colNo] = "tableclass";
+            retval.colTypes[colNo++] = TableInfo.TABLE_CLASS;
+        }
+        for (AttributeDescriptor field : allColumns.getAttributes()) {
+            retval.colNames[colNo] = DatabaseUtil.getColumnName(field);
+            retval.fieldNames[colNo] = field.getName();
+            retval.colTypes[colNo++] = TableInfo.FIELD;
+        }
+        for (ReferenceDescriptor field : allColumns.getReferences()) {
+            if (!"item".equals(field.getName())) {
+                throw new ObjectStoreException("Unexpected reference " + field.getName()
+                        + " in table " + retval.tableName);
+            }
+            retval.colNames[colNo] = DatabaseUtil.getColumnName(field);
+            retval.fieldNames[colNo] = field.getName();
+            retval.colTypes[colNo++] = TableInfo.ITEM;
+        }
+        return retval;
+    }
+
+    private static class TableInfo
+    {
+        static final int FIELD = 0;
+        static final int OBJECT = 1;
+        static final int CLASS = 2;
+        static final int TABLE_CLASS = 3;
+        static final int ITEM = 4;
+
+        String tableName;
+        String className;
+        String[] colNames;
+        String[] fieldNames;
+        int[] colTypes;
+    }
+}
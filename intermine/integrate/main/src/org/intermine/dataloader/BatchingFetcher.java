@@ -414,19 +414,22 @@ public class BatchingFetcher extends HintingFetcher
                                 }
                                 values.add(fieldValues);
                                 fieldsValues.put(fieldName, fieldValues);
-                                for (Object fieldValue : fieldValues) {
-                                    long time = System.currentTimeMillis();
-                                    boolean pkQueryFruitless = hints.pkQueryFruitless(cld
-                                            .getType(), fieldName, fieldValue);
-                                    String summaryName = Util.getFriendlyName(cld
-                                            .getType()) + "." + fieldName;
-                                    if (!savedTimes.containsKey(summaryName)) {
-                                        savedTimes.put(summaryName, new Long(System
-                                                    .currentTimeMillis() - time));
-                                        savedCounts.put(summaryName, new Integer(0));
-                                    }
-                                    if (pkQueryFruitless) {
-                                        skipObject = true;
+                                // the index answers fruitless lookups without loading hints
+                                if (pkIndex == null) {
+                                    for (Object fieldValue : fieldValues) {
+                                        long time = System.currentTimeMillis();
+                                        boolean pkQueryFruitless = hints.pkQueryFruitless(cld
+                                                .getType(), fieldName, fieldValue);
+                                        String summaryName = Util.getFriendlyName(cld
+                                                .getType()) + "." + fieldName;
+                                        if (!savedTimes.containsKey(summaryName)) {
+                                            savedTimes.put(summaryName, new Long(System
+                                                        .currentTimeMillis() - time));
+                                            savedCounts.put(summaryName, new Integer(0));
+                                        }
+                                        if (pkQueryFruitless) {
+                                            skipObject = true;
+                                        }
                                     }
                                 }
                             } catch (IllegalAccessException e) {
@@ -469,7 +472,9 @@ public class BatchingFetcher extends HintingFetcher
             //        emptyQuery = true;
             //    }
             //}
-            if (objCount > 0) {
+            if ((objCount > 0) && (pkIndex != null)) {
+                doPkFromIndex(pk, cld, results, keysToSourceObjects, fetchedObjectIds);
+            } else if (objCount > 0) {
                 // Iterate through query, and add objects to results
                 //long time = System.currentTimeMillis();
                 int matches = 0;
@@ -494,6 +499,41 @@ public class BatchingFetcher extends HintingFetcher
         }
     }
 
+    /**
+     * Fetches equivalent objects for a batch of objects by probing the primary key index instead
+     * of querying the database. The candidates are loaded by id and kept only if their primary
+     * key values really match, which discards hash collisions and out of date entries.
+     *
+     * @param pk the PrimaryKey
+     * @param cld the ClassDescriptor of the PrimaryKey
+     * @param results a Map to hold results that are to be added to the cache
+     * @param keysToSourceObjects a Map from primary key values to the source objects to fetch
+     * equivalents for
+     * @param fetchedObjectIds a Set to hold ids of objects that are fetched, to prefetch from the
+     * data tracker later
+     * @throws ObjectStoreException if something goes wrong
+     */
+    protected void doPkFromIndex(PrimaryKey pk, ClassDescriptor cld,
+            Map<InterMineObject, Set<InterMineObject>> results,
+            Map<List<Object>, InterMineObject> keysToSourceObjects,
+            Set<Integer> fetchedObjectIds) throws ObjectStoreException {
+        Set<Integer> candidates = pkIndex.getCandidates(cld, pk, keysToSourceObjects.keySet());
+        if (candidates.isEmpty()) {
+            return;
+        }
+        for (InterMineObject candidate : lookupOs.getObjectsByIds(candidates)) {
+            if (cld.getType().isInstance(candidate)) {
+                List<Object> values = PrimaryKeyIndex.getKeyValues(candidate,
+                        pk.getFieldNames());
+                Set<InterMineObject> set = results.get(keysToSourceObjects.get(values));
+                if (set != null) {
+                    set.add(candidate);
+                    fetchedObjectIds.add(candidate.getId());
+                }
+            }
+        }
+    }
+
     private class NoseyObjectStore extends ObjectStorePassthruImpl implements Shutdownable
     {
         public NoseyObjectStore(ObjectStore os) {
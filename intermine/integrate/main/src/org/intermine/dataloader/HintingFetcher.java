@@ -49,6 +49,7 @@ public class HintingFetcher extends BaseEquivalentObjectFetcher
     protected Map<String, Integer> savedCounts = Collections.synchronizedMap(
             new TreeMap<String, Integer>());
     protected Map<Class<?>, Boolean> allPkClassesEmptyForClass = new HashMap<Class<?>, Boolean>();
+    protected PrimaryKeyIndex pkIndex = null;
 
     /**
      * Constructor
@@ -63,6 +64,16 @@ public class HintingFetcher extends BaseEquivalentObjectFetcher
         this.hints = new EquivalentObjectHints(lookupOs);
     }
 
+    /**
+     * Sets the primary key index to probe for equivalent objects instead of querying the
+     * database. Subclasses that fetch in batches use it.
+     *
+     * @param pkIndex a PrimaryKeyIndex, or null to query the database
+     */
+    public void setPrimaryKeyIndex(PrimaryKeyIndex pkIndex) {
+        this.pkIndex = pkIndex;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -64,6 +64,7 @@ public abstract class IntegrationWriterAbstractImpl implements IntegrationWriter
     protected boolean ignoreDuplicates = false;
     protected HintingFetcher eof;
     protected BaseEquivalentObjectFetcher beof;
+    protected PrimaryKeyIndex pkIndex = null;
     protected Source lastSource = null;
     protected Set<String> seenBrokenOneToMany = Collections.synchronizedSet(new HashSet<String>());
 
@@ -113,6 +114,16 @@ public abstract class IntegrationWriterAbstractImpl implements IntegrationWriter
         return this.eof;
     }
 
+    /**
+     * Sets the primary key index to keep up to date with the objects stored. The index is saved
+     * whenever the transaction is committed.
+     *
+     * @param pkIndex a PrimaryKeyIndex, or null
+     */
+    public void setPrimaryKeyIndex(PrimaryKeyIndex pkIndex) {
+        this.pkIndex = pkIndex;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -446,6 +457,9 @@ public abstract class IntegrationWriterAbstractImpl implements IntegrationWriter
      */
     public void store(Object o) throws ObjectStoreException {
         osw.store(o);
+        if ((pkIndex != null) && (o instanceof InterMineObject)) {
+            pkIndex.add((InterMineObject) o);
+        }
     }
 
     /**
@@ -462,6 +476,48 @@ public abstract class IntegrationWriterAbstractImpl implements IntegrationWriter
         osw.addToCollection(hasId, clazz, fieldName, hadId);
     }
 
+    /**
+     * Place objects in a collection of a number of other objects, delegate to internal
+     * ObjectStoreWriter.
+     *
+     * @param clazz the class of the objects that have the collection
+     * @param fieldName the name of the collection
+     * @param members a Map from the ID of each object that has the collection to the IDs of the
+     * objects to place in it
+     * @throws ObjectStoreException if something goes wrong
+     */
+    public void addAllToCollection(Class<?> clazz, String fieldName,
+            Map<Integer, ? extends Collection<Integer>> members) throws ObjectStoreException {
+        osw.addAllToCollection(clazz, fieldName, members);
+    }
+
+    /**
+     * Set an attribute or reference of a number of objects, delegate to internal
+     * ObjectStoreWriter.
+     *
+     * @param clazz the class of the objects
+     * @param fieldName the name of an attribute or reference
+     * @param values a Map from the ID of each object to its new value
+     * @throws ObjectStoreException if something goes wrong
+     */
+    public void setFieldValues(Class<?> clazz, String fieldName, Map<Integer, ?> values)
+        throws ObjectStoreException {
+        osw.setFieldValues(clazz, fieldName, values);
+    }
+
+    /**
+     * Set several attributes or references of a number of objects, delegate to internal
+     * ObjectStoreWriter.
+     *
+     * @param clazz the class of the objects
+     * @param values a Map from the ID of each object to a Map from field name to new value
+     * @throws ObjectStoreException if something goes wrong
+     */
+    public void setFieldValues(Class<?> clazz, Map<Integer, ? extends Map<String, ?>> values)
+        throws ObjectStoreException {
+        osw.setFieldValues(clazz, values);
+    }
+
     /**
      * Delete an object from this ObjectStore, delegate to internal ObjectStoreWriter.
      *
@@ -604,6 +660,9 @@ public abstract class IntegrationWriterAbstractImpl implements IntegrationWriter
      */
     public void commitTransaction() throws ObjectStoreException {
         osw.commitTransaction();
+        if (pkIndex != null) {
+            pkIndex.save();
+        }
     }
 
     /**
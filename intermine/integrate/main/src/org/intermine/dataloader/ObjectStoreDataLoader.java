@@ -107,6 +107,7 @@ public class ObjectStoreDataLoader extends DataLoader
                     os = eof.getNoseyObjectStore(os);
                 }
             }
+            PrimaryKeyIndex.configure(getIntegrationWriter());
             Properties props = PropertiesUtil.getPropertiesStartingWith("dataLoader");
             boolean allowMultipleErrors = "true".equals(props.getProperty(
                             "dataLoader.allowMultipleErrors"));
@@ -0,0 +1,853 @@
+package org.intermine.dataloader;
+
+/*
+ * Copyright (C) 2002-2017 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.intermine.metadata.ClassDescriptor;
+import org.intermine.metadata.Model;
+import org.intermine.metadata.PrimaryKey;
+import org.intermine.metadata.StringUtil;
+import org.intermine.model.FastPathObject;
+import org.intermine.model.InterMineObject;
+import org.intermine.modelproduction.MetadataManager;
+import org.intermine.objectstore.ObjectStore;
+import org.intermine.objectstore.ObjectStoreException;
+import org.intermine.objectstore.ObjectStoreWriter;
+import org.intermine.objectstore.intermine.ObjectStoreInterMineImpl;
+import org.intermine.objectstore.query.Query;
+import org.intermine.objectstore.query.QueryClass;
+import org.intermine.objectstore.query.QueryField;
+import org.intermine.objectstore.query.QueryForeignKey;
+import org.intermine.objectstore.query.Results;
+import org.intermine.objectstore.query.ResultsRow;
+import org.intermine.sql.Database;
+import org.intermine.util.PropertiesUtil;
+
+/**
+ * A persistent index from the primary key values of objects in the production database to their
+ * ids, which the BatchingFetcher probes instead of running a query per primary key per batch.
+ *
+ * For each class and primary key there is a table of (hash of key values, object id) pairs. The
+ * values are hashed as the primary key query compares them: attribute values, and the ids of
+ * referenced objects. A table is built by scanning the class the first time it is probed, and is
+ * kept up to date by adding every object the IntegrationWriter stores, which is the merged object
+ * holding the field values chosen by the priority configuration. Hash collisions, and entries for
+ * objects that have since been merged away or changed, only add candidates that the fetcher
+ * discards once it has loaded them, so the index may give too many ids but never too few.
+ *
+ * Tables are kept in a directory as files of pairs sorted by hash, which are memory-mapped for
+ * lookups, with the pairs added since held in memory until the index is saved after a commit. The
+ * files carry a token that is stored in the intermine_metadata table when they are saved. The
+ * token is removed when the index is opened, by loads that don't use the index, and by core and
+ * source post-processing, so the files are discarded and rebuilt if the database was rebuilt,
+ * changed by a load without the index or by a post-process, or a load failed part way through.
+ * Anything else that writes to the production database must call invalidate() first, or else set
+ * equivalentObjectFetcher.primaryKeyIndex.verify to true to check each table against the database
+ * before it is used.
+ *
+ * @author chenyian
+ */
+public class PrimaryKeyIndex
+{
+    private static final Logger LOG = Logger.getLogger(PrimaryKeyIndex.class);
+
+    /**
+     * The property naming the directory of the index. The index is not used if it is not set.
+     */
+    public static final String DIRECTORY_PROPERTY = "equivalentObjectFetcher.primaryKeyIndex";
+
+    /**
+     * The property that makes the index check each table against the database before using it.
+     */
+    public static final String VERIFY_PROPERTY = "equivalentObjectFetcher.primaryKeyIndex.verify";
+
+    private static final String SUFFIX = ".pki";
+    private static final int SCAN_BATCH_SIZE = 10000;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final File directory;
+    private final ObjectStoreWriter osw;
+    private final Database database;
+    private final Model model;
+    private final boolean verify;
+    private final Map<String, Table> tables = new HashMap<String, Table>();
+    private final Random random = new Random();
+    private boolean saved = false;
+    private long probes = 0;
+    private long candidates = 0;
+
+    /**
+     * Opens the index in the given directory, keeping the tables that match the database.
+     *
+     * @param directory the directory holding the index files, created if necessary
+     * @param osw the writer for the production database, used to build tables
+     * @param verify if true, check each table against the database before it is first used
+     * @throws ObjectStoreException if the token can't be read from the database
+     */
+    public PrimaryKeyIndex(File directory, ObjectStoreWriter osw, boolean verify)
+        throws ObjectStoreException {
+        this.directory = directory;
+        this.osw = osw;
+        this.verify = verify;
+        this.model = osw.getModel();
+        this.database = getDatabase(osw);
+        if (database == null) {
+            throw new IllegalArgumentException("A primary key index needs an "
+                    + "ObjectStoreInterMineImpl, not " + osw.getObjectStore());
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new ObjectStoreException("Failed to create primary key index directory "
+                    + directory);
+        }
+        Long token = null;
+        try {
+            String value = MetadataManager.retrieve(database, MetadataManager.PRIMARY_KEY_INDEX);
+            if (value != null) {
+                token = Long.valueOf(value);
+            }
+            // the files won't match the database again until they are saved after a commit
+            MetadataManager.store(database, MetadataManager.PRIMARY_KEY_INDEX, null);
+        } catch (SQLException e) {
+            throw new ObjectStoreException("Failed to read primary key index token", e);
+        } catch (NumberFormatException e) {
+            LOG.warn("Ignoring bad primary key index token", e);
+        }
+        for (File file : directory.listFiles()) {
+            if (!file.getName().endsWith(SUFFIX)) {
+                continue;
+            }
+            Table table = null;
+            if (token != null) {
+                try {
+                    table = new Table(file);
+                } catch (IOException e) {
+                    LOG.warn("Ignoring unreadable primary key index file " + file, e);
+                }
+            }
+            ClassDescriptor cld = (table == null) ? null
+                : model.getClassDescriptorByName(table.getClassName());
+            if (cld == null || table.getToken() != token.longValue()) {
+                LOG.info("Discarding out of date primary key index file " + file);
+                if (!file.delete()) {
+                    LOG.warn("Failed to delete " + file);
+                }
+                continue;
+            }
+            table.type = cld.getType();
+            tables.put(file.getName(), table);
+        }
+        LOG.info("Opened primary key index in " + directory + " with " + tables.size()
+                + " tables");
+    }
+
+    /**
+     * Returns the index configured by the equivalentObjectFetcher.primaryKeyIndex property, or
+     * null if it is not set. Loads that don't use the index invalidate any index files, so this
+     * must be called for every load into the database.
+     *
+     * @param osw the writer for the production database
+     * @return a PrimaryKeyIndex, or null
+     * @throws ObjectStoreException if something goes wrong
+     */
+    public static PrimaryKeyIndex getInstance(ObjectStoreWriter osw) throws ObjectStoreException {
+        Properties props = PropertiesUtil.getPropertiesStartingWith("equivalentObjectFetcher");
+        String dir = props.getProperty(DIRECTORY_PROPERTY);
+        if (dir == null || "".equals(dir.trim()) || getDatabase(osw) == null) {
+            invalidate(osw);
+            return null;
+        }
+        boolean verify = "true".equals(props.getProperty(VERIFY_PROPERTY));
+        LOG.info("Using primary key index in " + dir.trim() + (verify ? ", verifying tables" : "")
+                + " - unset the property \"" + DIRECTORY_PROPERTY + "\" to query for equivalent"
+                + " objects");
+        return new PrimaryKeyIndex(new File(dir.trim()), osw, verify);
+    }
+
+    /**
+     * Gives an IntegrationWriter and its equivalent object fetcher the configured index, if there
+     * is one, or else marks the index as out of date.
+     *
+     * @param iw the IntegrationWriter about to load a source
+     * @throws ObjectStoreException if something goes wrong
+     */
+    public static void configure(IntegrationWriter iw) throws ObjectStoreException {
+        if (iw instanceof IntegrationWriterAbstractImpl) {
+            IntegrationWriterAbstractImpl iwai = (IntegrationWriterAbstractImpl) iw;
+            PrimaryKeyIndex pkIndex = getInstance(iwai.getObjectStoreWriter());
+            iwai.setPrimaryKeyIndex(pkIndex);
+            iwai.getEof().setPrimaryKeyIndex(pkIndex);
+        } else {
+            invalidate(iw);
+        }
+    }
+
+    /**
+     * Marks any index files for the given database as out of date, because the database is about
+     * to be changed without the index, for example by post-processing.
+     *
+     * @param os an ObjectStore or ObjectStoreWriter for the production database
+     * @throws ObjectStoreException if something goes wrong
+     */
+    public static void invalidate(ObjectStore os) throws ObjectStoreException {
+        Database database = getDatabase(os);
+        if (database != null) {
+            try {
+                MetadataManager.store(database, MetadataManager.PRIMARY_KEY_INDEX, null);
+            } catch (SQLException e) {
+                throw new ObjectStoreException("Failed to remove primary key index token", e);
+            }
+        }
+    }
+
+    /**
+     * Returns the ids of objects that may have the given primary key values, building the table
+     * for the primary key if there isn't one. Every object that does have the values is included.
+     *
+     * @param cld the class of objects to look for
+     * @param pk the primary key
+     * @param keys lists of values in the order of the primary key's field names, with referenced
+     * objects as ids
+     * @return a Set of object ids
+     * @throws ObjectStoreException if a table can't be built or fails verification
+     */
+    public synchronized Set<Integer> getCandidates(ClassDescriptor cld, PrimaryKey pk,
+            Collection<List<Object>> keys) throws ObjectStoreException {
+        Table table = getTable(cld, pk);
+        Set<Integer> ids = new HashSet<Integer>();
+        for (List<Object> values : keys) {
+            table.getIds(hash(values), ids);
+        }
+        probes += keys.size();
+        candidates += ids.size();
+        return ids;
+    }
+
+    /**
+     * Adds an object that has been stored in the database to the tables of its classes.
+     *
+     * @param o the object, as stored
+     * @throws ObjectStoreException if something goes wrong
+     */
+    public synchronized void add(InterMineObject o) throws ObjectStoreException {
+        if (saved) {
+            invalidate(osw);
+            saved = false;
+        }
+        for (Table table : tables.values()) {
+            if (table.type.isInstance(o)) {
+                List<Object> values = getKeyValues(o, table.getFieldNames());
+                if (!values.contains(null)) {
+                    table.add(hash(values), o.getId().intValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the index to its directory and records it as matching the database. Call after the
+     * objects added to it have been committed.
+     *
+     * @throws ObjectStoreException if the index can't be written
+     */
+    public synchronized void save() throws ObjectStoreException {
+        long token;
+        do {
+            token = random.nextLong();
+        } while (token == 0L);
+        try {
+            for (Table table : tables.values()) {
+                table.save(token);
+            }
+        } catch (IOException e) {
+            throw new ObjectStoreException("Failed to save primary key index in " + directory, e);
+        }
+        try {
+            MetadataManager.store(database, MetadataManager.PRIMARY_KEY_INDEX,
+                    Long.toString(token));
+        } catch (SQLException e) {
+            throw new ObjectStoreException("Failed to store primary key index token", e);
+        }
+        saved = true;
+        LOG.info("Saved primary key index with " + tables.size() + " tables in " + directory
+                + " - " + probes + " probes gave " + candidates + " candidates");
+    }
+
+    /**
+     * Checks the table for a primary key against the database.
+     *
+     * @param cld the class
+     * @param pk the primary key
+     * @return the number of objects in the database missing from the table, or 0 if there is no
+     * table
+     * @throws ObjectStoreException if the database can't be read
+     */
+    public synchronized int verify(ClassDescriptor cld, PrimaryKey pk)
+        throws ObjectStoreException {
+        List<String> fieldNames = new ArrayList<String>(pk.getFieldNames());
+        Table table = tables.get(getFileName(cld, fieldNames));
+        if (table == null) {
+            return 0;
+        }
+        long start = System.currentTimeMillis();
+        Entries entries = scan(cld, fieldNames);
+        int missing = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            if (!table.contains(entries.hashes[i], entries.ids[i])) {
+                missing++;
+            }
+        }
+        table.verified = true;
+        LOG.info("Verified primary key index for " + cld.getName() + " " + fieldNames + ": "
+                + entries.size() + " objects, " + missing + " missing, in "
+                + (System.currentTimeMillis() - start) + " ms");
+        return missing;
+    }
+
+    /**
+     * Returns the values of the given fields of an object as the primary key query compares them,
+     * with referenced objects replaced by their ids.
+     *
+     * @param o an object
+     * @param fieldNames the names of the fields
+     * @return a List of values, which may contain nulls
+     */
+    public static List<Object> getKeyValues(FastPathObject o, Collection<String> fieldNames) {
+        List<Object> values = new ArrayList<Object>(fieldNames.size());
+        for (String fieldName : fieldNames) {
+            Object value;
+            try {
+                value = o.getFieldProxy(fieldName);
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException(e);
+            }
+            if (value instanceof InterMineObject) {
+                value = ((InterMineObject) value).getId();
+            }
+            values.add(value);
+        }
+        return values;
+    }
+
+    /**
+     * Returns a 64-bit hash of a list of primary key values.
+     *
+     * @param values the values
+     * @return a long
+     */
+    static long hash(List<Object> values) {
+        long hash = FNV_OFFSET;
+        for (Object value : values) {
+            String string;
+            if (value instanceof Date) {
+                string = Long.toString(((Date) value).getTime());
+            } else {
+                string = String.valueOf(value);
+            }
+            for (int i = 0; i < string.length(); i++) {
+                hash = (hash ^ string.charAt(i)) * FNV_PRIME;
+            }
+            // so that ("ab", "c") and ("a", "bc") differ
+            hash = (hash ^ string.length()) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private Table getTable(ClassDescriptor cld, PrimaryKey pk) throws ObjectStoreException {
+        List<String> fieldNames = new ArrayList<String>(pk.getFieldNames());
+        String fileName = getFileName(cld, fieldNames);
+        Table table = tables.get(fileName);
+        if (table == null) {
+            long start = System.currentTimeMillis();
+            Entries entries = scan(cld, fieldNames);
+            File file = new File(directory, fileName);
+            try {
+                table = Table.create(file, cld.getName(), fieldNames, entries);
+            } catch (IOException e) {
+                throw new ObjectStoreException("Failed to write primary key index " + file, e);
+            }
+            table.type = cld.getType();
+            table.verified = true;
+            tables.put(fileName, table);
+            LOG.info("Built primary key index for " + cld.getName() + " " + fieldNames
+                    + " with " + entries.size() + " objects in "
+                    + (System.currentTimeMillis() - start) + " ms");
+        } else if (verify && !table.verified) {
+            int missing = verify(cld, pk);
+            if (missing > 0) {
+                throw new ObjectStoreException("Primary key index for " + cld.getName() + " "
+                        + fieldNames + " is missing " + missing + " objects that are in the "
+                        + "database - delete " + directory + " to rebuild it");
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Reads the primary key values of every object of a class. The query is run on the writer so
+     * that objects stored earlier in the current transaction are included.
+     */
+    private Entries scan(ClassDescriptor cld, List<String> fieldNames)
+        throws ObjectStoreException {
+        Query q = new Query();
+        QueryClass qc = new QueryClass(cld.getType());
+        q.addFrom(qc);
+        q.addToSelect(new QueryField(qc, "id"));
+        for (String fieldName : fieldNames) {
+            if (cld.getFieldDescriptorByName(fieldName).isReference()) {
+                q.addToSelect(new QueryForeignKey(qc, fieldName));
+            } else {
+                q.addToSelect(new QueryField(qc, fieldName));
+            }
+        }
+        q.setDistinct(false);
+        Entries entries = new Entries();
+        List<Object> values = new ArrayList<Object>(fieldNames.size());
+        Results res = osw.execute(q, SCAN_BATCH_SIZE, false, false, false);
+        @SuppressWarnings("unchecked") List<ResultsRow<Object>> rows = (List) res;
+        for (ResultsRow<Object> row : rows) {
+            values.clear();
+            for (int i = 1; i < row.size(); i++) {
+                values.add(row.get(i));
+            }
+            if (!values.contains(null)) {
+                entries.add(hash(values), ((Integer) row.get(0)).intValue());
+            }
+        }
+        return entries;
+    }
+
+    private static String getFileName(ClassDescriptor cld, List<String> fieldNames) {
+        return cld.getName() + "." + StringUtil.join(fieldNames, "-") + SUFFIX;
+    }
+
+    private static Database getDatabase(ObjectStore os) {
+        if (os instanceof ObjectStoreWriter) {
+            os = ((ObjectStoreWriter) os).getObjectStore();
+        }
+        if (os instanceof ObjectStoreInterMineImpl) {
+            return ((ObjectStoreInterMineImpl) os).getDatabase();
+        }
+        return null;
+    }
+
+    private static int compare(long hash1, int id1, long hash2, int id2) {
+        if (hash1 != hash2) {
+            return (hash1 < hash2) ? -1 : 1;
+        }
+        return (id1 < id2) ? -1 : ((id1 == id2) ? 0 : 1);
+    }
+
+    /**
+     * The (hash, id) pairs for one class and primary key. The pairs in the file are sorted and
+     * memory-mapped, and pairs added since the file was written are held in memory.
+     */
+    static final class Table
+    {
+        private static final int MAGIC = 0x504b4931;
+        private static final int TOKEN_OFFSET = 4;
+        private static final int COUNT_OFFSET = 12;
+        private static final int ENTRY_SIZE = 12;
+        private static final int SEGMENT_SHIFT = 27;
+        private static final long SEGMENT_ENTRIES = 1L << SEGMENT_SHIFT;
+
+        private final File file;
+        private String className;
+        private List<String> fieldNames;
+        private long token;
+        private long count;
+        private MappedByteBuffer[] segments;
+        private Overlay added = new Overlay();
+        Class<?> type;
+        boolean verified = false;
+
+        /**
+         * Maps an existing file.
+         *
+         * @param file the file
+         * @throws IOException if the file can't be read or is not a complete index file
+         */
+        Table(File file) throws IOException {
+            this.file = file;
+            load();
+        }
+
+        /**
+         * Writes a new file holding the given pairs and maps it.
+         *
+         * @param file the file
+         * @param className the name of the class
+         * @param fieldNames the fields of the primary key
+         * @param entries the pairs
+         * @return a Table
+         * @throws IOException if the file can't be written
+         */
+        static Table create(File file, String className, List<String> fieldNames,
+                Entries entries) throws IOException {
+            write(file, className, fieldNames, 0L, null, entries);
+            return new Table(file);
+        }
+
+        String getClassName() {
+            return className;
+        }
+
+        List<String> getFieldNames() {
+            return fieldNames;
+        }
+
+        long getToken() {
+            return token;
+        }
+
+        /**
+         * Adds the ids of pairs with the given hash to a collection.
+         *
+         * @param hash the hash
+         * @param ids the collection
+         */
+        void getIds(long hash, Collection<Integer> ids) {
+            for (long i = firstIndex(hash); i < count && hashAt(i) == hash; i++) {
+                ids.add(Integer.valueOf(idAt(i)));
+            }
+            added.getIds(hash, ids);
+        }
+
+        boolean contains(long hash, int id) {
+            for (long i = firstIndex(hash); i < count && hashAt(i) == hash; i++) {
+                if (idAt(i) == id) {
+                    return true;
+                }
+            }
+            return added.contains(hash, id);
+        }
+
+        void add(long hash, int id) {
+            if (!contains(hash, id)) {
+                added.add(hash, id);
+            }
+        }
+
+        /**
+         * Writes the pairs added since the file was written into the file, and gives the file a
+         * new token.
+         *
+         * @param newToken the token
+         * @throws IOException if the file can't be written
+         */
+        void save(long newToken) throws IOException {
+            if (added.size() > 0) {
+                write(file, className, fieldNames, newToken, this, added.toEntries());
+                added = new Overlay();
+                load();
+            } else if (token != newToken) {
+                RandomAccessFile raf = new RandomAccessFile(file, "rw");
+                try {
+                    raf.seek(TOKEN_OFFSET);
+                    raf.writeLong(newToken);
+                } finally {
+                    raf.close();
+                }
+                token = newToken;
+            }
+        }
+
+        private void load() throws IOException {
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                if (raf.readInt() != MAGIC) {
+                    throw new IOException(file + " is not a primary key index file");
+                }
+                token = raf.readLong();
+                count = raf.readLong();
+                className = raf.readUTF();
+                int fieldCount = raf.readInt();
+                fieldNames = new ArrayList<String>(fieldCount);
+                for (int i = 0; i < fieldCount; i++) {
+                    fieldNames.add(raf.readUTF());
+                }
+                long dataStart = raf.getFilePointer();
+                if (dataStart + count * ENTRY_SIZE != raf.length()) {
+                    throw new IOException(file + " has the wrong length");
+                }
+                // a single mapping is limited to 2GB
+                segments = new MappedByteBuffer[(int) ((count + SEGMENT_ENTRIES - 1)
+                        / SEGMENT_ENTRIES)];
+                FileChannel channel = raf.getChannel();
+                for (int i = 0; i < segments.length; i++) {
+                    long first = i * SEGMENT_ENTRIES;
+                    long size = Math.min(SEGMENT_ENTRIES, count - first) * ENTRY_SIZE;
+                    segments[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                            dataStart + first * ENTRY_SIZE, size);
+                }
+            } finally {
+                raf.close();
+            }
+        }
+
+        private long hashAt(long index) {
+            return segments[(int) (index >>> SEGMENT_SHIFT)]
+                .getLong((int) (index & (SEGMENT_ENTRIES - 1)) * ENTRY_SIZE);
+        }
+
+        private int idAt(long index) {
+            return segments[(int) (index >>> SEGMENT_SHIFT)]
+                .getInt((int) (index & (SEGMENT_ENTRIES - 1)) * ENTRY_SIZE + 8);
+        }
+
+        private long firstIndex(long hash) {
+            long low = 0;
+            long high = count;
+            while (low < high) {
+                long mid = (low + high) >>> 1;
+                if (hashAt(mid) < hash) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Writes the pairs of a table, if any, merged with the given pairs to a temporary file,
+         * and moves it over the file.
+         */
+        private static void write(File file, String className, List<String> fieldNames,
+                long token, Table base, Entries entries) throws IOException {
+            entries.sort();
+            File tmp = new File(file.getPath() + ".tmp");
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                        new FileOutputStream(tmp), 65536));
+            long written = 0;
+            try {
+                out.writeInt(MAGIC);
+                out.writeLong(token);
+                // the count is filled in afterwards
+                out.writeLong(0L);
+                out.writeUTF(className);
+                out.writeInt(fieldNames.size());
+                for (String fieldName : fieldNames) {
+                    out.writeUTF(fieldName);
+                }
+                long baseCount = (base == null) ? 0 : base.count;
+                long i = 0;
+                int j = 0;
+                long lastHash = 0;
+                int lastId = 0;
+                while (i < baseCount || j < entries.size()) {
+                    long hash;
+                    int id;
+                    if (j >= entries.size() || (i < baseCount && compare(base.hashAt(i),
+                                    base.idAt(i), entries.hashes[j], entries.ids[j]) <= 0)) {
+                        hash = base.hashAt(i);
+                        id = base.idAt(i);
+                        i++;
+                    } else {
+                        hash = entries.hashes[j];
+                        id = entries.ids[j];
+                        j++;
+                    }
+                    if (written == 0 || hash != lastHash || id != lastId) {
+                        out.writeLong(hash);
+                        out.writeInt(id);
+                        written++;
+                        lastHash = hash;
+                        lastId = id;
+                    }
+                }
+            } finally {
+                out.close();
+            }
+            RandomAccessFile raf = new RandomAccessFile(tmp, "rw");
+            try {
+                raf.seek(COUNT_OFFSET);
+                raf.writeLong(written);
+            } finally {
+                raf.close();
+            }
+            if (!tmp.renameTo(file) && !(file.delete() && tmp.renameTo(file))) {
+                throw new IOException("Failed to rename " + tmp + " to " + file);
+            }
+        }
+    }
+
+    /**
+     * A growable list of (hash, id) pairs.
+     */
+    static final class Entries
+    {
+        private long[] hashes = new long[1024];
+        private int[] ids = new int[1024];
+        private int size = 0;
+
+        void add(long hash, int id) {
+            if (size == ids.length) {
+                hashes = Arrays.copyOf(hashes, size * 2);
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            hashes[size] = hash;
+            ids[size] = id;
+            size++;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void sort() {
+            sort(0, size - 1);
+        }
+
+        private void sort(int low, int high) {
+            while (high - low > 16) {
+                int mid = (low + high) >>> 1;
+                long pivotHash = hashes[mid];
+                int pivotId = ids[mid];
+                int i = low;
+                int j = high;
+                while (i <= j) {
+                    while (compare(hashes[i], ids[i], pivotHash, pivotId) < 0) {
+                        i++;
+                    }
+                    while (compare(hashes[j], ids[j], pivotHash, pivotId) > 0) {
+                        j--;
+                    }
+                    if (i <= j) {
+                        swap(i, j);
+                        i++;
+                        j--;
+                    }
+                }
+                // recurse into the smaller part, to bound the stack depth
+                if (j - low < high - i) {
+                    sort(low, j);
+                    low = i;
+                } else {
+                    sort(i, high);
+                    high = j;
+                }
+            }
+            for (int i = low + 1; i <= high; i++) {
+                for (int k = i; k > low && compare(hashes[k - 1], ids[k - 1], hashes[k], ids[k])
+                        > 0; k--) {
+                    swap(k - 1, k);
+                }
+            }
+        }
+
+        private void swap(int a, int b) {
+            long hash = hashes[a];
+            hashes[a] = hashes[b];
+            hashes[b] = hash;
+            int id = ids[a];
+            ids[a] = ids[b];
+            ids[b] = id;
+        }
+    }
+
+    /**
+     * An open addressed hash multimap of (hash, id) pairs.
+     */
+    static final class Overlay
+    {
+        private long[] hashes = new long[1024];
+        private int[] ids = new int[1024];
+        private boolean[] used = new boolean[1024];
+        private int size = 0;
+
+        void add(long hash, int id) {
+            if (contains(hash, id)) {
+                return;
+            }
+            if ((size + 1) * 2 > used.length) {
+                Entries entries = toEntries();
+                hashes = new long[used.length * 2];
+                ids = new int[used.length * 2];
+                used = new boolean[used.length * 2];
+                for (int i = 0; i < entries.size(); i++) {
+                    insert(entries.hashes[i], entries.ids[i]);
+                }
+            }
+            insert(hash, id);
+            size++;
+        }
+
+        void getIds(long hash, Collection<Integer> result) {
+            int mask = used.length - 1;
+            for (int slot = slot(hash); used[slot]; slot = (slot + 1) & mask) {
+                if (hashes[slot] == hash) {
+                    result.add(Integer.valueOf(ids[slot]));
+                }
+            }
+        }
+
+        boolean contains(long hash, int id) {
+            int mask = used.length - 1;
+            for (int slot = slot(hash); used[slot]; slot = (slot + 1) & mask) {
+                if (hashes[slot] == hash && ids[slot] == id) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        int size() {
+            return size;
+        }
+
+        Entries toEntries() {
+            Entries entries = new Entries();
+            for (int i = 0; i < used.length; i++) {
+                if (used[i]) {
+                    entries.add(hashes[i], ids[i]);
+                }
+            }
+            return entries;
+        }
+
+        private void insert(long hash, int id) {
+            int mask = used.length - 1;
+            int slot = slot(hash);
+            while (used[slot]) {
+                slot = (slot + 1) & mask;
+            }
+            hashes[slot] = hash;
+            ids[slot] = id;
+            used[slot] = true;
+        }
+
+        private int slot(long hash) {
+            return (int) (hash ^ (hash >>> 32)) & (used.length - 1);
+        }
+    }
+}
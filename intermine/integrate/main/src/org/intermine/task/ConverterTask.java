@@ -18,8 +18,15 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
 
+import org.intermine.dataconversion.ItemWriter;
+import org.intermine.dataconversion.ObjectStoreBulkItemWriter;
+import org.intermine.dataconversion.ObjectStoreItemWriter;
 import org.intermine.objectstore.ObjectStore;
+import org.intermine.objectstore.ObjectStoreException;
+import org.intermine.objectstore.ObjectStoreWriter;
 import org.intermine.objectstore.intermine.ObjectStoreInterMineImpl;
+import org.intermine.objectstore.intermine.ObjectStoreWriterInterMineImpl;
+import org.intermine.util.PropertiesUtil;
 
 /**
  * Task superclass for invoking converters.
@@ -81,6 +88,24 @@ public class ConverterTask extends DynamicAttributeTask
         return osName;
     }
 
+    /**
+     * Create the ItemWriter that the converter stores Items with.  If the property
+     * [osName].bulkItemWriter is true the Items are written straight into the tables of the items
+     * database by an ObjectStoreBulkItemWriter, otherwise they are stored through the
+     * ObjectStoreWriter.
+     *
+     * @param osw the ObjectStoreWriter for the items database
+     * @return an ItemWriter
+     * @throws ObjectStoreException if the ItemWriter cannot be created
+     */
+    protected ItemWriter createItemWriter(ObjectStoreWriter osw) throws ObjectStoreException {
+        String bulk = PropertiesUtil.getProperties().getProperty(osName + ".bulkItemWriter");
+        if ("true".equals(bulk) && (osw instanceof ObjectStoreWriterInterMineImpl)) {
+            return new ObjectStoreBulkItemWriter((ObjectStoreWriterInterMineImpl) osw);
+        }
+        return new ObjectStoreItemWriter(osw);
+    }
+
     /**
      * Runs various performance-enhancing SQL statements.
      *
@@ -12,7 +12,6 @@ package org.intermine.task;
 
 import org.intermine.dataconversion.DBConverter;
 import org.intermine.dataconversion.ItemWriter;
-import org.intermine.dataconversion.ObjectStoreItemWriter;
 import org.intermine.metadata.Model;
 import org.intermine.objectstore.ObjectStoreWriter;
 import org.intermine.objectstore.ObjectStoreWriterFactory;
@@ -68,7 +67,7 @@ public class DBConverterTask extends ConverterTask
         }
         try {
             ObjectStoreWriter osw = ObjectStoreWriterFactory.getObjectStoreWriter(getOsName());
-            ObjectStoreItemWriter writer = new ObjectStoreItemWriter(osw);
+            ItemWriter writer = createItemWriter(osw);
             Database database = DatabaseFactory.getDatabase(dbAlias);
 
             Class<?> c = Class.forName(clsName);
@@ -22,6 +22,7 @@ import org.intermine.dataloader.IntegrationWriterAbstractImpl;
 import org.intermine.dataloader.IntegrationWriterDataTrackingImpl;
 import org.intermine.dataloader.IntegrationWriterFactory;
 import org.intermine.dataloader.ParallelBatchingFetcher;
+import org.intermine.dataloader.PrimaryKeyIndex;
 import org.intermine.dataloader.Source;
 import org.intermine.objectstore.ObjectStoreException;
 import org.intermine.util.PropertiesUtil;
@@ -122,6 +123,7 @@ public abstract class DirectDataLoaderTask extends Task
                     ((IntegrationWriterAbstractImpl) getIntegrationWriter()).setEof(eof);
                 }
             }
+            PrimaryKeyIndex.configure(iw);
         }
         return iw;
     }
@@ -16,7 +16,6 @@ import java.lang.reflect.Constructor;
 import org.apache.tools.ant.BuildException;
 import org.intermine.dataconversion.DirectoryConverter;
 import org.intermine.dataconversion.ItemWriter;
-import org.intermine.dataconversion.ObjectStoreItemWriter;
 import org.intermine.metadata.Model;
 import org.intermine.objectstore.ObjectStoreWriter;
 import org.intermine.objectstore.ObjectStoreWriterFactory;
@@ -84,7 +83,7 @@ public class DirectoryConverterTask extends ConverterTask
         try {
             Model model = Model.getInstanceByName(getModelName());
             osw = ObjectStoreWriterFactory.getObjectStoreWriter(getOsName());
-            writer = new ObjectStoreItemWriter(osw);
+            writer = createItemWriter(osw);
 
             Class c = Class.forName(clsName);
             if (!DirectoryConverter.class.isAssignableFrom(c)) {
@@ -21,7 +21,6 @@ import org.apache.tools.ant.DirectoryScanner;
 import org.apache.tools.ant.types.FileSet;
 import org.intermine.dataconversion.FileConverter;
 import org.intermine.dataconversion.ItemWriter;
-import org.intermine.dataconversion.ObjectStoreItemWriter;
 import org.intermine.metadata.Model;
 import org.intermine.objectstore.ObjectStoreWriter;
 import org.intermine.objectstore.ObjectStoreWriterFactory;
@@ -85,7 +84,7 @@ public class FileConverterTask extends ConverterTask
         try {
             Model model = Model.getInstanceByName(getModelName());
             osw = ObjectStoreWriterFactory.getObjectStoreWriter(getOsName());
-            writer = new ObjectStoreItemWriter(osw);
+            writer = createItemWriter(osw);
 
             Class<?> c = Class.forName(clsName);
             if (!FileConverter.class.isAssignableFrom(c)) {
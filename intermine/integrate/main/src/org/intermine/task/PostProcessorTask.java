@@ -11,6 +11,7 @@ package org.intermine.task;
  */
 
 import org.apache.tools.ant.BuildException;
+import org.intermine.dataloader.PrimaryKeyIndex;
 import org.intermine.postprocess.PostProcessor;
 import org.intermine.objectstore.ObjectStoreWriterFactory;
 import org.intermine.objectstore.ObjectStoreWriter;
@@ -69,6 +70,8 @@ public class PostProcessorTask extends DynamicAttributeTask
 
             configureDynamicAttributes(pp);
 
+            // a source post-process can change primary key fields, which the index wouldn't see
+            PrimaryKeyIndex.invalidate(osw);
             pp.postProcess();
 
         } catch (Exception e) {
@@ -0,0 +1,106 @@
+package org.intermine.dataloader;
+
+/*
+ * Copyright (C) 2002-2017 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+public class PrimaryKeyIndexTest extends TestCase
+{
+    private File file;
+
+    public void setUp() throws Exception {
+        file = File.createTempFile("PrimaryKeyIndexTest", ".pki");
+    }
+
+    public void tearDown() throws Exception {
+        file.delete();
+    }
+
+    public void testHash() throws Exception {
+        assertEquals(PrimaryKeyIndex.hash(Arrays.asList((Object) "EG1", Integer.valueOf(5))),
+                PrimaryKeyIndex.hash(Arrays.asList((Object) "EG1", Integer.valueOf(5))));
+        assertFalse(PrimaryKeyIndex.hash(Arrays.asList((Object) "ab", "c"))
+                == PrimaryKeyIndex.hash(Arrays.asList((Object) "a", "bc")));
+        assertFalse(PrimaryKeyIndex.hash(Arrays.asList((Object) "EG1", Integer.valueOf(5)))
+                == PrimaryKeyIndex.hash(Arrays.asList((Object) "EG1", Integer.valueOf(6))));
+    }
+
+    public void testCreateAndSave() throws Exception {
+        PrimaryKeyIndex.Entries entries = new PrimaryKeyIndex.Entries();
+        for (int i = 5000; i > 0; i--) {
+            entries.add(i % 100, i);
+        }
+        entries.add(7, 7);
+        List<String> fieldNames = Arrays.asList("primaryIdentifier", "organism");
+        PrimaryKeyIndex.Table table = PrimaryKeyIndex.Table.create(file,
+                "org.intermine.model.testmodel.Employee", fieldNames, entries);
+        assertEquals("org.intermine.model.testmodel.Employee", table.getClassName());
+        assertEquals(fieldNames, table.getFieldNames());
+        assertEquals(0L, table.getToken());
+        assertTrue(ids(table, 7).containsAll(ids(7, 107, 207)));
+        assertEquals(50, ids(table, 7).size());
+        assertTrue(ids(table, 1234).isEmpty());
+
+        table.add(1234, 1);
+        table.add(7, 7);
+        assertEquals(Collections.singleton(Integer.valueOf(1)), ids(table, 1234));
+        assertEquals(50, ids(table, 7).size());
+
+        table.save(42L);
+        PrimaryKeyIndex.Table reopened = new PrimaryKeyIndex.Table(file);
+        assertEquals(42L, reopened.getToken());
+        assertEquals(Collections.singleton(Integer.valueOf(1)), ids(reopened, 1234));
+        assertEquals(50, ids(reopened, 7).size());
+        assertTrue(reopened.contains(99, 99));
+        assertFalse(reopened.contains(99, 98));
+
+        reopened.save(43L);
+        assertEquals(43L, new PrimaryKeyIndex.Table(file).getToken());
+    }
+
+    public void testOverlayGrows() throws Exception {
+        PrimaryKeyIndex.Table table = PrimaryKeyIndex.Table.create(file,
+                "org.intermine.model.testmodel.Employee", Arrays.asList("name"),
+                new PrimaryKeyIndex.Entries());
+        for (int i = 0; i < 5000; i++) {
+            table.add(i * 31L, i);
+        }
+        for (int i = 0; i < 5000; i++) {
+            assertEquals(Collections.singleton(Integer.valueOf(i)), ids(table, i * 31L));
+        }
+        table.save(1L);
+        table = new PrimaryKeyIndex.Table(file);
+        for (int i = 0; i < 5000; i++) {
+            assertEquals(Collections.singleton(Integer.valueOf(i)), ids(table, i * 31L));
+        }
+    }
+
+    private static Set<Integer> ids(PrimaryKeyIndex.Table table, long hash) {
+        Set<Integer> ids = new HashSet<Integer>();
+        table.getIds(hash, ids);
+        return ids;
+    }
+
+    private static Set<Integer> ids(int... values) {
+        Set<Integer> ids = new HashSet<Integer>();
+        for (int value : values) {
+            ids.add(Integer.valueOf(value));
+        }
+        return ids;
+    }
+}
@@ -119,6 +119,11 @@ public final class MetadataManager
      */
     public static final String SERIAL_NUMBER = "serialNumber";
 
+    /**
+     * The name of the key used to store the token matching the primary key index files
+     */
+    public static final String PRIMARY_KEY_INDEX = "primaryKeyIndex";
+
     /**
      * Description of range type columns defined in the database.
      */
@@ -34,7 +34,8 @@ import org.intermine.objectstore.query.QueryCreator;
 import org.intermine.objectstore.query.Results;
 import org.intermine.objectstore.query.ResultsRow;
 import org.intermine.objectstore.query.SingletonResults;
-import org.intermine.util.CacheMap;
+import org.intermine.util.ObjectCache;
+import org.intermine.util.ObjectCacheFactory;
 import org.intermine.util.PropertiesUtil;
 
 /**
@@ -49,6 +50,8 @@ public abstract class ObjectStoreAbstractImpl implements ObjectStore
     private static final Logger LOG = Logger.getLogger(ObjectStoreAbstractImpl.class);
 
     protected static Random rand = new Random();
+    /** The maximum number of objects in the getObjectById cache, unless configured */
+    protected static final int DEFAULT_OBJECT_CACHE_SIZE = 100000;
 
     protected Model model;
     protected int maxOffset = Integer.MAX_VALUE;
@@ -56,7 +59,7 @@ public abstract class ObjectStoreAbstractImpl implements ObjectStore
     protected long maxTime = Long.MAX_VALUE;
     // Optimiser will use a default query parse time if none is provided from properties
     protected Long maxQueryParseTime = null;
-    protected CacheMap<Integer, InterMineObject> cache;
+    protected ObjectCache<Integer, InterMineObject> cache;
 
     protected int getObjectOps = 0;
     protected int getObjectHits = 0;
@@ -99,8 +102,9 @@ public abstract class ObjectStoreAbstractImpl implements ObjectStore
 
         LOG.info("Creating new " + getClass().getName() + " with sequence = " + sequenceNumber
                 + ", model = \"" + model.getName() + "\"");
-        cache = new CacheMap<Integer, InterMineObject>(getClass().getName() + " with sequence = "
-                + sequenceNumber + ", model = \"" + model.getName() + "\" getObjectById cache");
+        cache = ObjectCacheFactory.create("objects", getClass().getName() + " with sequence = "
+                + sequenceNumber + ", model = \"" + model.getName() + "\" getObjectById cache",
+                DEFAULT_OBJECT_CACHE_SIZE);
     }
 
     /**
@@ -190,31 +194,18 @@ public abstract class ObjectStoreAbstractImpl implements ObjectStore
         getObjectOps++;
         if (getObjectOps % 10000 == 0) {
             LOG.info("getObjectById called " + getObjectOps + " times. Cache hits: "
-                    + getObjectHits + ". Prefetches: " + getObjectPrefetches);
+                    + getObjectHits + ". Prefetches: " + getObjectPrefetches + ". " + cache);
         }
-        boolean contains = true;
-        InterMineObject cached = null;
-        synchronized (cache) {
-            cached = cache.get(id);
-            if (cached == null) {
-                contains = cache.containsKey(id);
-            }
-        }
-        if (contains) {
+        Object lookup = cache.lookup(id);
+        if (lookup != ObjectCache.NOT_CACHED) {
             getObjectHits++;
-            return cached;
+            return (InterMineObject) lookup;
         }
         InterMineObject fromDb = internalGetObjectById(id, clazz);
-        synchronized (cache) {
-            cached = cache.get(id);
-            if (cached == null) {
-                contains = cache.containsKey(id);
-            }
-            if (contains) {
-                fromDb = cached;
-            } else {
-                cacheObjectById(id, fromDb);
-            }
+        // another thread may have fetched the same object in the meantime
+        InterMineObject cached = cache.putIfAbsent(id, fromDb);
+        if (cached != null) {
+            fromDb = cached;
         }
         return fromDb;
     }
@@ -297,18 +288,14 @@ public abstract class ObjectStoreAbstractImpl implements ObjectStore
      * {@inheritDoc}
      */
     public void invalidateObjectById(Integer id) {
-        synchronized (cache) {
-            cache.remove(id);
-        }
+        cache.remove(id);
     }
 
     /**
      * {@inheritDoc}
      */
     public Object cacheObjectById(Integer id, InterMineObject obj) {
-        synchronized (cache) {
-            cache.put(id, obj);
-        }
+        cache.put(id, obj);
         return obj;
     }
 
@@ -316,18 +303,14 @@ public abstract class ObjectStoreAbstractImpl implements ObjectStore
      * {@inheritDoc}
      */
     public void flushObjectById() {
-        synchronized (cache) {
-            cache.clear();
-        }
+        cache.clear();
     }
 
     /**
      * {@inheritDoc}
      */
     public InterMineObject pilferObjectById(Integer id) {
-        synchronized (cache) {
-            return cache.get(id);
-        }
+        return cache.get(id);
     }
 
     /**
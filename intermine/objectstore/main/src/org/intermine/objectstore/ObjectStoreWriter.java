@@ -11,6 +11,7 @@ package org.intermine.objectstore;
  */
 
 import java.util.Collection;
+import java.util.Map;
 
 import org.intermine.model.InterMineObject;
 import org.intermine.objectstore.query.Clob;
@@ -96,6 +97,49 @@ public interface ObjectStoreWriter extends ObjectStore
     void addToCollection(Integer hasId, Class<?> clazz, String fieldName, Integer hadId)
         throws ObjectStoreException;
 
+    /**
+     * Place objects in a collection of a number of other objects, without having any of the
+     * objects loaded in memory. For a many-to-many collection rows are added to the indirection
+     * table, and for a one-to-many collection the reverse reference of each element is set with
+     * setFieldValues.
+     *
+     * @param clazz the class of the objects that have the collection
+     * @param fieldName the name of the collection
+     * @param members a Map from the ID of each object that has the collection to the IDs of the
+     * objects to place in it
+     * @throws ObjectStoreException if a problem occurs
+     */
+    void addAllToCollection(Class<?> clazz, String fieldName,
+            Map<Integer, ? extends Collection<Integer>> members) throws ObjectStoreException;
+
+    /**
+     * Set an attribute or reference of a number of objects, without loading and storing the
+     * objects. The column is updated in place in every table that holds the objects, along with
+     * the serialised form of the objects, which is much quicker than storing a modified copy of
+     * each object when only one field changes.
+     *
+     * @param clazz the class of the objects
+     * @param fieldName the name of an attribute or reference
+     * @param values a Map from the ID of each object to its new value, which for a reference is
+     * the ID of the referenced object. A null value clears the field
+     * @throws ObjectStoreException if the field is a collection or a problem occurs
+     */
+    void setFieldValues(Class<?> clazz, String fieldName, Map<Integer, ?> values)
+        throws ObjectStoreException;
+
+    /**
+     * Set several attributes or references of a number of objects, without loading and storing
+     * the objects. This is setFieldValues(Class, String, Map) for more than one field, but each
+     * object is read and rewritten once however many of its fields change.
+     *
+     * @param clazz the class of the objects
+     * @param values a Map from the ID of each object to a Map from the name of each field to set
+     * to its new value
+     * @throws ObjectStoreException if a field is a collection or a problem occurs
+     */
+    void setFieldValues(Class<?> clazz, Map<Integer, ? extends Map<String, ?>> values)
+        throws ObjectStoreException;
+
     /**
      * Adds an element to an ObjectStoreBag.
      *
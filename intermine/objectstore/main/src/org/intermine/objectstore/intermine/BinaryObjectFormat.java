@@ -0,0 +1,389 @@
+package org.intermine.objectstore.intermine;
+
+/*
+ * Copyright (C) 2002-2017 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.intermine.metadata.ClassDescriptor;
+import org.intermine.metadata.FieldDescriptor;
+import org.intermine.metadata.Model;
+import org.intermine.metadata.ReferenceDescriptor;
+import org.intermine.metadata.TypeUtil;
+import org.intermine.metadata.Util;
+import org.intermine.model.FastPathObject;
+import org.intermine.model.InterMineObject;
+import org.intermine.objectstore.query.ClobAccess;
+
+/**
+ * The tables shared by BinaryObjectRenderer and BinaryObjectParser for one model, and the
+ * low-level encoding of numbers and strings.
+ *
+ * An object is written as the marker, a fingerprint of the model, the number of classes the
+ * object is made of followed by their ids, and then each field that is not null as the id of the
+ * field followed by its value. Class ids are positions in the sorted list of class names of the
+ * model, and field ids are positions in the sorted list of field names of the class. Numbers are
+ * zigzag encoded and written five bits to a character, least significant first, using the
+ * characters '@' to '_' for all but the last and ' ' to '?' for the last, so the result is plain
+ * text that can go in the existing OBJECT column. Strings are written as their length followed by
+ * their characters.
+ *
+ * @author chenyian
+ */
+final class BinaryObjectFormat
+{
+    /**
+     * The start of every object in this format, including the version. NotXml always starts with
+     * the delimiter instead.
+     */
+    static final String MARKER = "#1";
+
+    static final int STRING = 0;
+    static final int INTEGER = 1;
+    static final int SHORT = 2;
+    static final int LONG = 3;
+    static final int BOOLEAN = 4;
+    static final int DATE = 5;
+    static final int CLOB = 6;
+    static final int REFERENCE = 7;
+    static final int COLLECTION = 8;
+    static final int TEXT = 9;
+
+    private static final int BITS = 5;
+    private static final int MASK = 0x1f;
+    private static final char LAST = 0x20;
+    private static final char MORE = 0x40;
+
+    private static volatile BinaryObjectFormat last = null;
+    private static final Map<Model, BinaryObjectFormat> FORMATS
+        = Collections.synchronizedMap(new IdentityHashMap<Model, BinaryObjectFormat>());
+
+    private final Model model;
+    private final int fingerprint;
+    private final String[] classNames;
+    private final Map<String, Integer> classIds = new HashMap<String, Integer>();
+    private final Map<Class<?>, String> headers = new ConcurrentHashMap<Class<?>, String>();
+    private final Map<String, Class<? extends FastPathObject>> headerClasses
+        = new ConcurrentHashMap<String, Class<? extends FastPathObject>>();
+    private final Map<Class<?>, FieldTable> fieldTables
+        = new ConcurrentHashMap<Class<?>, FieldTable>();
+
+    private BinaryObjectFormat(Model model) {
+        this.model = model;
+        List<String> names = new ArrayList<String>(model.getClassNames());
+        Collections.sort(names);
+        classNames = names.toArray(new String[names.size()]);
+        int hash = 0;
+        for (int i = 0; i < classNames.length; i++) {
+            classIds.put(classNames[i], Integer.valueOf(i));
+            hash = 31 * hash + classNames[i].hashCode();
+            ClassDescriptor cld = model.getClassDescriptorByName(classNames[i]);
+            Map<String, FieldDescriptor> fields = new TreeMap<String, FieldDescriptor>();
+            for (FieldDescriptor field : cld.getAllFieldDescriptors()) {
+                fields.put(field.getName(), field);
+            }
+            for (String fieldName : fields.keySet()) {
+                hash = 31 * hash + fieldName.hashCode();
+            }
+        }
+        // objects written against one model can't be read with the ids of another
+        fingerprint = hash & 0xfffff;
+    }
+
+    /**
+     * Returns the tables for a model.
+     *
+     * @param model the Model
+     * @return a BinaryObjectFormat
+     */
+    static BinaryObjectFormat getInstance(Model model) {
+        BinaryObjectFormat format = last;
+        if (format == null || format.model != model) {
+            synchronized (FORMATS) {
+                format = FORMATS.get(model);
+                if (format == null) {
+                    format = new BinaryObjectFormat(model);
+                    FORMATS.put(model, format);
+                }
+            }
+            last = format;
+        }
+        return format;
+    }
+
+    /**
+     * @return the fingerprint of the model
+     */
+    int getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Returns the start of every object of the given class: the marker, the fingerprint and the
+     * class ids.
+     *
+     * @param clazz the class of the object
+     * @return the header, or null if the object is made of a class that is not in the model
+     */
+    String getHeader(Class<?> clazz) {
+        String header = headers.get(clazz);
+        if (header == null) {
+            Set<Class<?>> classes = Util.decomposeClass(clazz);
+            StringBuilder sb = new StringBuilder(MARKER);
+            writeUnsigned(sb, fingerprint);
+            writeUnsigned(sb, classes.size());
+            for (Class<?> part : classes) {
+                Integer id = classIds.get(part.getName());
+                if (id == null) {
+                    sb = null;
+                    break;
+                }
+                writeUnsigned(sb, id.intValue());
+            }
+            header = (sb == null) ? "" : sb.toString();
+            headers.put(clazz, header);
+        }
+        return (header.length() == 0) ? null : header;
+    }
+
+    /**
+     * Returns the class for a list of class ids, as read from the header of an object.
+     *
+     * @param key the characters of the header that hold the class ids
+     * @return the class, or null if it has not been seen yet
+     */
+    Class<? extends FastPathObject> getObjectClass(String key) {
+        return headerClasses.get(key);
+    }
+
+    /**
+     * Remembers the class made for a list of class ids.
+     *
+     * @param key the characters of the header that hold the class ids
+     * @param clazz the class
+     */
+    void putObjectClass(String key, Class<? extends FastPathObject> clazz) {
+        headerClasses.put(key, clazz);
+    }
+
+    /**
+     * Returns the class in the model with the given id.
+     *
+     * @param id the class id
+     * @return the class
+     * @throws ClassNotFoundException if there is no class with that id
+     */
+    Class<?> getModelClass(int id) throws ClassNotFoundException {
+        if (id < 0 || id >= classNames.length) {
+            throw new ClassNotFoundException("No class with id " + id + " in model "
+                    + model.getName());
+        }
+        return model.getClassDescriptorByName(classNames[id]).getType();
+    }
+
+    /**
+     * Returns the fields of a class, in the order of their ids.
+     *
+     * @param clazz a class made of classes in the model
+     * @return a FieldTable
+     */
+    FieldTable getFieldTable(Class<?> clazz) {
+        FieldTable table = fieldTables.get(clazz);
+        if (table == null) {
+            table = new FieldTable(clazz, model);
+            fieldTables.put(clazz, table);
+        }
+        return table;
+    }
+
+    /**
+     * The fields of one class, with what is needed to write and read each of them.
+     */
+    static final class FieldTable
+    {
+        final String[] names;
+        final Class<?>[] types;
+        final int[] kinds;
+        final Class<?>[] referencedTypes;
+        final Map<String, Class<?>> collections;
+
+        FieldTable(Class<?> clazz, Model model) {
+            Map<String, TypeUtil.FieldInfo> infos = TypeUtil.getFieldInfos(clazz);
+            Map<String, FieldDescriptor> fields = model.getFieldDescriptorsForClass(clazz);
+            int size = infos.size();
+            names = new String[size];
+            types = new Class<?>[size];
+            kinds = new int[size];
+            referencedTypes = new Class<?>[size];
+            // getFieldInfos() is sorted by name
+            int i = 0;
+            for (Map.Entry<String, TypeUtil.FieldInfo> entry : infos.entrySet()) {
+                names[i] = entry.getKey().intern();
+                types[i] = entry.getValue().getType();
+                kinds[i] = kindOf(types[i]);
+                if (kinds[i] == REFERENCE) {
+                    FieldDescriptor field = fields.get(names[i]);
+                    referencedTypes[i] = (field instanceof ReferenceDescriptor)
+                        ? ((ReferenceDescriptor) field).getReferencedClassDescriptor().getType()
+                        : InterMineObject.class;
+                }
+                i++;
+            }
+            collections = model.getCollectionsForClass(clazz);
+        }
+
+        private static int kindOf(Class<?> type) {
+            if (String.class.equals(type)) {
+                return STRING;
+            } else if (Integer.class.equals(type) || Integer.TYPE.equals(type)) {
+                return INTEGER;
+            } else if (Short.class.equals(type) || Short.TYPE.equals(type)) {
+                return SHORT;
+            } else if (Long.class.equals(type) || Long.TYPE.equals(type)) {
+                return LONG;
+            } else if (Boolean.class.equals(type) || Boolean.TYPE.equals(type)) {
+                return BOOLEAN;
+            } else if (Date.class.equals(type)) {
+                return DATE;
+            } else if (ClobAccess.class.equals(type)) {
+                return CLOB;
+            } else if (InterMineObject.class.isAssignableFrom(type)) {
+                return REFERENCE;
+            } else if (Collection.class.isAssignableFrom(type)) {
+                return COLLECTION;
+            }
+            return TEXT;
+        }
+    }
+
+    /**
+     * Appends a signed number.
+     *
+     * @param sb the StringBuilder to append to
+     * @param value the number
+     */
+    static void writeSigned(StringBuilder sb, long value) {
+        writeUnsigned(sb, (value << 1) ^ (value >> 63));
+    }
+
+    /**
+     * Appends a number, treating it as unsigned.
+     *
+     * @param sb the StringBuilder to append to
+     * @param value the number
+     */
+    static void writeUnsigned(StringBuilder sb, long value) {
+        long rest = value;
+        while ((rest >>> BITS) != 0) {
+            sb.append((char) (MORE | (rest & MASK)));
+            rest >>>= BITS;
+        }
+        sb.append((char) (LAST | rest));
+    }
+
+    /**
+     * Appends a string as its length followed by its characters.
+     *
+     * @param sb the StringBuilder to append to
+     * @param string the String
+     */
+    static void writeString(StringBuilder sb, String string) {
+        writeUnsigned(sb, string.length());
+        sb.append(string);
+    }
+
+    /**
+     * A position in an encoded object, from which values can be read.
+     */
+    static final class Cursor
+    {
+        private final String data;
+        private int position;
+
+        /**
+         * @param data the encoded object
+         * @param position where to start reading
+         */
+        Cursor(String data, int position) {
+            this.data = data;
+            this.position = position;
+        }
+
+        /**
+         * @return true if there is nothing left to read
+         */
+        boolean atEnd() {
+            return position >= data.length();
+        }
+
+        /**
+         * @return the position of the next character to be read
+         */
+        int getPosition() {
+            return position;
+        }
+
+        /**
+         * @return the next number, written by writeUnsigned
+         */
+        long readUnsigned() {
+            long value = 0;
+            int shift = 0;
+            while (true) {
+                if (position >= data.length() || shift >= 64) {
+                    throw new IllegalArgumentException("Truncated number at " + position
+                            + " in object " + data);
+                }
+                char c = data.charAt(position++);
+                if (c >= MORE && c < MORE + (1 << BITS)) {
+                    value |= ((long) (c & MASK)) << shift;
+                    shift += BITS;
+                } else if (c >= LAST && c < LAST + (1 << BITS)) {
+                    return value | (((long) (c & MASK)) << shift);
+                } else {
+                    throw new IllegalArgumentException("Unexpected character " + (int) c
+                            + " at " + (position - 1) + " in object " + data);
+                }
+            }
+        }
+
+        /**
+         * @return the next number, written by writeSigned
+         */
+        long readSigned() {
+            long value = readUnsigned();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        /**
+         * @return the next string, written by writeString
+         */
+        String readString() {
+            int length = (int) readUnsigned();
+            if (length < 0 || position + length > data.length()) {
+                throw new IllegalArgumentException("Truncated string at " + position
+                        + " in object " + data);
+            }
+            String retval = data.substring(position, position + length);
+            position += length;
+            return retval;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package org.intermine.objectstore.intermine;
+
+/*
+ * Copyright (C) 2002-2017 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import net.sf.cglib.proxy.Factory;
+
+import org.intermine.metadata.TypeUtil;
+import org.intermine.model.FastPathObject;
+import org.intermine.model.InterMineObject;
+import org.intermine.objectstore.proxy.ProxyCollection;
+import org.intermine.objectstore.proxy.ProxyReference;
+import org.intermine.objectstore.query.ClobAccess;
+import org.intermine.util.DynamicBean;
+import org.intermine.util.DynamicUtil;
+
+/**
+ * Parses an object written by BinaryObjectRenderer. NotXmlParser hands these over, so callers
+ * don't need to know which format an object was stored in.
+ *
+ * @author chenyian
+ */
+public final class BinaryObjectParser
+{
+    private BinaryObjectParser() {
+    }
+
+    /**
+     * Returns true if the given String was written by BinaryObjectRenderer.
+     *
+     * @param data the contents of an OBJECT field
+     * @return a boolean
+     */
+    public static boolean isBinary(String data) {
+        return data != null && data.startsWith(BinaryObjectFormat.MARKER);
+    }
+
+    /**
+     * Parse the given String into an Object.
+     *
+     * @param data the String written by BinaryObjectRenderer
+     * @param os the ObjectStore from which to create lazy objects
+     * @return an InterMineObject
+     * @throws ClassNotFoundException if a class cannot be found
+     */
+    public static InterMineObject parse(String data,
+            ObjectStoreInterMineImpl os) throws ClassNotFoundException {
+        BinaryObjectFormat format = BinaryObjectFormat.getInstance(os.getModel());
+        BinaryObjectFormat.Cursor cursor = new BinaryObjectFormat.Cursor(data,
+                BinaryObjectFormat.MARKER.length());
+        if (cursor.readUnsigned() != format.getFingerprint()) {
+            throw new IllegalStateException("Object was written with a different model to "
+                    + os.getModel().getName() + ": " + data);
+        }
+
+        int classesStart = cursor.getPosition();
+        int classCount = (int) cursor.readUnsigned();
+        int[] classIds = new int[classCount];
+        for (int i = 0; i < classCount; i++) {
+            classIds[i] = (int) cursor.readUnsigned();
+        }
+        String classesKey = data.substring(classesStart, cursor.getPosition());
+        InterMineObject retval;
+        Class<? extends FastPathObject> clazz = format.getObjectClass(classesKey);
+        if (clazz == null) {
+            Set<Class<?>> classes = new HashSet<Class<?>>();
+            for (int i = 0; i < classCount; i++) {
+                classes.add(format.getModelClass(classIds[i]));
+            }
+            retval = (InterMineObject) DynamicUtil.createObject(classes);
+            format.putObjectClass(classesKey, retval.getClass());
+        } else {
+            retval = (InterMineObject) DynamicUtil.createObject(clazz);
+        }
+
+        Map<String, Object> valueMap = null;
+        boolean fetchFromInterMineObject = false;
+        if (retval instanceof Factory) {
+            valueMap = ((DynamicBean) ((Factory) retval).getCallback(0)).getMap();
+            fetchFromInterMineObject = os.getSchema().isFetchFromInterMineObject();
+        }
+        BinaryObjectFormat.FieldTable table = format.getFieldTable(retval.getClass());
+        while (!cursor.atEnd()) {
+            int field = (int) cursor.readUnsigned();
+            if (field < 0 || field >= table.names.length) {
+                throw new IllegalArgumentException("Unknown field " + field + " in object "
+                        + data);
+            }
+            Object value;
+            switch (table.kinds[field]) {
+                case BinaryObjectFormat.STRING:
+                    value = cursor.readString();
+                    break;
+                case BinaryObjectFormat.INTEGER:
+                    value = Integer.valueOf((int) cursor.readSigned());
+                    break;
+                case BinaryObjectFormat.SHORT:
+                    value = Short.valueOf((short) cursor.readSigned());
+                    break;
+                case BinaryObjectFormat.LONG:
+                    value = Long.valueOf(cursor.readSigned());
+                    break;
+                case BinaryObjectFormat.BOOLEAN:
+                    value = Boolean.valueOf(cursor.readUnsigned() != 0);
+                    break;
+                case BinaryObjectFormat.DATE:
+                    value = new Date(cursor.readSigned());
+                    break;
+                case BinaryObjectFormat.CLOB:
+                    value = ClobAccess.decodeDbDescription(os, cursor.readString());
+                    break;
+                case BinaryObjectFormat.REFERENCE:
+                    @SuppressWarnings("unchecked")
+                    Class<? extends InterMineObject> type = (Class<? extends InterMineObject>)
+                        (fetchFromInterMineObject ? InterMineObject.class
+                                : table.referencedTypes[field]);
+                    value = new ProxyReference(os, Integer.valueOf((int) cursor.readSigned()),
+                            type);
+                    break;
+                case BinaryObjectFormat.COLLECTION:
+                    throw new IllegalArgumentException("Unexpected collection "
+                            + table.names[field] + " in object " + data);
+                default:
+                    String text = cursor.readString();
+                    value = UUID.class.equals(table.types[field]) ? UUID.fromString(text)
+                        : TypeUtil.stringToObject(table.types[field], text);
+            }
+            if (valueMap != null) {
+                valueMap.put(table.names[field], value);
+            } else {
+                retval.setFieldValue(table.names[field], value);
+            }
+        }
+
+        for (Map.Entry<String, Class<?>> collEntry : table.collections.entrySet()) {
+            Collection<Object> lazyColl = new ProxyCollection<Object>(os, retval,
+                    collEntry.getKey(), collEntry.getValue());
+            if (valueMap != null) {
+                valueMap.put(collEntry.getKey(), lazyColl);
+            } else {
+                retval.setFieldValue(collEntry.getKey(), lazyColl);
+            }
+        }
+        return retval;
+    }
+}
@@ -0,0 +1,98 @@
+package org.intermine.objectstore.intermine;
+
+/*
+ * Copyright (C) 2002-2017 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.Date;
+
+import org.intermine.metadata.Model;
+import org.intermine.metadata.TypeUtil;
+import org.intermine.model.FastPathObject;
+import org.intermine.model.InterMineObject;
+import org.intermine.model.StringConstructor;
+import org.intermine.objectstore.query.ClobAccess;
+
+/**
+ * Render an object into the compact format described in BinaryObjectFormat, for storing in the
+ * OBJECT field of database tables instead of NotXml. NotXmlParser reads both formats.
+ *
+ * @author chenyian
+ */
+public final class BinaryObjectRenderer
+{
+    private BinaryObjectRenderer() {
+    }
+
+    /**
+     * Render the given object. Objects made of classes that are not in the model are rendered as
+     * NotXml.
+     *
+     * @param obj the object to render
+     * @param model the Model that the ids of classes and fields are taken from
+     * @return the encoded object
+     */
+    public static StringConstructor render(Object obj, Model model) {
+        BinaryObjectFormat format = BinaryObjectFormat.getInstance(model);
+        String header = format.getHeader(obj.getClass());
+        if (header == null) {
+            return NotXmlRenderer.render(obj);
+        }
+        try {
+            BinaryObjectFormat.FieldTable table = format.getFieldTable(obj.getClass());
+            StringBuilder sb = new StringBuilder(header.length() + 16 * table.names.length);
+            sb.append(header);
+            for (int i = 0; i < table.names.length; i++) {
+                int kind = table.kinds[i];
+                if (kind == BinaryObjectFormat.COLLECTION) {
+                    continue;
+                }
+                Object value = (obj instanceof FastPathObject)
+                    ? ((FastPathObject) obj).getFieldProxy(table.names[i])
+                    : TypeUtil.getFieldProxy(obj, table.names[i]);
+                if (value == null) {
+                    continue;
+                }
+                BinaryObjectFormat.writeUnsigned(sb, i);
+                switch (kind) {
+                    case BinaryObjectFormat.STRING:
+                        BinaryObjectFormat.writeString(sb, (String) value);
+                        break;
+                    case BinaryObjectFormat.INTEGER:
+                    case BinaryObjectFormat.SHORT:
+                    case BinaryObjectFormat.LONG:
+                        BinaryObjectFormat.writeSigned(sb, ((Number) value).longValue());
+                        break;
+                    case BinaryObjectFormat.BOOLEAN:
+                        BinaryObjectFormat.writeUnsigned(sb,
+                                ((Boolean) value).booleanValue() ? 1 : 0);
+                        break;
+                    case BinaryObjectFormat.DATE:
+                        BinaryObjectFormat.writeSigned(sb, ((Date) value).getTime());
+                        break;
+                    case BinaryObjectFormat.CLOB:
+                        BinaryObjectFormat.writeString(sb,
+                                ((ClobAccess) value).getDbDescription());
+                        break;
+                    case BinaryObjectFormat.REFERENCE:
+                        BinaryObjectFormat.writeSigned(sb,
+                                ((InterMineObject) value).getId().intValue());
+                        break;
+                    default:
+                        BinaryObjectFormat.writeString(sb, value.toString());
+                }
+            }
+            return new StringConstructor().append(sb.toString());
+        } catch (IllegalAccessException e) {
+            IllegalArgumentException e2 = new IllegalArgumentException();
+            e2.initCause(e);
+            throw e2;
+        }
+    }
+}
@@ -66,7 +66,8 @@ public final class NotXmlParser
         = Collections.synchronizedMap(new HashMap<String, Class<? extends FastPathObject>>());
 
     /**
-     * Parse the given NotXml String into an Object.
+     * Parse the given NotXml String into an Object. Objects written by BinaryObjectRenderer are
+     * passed on to BinaryObjectParser.
      *
      * @param xml the NotXml String
      * @param os the ObjectStore from which to create lazy objects
@@ -80,6 +81,9 @@ public final class NotXmlParser
             e.fillInStackTrace();
             LOG.warn("Parsing " + xml, e);
         }
+        if (BinaryObjectParser.isBinary(xml)) {
+            return BinaryObjectParser.parse(xml, os);
+        }
         long time1 = System.currentTimeMillis();
         String[] a = SPLITTER.split(xml);
         long time2 = System.currentTimeMillis();
@@ -98,6 +98,8 @@ import org.intermine.sql.query.PostgresExplainResult;
 import org.intermine.sql.writebatch.Batch;
 import org.intermine.sql.writebatch.BatchWriterPostgresCopyImpl;
 import org.intermine.util.CacheMap;
+import org.intermine.util.ObjectCache;
+import org.intermine.util.ObjectCacheFactory;
 import org.intermine.util.PropertiesUtil;
 import org.intermine.util.ShutdownHook;
 import org.intermine.util.Shutdownable;
@@ -139,8 +141,11 @@ public class ObjectStoreInterMineImpl extends ObjectStoreAbstractImpl implements
     protected int sequenceBase = 0;
     protected int sequenceOffset = SEQUENCE_MULTIPLE;
     protected static final int SEQUENCE_MULTIPLE = 1000000;
+    /** The maximum number of queries in each of the results caches, unless configured */
+    protected static final int DEFAULT_RESULTS_CACHE_SIZE = 2000;
     protected boolean logExplains = false;
     protected boolean disableResultsCache = false;
+    protected boolean binaryObjects = false;
 
     // don't use a table to represent bags if the bag is smaller than this value
     protected int minBagTableSize = -1;
@@ -155,11 +160,14 @@ public class ObjectStoreInterMineImpl extends ObjectStoreAbstractImpl implements
     protected Map<Query, Integer> goFasterCountMap = new IdentityHashMap<Query, Integer>();
     protected ReferenceQueue<String> bagTablesToRemove = new ReferenceQueue<String>();
     protected String description;
-    protected Map<String, Results> resultsCache = new CacheMap<String, Results>();
-    protected Map<String, SingletonResults> singletonResultsCache
-        = new CacheMap<String, SingletonResults>();
-    protected Map<String, Map<Integer, ResultsBatches>> batchesCache
-        = new CacheMap<String, Map<Integer, ResultsBatches>>();
+    protected ObjectCache<String, Results> resultsCache = ObjectCacheFactory.create("results",
+            "ObjectStoreInterMineImpl results cache", DEFAULT_RESULTS_CACHE_SIZE);
+    protected ObjectCache<String, SingletonResults> singletonResultsCache
+        = ObjectCacheFactory.create("singletonResults",
+                "ObjectStoreInterMineImpl singleton results cache", DEFAULT_RESULTS_CACHE_SIZE);
+    protected ObjectCache<String, Map<Integer, ResultsBatches>> batchesCache
+        = ObjectCacheFactory.create("batches", "ObjectStoreInterMineImpl batches cache",
+                DEFAULT_RESULTS_CACHE_SIZE);
 
     private static final String[] LOG_TABLE_COLUMNS = new String[] {"timestamp", "optimise",
         "estimated", "execute", "permitted", "convert", "iql", "sql"};
@@ -359,6 +367,7 @@ public class ObjectStoreInterMineImpl extends ObjectStoreAbstractImpl implements
         String logExplainsString = props.getProperty("logExplains");
         String logBeforeExecuteString = props.getProperty("logBeforeExecute");
         String disableResultsCacheString = props.getProperty("disableResultsCache");
+        String binaryObjectsString = props.getProperty("binaryObjects");
 
         synchronized (instances) {
             ObjectStoreInterMineImpl os = instances.get(osAlias);
@@ -532,6 +541,9 @@ public class ObjectStoreInterMineImpl extends ObjectStoreAbstractImpl implements
                 if ("true".equals(disableResultsCacheString)) {
                     os.setDisableResultsCache(true);
                 }
+                if ("true".equals(binaryObjectsString)) {
+                    os.setBinaryObjects(true);
+                }
                 instances.put(osAlias, os);
             }
             return os;
@@ -680,6 +692,26 @@ public class ObjectStoreInterMineImpl extends ObjectStoreAbstractImpl implements
         return disableResultsCache;
     }
 
+    /**
+     * Sets the binaryObjects configuration option. If true, the OBJECT field of objects written
+     * from now on holds the compact format of BinaryObjectRenderer instead of NotXml. Objects
+     * are read in either format regardless of this option.
+     *
+     * @param binaryObjects a boolean
+     */
+    public void setBinaryObjects(boolean binaryObjects) {
+        this.binaryObjects = binaryObjects;
+    }
+
+    /**
+     * Gets the binaryObjects configuration option.
+     *
+     * @return a boolean
+     */
+    public boolean getBinaryObjects() {
+        return binaryObjects;
+    }
+
     /**
      * Allows the log table to be flushed, guaranteeing that all log entries are committed to the
      * database.
@@ -754,44 +786,34 @@ public class ObjectStoreInterMineImpl extends ObjectStoreAbstractImpl implements
             boolean prefetch) {
         String cacheKey = "Batchsize: " + batchSize + ", optimise: " + optimise + ", explain: "
             + explain + ", prefetch: " + prefetch + ", query: " + q;
-        synchronized (resultsCache) {
-            // if this query has been executed before return a cached copy of the Results
-            Results retval = resultsCache.get(cacheKey);
-            if (retval != null) {
-                try {
-                    checkSequence(retval.getSequence(), null, null);
-                } catch (DataChangedException e) {
-                    retval = null;
-                }
+        // if this query has been executed before return a cached copy of the Results
+        Results retval = resultsCache.get(cacheKey);
+        if (retval != null) {
+            try {
+                checkSequence(retval.getSequence(), null, null);
+            } catch (DataChangedException e) {
+                retval = null;
             }
-            if (retval == null) {
-                String batchesKey = q.toString();
-                synchronized (batchesCache) {
-                    Map<Integer, ResultsBatches> batches = batchesCache.get(batchesKey);
-                    if (batches == null) {
-                        batches = new CacheMap<Integer, ResultsBatches>();
-                        batchesCache.put(batchesKey, batches);
-                    }
-                    ResultsBatches batch = getResultsBatches(batches, batchSize);
-                    if (batch != null) {
-                        // We've executed this query before but with a different batch size, we may
-                        // be able to use the rows from previous batches to seed a new Results. This
-                        // is here because running a query in the webapp and exporting use different
-                        // batch sizes, this way we avoid re-executing queries that have results
-                        // already in cache.
-                        retval = new Results(batch, optimise, explain, prefetch);
-                    } else {
-                        retval = super.execute(q, batchSize, optimise, explain, prefetch);
-                        batches.put(new Integer(batchSize), retval.getResultsBatches());
-                    }
-                    resultsCache.put(cacheKey, retval);
+        }
+        if (retval == null) {
+            Map<Integer, ResultsBatches> batches = getBatchesForQuery(q);
+            synchronized (batches) {
+                ResultsBatches batch = getResultsBatches(batches, batchSize);
+                if (batch != null) {
+                    // We've executed this query before but with a different batch size, we may
+                    // be able to use the rows from previous batches to seed a new Results. This
+                    // is here because running a query in the webapp and exporting use different
+                    // batch sizes, this way we avoid re-executing queries that have results
+                    // already in cache.
+                    retval = new Results(batch, optimise, explain, prefetch);
+                } else {
+                    retval = super.execute(q, batchSize, optimise, explain, prefetch);
+                    batches.put(new Integer(batchSize), retval.getResultsBatches());
                 }
-                //LOG.error("Results cache miss for " + q);
-            //} else {
-                //LOG.error("Results cache hit for " + q);
             }
-            return retval;
+            resultsCache.put(cacheKey, retval);
         }
+        return retval;
     }
 
     /**
@@ -810,38 +832,45 @@ public class ObjectStoreInterMineImpl extends ObjectStoreAbstractImpl implements
             boolean explain, boolean prefetch) {
         String cacheKey = "Batchsize: " + batchSize + ", optimise: " + optimise + ", explain: "
             + explain + ", prefetch: " + prefetch + ", query: " + q;
-        synchronized (singletonResultsCache) {
-            SingletonResults retval = singletonResultsCache.get(cacheKey);
-            if (retval != null) {
-                try {
-                    checkSequence(retval.getSequence(), null, null);
-                } catch (DataChangedException e) {
-                    retval = null;
-                }
+        SingletonResults retval = singletonResultsCache.get(cacheKey);
+        if (retval != null) {
+            try {
+                checkSequence(retval.getSequence(), null, null);
+            } catch (DataChangedException e) {
+                retval = null;
             }
-            if (retval == null) {
-                String batchesKey = q.toString();
-                synchronized (batchesCache) {
-                    Map<Integer, ResultsBatches> batches = batchesCache.get(batchesKey);
-                    if (batches == null) {
-                        batches = new CacheMap<Integer, ResultsBatches>();
-                        batchesCache.put(batchesKey, batches);
-                    }
-                    ResultsBatches batch = getResultsBatches(batches, batchSize);
-                    if (batch != null) {
-                        retval = new SingletonResults(batch, optimise, explain, prefetch);
-                    } else {
-                        retval = super.executeSingleton(q, batchSize, optimise, explain, prefetch);
-                        batches.put(new Integer(batchSize), retval.getResultsBatches());
-                    }
-                    singletonResultsCache.put(cacheKey, retval);
+        }
+        if (retval == null) {
+            Map<Integer, ResultsBatches> batches = getBatchesForQuery(q);
+            synchronized (batches) {
+                ResultsBatches batch = getResultsBatches(batches, batchSize);
+                if (batch != null) {
+                    retval = new SingletonResults(batch, optimise, explain, prefetch);
+                } else {
+                    retval = super.executeSingleton(q, batchSize, optimise, explain, prefetch);
+                    batches.put(new Integer(batchSize), retval.getResultsBatches());
                 }
-                //LOG.error("Results cache miss for " + q);
-            //} else {
-                //LOG.error("Results cache hit for " + q);
             }
-            return retval;
+            singletonResultsCache.put(cacheKey, retval);
+        }
+        return retval;
+    }
+
+    /**
+     * Find the batches of a query, which are shared between Results with different batch sizes.
+     * The returned map must only be used while holding its lock.
+     */
+    private Map<Integer, ResultsBatches> getBatchesForQuery(Query q) {
+        String batchesKey = q.toString();
+        Map<Integer, ResultsBatches> batches = batchesCache.get(batchesKey);
+        if (batches == null) {
+            batches = new CacheMap<Integer, ResultsBatches>();
+            Map<Integer, ResultsBatches> existing = batchesCache.putIfAbsent(batchesKey, batches);
+            if (existing != null) {
+                batches = existing;
+            }
         }
+        return batches;
     }
 
     private ResultsBatches getResultsBatches(Map<Integer, ResultsBatches> batches, int batchSize) {
@@ -17,13 +17,17 @@ import java.io.StringWriter;
 import java.io.Writer;
 import java.lang.ref.WeakReference;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -45,6 +49,7 @@ import org.intermine.objectstore.ObjectStore;
 import org.intermine.objectstore.ObjectStoreException;
 import org.intermine.objectstore.ObjectStoreWriter;
 import org.intermine.objectstore.proxy.Lazy;
+import org.intermine.objectstore.proxy.ProxyReference;
 import org.intermine.objectstore.query.Clob;
 import org.intermine.objectstore.query.ClobAccess;
 import org.intermine.objectstore.query.Constraint;
@@ -80,6 +85,8 @@ public class ObjectStoreWriterInterMineImpl extends ObjectStoreInterMineImpl
     implements ObjectStoreWriter
 {
     private static final Logger LOG = Logger.getLogger(ObjectStoreWriterInterMineImpl.class);
+    // the number of objects read and updated at a time by setFieldValues
+    private static final int PATCH_BATCH_SIZE = 1000;
     private static final String[] CLOB_COLUMNS = new String[] {CLOBID_COLUMN, CLOBPAGE_COLUMN,
         CLOBVAL_COLUMN};
     protected Connection conn = null;
@@ -676,11 +683,7 @@ public class ObjectStoreWriterInterMineImpl extends ObjectStoreInterMineImpl
                             value = objectClass;
                         } else if ("OBJECT".equals(tableInfo.colNames[colNo])) {
                             if (xml == null) {
-                                if (o instanceof InterMineObject) {
-                                    xml = ((InterMineObject) o).getoBJECT();
-                                } else {
-                                    xml = NotXmlRenderer.render(o);
-                                }
+                                xml = renderObject(o);
                             }
                             value = xml;
                         } else if (validFieldNames.contains(tableInfo.fieldNames[colNo])) {
@@ -783,6 +786,22 @@ public class ObjectStoreWriterInterMineImpl extends ObjectStoreInterMineImpl
         }
     }
 
+    /**
+     * Renders an object for the OBJECT column, in the format configured for the objectstore.
+     *
+     * @param o the object
+     * @return the rendered object
+     */
+    protected StringConstructor renderObject(Object o) {
+        if ((o instanceof InterMineObject) && os.getBinaryObjects()) {
+            return BinaryObjectRenderer.render(o, model);
+        } else if (o instanceof InterMineObject) {
+            return ((InterMineObject) o).getoBJECT();
+        } else {
+            return NotXmlRenderer.render(o);
+        }
+    }
+
     private void writeCollections(Connection c, Object o, Set<CollectionDescriptor> collections)
         throws IllegalAccessException, SQLException {
         for (CollectionDescriptor collection : collections) {
@@ -875,25 +894,7 @@ public class ObjectStoreWriterInterMineImpl extends ObjectStoreInterMineImpl
                         + " does not exist in the model.");
             }
             if (field.relationType() == FieldDescriptor.M_N_RELATION) {
-                invalidateObjectById(hasId);
-                invalidateObjectById(hadId);
-                CollectionDescriptor coll = (CollectionDescriptor) field;
-                String indirectTableName = DatabaseUtil.getIndirectionTableName(coll);
-                String inwardColumnName = DatabaseUtil.getInwardIndirectionColumnName(coll,
-                        schema.getVersion());
-                String outwardColumnName = DatabaseUtil.getOutwardIndirectionColumnName(coll,
-                        schema.getVersion());
-                boolean swap = (inwardColumnName.compareTo(outwardColumnName) > 0);
-                String[] indirColNames = tableToColNameArray.get(indirectTableName);
-                if (indirColNames == null) {
-                    indirColNames = new String[2];
-                    indirColNames[0] = (swap ? inwardColumnName : outwardColumnName);
-                    indirColNames[1] = (swap ? outwardColumnName : inwardColumnName);
-                    tableToColNameArray.put(indirectTableName, indirColNames);
-                }
-                batch.addRow(c, indirectTableName, indirColNames[0], indirColNames[1],
-                             (swap ? hasId : hadId).intValue(), (swap ? hadId : hasId).intValue());
-                tablesAltered.add(indirectTableName);
+                addIndirectionRow(c, (CollectionDescriptor) field, hasId, hadId);
             } else {
                 throw new ObjectStoreException("Field " + clazz.getName() + "." + fieldName
                         + " is not a many-to-many collection.");
@@ -912,6 +913,397 @@ public class ObjectStoreWriterInterMineImpl extends ObjectStoreInterMineImpl
         }
     }
 
+    private void addIndirectionRow(Connection c, CollectionDescriptor coll, Integer hasId,
+            Integer hadId) throws SQLException {
+        invalidateObjectById(hasId);
+        invalidateObjectById(hadId);
+        String indirectTableName = DatabaseUtil.getIndirectionTableName(coll);
+        String inwardColumnName = DatabaseUtil.getInwardIndirectionColumnName(coll,
+                schema.getVersion());
+        String outwardColumnName = DatabaseUtil.getOutwardIndirectionColumnName(coll,
+                schema.getVersion());
+        boolean swap = (inwardColumnName.compareTo(outwardColumnName) > 0);
+        String[] indirColNames = tableToColNameArray.get(indirectTableName);
+        if (indirColNames == null) {
+            indirColNames = new String[2];
+            indirColNames[0] = (swap ? inwardColumnName : outwardColumnName);
+            indirColNames[1] = (swap ? outwardColumnName : inwardColumnName);
+            tableToColNameArray.put(indirectTableName, indirColNames);
+        }
+        batch.addRow(c, indirectTableName, indirColNames[0], indirColNames[1],
+                     (swap ? hasId : hadId).intValue(), (swap ? hadId : hasId).intValue());
+        tablesAltered.add(indirectTableName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addAllToCollection(Class<?> clazz, String fieldName,
+            Map<Integer, ? extends Collection<Integer>> members) throws ObjectStoreException {
+        Connection c = null;
+        try {
+            c = getConnection();
+            addAllToCollectionWithConnection(c, clazz, fieldName, members);
+        } catch (SQLException e) {
+            throw new ObjectStoreException("Could not get connection to database", e);
+        } finally {
+            releaseConnection(c);
+        }
+    }
+
+    /**
+     * Performs addAllToCollection with given connection.
+     *
+     * @param c the Connection
+     * @param clazz the class of the objects that have the collection
+     * @param fieldName the name of the collection
+     * @param members a Map from the ID of each object that has the collection to the IDs of the
+     * objects to place in it
+     * @throws ObjectStoreException if an error occurs
+     */
+    protected void addAllToCollectionWithConnection(Connection c, Class<?> clazz,
+            String fieldName, Map<Integer, ? extends Collection<Integer>> members)
+        throws ObjectStoreException {
+        FieldDescriptor field = model.getFieldDescriptorsForClass(clazz).get(fieldName);
+        if (!(field instanceof CollectionDescriptor)) {
+            throw new ObjectStoreException("Field " + clazz.getName() + "." + fieldName
+                    + " is not a collection in the model.");
+        }
+        CollectionDescriptor coll = (CollectionDescriptor) field;
+        if (field.relationType() == FieldDescriptor.ONE_N_RELATION) {
+            // the collection is the other side of a reference from each element
+            Map<Integer, Integer> reverseValues = new HashMap<Integer, Integer>();
+            for (Map.Entry<Integer, ? extends Collection<Integer>> entry : members.entrySet()) {
+                for (Integer hadId : entry.getValue()) {
+                    reverseValues.put(hadId, entry.getKey());
+                }
+            }
+            setFieldValuesWithConnection(c, coll.getReferencedClassDescriptor().getType(),
+                    coll.getReverseReferenceFieldName(), reverseValues);
+            for (Integer hasId : members.keySet()) {
+                invalidateObjectById(hasId);
+            }
+            return;
+        }
+        boolean wasInTransaction = isInTransactionWithConnection(c);
+        if (!wasInTransaction) {
+            beginTransactionWithConnection(c);
+        }
+        try {
+            for (Map.Entry<Integer, ? extends Collection<Integer>> entry : members.entrySet()) {
+                for (Integer hadId : entry.getValue()) {
+                    addIndirectionRow(c, coll, entry.getKey(), hadId);
+                }
+            }
+        } catch (SQLException e) {
+            throw new ObjectStoreException("Error while storing", e);
+        } finally {
+            if (!wasInTransaction) {
+                try {
+                    commitTransactionWithConnection(c);
+                } catch (ObjectStoreException e) {
+                    abortTransactionWithConnection(c);
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setFieldValues(Class<?> clazz, String fieldName, Map<Integer, ?> values)
+        throws ObjectStoreException {
+        Connection c = null;
+        try {
+            c = getConnection();
+            setFieldValuesWithConnection(c, clazz, fieldName, values);
+        } catch (SQLException e) {
+            throw new ObjectStoreException("Could not get connection to database", e);
+        } finally {
+            releaseConnection(c);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setFieldValues(Class<?> clazz, Map<Integer, ? extends Map<String, ?>> values)
+        throws ObjectStoreException {
+        Connection c = null;
+        try {
+            c = getConnection();
+            setFieldValuesWithConnection(c, clazz, values);
+        } catch (SQLException e) {
+            throw new ObjectStoreException("Could not get connection to database", e);
+        } finally {
+            releaseConnection(c);
+        }
+    }
+
+    /**
+     * Performs setFieldValues for one field with given connection.
+     *
+     * @param c the Connection
+     * @param clazz the class of the objects
+     * @param fieldName the name of an attribute or reference
+     * @param values a Map from the ID of each object to its new value
+     * @throws ObjectStoreException if an error occurs
+     */
+    protected void setFieldValuesWithConnection(Connection c, Class<?> clazz, String fieldName,
+            Map<Integer, ?> values) throws ObjectStoreException {
+        getSettableField(clazz, fieldName);
+        Map<Integer, Map<String, Object>> fieldValues = new HashMap<Integer, Map<String, Object>>();
+        for (Map.Entry<Integer, ?> entry : values.entrySet()) {
+            fieldValues.put(entry.getKey(),
+                    Collections.<String, Object>singletonMap(fieldName, entry.getValue()));
+        }
+        setFieldValuesWithConnection(c, clazz, fieldValues);
+    }
+
+    /**
+     * Performs setFieldValues with given connection. Each object is read once from the
+     * InterMineObject table so that the tables it is stored in are known and its OBJECT column
+     * can be rewritten with all of its new values, and then every table is changed with one batch
+     * of UPDATE statements.
+     *
+     * @param c the Connection
+     * @param clazz the class of the objects
+     * @param values a Map from the ID of each object to a Map from field name to new value
+     * @throws ObjectStoreException if an error occurs
+     */
+    protected void setFieldValuesWithConnection(Connection c, Class<?> clazz,
+            Map<Integer, ? extends Map<String, ?>> values) throws ObjectStoreException {
+        Map<String, FieldDescriptor> fields = new HashMap<String, FieldDescriptor>();
+        for (Map<String, ?> objectValues : values.values()) {
+            for (String fieldName : objectValues.keySet()) {
+                if (!fields.containsKey(fieldName)) {
+                    fields.put(fieldName, getSettableField(clazz, fieldName));
+                }
+            }
+        }
+        if (values.isEmpty()) {
+            return;
+        }
+        boolean wasInTransaction = isInTransactionWithConnection(c);
+        if (!wasInTransaction) {
+            beginTransactionWithConnection(c);
+        }
+        Map<String, PreparedStatement> updates = new HashMap<String, PreparedStatement>();
+        try {
+            // pending rows would overwrite the updates when they are flushed
+            batch.flush(c);
+            String objectTable = getObjectTableName(clazz);
+            List<Integer> ids = new ArrayList<Integer>(values.keySet());
+            for (int start = 0; start < ids.size(); start += PATCH_BATCH_SIZE) {
+                List<Integer> chunk = ids.subList(start, Math.min(ids.size(),
+                            start + PATCH_BATCH_SIZE));
+                Map<Integer, String> objects = fetchObjects(c, objectTable, chunk);
+                for (Integer id : chunk) {
+                    String oldObject = objects.get(id);
+                    if (oldObject == null) {
+                        throw new ObjectStoreException("Could not set " + fields.keySet()
+                                + " - there is no object with ID " + id);
+                    }
+                    InterMineObject o = NotXmlParser.parse(oldObject, os);
+                    List<FieldDescriptor> objectFields = new ArrayList<FieldDescriptor>();
+                    List<Object> columnValues = new ArrayList<Object>();
+                    for (Map.Entry<String, ?> entry : values.get(id).entrySet()) {
+                        FieldDescriptor field = fields.get(entry.getKey());
+                        patchObject(o, field, entry.getValue());
+                        objectFields.add(field);
+                        columnValues.add(getColumnValue(field, entry.getValue()));
+                    }
+                    String newObject = renderObject(o).toString();
+                    Set<ClassDescriptor> tableMasters = new LinkedHashSet<ClassDescriptor>();
+                    for (ClassDescriptor cld : model.getClassDescriptorsForClass(o.getClass())) {
+                        tableMasters.add(schema.getTableMaster(cld));
+                    }
+                    for (ClassDescriptor tableMaster : tableMasters) {
+                        addUpdate(c, updates, tableMaster, objectFields, id, columnValues,
+                                newObject);
+                    }
+                    invalidateObjectById(id);
+                }
+                for (PreparedStatement update : updates.values()) {
+                    update.executeBatch();
+                }
+            }
+        } catch (SQLException e) {
+            throw new ObjectStoreException("Error while setting " + fields.keySet(), e);
+        } catch (ClassNotFoundException e) {
+            throw new ObjectStoreException("Unknown class in OBJECT column", e);
+        } finally {
+            for (PreparedStatement update : updates.values()) {
+                try {
+                    update.close();
+                } catch (SQLException e) {
+                    LOG.warn("Could not close statement", e);
+                }
+            }
+            if (!wasInTransaction) {
+                try {
+                    commitTransactionWithConnection(c);
+                } catch (ObjectStoreException e) {
+                    abortTransactionWithConnection(c);
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private FieldDescriptor getSettableField(Class<?> clazz, String fieldName)
+        throws ObjectStoreException {
+        FieldDescriptor field = model.getFieldDescriptorsForClass(clazz).get(fieldName);
+        if ((field == null) || field.isCollection() || "id".equals(fieldName)) {
+            throw new ObjectStoreException("Field " + clazz.getName() + "." + fieldName
+                    + " is not an attribute or reference in the model.");
+        }
+        return field;
+    }
+
+    // the table to read the OBJECT column from - the InterMineObject table unless it is missing
+    private String getObjectTableName(Class<?> clazz) throws ObjectStoreException {
+        ClassDescriptor imo = model.getClassDescriptorByName(InterMineObject.class.getName());
+        if ((imo != null) && hasObjectColumn(schema.getTableMaster(imo))) {
+            return DatabaseUtil.getTableName(schema.getTableMaster(imo));
+        }
+        ClassDescriptor cld = model.getClassDescriptorByName(clazz.getName());
+        if ((cld != null) && hasObjectColumn(schema.getTableMaster(cld))) {
+            return DatabaseUtil.getTableName(schema.getTableMaster(cld));
+        }
+        throw new ObjectStoreException("Cannot set fields of " + clazz.getName()
+                + " in place - no table holds its OBJECT column");
+    }
+
+    private boolean hasObjectColumn(ClassDescriptor tableMaster) throws ObjectStoreException {
+        TableInfo tableInfo = getTableInfo(tableMaster);
+        return (!schema.getMissingTables().contains(tableInfo.tableName.toLowerCase()))
+            && (tableInfo.colNames.length > 0) && "OBJECT".equals(tableInfo.colNames[0]);
+    }
+
+    private Map<Integer, String> fetchObjects(Connection c, String tableName, List<Integer> ids)
+        throws SQLException {
+        StringBuilder sql = new StringBuilder("SELECT id, OBJECT FROM ").append(tableName)
+            .append(" WHERE id IN (");
+        boolean needComma = false;
+        for (Integer id : ids) {
+            if (needComma) {
+                sql.append(", ");
+            }
+            needComma = true;
+            sql.append(id);
+        }
+        sql.append(")");
+        Map<Integer, String> retval = new HashMap<Integer, String>();
+        Statement s = c.createStatement();
+        try {
+            ResultSet r = s.executeQuery(sql.toString());
+            while (r.next()) {
+                retval.put(Integer.valueOf(r.getInt(1)), r.getString(2));
+            }
+        } finally {
+            s.close();
+        }
+        return retval;
+    }
+
+    private void patchObject(InterMineObject o, FieldDescriptor field, Object value)
+        throws ObjectStoreException {
+        if (model.getFieldDescriptorsForClass(o.getClass()).get(field.getName()) == null) {
+            throw new ObjectStoreException("Object " + o.getId() + " ("
+                    + Util.decomposeClass(o.getClass()) + ") has no field " + field.getName());
+        }
+        if (field.isReference() && (value != null)) {
+            @SuppressWarnings("unchecked")
+            Class<? extends InterMineObject> referencedType = (Class<? extends InterMineObject>)
+                ((ReferenceDescriptor) field).getReferencedClassDescriptor().getType();
+            o.setFieldValue(field.getName(), new ProxyReference(os, getReferencedId(value),
+                        referencedType));
+        } else {
+            o.setFieldValue(field.getName(), value);
+        }
+    }
+
+    // the value as store() would write it to the column
+    private static Object getColumnValue(FieldDescriptor field, Object value) {
+        if (value == null) {
+            return null;
+        } else if (field.isReference()) {
+            return getReferencedId(value);
+        } else if (value instanceof Date) {
+            return Long.valueOf(((Date) value).getTime());
+        } else if (value instanceof ClobAccess) {
+            return ((ClobAccess) value).getDbDescription();
+        }
+        return value;
+    }
+
+    private static Integer getReferencedId(Object value) {
+        return (value instanceof InterMineObject) ? ((InterMineObject) value).getId()
+            : (Integer) value;
+    }
+
+    private void addUpdate(Connection c, Map<String, PreparedStatement> updates,
+            ClassDescriptor tableMaster, List<FieldDescriptor> fields, Integer id,
+            List<Object> columnValues, String newObject) throws ObjectStoreException,
+        SQLException {
+        TableInfo tableInfo = getTableInfo(tableMaster);
+        if (schema.getMissingTables().contains(tableInfo.tableName.toLowerCase())) {
+            return;
+        }
+        boolean hasObject = (tableInfo.colNames.length > 0)
+            && "OBJECT".equals(tableInfo.colNames[0]);
+        List<String> columns = new ArrayList<String>();
+        List<Object> values = new ArrayList<Object>();
+        for (int i = 0; i < fields.size(); i++) {
+            String column = null;
+            for (int colNo = 0; colNo < tableInfo.colNames.length; colNo++) {
+                if (fields.get(i).getName().equals(tableInfo.fieldNames[colNo])) {
+                    column = tableInfo.colNames[colNo];
+                }
+            }
+            if (column != null) {
+                columns.add(column);
+                values.add(columnValues.get(i));
+            }
+        }
+        if (columns.isEmpty() && (!hasObject)) {
+            return;
+        }
+        // one statement for each table and set of columns
+        String key = tableInfo.tableName + columns;
+        PreparedStatement update = updates.get(key);
+        if (update == null) {
+            StringBuilder sql = new StringBuilder("UPDATE ").append(tableInfo.tableName)
+                .append(" SET ");
+            boolean needComma = false;
+            for (String column : columns) {
+                sql.append(needComma ? ", " : "").append(column).append(" = ?");
+                needComma = true;
+            }
+            if (hasObject) {
+                sql.append(needComma ? ", " : "").append("OBJECT = ?");
+            }
+            sql.append(" WHERE id = ?");
+            update = c.prepareStatement(sql.toString());
+            updates.put(key, update);
+        }
+        int param = 1;
+        for (Object value : values) {
+            update.setObject(param++, value);
+        }
+        if (hasObject) {
+            update.setString(param++, newObject);
+        }
+        update.setInt(param, id.intValue());
+        update.addBatch();
+        tablesAltered.add(tableInfo.tableName);
+    }
+
     /**
      * Produces metadata for a given table, caching it to save time.
      *
@@ -34,6 +34,7 @@ public class ClobAccess implements CharSequence, Lazy
     protected int offset;
     protected int length;
     protected boolean subSequence;
+    protected ClobPageCache pageCache;
 
     /**
      * Protected constructor for use by PendingClob only.
@@ -127,10 +128,78 @@ public class ClobAccess implements CharSequence, Lazy
             throw new IndexOutOfBoundsException("index is not less than length");
         }
         int page = index / CLOB_PAGE_SIZE;
-        String pageText = (String) results.get(page);
+        String pageText = getPage(page);
         return pageText.charAt(index - page * CLOB_PAGE_SIZE);
     }
 
+    /**
+     * Copies characters from this sequence into the destination character array, in the same way
+     * as String.getChars().  The characters are copied straight from the pages of the Clob, so
+     * a small part of a large Clob can be read without creating a String of it.
+     *
+     * @param srcBegin index of the first character to copy
+     * @param srcEnd index after the last character to copy
+     * @param dst the destination array
+     * @param dstBegin the start offset in the destination array
+     * @throws IndexOutOfBoundsException if srcBegin is negative, srcBegin is greater than srcEnd
+     * or srcEnd is greater than length()
+     */
+    public void getChars(int srcBegin, int srcEnd, char[] dst, int dstBegin) {
+        init();
+        if (srcBegin < 0) {
+            throw new IndexOutOfBoundsException("srcBegin is less than zero");
+        }
+        if (srcEnd > length) {
+            throw new IndexOutOfBoundsException("srcEnd is greater than the length of this Clob");
+        }
+        if (srcEnd < srcBegin) {
+            throw new IndexOutOfBoundsException("srcEnd is less than srcBegin");
+        }
+        int from = offset + srcBegin;
+        int to = offset + srcEnd;
+        int pos = dstBegin;
+        while (from < to) {
+            int page = from / CLOB_PAGE_SIZE;
+            int pageStart = page * CLOB_PAGE_SIZE;
+            int pageEnd = Math.min(to, pageStart + CLOB_PAGE_SIZE);
+            getPage(page).getChars(from - pageStart, pageEnd - pageStart, dst, pos);
+            pos += pageEnd - from;
+            from = pageEnd;
+        }
+    }
+
+    /**
+     * Returns the text of a page of the underlying clob, through the page cache if one is set.
+     *
+     * @param page the page number
+     * @return a String
+     */
+    protected String getPage(int page) {
+        if (pageCache != null) {
+            return pageCache.getPage(clob, results, page);
+        }
+        return (String) results.get(page);
+    }
+
+    /**
+     * Set a cache to read the pages of the clob through.  It is passed on to subsequences of this
+     * object.
+     *
+     * @param pageCache a ClobPageCache, or null to read pages straight from the results
+     */
+    public void setPageCache(ClobPageCache pageCache) {
+        this.pageCache = pageCache;
+    }
+
+    /**
+     * Return the page cache used by this object.
+     *
+     * @return a ClobPageCache, or null
+     */
+    public ClobPageCache getPageCache() {
+        return pageCache;
+    }
+
     /**
      * Returns the length of this character sequence.
      *
@@ -167,7 +236,9 @@ public class ClobAccess implements CharSequence, Lazy
         if ((start == 0) && (end == length)) {
             return this;
         }
-        return new ClobAccess(results, clob, start + offset, end - start);
+        ClobAccess retval = new ClobAccess(results, clob, start + offset, end - start);
+        retval.pageCache = pageCache;
+        return retval;
     }
 
     /**
@@ -194,7 +265,7 @@ public class ClobAccess implements CharSequence, Lazy
             int lowestPage = offset / CLOB_PAGE_SIZE;
             int highestPage = (offset + length - 1) / CLOB_PAGE_SIZE;
             for (int page = lowestPage; page <= highestPage; page++) {
-                String pageText = (String) results.get(page);
+                String pageText = getPage(page);
                 if (page == highestPage) {
                     pageText = pageText.substring(0, offset + length - page * CLOB_PAGE_SIZE);
                 }
@@ -219,7 +290,7 @@ public class ClobAccess implements CharSequence, Lazy
         int lowestPage = offset / CLOB_PAGE_SIZE;
         int highestPage = (offset + length - 1) / CLOB_PAGE_SIZE;
         for (int page = lowestPage; page <= highestPage; page++) {
-            String pageText = (String) results.get(page);
+            String pageText = getPage(page);
             if (page == highestPage) {
                 pageText = pageText.substring(0, offset + length - page * CLOB_PAGE_SIZE);
             }
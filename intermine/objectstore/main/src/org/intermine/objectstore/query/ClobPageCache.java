@@ -0,0 +1,92 @@
+package org.intermine.objectstore.query;
+
+/*
+ * Copyright (C) 2002-2017 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded least-recently-used cache of Clob pages, for a task that reads many small pieces of a
+ * few large Clobs, such as exporting the flanking sequence of many features from the same
+ * chromosomes.  A ClobAccess with a page cache set on it reads its pages through the cache, so
+ * the pages are shared by all the ClobAccess objects of the same Clob that use the cache, and at
+ * most maxPages pages are held whatever the size of the Clobs.
+ *
+ * This class is not thread-safe, it is meant to be created for a single request.
+ *
+ * @author chenyian
+ */
+public class ClobPageCache
+{
+    private final Map<Long, String> pages;
+    private int hits = 0;
+    private int misses = 0;
+
+    /**
+     * Construct a cache.
+     *
+     * @param maxPages the largest number of pages to hold
+     */
+    public ClobPageCache(final int maxPages) {
+        if (maxPages < 1) {
+            throw new IllegalArgumentException("maxPages must be at least 1");
+        }
+        pages = new LinkedHashMap<Long, String>(16, 0.75F, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {
+                return size() > maxPages;
+            }
+        };
+    }
+
+    /**
+     * Return a page of a Clob, reading it from the SingletonResults of the Clob if it is not in
+     * the cache.
+     *
+     * @param clob the Clob
+     * @param results the SingletonResults holding the pages of the Clob
+     * @param page the page number
+     * @return the text of the page
+     */
+    public String getPage(Clob clob, SingletonResults results, int page) {
+        Long key = new Long((((long) clob.getClobId()) << 32) | page);
+        String pageText = pages.get(key);
+        if (pageText == null) {
+            misses++;
+            pageText = (String) results.get(page);
+            pages.put(key, pageText);
+        } else {
+            hits++;
+        }
+        return pageText;
+    }
+
+    /**
+     * @return the number of pages held
+     */
+    public int size() {
+        return pages.size();
+    }
+
+    /**
+     * @return the number of pages found in the cache
+     */
+    public int getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of pages read from the database
+     */
+    public int getMisses() {
+        return misses;
+    }
+}
@@ -60,6 +60,14 @@ public class PendingClob extends ClobAccess
         return text.charAt(index);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void getChars(int srcBegin, int srcEnd, char[] dst, int dstBegin) {
+        text.getChars(srcBegin, srcEnd, dst, dstBegin);
+    }
+
     /**
      * {@inheritDoc}
      */
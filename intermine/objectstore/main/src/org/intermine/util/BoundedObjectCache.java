@@ -0,0 +1,269 @@
+package org.intermine.util;
+
+/*
+ * Copyright (C) 2002-2017 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An ObjectCache holding at most a fixed number of entries, with a segmented eviction policy.
+ * New entries start in a probation queue; entries that have been read while on probation are
+ * moved to a protected queue, which holds most of the cache.  The protected queue is swept like
+ * a clock: an entry that has been read since the last sweep gets another round, otherwise it goes
+ * back on probation.  So a single scan through many keys only displaces other entries on
+ * probation.
+ *
+ * Reads are lock-free: they look up the entry in a ConcurrentHashMap and bump a small access
+ * counter.  Only adding entries, which may have to evict others, takes a lock.
+ *
+ * @param <K> the type of keys
+ * @param <V> the type of cached values
+ * @author chenyian
+ */
+public class BoundedObjectCache<K, V> implements ObjectCache<K, V>
+{
+    private static final Object NULL_VALUE = new Object();
+    private static final int MAX_FREQUENCY = 3;
+    private static final int PROTECTED_PERCENT = 80;
+
+    private final String name;
+    private final int maximumSize;
+    private final int protectedSize;
+    private final ConcurrentHashMap<K, Node<K>> map;
+    // the queues may also hold nodes that have since been removed or replaced in the map
+    private final ArrayDeque<Node<K>> probation = new ArrayDeque<Node<K>>();
+    private final ArrayDeque<Node<K>> protectedQueue = new ArrayDeque<Node<K>>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param name the name of the cache, printed out in log messages
+     * @param maximumSize the maximum number of entries
+     */
+    public BoundedObjectCache(String name, int maximumSize) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("Cache " + name + " must hold at least one entry");
+        }
+        this.name = name;
+        this.maximumSize = maximumSize;
+        this.protectedSize = (int) ((long) maximumSize * PROTECTED_PERCENT / 100);
+        this.map = new ConcurrentHashMap<K, Node<K>>(Math.min(maximumSize, 1024), 0.75f, 16);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @SuppressWarnings("unchecked")
+    public V get(K key) {
+        Node<K> node = map.get(key);
+        if (node == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        if (node.frequency < MAX_FREQUENCY) {
+            // racy, but a lost increment only makes the entry a little easier to evict
+            node.frequency++;
+        }
+        Object value = node.value;
+        return (value == NULL_VALUE) ? null : (V) value;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Object lookup(K key) {
+        Node<K> node = map.get(key);
+        if (node == null) {
+            misses.incrementAndGet();
+            return NOT_CACHED;
+        }
+        hits.incrementAndGet();
+        if (node.frequency < MAX_FREQUENCY) {
+            node.frequency++;
+        }
+        Object value = node.value;
+        return (value == NULL_VALUE) ? null : value;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean containsKey(K key) {
+        return map.containsKey(key);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void put(K key, V value) {
+        Node<K> node = new Node<K>(key, value == null ? NULL_VALUE : value);
+        map.put(key, node);
+        added(node);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @SuppressWarnings("unchecked")
+    public V putIfAbsent(K key, V value) {
+        Node<K> node = new Node<K>(key, value == null ? NULL_VALUE : value);
+        Node<K> existing = map.putIfAbsent(key, node);
+        if (existing != null) {
+            Object existingValue = existing.value;
+            return (existingValue == NULL_VALUE) ? null : (V) existingValue;
+        }
+        added(node);
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void remove(K key) {
+        map.remove(key);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void clear() {
+        evictionLock.lock();
+        try {
+            map.clear();
+            probation.clear();
+            protectedQueue.clear();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int size() {
+        return map.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * @return the maximum number of entries
+     */
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    private void added(Node<K> node) {
+        evictionLock.lock();
+        try {
+            probation.add(node);
+            // nodes that other threads are still adding are not queued yet
+            while (map.size() > maximumSize
+                    && !(probation.isEmpty() && protectedQueue.isEmpty())) {
+                evictOne();
+            }
+            if (probation.size() + protectedQueue.size() > 2 * maximumSize) {
+                // many entries have been removed or replaced without anything being evicted
+                purgeStale(probation);
+                purgeStale(protectedQueue);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Take one node off one of the queues, either evicting it or moving it on.
+     */
+    private void evictOne() {
+        if (protectedQueue.size() > protectedSize || probation.isEmpty()) {
+            Node<K> node = protectedQueue.poll();
+            if (node == null || !isLive(node)) {
+                return;
+            }
+            if (node.frequency > 0) {
+                node.frequency--;
+                protectedQueue.add(node);
+            } else {
+                probation.add(node);
+            }
+        } else {
+            Node<K> node = probation.poll();
+            if (!isLive(node)) {
+                return;
+            }
+            if (node.frequency > 0) {
+                node.frequency = 0;
+                protectedQueue.add(node);
+            } else if (map.remove(node.key, node)) {
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    private boolean isLive(Node<K> node) {
+        return map.get(node.key) == node;
+    }
+
+    private void purgeStale(ArrayDeque<Node<K>> queue) {
+        Iterator<Node<K>> iter = queue.iterator();
+        while (iter.hasNext()) {
+            if (!isLive(iter.next())) {
+                iter.remove();
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return name + ": " + size() + "/" + maximumSize + " entries, " + getHitCount()
+            + " hits, " + getMissCount() + " misses, " + getEvictionCount() + " evictions";
+    }
+
+    private static final class Node<K>
+    {
+        final K key;
+        final Object value;
+        volatile int frequency = 0;
+
+        Node(K key, Object value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+}
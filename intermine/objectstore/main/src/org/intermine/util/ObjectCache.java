@@ -0,0 +1,98 @@
+package org.intermine.util;
+
+/*
+ * Copyright (C) 2002-2017 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+/**
+ * A cache that can be shared between threads without external synchronisation. Null values
+ * can be cached, use lookup() to tell them apart from missing entries.
+ *
+ * Implementations are created by ObjectCacheFactory, which reads the kind and size of each
+ * cache from the properties.
+ *
+ * @param <K> the type of keys
+ * @param <V> the type of cached values
+ * @author chenyian
+ */
+public interface ObjectCache<K, V>
+{
+    /**
+     * The value lookup() returns for a key that is not in the cache.
+     */
+    Object NOT_CACHED = new Object();
+
+    /**
+     * @param key a key
+     * @return the cached value, or null if it is null or not in the cache
+     */
+    V get(K key);
+
+    /**
+     * Look up a key in one step, unlike get() followed by containsKey(), which another thread may
+     * add the key between.
+     *
+     * @param key a key
+     * @return the cached value, which may be null, or NOT_CACHED if the key is not in the cache
+     */
+    Object lookup(K key);
+
+    /**
+     * @param key a key
+     * @return true if there is a value for the key in the cache
+     */
+    boolean containsKey(K key);
+
+    /**
+     * Add a value to the cache, replacing any value for the same key.
+     *
+     * @param key a key
+     * @param value the value, may be null
+     */
+    void put(K key, V value);
+
+    /**
+     * Add a value to the cache unless there is already one for the key.
+     *
+     * @param key a key
+     * @param value the value, may be null
+     * @return the value already in the cache, or null if the given value was added
+     */
+    V putIfAbsent(K key, V value);
+
+    /**
+     * @param key the key to remove from the cache
+     */
+    void remove(K key);
+
+    /**
+     * Remove all entries.
+     */
+    void clear();
+
+    /**
+     * @return the number of entries in the cache
+     */
+    int size();
+
+    /**
+     * @return the number of calls to get() or lookup() that found the key
+     */
+    long getHitCount();
+
+    /**
+     * @return the number of calls to get() or lookup() that did not find the key
+     */
+    long getMissCount();
+
+    /**
+     * @return the number of entries removed to keep the cache within its size
+     */
+    long getEvictionCount();
+}
@@ -0,0 +1,82 @@
+package org.intermine.util;
+
+/*
+ * Copyright (C) 2002-2017 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+import java.lang.reflect.Constructor;
+import java.util.Properties;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Creates the ObjectStore caches according to the properties.  Each cache has a short name, and
+ * can be configured in intermine.properties with:
+ *
+ * <pre>
+ * os.cache.&lt;name&gt;.type = bounded (the default), soft, or the name of a class implementing
+ *                           ObjectCache with a (String name, int maximumSize) constructor
+ * os.cache.&lt;name&gt;.size = the maximum number of entries
+ * </pre>
+ *
+ * The caches of the ObjectStores are "objects" (getObjectById), "results", "singletonResults"
+ * and "batches".
+ *
+ * @author chenyian
+ */
+public final class ObjectCacheFactory
+{
+    private static final Logger LOG = Logger.getLogger(ObjectCacheFactory.class);
+    private static final String PREFIX = "os.cache.";
+
+    private ObjectCacheFactory() {
+        // hidden constructor
+    }
+
+    /**
+     * Create a cache.
+     *
+     * @param name the short name of the cache, used to look up the properties
+     * @param description a description of the cache, printed out in log messages
+     * @param defaultSize the maximum number of entries if none is configured
+     * @param <K> the type of keys
+     * @param <V> the type of cached values
+     * @return a new cache
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> ObjectCache<K, V> create(String name, String description,
+            int defaultSize) {
+        Properties props = PropertiesUtil.getProperties();
+        String type = props.getProperty(PREFIX + name + ".type", "bounded").trim();
+        String sizeString = props.getProperty(PREFIX + name + ".size");
+        int size = defaultSize;
+        if (sizeString != null) {
+            try {
+                size = Integer.parseInt(sizeString.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Property " + PREFIX + name + ".size is not"
+                        + " a number: " + sizeString, e);
+            }
+        }
+        if ("bounded".equals(type)) {
+            return new BoundedObjectCache<K, V>(description, size);
+        }
+        if ("soft".equals(type)) {
+            return new SoftObjectCache<K, V>(description);
+        }
+        try {
+            Class<?> cls = Class.forName(type);
+            Constructor<?> constructor = cls.getConstructor(String.class, Integer.TYPE);
+            LOG.info("Using " + type + " for " + description);
+            return (ObjectCache<K, V>) constructor.newInstance(description, new Integer(size));
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Cannot create cache of type " + type + " for "
+                    + PREFIX + name + ".type", e);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package org.intermine.util;
+
+/*
+ * Copyright (C) 2002-2017 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+/**
+ * An ObjectCache that holds its values softly, so that the garbage collector decides how much is
+ * kept.  This is how the ObjectStore caches used to work; entries cleared by the garbage
+ * collector are not counted as evictions.
+ *
+ * @see CacheMap
+ * @param <K> the type of keys
+ * @param <V> the type of cached values
+ * @author chenyian
+ */
+public class SoftObjectCache<K, V> implements ObjectCache<K, V>
+{
+    private final CacheMap<K, V> map;
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * @param name the name of the cache, printed out in log messages
+     */
+    public SoftObjectCache(String name) {
+        map = new CacheMap<K, V>(name);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized V get(K key) {
+        V value = map.get(key);
+        if (value != null || map.containsKey(key)) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return value;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized Object lookup(K key) {
+        V value = map.get(key);
+        if (value != null || map.containsKey(key)) {
+            hits++;
+            return value;
+        }
+        misses++;
+        return NOT_CACHED;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized boolean containsKey(K key) {
+        return map.containsKey(key);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized void put(K key, V value) {
+        map.put(key, value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized V putIfAbsent(K key, V value) {
+        V existing = map.get(key);
+        if (existing == null && !map.containsKey(key)) {
+            map.put(key, value);
+        }
+        return existing;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized void remove(K key) {
+        map.remove(key);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized void clear() {
+        map.clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized int size() {
+        return map.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getEvictionCount() {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized String toString() {
+        return map.name + ": " + map.size() + " entries, " + hits + " hits, " + misses
+            + " misses";
+    }
+}
@@ -13,11 +13,14 @@ package org.intermine.objectstore;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.ConcurrentModificationException;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 
 import org.intermine.model.InterMineObject;
 import org.intermine.model.testmodel.Address;
 import org.intermine.model.testmodel.BigDepartment;
+import org.intermine.model.testmodel.CEO;
 import org.intermine.model.testmodel.Cleaner;
 import org.intermine.model.testmodel.Company;
 import org.intermine.model.testmodel.Contractor;
@@ -722,6 +725,154 @@ public class ObjectStoreWriterTestCase extends ObjectStoreAbstractImplTestCase
         }
     }
 
+    public void testAddAllToCollection() throws Exception {
+        Company c1 = (Company) DynamicUtil.createObject(Collections.singleton(Company.class));
+        Contractor c2 = new Contractor();
+        Department d1 = new Department();
+        c1.setName("Michael");
+        c2.setName("Albert");
+        d1.setName("Sales");
+
+        try {
+            writer.store(c1);
+            writer.store(c2);
+            writer.store(d1);
+
+            // many to many
+            writer.addAllToCollection(Company.class, "contractors",
+                    Collections.singletonMap(c1.getId(), Collections.singleton(c2.getId())));
+            // one to many, which sets Department.company
+            writer.addAllToCollection(Company.class, "departments",
+                    Collections.singletonMap(c1.getId(), Collections.singleton(d1.getId())));
+
+            Company c3 = (Company) writer.getObjectById(c1.getId(), Company.class);
+            assertEquals(1, c3.getContractors().size());
+            assertEquals(c2.getId(), ((Contractor) c3.getContractors().iterator().next()).getId());
+            Department d2 = (Department) writer.getObjectById(d1.getId(), Department.class);
+            assertEquals(c1.getId(), d2.getCompany().getId());
+        } finally {
+            writer.delete(c1);
+            writer.delete(c2);
+            writer.delete(d1);
+        }
+    }
+
+    public void testSetFieldValues() throws Exception {
+        Department d1 = new Department();
+        Employee e1 = new Employee();
+        CEO e2 = new CEO();
+        d1.setName("Sales");
+        e1.setName("Fred");
+        e1.setAge(20);
+        e2.setName("Barney");
+        e2.setAge(30);
+        e2.setSalary(1000);
+
+        try {
+            writer.store(d1);
+            writer.store(e1);
+            writer.store(e2);
+            Employee e3 = (Employee) writer.getObjectById(e1.getId(), Employee.class);
+            assertNull(e3.getDepartment());
+
+            Map<Integer, Object> ages = new HashMap<Integer, Object>();
+            ages.put(e1.getId(), Integer.valueOf(1021));
+            ages.put(e2.getId(), Integer.valueOf(1031));
+            writer.setFieldValues(Employee.class, "age", ages);
+            Map<Integer, Object> departments = new HashMap<Integer, Object>();
+            departments.put(e1.getId(), d1.getId());
+            departments.put(e2.getId(), d1);
+            writer.setFieldValues(Employee.class, "department", departments);
+            writer.setFieldValues(Employee.class, "name",
+                    Collections.singletonMap(e1.getId(), null));
+
+            e3 = (Employee) writer.getObjectById(e1.getId(), Employee.class);
+            assertEquals(1021, e3.getAge());
+            assertNull(e3.getName());
+            assertEquals(d1.getId(), e3.getDepartment().getId());
+            CEO e4 = (CEO) writer.getObjectById(e2.getId(), Employee.class);
+            assertEquals(1031, e4.getAge());
+            assertEquals(1000, e4.getSalary());
+            assertEquals("Barney", e4.getName());
+
+            // the columns are changed as well as the objects
+            Query q = new Query();
+            QueryClass qc = new QueryClass(Employee.class);
+            q.addFrom(qc);
+            q.addToSelect(qc);
+            q.setConstraint(new SimpleConstraint(new QueryField(qc, "age"), ConstraintOp.EQUALS,
+                        new QueryValue(Integer.valueOf(1031))));
+            Results results = writer.execute(q);
+            assertEquals(1, results.size());
+            assertEquals(e2.getId(), ((Employee) ((ResultsRow<?>) results.get(0)).get(0)).getId());
+
+            try {
+                writer.setFieldValues(Department.class, "employees",
+                        Collections.singletonMap(d1.getId(), null));
+                fail("Expected an ObjectStoreException");
+            } catch (ObjectStoreException e) {
+                // a collection can't be set
+            }
+        } finally {
+            writer.delete(d1);
+            writer.delete(e1);
+            writer.delete(e2);
+        }
+    }
+
+    public void testSetSeveralFieldValues() throws Exception {
+        Department d1 = new Department();
+        Employee e1 = new Employee();
+        CEO e2 = new CEO();
+        d1.setName("Sales");
+        e1.setName("Fred");
+        e1.setAge(20);
+        e2.setName("Barney");
+        e2.setAge(30);
+        e2.setSalary(1000);
+
+        try {
+            writer.store(d1);
+            writer.store(e1);
+            writer.store(e2);
+
+            Map<Integer, Map<String, Object>> values = new HashMap<Integer, Map<String, Object>>();
+            Map<String, Object> e1Values = new HashMap<String, Object>();
+            e1Values.put("age", Integer.valueOf(1021));
+            e1Values.put("department", d1.getId());
+            e1Values.put("name", null);
+            values.put(e1.getId(), e1Values);
+            Map<String, Object> e2Values = new HashMap<String, Object>();
+            e2Values.put("age", Integer.valueOf(1031));
+            values.put(e2.getId(), e2Values);
+            writer.setFieldValues(Employee.class, values);
+
+            Employee e3 = (Employee) writer.getObjectById(e1.getId(), Employee.class);
+            assertEquals(1021, e3.getAge());
+            assertNull(e3.getName());
+            assertEquals(d1.getId(), e3.getDepartment().getId());
+            CEO e4 = (CEO) writer.getObjectById(e2.getId(), Employee.class);
+            assertEquals(1031, e4.getAge());
+            assertEquals(1000, e4.getSalary());
+            assertEquals("Barney", e4.getName());
+            assertNull(e4.getDepartment());
+
+            Query q = new Query();
+            QueryClass qc = new QueryClass(Employee.class);
+            q.addFrom(qc);
+            q.addToSelect(qc);
+            q.setConstraint(new SimpleConstraint(new QueryField(qc, "age"), ConstraintOp.EQUALS,
+                        new QueryValue(Integer.valueOf(1021))));
+            Results results = writer.execute(q);
+            assertEquals(1, results.size());
+            assertEquals(e1.getId(), ((Employee) ((ResultsRow<?>) results.get(0)).get(0)).getId());
+        } finally {
+            writer.delete(d1);
+            writer.delete(e1);
+            writer.delete(e2);
+        }
+    }
+
     public void testFailFast() throws Exception {
         Query q1 = new Query();
         QueryClass qc1 = new QueryClass(Employee.class);
@@ -81,6 +81,21 @@ public class ObjectStoreWriterDummyImpl implements ObjectStoreWriter
         throw new ObjectStoreException("Not implemented");
     }
 
+    public void addAllToCollection(Class<?> clazz, String fieldName,
+            Map<Integer, ? extends Collection<Integer>> members) throws ObjectStoreException {
+        throw new ObjectStoreException("Not implemented");
+    }
+
+    public void setFieldValues(Class<?> clazz, String fieldName, Map<Integer, ?> values)
+        throws ObjectStoreException {
+        throw new ObjectStoreException("Not implemented");
+    }
+
+    public void setFieldValues(Class<?> clazz, Map<Integer, ? extends Map<String, ?>> values)
+        throws ObjectStoreException {
+        throw new ObjectStoreException("Not implemented");
+    }
+
     public void delete(InterMineObject o) throws ObjectStoreException {
         storedObjects.remove(o.getId());
     }
@@ -0,0 +1,134 @@
+package org.intermine.objectstore.intermine;
+
+/*
+ * Copyright (C) 2002-2017 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+import junit.framework.TestCase;
+
+import org.intermine.model.testmodel.Company;
+import org.intermine.model.testmodel.Department;
+import org.intermine.model.testmodel.Employee;
+import org.intermine.model.testmodel.Types;
+import org.intermine.objectstore.ObjectStoreFactory;
+import org.intermine.objectstore.proxy.ProxyCollection;
+import org.intermine.objectstore.proxy.ProxyReference;
+import org.intermine.util.DynamicUtil;
+
+public class BinaryObjectTest extends TestCase
+{
+    private ObjectStoreInterMineImpl getObjectStore() throws Exception {
+        return (ObjectStoreInterMineImpl) ObjectStoreFactory.getObjectStore("os.unittest");
+    }
+
+    public void testNumbers() throws Exception {
+        long[] values = new long[] {0, 1, -1, 15, 16, 31, 32, -32, 1023, 1024, Integer.MAX_VALUE,
+            Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE};
+        StringBuilder sb = new StringBuilder();
+        for (long value : values) {
+            BinaryObjectFormat.writeSigned(sb, value);
+            BinaryObjectFormat.writeUnsigned(sb, value);
+        }
+        for (int i = 0; i < sb.length(); i++) {
+            assertTrue(sb.toString(), sb.charAt(i) >= ' ' && sb.charAt(i) <= '_');
+        }
+        BinaryObjectFormat.Cursor cursor = new BinaryObjectFormat.Cursor(sb.toString(), 0);
+        for (long value : values) {
+            assertEquals(value, cursor.readSigned());
+            assertEquals(value, cursor.readUnsigned());
+        }
+        assertTrue(cursor.atEnd());
+    }
+
+    public void testStrings() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        BinaryObjectFormat.writeString(sb, "");
+        BinaryObjectFormat.writeString(sb, "Flibble $_^ Wotsit");
+        BinaryObjectFormat.writeString(sb, "caf\u00e9 \u03b1\u03b2");
+        BinaryObjectFormat.Cursor cursor = new BinaryObjectFormat.Cursor(sb.toString(), 0);
+        assertEquals("", cursor.readString());
+        assertEquals("Flibble $_^ Wotsit", cursor.readString());
+        assertEquals("caf\u00e9 \u03b1\u03b2", cursor.readString());
+        assertTrue(cursor.atEnd());
+        try {
+            new BinaryObjectFormat.Cursor("%", 0).readString();
+            fail("Expected an IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testRoundTrip() throws Exception {
+        ObjectStoreInterMineImpl os = getObjectStore();
+        Employee e = new Employee();
+        Department d = new Department();
+        e.setId(new Integer(1234));
+        e.setName("Flibble $_^ Wotsit");
+        e.setAge(-40);
+        e.setFullTime(true);
+        d.setId(new Integer(5678));
+        e.setDepartment(d);
+
+        String data = BinaryObjectRenderer.render(e, os.getModel()).toString();
+        assertTrue(data, BinaryObjectParser.isBinary(data));
+        assertTrue(data.length() < NotXmlRenderer.render(e).length());
+
+        Employee obj1 = (Employee) NotXmlParser.parse(data, os);
+        assertEquals(e.getName(), obj1.getName());
+        assertEquals(e.getId(), obj1.getId());
+        assertEquals(-40, obj1.getAge());
+        assertTrue(obj1.getFullTime());
+        assertNull(obj1.getEnd());
+        ProxyReference o = (ProxyReference) obj1.getFieldProxy("department");
+        assertEquals(new Integer(5678), o.getId());
+        assertTrue(obj1.getFieldProxy("simpleObjects") instanceof ProxyCollection<?>);
+    }
+
+    public void testTypes() throws Exception {
+        ObjectStoreInterMineImpl os = getObjectStore();
+        Types t = new Types();
+        t.setId(new Integer(42));
+        t.setShortType((short) -7);
+        t.setLongType(Long.MIN_VALUE);
+        t.setFloatType(1.5f);
+        t.setDoubleType(-0.25);
+        t.setBooleanObjType(Boolean.FALSE);
+        t.setBigDecimalObjType(new BigDecimal("3.1400"));
+        t.setDateObjType(new Date(-1000));
+
+        Types parsed = (Types) NotXmlParser.parse(
+                BinaryObjectRenderer.render(t, os.getModel()).toString(), os);
+        assertEquals((short) -7, parsed.getShortType());
+        assertEquals(Long.MIN_VALUE, parsed.getLongType());
+        assertEquals(1.5f, parsed.getFloatType(), 0.0f);
+        assertEquals(-0.25, parsed.getDoubleType(), 0.0);
+        assertEquals(Boolean.FALSE, parsed.getBooleanObjType());
+        assertEquals(new BigDecimal("3.1400"), parsed.getBigDecimalObjType());
+        assertEquals(new Date(-1000), parsed.getDateObjType());
+        assertNull(parsed.getIntObjType());
+    }
+
+    public void testDynamic() throws Exception {
+        ObjectStoreInterMineImpl os = getObjectStore();
+        Company c = (Company) DynamicUtil.createObject(Company.class);
+        c.setId(new Integer(74350));
+        c.setName("CompanyC");
+        c.setVatNumber(100);
+
+        Company obj1 = (Company) NotXmlParser.parse(
+                BinaryObjectRenderer.render(c, os.getModel()).toString(), os);
+        assertEquals("CompanyC", obj1.getName());
+        assertEquals(100, obj1.getVatNumber());
+        assertEquals(new Integer(74350), obj1.getId());
+        assertTrue(obj1.getFieldProxy("departments") instanceof ProxyCollection<?>);
+    }
+}
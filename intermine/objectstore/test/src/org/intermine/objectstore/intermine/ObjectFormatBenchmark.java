@@ -0,0 +1,125 @@
+package org.intermine.objectstore.intermine;
+
+/*
+ * Copyright (C) 2002-2017 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.intermine.model.InterMineObject;
+import org.intermine.model.testmodel.Company;
+import org.intermine.model.testmodel.Department;
+import org.intermine.model.testmodel.Employee;
+import org.intermine.model.testmodel.Types;
+import org.intermine.objectstore.ObjectStoreFactory;
+import org.intermine.util.DynamicUtil;
+
+/**
+ * Compares NotXml with the format of BinaryObjectRenderer, reporting objects parsed per second
+ * and characters stored per object for a mix of testmodel objects. The objectstore is only used
+ * for its model and to make lazy references, nothing is read from the database. Run with:
+ *
+ * <pre>java org.intermine.objectstore.intermine.ObjectFormatBenchmark [objects] [runs]</pre>
+ *
+ * @author chenyian
+ */
+public final class ObjectFormatBenchmark
+{
+    private static long sink = 0;
+
+    private ObjectFormatBenchmark() {
+        // don't
+    }
+
+    /**
+     * @param args optionally the number of objects per run and the number of runs
+     * @throws Exception if the objectstore can't be made or an object can't be parsed
+     */
+    public static void main(String[] args) throws Exception {
+        int count = (args.length > 0) ? Integer.parseInt(args[0]) : 100000;
+        int runs = (args.length > 1) ? Integer.parseInt(args[1]) : 5;
+        ObjectStoreInterMineImpl os = (ObjectStoreInterMineImpl) ObjectStoreFactory
+            .getObjectStore("os.unittest");
+        List<InterMineObject> objects = makeObjects(count);
+        System.out.println("format     objects/s  chars/object");
+        // the first run warms up the JIT
+        for (int run = 0; run <= runs; run++) {
+            boolean report = run == runs;
+            measure(os, objects, false, report);
+            measure(os, objects, true, report);
+        }
+        if (sink == 42) {
+            System.out.println();
+        }
+    }
+
+    private static void measure(ObjectStoreInterMineImpl os, List<InterMineObject> objects,
+            boolean binary, boolean report) throws ClassNotFoundException {
+        List<String> stored = new ArrayList<String>(objects.size());
+        long chars = 0;
+        for (InterMineObject o : objects) {
+            String data = binary ? BinaryObjectRenderer.render(o, os.getModel()).toString()
+                : NotXmlRenderer.render(o).toString();
+            chars += data.length();
+            stored.add(data);
+        }
+        long start = System.nanoTime();
+        for (String data : stored) {
+            InterMineObject parsed = NotXmlParser.parse(data, os);
+            sink += parsed.getId().intValue();
+        }
+        long nanos = System.nanoTime() - start;
+        if (report) {
+            System.out.println(String.format("%-10s %-10d %d", binary ? "binary" : "notxml",
+                    Long.valueOf(objects.size() * 1000000000L / Math.max(1, nanos)),
+                    Long.valueOf(chars / objects.size())));
+        }
+    }
+
+    private static List<InterMineObject> makeObjects(int count) {
+        List<InterMineObject> objects = new ArrayList<InterMineObject>(count);
+        Department department = new Department();
+        department.setId(new Integer(1));
+        for (int i = 0; i < count; i++) {
+            switch (i % 3) {
+                case 0:
+                    Employee e = new Employee();
+                    e.setId(new Integer(i));
+                    e.setName("Employee " + i);
+                    e.setAge(20 + i % 50);
+                    e.setFullTime(i % 2 == 0);
+                    e.setDepartment(department);
+                    objects.add(e);
+                    break;
+                case 1:
+                    Types t = new Types();
+                    t.setId(new Integer(i));
+                    t.setName("Types " + i);
+                    t.setIntType(i);
+                    t.setLongType(i * 1000003L);
+                    t.setDoubleType(i / 7.0);
+                    t.setBigDecimalObjType(new BigDecimal(i).movePointLeft(2));
+                    t.setDateObjType(new Date(1500000000000L + i));
+                    t.setStringObjType("A longer description of object number " + i);
+                    objects.add(t);
+                    break;
+                default:
+                    Company c = DynamicUtil.createObject(Company.class);
+                    c.setId(new Integer(i));
+                    c.setName("Company " + i);
+                    c.setVatNumber(i * 31);
+                    objects.add(c);
+            }
+        }
+        return objects;
+    }
+}
@@ -0,0 +1,72 @@
+package org.intermine.objectstore.query;
+
+/*
+ * Copyright (C) 2002-2017 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import junit.framework.TestCase;
+
+public class ClobPageCacheTest extends TestCase
+{
+    public ClobPageCacheTest(String arg1) {
+        super(arg1);
+    }
+
+    public void testBounded() throws Exception {
+        ClobPageCache cache = new ClobPageCache(2);
+        Clob clob = new Clob(1);
+        PageResults results = new PageResults();
+        assertEquals("page0", cache.getPage(clob, results, 0));
+        assertEquals("page1", cache.getPage(clob, results, 1));
+        assertEquals("page0", cache.getPage(clob, results, 0));
+        assertEquals(2, results.reads);
+        // page 1 is the least recently used
+        assertEquals("page2", cache.getPage(clob, results, 2));
+        assertEquals(2, cache.size());
+        assertEquals("page0", cache.getPage(clob, results, 0));
+        assertEquals(3, results.reads);
+        assertEquals("page1", cache.getPage(clob, results, 1));
+        assertEquals(4, results.reads);
+        assertEquals(2, cache.getHits());
+        assertEquals(4, cache.getMisses());
+    }
+
+    public void testClobsKeptApart() throws Exception {
+        ClobPageCache cache = new ClobPageCache(10);
+        PageResults results1 = new PageResults();
+        PageResults results2 = new PageResults();
+        cache.getPage(new Clob(1), results1, 0);
+        cache.getPage(new Clob(2), results2, 0);
+        cache.getPage(new Clob(1), results1, 0);
+        assertEquals(1, results1.reads);
+        assertEquals(1, results2.reads);
+    }
+
+    public void testGetChars() throws Exception {
+        PendingClob clob = new PendingClob("ACGTACGTAC");
+        char[] dst = new char[6];
+        clob.getChars(2, 6, dst, 1);
+        assertEquals("GTAC", new String(dst, 1, 4));
+    }
+
+    private static class PageResults extends SingletonResults
+    {
+        int reads = 0;
+
+        PageResults() {
+            super(null, false, false, false);
+        }
+
+        @Override
+        public Object get(int index) {
+            reads++;
+            return "page" + index;
+        }
+    }
+}
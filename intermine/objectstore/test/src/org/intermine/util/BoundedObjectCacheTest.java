@@ -0,0 +1,145 @@
+package org.intermine.util;
+
+/*
+ * Copyright (C) 2002-2017 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class BoundedObjectCacheTest extends TestCase
+{
+    public BoundedObjectCacheTest(String arg1) {
+        super(arg1);
+    }
+
+    public void testBounded() throws Exception {
+        BoundedObjectCache<Integer, String> cache = new BoundedObjectCache<Integer, String>("test", 100);
+        for (int i = 0; i < 1000; i++) {
+            cache.put(new Integer(i), "value" + i);
+        }
+        assertEquals(100, cache.size());
+        assertEquals(900, cache.getEvictionCount());
+        assertEquals("value999", cache.get(new Integer(999)));
+        assertNull(cache.get(new Integer(0)));
+    }
+
+    public void testNullValues() throws Exception {
+        BoundedObjectCache<Integer, Integer> cache = new BoundedObjectCache<Integer, Integer>("test", 10);
+        cache.put(new Integer(5), new Integer(40));
+        cache.put(new Integer(2), null);
+
+        assertEquals(new Integer(40), cache.get(new Integer(5)));
+        assertNull(cache.get(new Integer(2)));
+        assertTrue(cache.containsKey(new Integer(2)));
+        assertFalse(cache.containsKey(new Integer(3)));
+        assertNull(cache.get(new Integer(3)));
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    public void testPutIfAbsent() throws Exception {
+        BoundedObjectCache<String, String> cache = new BoundedObjectCache<String, String>("test", 10);
+        assertNull(cache.putIfAbsent("a", "first"));
+        assertEquals("first", cache.putIfAbsent("a", "second"));
+        assertEquals("first", cache.get("a"));
+        cache.put("a", "third");
+        assertEquals("third", cache.get("a"));
+        assertEquals(1, cache.size());
+
+        cache.remove("a");
+        assertFalse(cache.containsKey("a"));
+        cache.put("b", "b");
+        cache.put("c", "c");
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertNull(cache.get("b"));
+    }
+
+    public void testLookup() throws Exception {
+        BoundedObjectCache<String, String> cache = new BoundedObjectCache<String, String>("test", 10);
+        assertSame(ObjectCache.NOT_CACHED, cache.lookup("a"));
+        cache.put("a", null);
+        assertNull(cache.lookup("a"));
+        cache.put("b", "b");
+        assertEquals("b", cache.lookup("b"));
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    public void testScanResistant() throws Exception {
+        BoundedObjectCache<Integer, String> cache = new BoundedObjectCache<Integer, String>("test", 100);
+        for (int i = 0; i < 50; i++) {
+            cache.put(new Integer(i), "hot" + i);
+        }
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 50; i++) {
+                assertNotNull(cache.get(new Integer(i)));
+            }
+            // a scan through many keys that are only seen once
+            for (int i = 0; i < 1000; i++) {
+                cache.put(new Integer(1000 * (round + 1) + i), "cold");
+            }
+        }
+        assertEquals(100, cache.size());
+        for (int i = 0; i < 50; i++) {
+            assertEquals("hot" + i, cache.get(new Integer(i)));
+        }
+    }
+
+    public void testManyEvictions() throws Exception {
+        BoundedObjectCache<Integer, String> cache = new BoundedObjectCache<Integer, String>("test", 3);
+        for (int i = 0; i < 100; i++) {
+            cache.put(new Integer(i), "value");
+            cache.get(new Integer(i));
+            cache.get(new Integer(i / 2));
+            cache.remove(new Integer(i - 1));
+        }
+        assertTrue(cache.size() <= 3);
+        assertEquals("value", cache.get(new Integer(99)));
+    }
+
+    public void testConcurrent() throws Exception {
+        final BoundedObjectCache<Integer, Integer> cache = new BoundedObjectCache<Integer, Integer>("test", 500);
+        final List<Throwable> errors = new ArrayList<Throwable>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < 8; t++) {
+            final int seed = t;
+            Thread thread = new Thread() {
+                public void run() {
+                    try {
+                        for (int i = 0; i < 20000; i++) {
+                            Integer key = new Integer((i * 31 + seed * 7) % 2000);
+                            Integer value = cache.get(key);
+                            if (value == null) {
+                                cache.putIfAbsent(key, key);
+                            } else {
+                                assertEquals(key, value);
+                            }
+                        }
+                    } catch (Throwable e) {
+                        synchronized (errors) {
+                            errors.add(e);
+                        }
+                    }
+                }
+            };
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(new ArrayList<Throwable>(), errors);
+        assertTrue(cache.size() <= 500);
+        assertEquals(8 * 20000, cache.getHitCount() + cache.getMissCount());
+    }
+}
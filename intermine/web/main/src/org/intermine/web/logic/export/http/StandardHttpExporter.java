@@ -100,6 +100,7 @@ public abstract class StandardHttpExporter extends HttpExporterBase implements T
         try {
             iter = getResultRows(pt, request);
             iter.goFaster();
+            iter.prefetch();
             exporter.export(iter, unionPathCollection, newPathCollection);
             if (out instanceof GZIPOutputStream) {
                 try {
@@ -24,6 +24,8 @@ import javax.servlet.http.HttpSession;
 
 import org.intermine.api.profile.InterMineBag;
 import org.intermine.api.results.Column;
+import org.intermine.api.results.ColumnarResults;
+import org.intermine.api.results.ColumnarResultsCache;
 import org.intermine.api.results.ResultElement;
 import org.intermine.api.results.WebResults;
 import org.intermine.api.results.WebTable;
@@ -52,6 +54,7 @@ import org.intermine.objectstore.query.QueryObjectReference;
 import org.intermine.objectstore.query.QuerySelectable;
 import org.intermine.objectstore.query.Results;
 import org.intermine.objectstore.query.ResultsRow;
+import org.intermine.pathquery.OrderDirection;
 import org.intermine.pathquery.Path;
 import org.intermine.pathquery.PathQuery;
 import org.intermine.metadata.TypeUtil;
@@ -79,6 +82,11 @@ public class PagedTable
 
     private List<MultiRow<ResultsRow<MultiRowValue<ResultElement>>>> rows = null;
 
+    // an in-memory copy of the table, if one is cached, and the order to show its rows in
+    private ColumnarResults columnar = null;
+    private boolean columnarChecked = false;
+    private int[] rowOrder = null;
+
     // object ids that have been selected in the table
     // TODO this may be more memory efficient with an IntPresentSet
     // note: if allSelected != -1 then this map contains those objects that are NOT selected
@@ -757,6 +765,21 @@ public class PagedTable
             throw new PageOutOfRangeException(invalidStartMessage);
         }
 
+        // the first page is shown before deciding whether to copy the table
+        final ColumnarResults cached = (startRow == 0 && rowOrder == null)
+            ? columnar : getColumnarResults();
+        if (cached != null) {
+            if (startRow != 0 && startRow >= cached.size()) {
+                throw new PageOutOfRangeException(invalidStartMessage);
+            }
+            final int end = Math.min(startRow + pageSize, cached.size());
+            for (int i = startRow; i < end; i++) {
+                newRows.add(cached.getResultElements(rowOrder == null ? i : rowOrder[i]));
+            }
+            rows = newRows;
+            return;
+        }
+
         try {
             if (startRow == 0) {
                 // no problem - 0 is always valid
@@ -779,6 +802,78 @@ public class PagedTable
         rows = newRows;
     }
 
+    /**
+     * Get the in-memory copy of the table from the ColumnarResultsCache, copying the table the
+     * first time it is asked for.
+     *
+     * @return the copy, or null if the table can't be cached
+     */
+    private ColumnarResults getColumnarResults() {
+        if (!columnarChecked) {
+            columnarChecked = true;
+            columnar = ColumnarResultsCache.getInstance().get(webTable);
+        }
+        return columnar;
+    }
+
+    /**
+     * Sort the rows of the table by a column in memory and go to the first page. This is only
+     * possible if the table is in the ColumnarResultsCache, otherwise the query has to be run
+     * again with a new sort order. The sort order of the PathQuery is set to the column too, so
+     * that exports and saved queries come out in the same order.
+     *
+     * @param columnIndex the index of the column as displayed, as for getColumns()
+     * @param ascending false to sort in descending order
+     * @return true if the table was sorted, false if it is not cached or there is no such column
+     */
+    public boolean sortByColumn(final int columnIndex, final boolean ascending) {
+        if (columnIndex < 0 || columnIndex >= getColumns().size()) {
+            return false;
+        }
+        final ColumnarResults cached = getColumnarResults();
+        if (cached == null) {
+            return false;
+        }
+        final Column column = getColumns().get(columnIndex);
+        rowOrder = cached.sort(column.getIndex(), ascending);
+        startRow = 0;
+        updateRows();
+        final Path path = column.getPath();
+        final PathQuery query = getPathQuery();
+        if (query != null && path != null && path.endIsAttribute()) {
+            query.clearOrderBy();
+            query.addOrderBy(path.getNoConstraintsString(),
+                    ascending ? OrderDirection.ASC : OrderDirection.DESC);
+        }
+        return true;
+    }
+
+    /**
+     * Count the distinct values of a column without running a query, if the table is in the
+     * ColumnarResultsCache.
+     *
+     * @param index the index of the column in the rows
+     * @return a map from value to number of rows, most frequent first, or null if the table is
+     * not cached
+     */
+    public Map<Object, Integer> getColumnValueCounts(final int index) {
+        final ColumnarResults cached = getColumnarResults();
+        return (cached == null) ? null : cached.getValueCounts(index);
+    }
+
+    /**
+     * Summarise a numeric column without running a query, if the table is in the
+     * ColumnarResultsCache.
+     *
+     * @param index the index of the column in the rows
+     * @return the min, max, average, stdev and count of the column, or null if the table is not
+     * cached or the column is not numeric
+     */
+    public Map<String, Number> getColumnNumericSummary(final int index) {
+        final ColumnarResults cached = getColumnarResults();
+        return (cached == null) ? null : cached.getNumericSummary(index);
+    }
+
     /**
      * Return the maximum retrievable index for this PagedTable.  This will only ever return less
      * than getExactSize() if the underlying data source has a restriction on the maximum index
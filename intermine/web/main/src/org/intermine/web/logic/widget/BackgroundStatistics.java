@@ -0,0 +1,272 @@
+package org.intermine.web.logic.widget;
+
+/*
+ * Copyright (C) 2002-2017 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.intermine.metadata.ClassDescriptor;
+import org.intermine.metadata.ConstraintOp;
+import org.intermine.metadata.Model;
+import org.intermine.objectstore.ObjectStore;
+import org.intermine.objectstore.query.ConstraintSet;
+import org.intermine.objectstore.query.ContainsConstraint;
+import org.intermine.objectstore.query.Query;
+import org.intermine.objectstore.query.QueryClass;
+import org.intermine.objectstore.query.QueryField;
+import org.intermine.objectstore.query.QueryObjectReference;
+import org.intermine.objectstore.query.Results;
+
+/**
+ * Population counts for enrichment widgets that have been calculated during the build and stored
+ * as Statistics objects (identifier, type, dataSet, number, organism).  For each start class
+ * (type), data set and organism there is one object per annotation term holding the number of
+ * annotated objects, plus one object with the identifier "[name] N" holding the size of the
+ * annotated population.
+ *
+ * The statistics are read once when the webapp starts and are tagged with the serial number of
+ * the production database they were read from.  Widgets opt in with the backgroundStatistics
+ * attribute, see EnrichmentWidgetConfig; all other widgets, and all widgets using a custom
+ * population, run the population queries as before.
+ *
+ * @author chenyian
+ */
+public final class BackgroundStatistics
+{
+    private static final Logger LOG = Logger.getLogger(BackgroundStatistics.class);
+    private static final int BATCH_SIZE = 20000;
+
+    private static volatile BackgroundStatistics instance = null;
+
+    private final String release;
+    // type -> data set -> taxon id -> identifier -> number
+    private final Map<String, Map<String, Map<Integer, Map<String, Integer>>>> counts =
+        new HashMap<String, Map<String, Map<Integer, Map<String, Integer>>>>();
+    // organism taxon id, name and short name -> taxon id
+    private final Map<String, Integer> organisms = new HashMap<String, Integer>();
+
+    private BackgroundStatistics(String release) {
+        this.release = release;
+    }
+
+    /**
+     * Read the statistics from the production database, replacing any that have been loaded
+     * before.  If the model has no Statistics class nothing is loaded.
+     * @param os the production ObjectStore
+     * @param release the serial number of the production database, used to tell releases apart
+     */
+    public static synchronized void load(ObjectStore os, String release) {
+        Model model = os.getModel();
+        ClassDescriptor statisticsCld = model.getClassDescriptorByName("Statistics");
+        ClassDescriptor organismCld = model.getClassDescriptorByName("Organism");
+        if (statisticsCld == null || organismCld == null
+            || statisticsCld.getFieldDescriptorByName("organism") == null) {
+            LOG.info("No Statistics in the model, enrichment widgets will query populations");
+            instance = null;
+            return;
+        }
+        long start = System.currentTimeMillis();
+        BackgroundStatistics statistics = new BackgroundStatistics(release);
+        statistics.readOrganisms(os, organismCld);
+        int rows = statistics.readStatistics(os, statisticsCld, organismCld);
+        instance = statistics;
+        LOG.info("Read " + rows + " background statistics for release " + release + " in "
+                + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    /**
+     * @return the statistics loaded at startup or null if there are none
+     */
+    public static BackgroundStatistics getInstance() {
+        return instance;
+    }
+
+    /**
+     * @return the serial number of the database the statistics were read from
+     */
+    public String getRelease() {
+        return release;
+    }
+
+    /**
+     * @param organism a taxon id, name or short name of an organism
+     * @return the taxon id or null if the organism is unknown
+     */
+    public Integer getTaxonId(String organism) {
+        return organisms.get(organism);
+    }
+
+    private void readOrganisms(ObjectStore os, ClassDescriptor organismCld) {
+        Query q = new Query();
+        QueryClass qcOrganism = new QueryClass(organismCld.getType());
+        q.addFrom(qcOrganism);
+        q.addToSelect(new QueryField(qcOrganism, "taxonId"));
+        boolean hasName = organismCld.getFieldDescriptorByName("name") != null;
+        boolean hasShortName = organismCld.getFieldDescriptorByName("shortName") != null;
+        if (hasName) {
+            q.addToSelect(new QueryField(qcOrganism, "name"));
+        }
+        if (hasShortName) {
+            q.addToSelect(new QueryField(qcOrganism, "shortName"));
+        }
+        Iterator<?> iter = os.execute(q).iterator();
+        while (iter.hasNext()) {
+            List<?> row = (List<?>) iter.next();
+            if (row.get(0) == null) {
+                continue;
+            }
+            Integer taxonId = Integer.valueOf(String.valueOf(row.get(0)));
+            for (Object value : row) {
+                if (value != null) {
+                    organisms.put(String.valueOf(value), taxonId);
+                }
+            }
+        }
+    }
+
+    private int readStatistics(ObjectStore os, ClassDescriptor statisticsCld,
+            ClassDescriptor organismCld) {
+        Query q = new Query();
+        QueryClass qcStatistics = new QueryClass(statisticsCld.getType());
+        QueryClass qcOrganism = new QueryClass(organismCld.getType());
+        q.addFrom(qcStatistics);
+        q.addFrom(qcOrganism);
+        q.addToSelect(new QueryField(qcStatistics, "identifier"));
+        q.addToSelect(new QueryField(qcStatistics, "type"));
+        q.addToSelect(new QueryField(qcStatistics, "dataSet"));
+        q.addToSelect(new QueryField(qcStatistics, "number"));
+        q.addToSelect(new QueryField(qcOrganism, "taxonId"));
+        ConstraintSet cs = new ConstraintSet(ConstraintOp.AND);
+        cs.addConstraint(new ContainsConstraint(new QueryObjectReference(qcStatistics,
+                "organism"), ConstraintOp.CONTAINS, qcOrganism));
+        q.setConstraint(cs);
+
+        Results results = os.execute(q, BATCH_SIZE, true, false, false);
+        int rows = 0;
+        Iterator<?> iter = results.iterator();
+        while (iter.hasNext()) {
+            List<?> row = (List<?>) iter.next();
+            if (row.get(0) == null || row.get(3) == null || row.get(4) == null) {
+                continue;
+            }
+            String type = String.valueOf(row.get(1));
+            String dataSet = String.valueOf(row.get(2));
+            Integer taxonId = Integer.valueOf(String.valueOf(row.get(4)));
+            Map<String, Map<Integer, Map<String, Integer>>> byDataSet = counts.get(type);
+            if (byDataSet == null) {
+                byDataSet = new HashMap<String, Map<Integer, Map<String, Integer>>>();
+                counts.put(type, byDataSet);
+            }
+            Map<Integer, Map<String, Integer>> byTaxon = byDataSet.get(dataSet);
+            if (byTaxon == null) {
+                byTaxon = new HashMap<Integer, Map<String, Integer>>();
+                byDataSet.put(dataSet, byTaxon);
+            }
+            Map<String, Integer> byIdentifier = byTaxon.get(taxonId);
+            if (byIdentifier == null) {
+                byIdentifier = new HashMap<String, Integer>();
+                byTaxon.put(taxonId, byIdentifier);
+            }
+            byIdentifier.put(String.valueOf(row.get(0)), (Integer) row.get(3));
+            rows++;
+        }
+        return rows;
+    }
+
+    private Map<String, Integer> getCounts(String type, String dataSet, Integer taxonId) {
+        Map<String, Map<Integer, Map<String, Integer>>> byDataSet = counts.get(type);
+        if (byDataSet == null || byDataSet.get(dataSet) == null) {
+            return null;
+        }
+        return byDataSet.get(dataSet).get(taxonId);
+    }
+
+    /**
+     * Find the population for a widget.  The population of several organisms is the sum of the
+     * populations of each organism.
+     *
+     * @param name the name of the statistics, the population size is stored as "[name] N"
+     * @param type the start class of the widget
+     * @param dataSets the data set holding the population size, followed by the data sets
+     * holding the term counts; if there is only one it holds both
+     * @param taxonIds the organisms in the population
+     * @return the population or null if the statistics do not cover it
+     */
+    public Population getPopulation(String name, String type, String[] dataSets,
+            Collection<Integer> taxonIds) {
+        if (dataSets == null || dataSets.length == 0 || taxonIds.isEmpty()) {
+            return null;
+        }
+        String sizeIdentifier = name + " N";
+        int size = 0;
+        Map<String, PopulationInfo> annotated = new HashMap<String, PopulationInfo>();
+        for (Integer taxonId : taxonIds) {
+            Map<String, Integer> sizes = getCounts(type, dataSets[0], taxonId);
+            if (sizes == null || !sizes.containsKey(sizeIdentifier)) {
+                return null;
+            }
+            size += sizes.get(sizeIdentifier).intValue();
+
+            // terms in several data sets have the same count in each of them
+            Map<String, Integer> terms = new HashMap<String, Integer>();
+            for (int i = (dataSets.length == 1 ? 0 : 1); i < dataSets.length; i++) {
+                Map<String, Integer> termCounts = getCounts(type, dataSets[i], taxonId);
+                if (termCounts == null) {
+                    continue;
+                }
+                for (Map.Entry<String, Integer> entry : termCounts.entrySet()) {
+                    if (!isSummary(name, entry.getKey())) {
+                        terms.put(entry.getKey(), entry.getValue());
+                    }
+                }
+            }
+            for (Map.Entry<String, Integer> entry : terms.entrySet()) {
+                PopulationInfo info = annotated.get(entry.getKey());
+                int count = entry.getValue().intValue() + (info == null ? 0 : info.getSize());
+                annotated.put(entry.getKey(), new PopulationInfo(count, 0));
+            }
+        }
+        return new Population(new PopulationInfo(size, 0), annotated);
+    }
+
+    private static boolean isSummary(String name, String identifier) {
+        return identifier.startsWith(name + " ");
+    }
+
+    /**
+     * The population of one enrichment widget.
+     */
+    public static final class Population
+    {
+        private final PopulationInfo populationInfo;
+        private final Map<String, PopulationInfo> annotatedCounts;
+
+        private Population(PopulationInfo populationInfo,
+                Map<String, PopulationInfo> annotatedCounts) {
+            this.populationInfo = populationInfo;
+            this.annotatedCounts = annotatedCounts;
+        }
+
+        /** @return the number of annotated objects in the population **/
+        public PopulationInfo getPopulationInfo() {
+            return populationInfo;
+        }
+
+        /** @return the number of objects in the population annotated with each term **/
+        public Map<String, PopulationInfo> getAnnotatedCounts() {
+            return annotatedCounts;
+        }
+    }
+}
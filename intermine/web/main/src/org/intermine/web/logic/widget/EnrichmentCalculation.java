@@ -12,10 +12,10 @@ package org.intermine.web.logic.widget;
 
 import java.math.BigDecimal;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import org.apache.commons.lang.StringUtils;
-import org.apache.commons.math3.distribution.HypergeometricDistribution;
 
 /**
  * Calculate enrichment of an attribute applied to members of a sample that is a subset of a larger
@@ -60,20 +60,32 @@ public final class EnrichmentCalculation
         Map<String, PopulationInfo> annotatedPopulationInfo =
             input.getAnnotatedCountsInPopulation();
 
-        Map<String, BigDecimal> rawResults =
-                getRawResults(sampleSize, populationSize, sampleCounts, annotatedPopulationInfo);
+        String[] terms = sampleCounts.keySet().toArray(new String[sampleCounts.size()]);
+        double[] rawResults = getRawResults(terms, sampleSize, populationSize, sampleCounts,
+                annotatedPopulationInfo);
         ErrorCorrection.Strategy strategy = getStrategy(errorCorrection);
 
-        Map<String, BigDecimal> correctedResults = ErrorCorrection.adjustPValues(strategy,
-                rawResults, maxValue, input.getTestCount());
+        // one sort of the raw p-values serves every error correction strategy
+        int[] order = ErrorCorrection.sortIndexes(rawResults, terms);
+        double[] correctedResults = ErrorCorrection.adjustPValues(strategy, rawResults, order,
+                maxValue, input.getTestCount());
+        Map<String, BigDecimal> sortedCorrectedResults;
         if (extraCorrectionCoefficient && correctionCoefficient.isApplicable()) {
+            Map<String, BigDecimal> correctedMap = new HashMap<String, BigDecimal>();
+            for (int i = 0; i < terms.length; i++) {
+                if (!Double.isNaN(correctedResults[i])) {
+                    correctedMap.put(terms[i], new BigDecimal(correctedResults[i]));
+                }
+            }
             correctionCoefficient.apply(
-                    correctedResults, population, annotatedPopulationInfo, maxValue);
+                    correctedMap, population, annotatedPopulationInfo, maxValue);
+            sortedCorrectedResults = ErrorCorrection.sortMap(correctedMap);
+        } else {
+            sortedCorrectedResults = getSortedResults(terms, correctedResults);
         }
-        Map<String, BigDecimal> sortedCorrectedResults = ErrorCorrection.sortMap(correctedResults);
         // record the number of items in the sample that had any values for any attribute
         // used for the "not analysed" total
-        int analysedTotal = rawResults.isEmpty() ? 0 : sampleSize;
+        int analysedTotal = (terms.length == 0) ? 0 : sampleSize;
 
         EnrichmentResults results = new EnrichmentResults(sortedCorrectedResults,
                 input.getAnnotatedCountsInSample(), input.getLabels(), analysedTotal,
@@ -82,25 +94,51 @@ public final class EnrichmentCalculation
         return results;
     }
 
-    private static Map<String, BigDecimal> getRawResults(int sampleSize,
+    private static double[] getRawResults(String[] terms, int sampleSize,
             int populationSize, Map<String, Integer> sampleCounts,
             Map<String, PopulationInfo> annotatedPopulationInfo) {
-        Map<String, BigDecimal> rawResults = new HashMap<String, BigDecimal>();
-        for (Map.Entry<String, Integer> entry : sampleCounts.entrySet()) {
-            String attribute = entry.getKey();
-
-            Integer sampleCount = entry.getValue();
-            PopulationInfo pi = annotatedPopulationInfo.get(attribute);
-            Integer populationCount = (pi != null) ? pi.getSize() : 0;
-
-            HypergeometricDistribution h =
-                new HypergeometricDistribution(populationSize, populationCount, sampleSize);
-            Double pValue = h.upperCumulativeProbability(sampleCount);
-            rawResults.put(attribute, new BigDecimal(pValue));
+        double[] rawResults = new double[terms.length];
+        for (int i = 0; i < terms.length; i++) {
+            int sampleCount = sampleCounts.get(terms[i]).intValue();
+            PopulationInfo pi = annotatedPopulationInfo.get(terms[i]);
+            int populationCount = (pi != null) ? pi.getSize() : 0;
+
+            rawResults[i] = Hypergeometric.upperCumulativeProbability(sampleCount, sampleSize,
+                    populationCount, populationSize);
         }
         return rawResults;
     }
 
+    /**
+     * Put the p-values to display in order, smallest first.  Usually only a small part of the
+     * terms is left after error correction so they are sorted again rather than reusing the
+     * order of the raw p-values, which capping at 1 and the Holm correction do not keep.
+     */
+    private static Map<String, BigDecimal> getSortedResults(String[] terms,
+            double[] correctedResults) {
+        int count = 0;
+        for (double p : correctedResults) {
+            if (!Double.isNaN(p)) {
+                count++;
+            }
+        }
+        String[] displayTerms = new String[count];
+        double[] displayResults = new double[count];
+        count = 0;
+        for (int i = 0; i < terms.length; i++) {
+            if (!Double.isNaN(correctedResults[i])) {
+                displayTerms[count] = terms[i];
+                displayResults[count] = correctedResults[i];
+                count++;
+            }
+        }
+        Map<String, BigDecimal> sortedResults = new LinkedHashMap<String, BigDecimal>();
+        for (int i : ErrorCorrection.sortIndexes(displayResults, displayTerms)) {
+            sortedResults.put(displayTerms[i], new BigDecimal(displayResults[i]));
+        }
+        return sortedResults;
+    }
+
     private static ErrorCorrection.Strategy getStrategy(String errorCorrection) {
         ErrorCorrection.Strategy strategy = null;
         StringUtils.defaultIfBlank(errorCorrection, "None");
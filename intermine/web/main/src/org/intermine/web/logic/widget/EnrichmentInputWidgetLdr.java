@@ -35,6 +35,8 @@ public class EnrichmentInputWidgetLdr implements EnrichmentInput
     private Map<String, Integer> sampleCounts = null;
     private Map<String, PopulationInfo> populationCounts = null;
     private Map<String, String> labels = null;
+    private BackgroundStatistics.Population background = null;
+    private boolean backgroundChecked = false;
     private static final int BATCH_SIZE = 20000;
 
     // population queries that don't involve bags can be cached between widget executions
@@ -61,8 +63,22 @@ public class EnrichmentInputWidgetLdr implements EnrichmentInput
         this.ldr = ldr;
     }
 
+    /**
+     * @return the precomputed population of the widget, or null if it has to be queried
+     */
+    private BackgroundStatistics.Population getBackground() {
+        if (!backgroundChecked) {
+            background = ldr.getBackgroundPopulation();
+            backgroundChecked = true;
+        }
+        return background;
+    }
+
     @Override
     public Map<String, PopulationInfo> getAnnotatedCountsInPopulation() {
+        if (populationCounts == null && getBackground() != null) {
+            populationCounts = getBackground().getAnnotatedCounts();
+        }
         if (populationCounts == null) {
             Query query = ldr.getPopulationQuery(false);
 
@@ -137,6 +153,9 @@ public class EnrichmentInputWidgetLdr implements EnrichmentInput
 
     @Override
     public PopulationInfo getPopulationInfo() {
+        if (getBackground() != null) {
+            return getBackground().getPopulationInfo();
+        }
         Query q = ldr.getPopulationQuery(true);
         PopulationInfo populationInfo = populationCache.get(q.toString());
         if (populationInfo == null) {
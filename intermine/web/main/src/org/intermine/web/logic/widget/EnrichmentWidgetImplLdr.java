@@ -12,8 +12,11 @@ package org.intermine.web.logic.widget;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.intermine.api.profile.InterMineBag;
 import org.intermine.metadata.ConstraintOp;
@@ -334,6 +337,73 @@ public class EnrichmentWidgetImplLdr extends WidgetLdr
         }
     }
 
+    /**
+     * Look up the population of this widget in the statistics calculated during the build.  This
+     * is only possible for the default population (all objects of the organisms in the list)
+     * and if no correction coefficient is applied.
+     *
+     * @return the precomputed population or null if it has to be queried
+     */
+    public BackgroundStatistics.Population getBackgroundPopulation() {
+        BackgroundStatistics statistics = BackgroundStatistics.getInstance();
+        if (statistics == null || config.getBackgroundStatistics() == null
+            || populationBag != null || populationIds != null
+            || (extraCorrectionCoefficient && correctionCoefficient != null
+                && correctionCoefficient.isApplicable())) {
+            return null;
+        }
+        PathConstraint listConstraint = null;
+        for (PathConstraint pc : config.getPathConstraints()) {
+            if (WidgetConfigUtil.isListConstraint(pc)) {
+                if (listConstraint != null) {
+                    return null;
+                }
+                listConstraint = pc;
+            }
+        }
+        if (listConstraint == null || !listConstraint.getPath().contains("organism.")) {
+            return null;
+        }
+
+        // the organisms of the objects in the list
+        queryClassInQuery = new HashMap<String, QueryClass>();
+        queryClassInQuery.put(startClass.getType().getSimpleName(), startClass);
+        Query query = new Query();
+        query.setConstraint(new ConstraintSet(ConstraintOp.AND));
+        query.addFrom(startClass);
+        query.setDistinct(true);
+        createQueryFieldByPath(listConstraint.getPath(), query, true);
+        QueryField qfStartClassId = new QueryField(startClass, "id");
+        ConstraintSet cs = (ConstraintSet) query.getConstraint();
+        if (bag != null) {
+            cs.addConstraint(new BagConstraint(qfStartClassId, ConstraintOp.IN, bag.getOsb()));
+        } else if (ids != null) {
+            Collection<Integer> idsCollection = new LinkedHashSet<Integer>();
+            for (String id : ids.split(",")) {
+                try {
+                    idsCollection.add(Integer.valueOf(id.trim()));
+                } catch (NumberFormatException e) {
+                    throw new RuntimeException("List of IDs contains invalid integer: " + id, e);
+                }
+            }
+            cs.addConstraint(new BagConstraint(qfStartClassId, ConstraintOp.IN, idsCollection));
+        } else {
+            return null;
+        }
+        Set<Integer> taxonIds = new HashSet<Integer>();
+        Iterator<?> iter = os.execute(query).iterator();
+        while (iter.hasNext()) {
+            Object value = ((List<?>) iter.next()).get(0);
+            Integer taxonId = (value == null) ? null : statistics.getTaxonId(value.toString());
+            if (taxonId == null) {
+                return null;
+            }
+            taxonIds.add(taxonId);
+        }
+        return statistics.getPopulation(config.getBackgroundStatistics(), config.getStartClass(),
+                config.getBackgroundDataSets(filter), taxonIds);
+    }
+
     /**
      * @param calcTotal whether or not to calculate the total number of annotated objects in the
      * sample
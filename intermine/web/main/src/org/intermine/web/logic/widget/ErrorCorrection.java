@@ -12,6 +12,8 @@ package org.intermine.web.logic.widget;
 
 import java.math.BigDecimal;
 import java.math.MathContext;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -86,6 +88,107 @@ public final class ErrorCorrection
         }
     }
 
+    /**
+     * Adjust p-values held in an array, giving the same values as the map based method without
+     * copying or re-sorting the results for each strategy.  The ascending order of the p-values,
+     * see sortIndexes, is all that any of the strategies needs.
+     *
+     * @param errorCorrection which error correction to use
+     * @param pValues the raw p-values
+     * @param order the indexes of pValues from smallest to largest p-value
+     * @param max maximum value to display, selected by user
+     * @param testCount number of tests, eg. total number of go terms in database
+     * @return the adjusted p-values, in the same positions as pValues; p-values that should not
+     * be displayed are NaN
+     */
+    public static double[] adjustPValues(Strategy errorCorrection, double[] pValues, int[] order,
+            Double max, int testCount) {
+        double maxValue = max.doubleValue();
+        double[] adjusted = new double[pValues.length];
+        Arrays.fill(adjusted, Double.NaN);
+        switch (errorCorrection) {
+            case NONE:
+                for (int i = 0; i < pValues.length; i++) {
+                    if (pValues[i] <= maxValue) {
+                        adjusted[i] = pValues[i];
+                    }
+                }
+                break;
+            case BONFERRONI:
+                for (int i = 0; i < pValues.length; i++) {
+                    double adjustedP = Math.min(1.0, pValues[i] * testCount);
+                    if (adjustedP <= maxValue) {
+                        adjusted[i] = adjustedP;
+                    }
+                }
+                break;
+            case BENJAMINI_HOCHBERG:
+                // largest first, the rank of tied p-values is the rank of the first of them
+                double lastAdjustedP = Double.NaN;
+                int index = 0;
+                for (int i = order.length - 1; i >= 0; i--) {
+                    double p = pValues[order[i]];
+                    if (i == order.length - 1 || p != pValues[order[i + 1]]) {
+                        index = i + 1;
+                    }
+                    double adjustedP = p * ((double) testCount / index);
+                    if (adjustedP > lastAdjustedP) {
+                        adjustedP = lastAdjustedP;
+                    }
+                    adjustedP = Math.min(1.0, adjustedP);
+                    if (adjustedP <= maxValue) {
+                        adjusted[order[i]] = adjustedP;
+                    }
+                    lastAdjustedP = adjustedP;
+                }
+                break;
+            case HOLM_BONFERRONI:
+                // smallest first, stop when the adjusted p-values get too large
+                int rank = 0;
+                for (int i = 0; i < order.length; i++) {
+                    double p = pValues[order[i]];
+                    if (i > 0 && p != pValues[order[i - 1]]) {
+                        rank = i;
+                    }
+                    double adjustedP = Math.min(1.0, p * (testCount - rank));
+                    if (adjustedP > maxValue) {
+                        break;
+                    }
+                    adjusted[order[i]] = adjustedP;
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported strategy: " + errorCorrection);
+        }
+        return adjusted;
+    }
+
+    /**
+     * Sort p-values in the order of sortMap, ie. smallest first and ties ordered by term.
+     *
+     * @param pValues the p-values to sort
+     * @param terms the term of each p-value
+     * @return the indexes of pValues in sorted order
+     */
+    public static int[] sortIndexes(final double[] pValues, final String[] terms) {
+        Integer[] indexes = new Integer[pValues.length];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = Integer.valueOf(i);
+        }
+        Arrays.sort(indexes, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer i, Integer j) {
+                int cmp = Double.compare(pValues[i.intValue()], pValues[j.intValue()]);
+                return cmp != 0 ? cmp : terms[i.intValue()].compareTo(terms[j.intValue()]);
+            }
+        });
+        int[] order = new int[indexes.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = indexes[i].intValue();
+        }
+        return order;
+    }
+
     /**
      * Sort the map by values.
      *
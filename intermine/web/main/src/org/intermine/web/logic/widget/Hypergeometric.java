@@ -23,6 +23,9 @@ public class Hypergeometric
 {
     static double[] factorials;
 
+    // relative size of a term that can no longer change a sum of doubles
+    private static final double EPSILON = 1e-17;
+
 //    private static void getFactorials(int n) {
 //        if (factorials == null || factorials.length < n) {
 //            factorials = new double[n + 1];
@@ -88,6 +91,71 @@ public class Hypergeometric
 				new MathContext(15, RoundingMode.HALF_UP));
 		return p.doubleValue();
     }
+
+    /**
+     * The probability of finding k or more objects annotated with a term, i.e. the p-value of
+     * the enrichment of the term.  This gives the same value as commons-math
+     * HypergeometricDistribution(bigN, bigM, n).upperCumulativeProbability(k) without creating
+     * any objects.
+     *
+     * The probabilities of neighbouring counts are related by a simple ratio, so they are
+     * calculated relative to the most likely count and normalised by their sum.  This avoids the
+     * rounding error of large log-factorials and the walk stops once the terms no longer change
+     * the sums.
+     *
+     * @param k number of objects in our list annotated with this term
+     * @param n number of objects in our list annotated with any term
+     * @param bigM total number of objects in the database annotated with this term
+     * @param bigN total number of objects in the database annotated with any term
+     * @return p-value for this term
+     */
+    public static double upperCumulativeProbability(int k, int n, int bigM, int bigN) {
+        if (bigM < 0 || n < 0 || bigM > bigN || n > bigN) {
+            throw new IllegalArgumentException("Invalid hypergeometric distribution: " + n
+                    + " of " + bigN + " drawn with " + bigM + " annotated");
+        }
+        int lower = Math.max(0, n + bigM - bigN);
+        int upper = Math.min(n, bigM);
+        if (k <= lower) {
+            return 1.0;
+        }
+        if (k > upper) {
+            return 0.0;
+        }
+        int mode = (int) (((long) n + 1) * ((long) bigM + 1) / ((long) bigN + 2));
+        mode = Math.min(upper, Math.max(lower, mode));
+        // remaining objects not annotated with the term once all of our list is drawn
+        double rest = (double) bigN - bigM - n;
+
+        double total = 1.0;
+        double tail = (mode >= k) ? 1.0 : 0.0;
+        double term = 1.0;
+        for (int i = mode; i < upper; i++) {
+            term *= ((double) (bigM - i) * (n - i)) / ((i + 1.0) * (rest + i + 1.0));
+            if (term == 0.0) {
+                break;
+            }
+            total += term;
+            if (i + 1 >= k) {
+                tail += term;
+                if (term < tail * EPSILON) {
+                    break;
+                }
+            }
+        }
+        term = 1.0;
+        for (int i = mode; i > lower; i--) {
+            term *= ((double) i * (rest + i)) / ((bigM - i + 1.0) * (n - i + 1.0));
+            total += term;
+            if (i - 1 >= k) {
+                tail += term;
+            }
+            if (term < EPSILON) {
+                break;
+            }
+        }
+        return Math.min(1.0, tail / total);
+    }
     /**
      * chenyian: my implement for calculating n choose r  
      * here is an example which may cause infinity before: 8354 choose 163
@@ -54,6 +54,8 @@ public class EnrichmentWidgetConfig extends WidgetConfig
     private String startClassDisplay;
     private String externalLink;
     private String correctionCoefficient;
+    private String backgroundStatistics;
+    private String backgroundDataSets;
     private List<PathConstraint> pathConstraintsForView = new ArrayList<PathConstraint>();
 
     /**
@@ -161,6 +163,75 @@ public class EnrichmentWidgetConfig extends WidgetConfig
         this.correctionCoefficient = correctionCoefficient;
     }
 
+    /**
+     * @return the name of the precomputed statistics holding the population of this widget,
+     * or null if the population is always queried
+     */
+    public String getBackgroundStatistics() {
+        return backgroundStatistics;
+    }
+
+    /** @param backgroundStatistics the name of the precomputed statistics **/
+    public void setBackgroundStatistics(String backgroundStatistics) {
+        this.backgroundStatistics = backgroundStatistics;
+    }
+
+    /** @return the mapping from filter values to the data sets of the statistics **/
+    public String getBackgroundDataSets() {
+        return backgroundDataSets;
+    }
+
+    /**
+     * Set the data sets of the statistics for each filter value, e.g.
+     * "biological_process=GOBP_wo_IEA,All=All:KEGG Pathway|Reactome".  The first data set holds
+     * the population size and the ones after the colon hold the term counts.  Filter values
+     * that are not mentioned are used as the data set name.
+     * @param backgroundDataSets the mapping from filter values to data sets
+     */
+    public void setBackgroundDataSets(String backgroundDataSets) {
+        this.backgroundDataSets = backgroundDataSets;
+    }
+
+    /**
+     * @param filter the selected filter value, may be null
+     * @return the data set for the population size followed by the data sets for the term
+     * counts, or null if there is no mapping for the filter
+     */
+    public String[] getBackgroundDataSets(String filter) {
+        String dataSets = null;
+        if (backgroundDataSets != null) {
+            for (String entry : backgroundDataSets.split(",")) {
+                String[] parts = entry.split("=", 2);
+                if (parts.length == 1) {
+                    // applies to any filter value not mentioned explicitly
+                    if (dataSets == null) {
+                        dataSets = parts[0].trim();
+                    }
+                } else if (parts[0].trim().equals(filter)) {
+                    dataSets = parts[1].trim();
+                    break;
+                }
+            }
+        }
+        if (dataSets == null) {
+            dataSets = filter;
+        }
+        if (dataSets == null) {
+            return null;
+        }
+        String[] parts = dataSets.split(":", 2);
+        if (parts.length == 1) {
+            return new String[] {parts[0]};
+        }
+        String[] termDataSets = parts[1].split("\\|");
+        String[] ret = new String[termDataSets.length + 1];
+        ret[0] = parts[0].trim();
+        for (int i = 0; i < termDataSets.length; i++) {
+            ret[i + 1] = termDataSets[i].trim();
+        }
+        return ret;
+    }
+
     @Override
     public EnrichmentWidget getWidget(InterMineBag imBag, InterMineBag populationBag,
                                       ObjectStore os, WidgetOptions options, String ids,
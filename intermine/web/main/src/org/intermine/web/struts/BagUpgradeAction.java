@@ -17,11 +17,13 @@ import javax.servlet.http.HttpSession;
 import org.apache.struts.action.ActionForm;
 import org.apache.struts.action.ActionForward;
 import org.apache.struts.action.ActionMapping;
+import org.apache.struts.action.ActionMessage;
 import org.intermine.api.InterMineAPI;
 import org.intermine.api.bag.BagQueryRunner;
 import org.intermine.api.bag.BagQueryUpgrade;
 import org.intermine.api.idresolution.IDResolver;
 import org.intermine.api.idresolution.Job;
+import org.intermine.api.idresolution.JobQueueFullException;
 import org.intermine.api.profile.InterMineBag;
 import org.intermine.api.profile.Profile;
 import org.intermine.web.logic.session.SessionMethods;
@@ -61,7 +63,14 @@ public class BagUpgradeAction extends InterMineAction
 
         BagQueryRunner bagRunner = im.getBagQueryRunner();
         BagQueryUpgrade bagQueryUpgrade = new BagQueryUpgrade(bagRunner, savedBag);
-        Job job = IDResolver.getInstance().submit(bagQueryUpgrade);
+        Job job;
+        try {
+            job = IDResolver.getInstance().submit(bagQueryUpgrade, profile.getUsername());
+        } catch (JobQueueFullException e) {
+            recordError(new ActionMessage("bagBuild.resolverBusy"), request);
+            return new ForwardParameters(mapping.findForward("bagDetails"))
+                .addParameter("bagName", bagName).forward();
+        }
         session.setAttribute(WS_JOB_ID_KEY, job.getUid());
 
         request.setAttribute("newBagName", bagName);
@@ -34,6 +34,7 @@ import org.intermine.api.InterMineAPI;
 import org.intermine.api.bag.BagQueryRunner;
 import org.intermine.api.idresolution.IDResolver;
 import org.intermine.api.idresolution.Job;
+import org.intermine.api.idresolution.JobQueueFullException;
 import org.intermine.api.profile.Profile;
 import org.intermine.web.logic.Constants;
 import org.intermine.web.logic.WebUtil;
@@ -184,7 +185,15 @@ public class BuildBagAction extends InterMineAction
         }
         
         WebJobInput input = new WebJobInput(type, list, buildBagForm);
-        Job job = IDResolver.getInstance().submit(bagRunner, input);
+        String owner = (profile == null || profile.getUsername() == null)
+                ? session.getId() : profile.getUsername();
+        Job job;
+        try {
+            job = IDResolver.getInstance().submit(bagRunner, input, owner);
+        } catch (JobQueueFullException e) {
+            recordError(new ActionMessage("bagBuild.resolverBusy"), request);
+            return mapping.findForward("bags");
+        }
 
         session.setAttribute("idresolutionjobid", job.getUid());
         request.setAttribute("bagType", type);
@@ -49,6 +49,33 @@ public class ChangeTableAction extends InterMineDispatchAction
         return makeForward(mapping, request, pt);
     }
 
+    /**
+     * Sort the table by a column, in memory, if the table is in the columnar results cache.
+     * Requests for a column that doesn't exist are ignored.
+     * @param mapping The ActionMapping used to select this instance
+     * @param form The optional ActionForm bean for this request (if any)
+     * @param request The HTTP request we are processing
+     * @param response The HTTP response we are creating
+     * @return an ActionForward object defining where control goes next
+     */
+    public ActionForward sortColumn(ActionMapping mapping,
+                                    ActionForm form,
+                                    HttpServletRequest request,
+                                    HttpServletResponse response) {
+        PagedTable pt = getPagedTable(request);
+
+        int index;
+        try {
+            index = Integer.parseInt(request.getParameter("index"));
+        } catch (NumberFormatException e) {
+            return makeForward(mapping, request, pt);
+        }
+        boolean ascending = !"desc".equalsIgnoreCase(request.getParameter("direction"));
+        pt.sortByColumn(index, ascending);
+
+        return makeForward(mapping, request, pt);
+    }
+
     /**
      * Hide a column.
      *
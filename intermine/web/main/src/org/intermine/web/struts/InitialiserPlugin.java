@@ -97,6 +97,9 @@ import org.intermine.web.logic.config.WebConfig;
 import org.intermine.web.logic.profile.LoginHandler;
 import org.intermine.web.logic.profile.UpgradeBagList;
 import org.intermine.web.logic.session.SessionMethods;
+import org.intermine.web.logic.widget.BackgroundStatistics;
+import org.intermine.web.logic.widget.config.EnrichmentWidgetConfig;
+import org.intermine.web.logic.widget.config.WidgetConfig;
 import org.intermine.webservice.server.query.result.XMLValidator;
 import org.jfree.util.Log;
 
@@ -177,6 +180,8 @@ public class InitialiserPlugin implements PlugIn
 
         verifyUserProfile(userprofileOSW);
 
+        loadBackgroundStatistics(webConfig);
+
         final ObjectStoreSummary oss = summariseObjectStore(servletContext);
 
         if (oss != null) {
@@ -489,6 +494,33 @@ public class InitialiserPlugin implements PlugIn
         return retval;
     }
 
+    /**
+     * Read the precomputed enrichment widget populations if any widget uses them.
+     */
+    private void loadBackgroundStatistics(WebConfig webConfig) {
+        boolean used = false;
+        for (WidgetConfig widget : webConfig.getWidgets().values()) {
+            if (widget instanceof EnrichmentWidgetConfig
+                && ((EnrichmentWidgetConfig) widget).getBackgroundStatistics() != null) {
+                used = true;
+            }
+        }
+        if (!used) {
+            return;
+        }
+        try {
+            String release = null;
+            if (os instanceof ObjectStoreInterMineImpl) {
+                release = MetadataManager.retrieve(((ObjectStoreInterMineImpl) os).getDatabase(),
+                        MetadataManager.SERIAL_NUMBER);
+            }
+            BackgroundStatistics.load(os, release);
+        } catch (Exception e) {
+            // the widgets still work, they just query the populations
+            LOG.error("Unable to read background statistics for enrichment widgets", e);
+        }
+    }
+
     /**
      *  Load user-friendly class description
      */
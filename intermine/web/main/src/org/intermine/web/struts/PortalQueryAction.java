@@ -37,6 +37,7 @@ import org.intermine.api.bag.BagQueryResult;
 import org.intermine.api.bag.BagQueryRunner;
 import org.intermine.api.idresolution.IDResolver;
 import org.intermine.api.idresolution.Job;
+import org.intermine.api.idresolution.JobQueueFullException;
 import org.intermine.api.profile.InterMineBag;
 import org.intermine.api.profile.Profile;
 import org.intermine.api.query.WebResultsExecutor;
@@ -252,7 +253,15 @@ public class PortalQueryAction extends InterMineAction
             BuildBagForm buildBagForm = null;
             WebJobInput input = new WebJobInput(className, Arrays.asList(idList), buildBagForm);
             input.setExtraValue(extraFieldValue);
-            Job job = IDResolver.getInstance().submit(im.getBagQueryRunner(), input);
+            String owner = (profile.getUsername() == null)
+                ? session.getId() : profile.getUsername();
+            Job job;
+            try {
+                job = IDResolver.getInstance().submit(im.getBagQueryRunner(), input, owner);
+            } catch (JobQueueFullException e) {
+                recordError(new ActionMessage("bagBuild.resolverBusy"), request);
+                return goToResults(mapping, session, webResults);
+            }
 
             session.setAttribute("idresolutionjobid", job.getUid());
             request.setAttribute("bagType", className);
@@ -21,9 +21,11 @@ import org.intermine.api.bag.BagQueryRunner;
 import org.intermine.api.idresolution.IDResolver;
 import org.intermine.api.idresolution.Job;
 import org.intermine.api.idresolution.JobInput;
+import org.intermine.api.idresolution.JobQueueFullException;
 import org.intermine.webservice.server.core.JSONService;
 import org.intermine.webservice.server.exceptions.BadRequestException;
 import org.intermine.webservice.server.exceptions.ServiceException;
+import org.intermine.webservice.server.output.Output;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -53,7 +55,14 @@ public class IdResolutionService extends JSONService
 
         final BagQueryRunner runner = im.getBagQueryRunner();
 
-        Job job = IDResolver.getInstance().submit(runner, in);
+        String owner = isAuthenticated()
+                ? getPermission().getProfile().getUsername() : request.getRemoteAddr();
+        Job job;
+        try {
+            job = IDResolver.getInstance().submit(runner, in, owner);
+        } catch (JobQueueFullException e) {
+            throw new ServiceException(e.getMessage(), Output.SC_TOO_MANY_REQUESTS);
+        }
 
         addResultValue(job.getUid(), false);
     }
@@ -10,12 +10,8 @@ package org.intermine.webservice.server.idresolution;
  *
  */
 
-import java.util.Date;
-import java.util.Iterator;
-
-import org.apache.commons.lang.time.DateUtils;
+import org.apache.log4j.Logger;
 import org.intermine.api.idresolution.IDResolver;
-import org.intermine.api.idresolution.Job;
 
 /**
  * Wake up once a minute and evict old completed jobs.
@@ -24,7 +20,7 @@ import org.intermine.api.idresolution.Job;
  */
 public class JobJanitor implements Runnable
 {
-
+    private static final Logger LOG = Logger.getLogger(JobJanitor.class);
     private static final long PERIOD = 60 * 1000;
     private volatile boolean canContinue = true;
 
@@ -32,26 +28,10 @@ public class JobJanitor implements Runnable
     public void run() {
         IDResolver idresolver = IDResolver.getInstance();
         while (canContinue) {
-            Iterator<Job> jobs = idresolver.getJobs().values().iterator();
-            Date cutOff = DateUtils.addHours(new Date(), -3);
-            while (jobs.hasNext()) {
-                if (Thread.interrupted()) {
-                    return;
-                }
-                Job job = jobs.next();
-                switch (job.getStatus()) {
-                    case ERROR:
-                    case SUCCESS:
-                        Date startedAt = job.getStartedAt();
-                        if (startedAt != null && startedAt.before(cutOff)) {
-                            jobs.remove();
-                        }
-                        break;
-                    case PENDING:
-                    case RUNNING:
-                    default:
-                        continue;
-                }
+            int expired = idresolver.expireJobs();
+            if (expired > 0) {
+                LOG.info("Expired " + expired + " ID resolution jobs, "
+                        + idresolver.getMetrics());
             }
 
             try {
@@ -11,10 +11,11 @@ package org.intermine.webservice.server.output;
  */
 
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.log4j.Logger;
 import org.intermine.api.results.ResultElement;
@@ -23,6 +24,9 @@ import org.intermine.webservice.server.core.ResultProcessor;
 /**
  * An class that defines the basic methods for processing JSON results.
  * It does however not define how the JSON results themselves are processed.
+ *
+ * Results that are maps or collections are written straight from them into a buffer that is
+ * reused for every result, rather than being copied into JSONObjects and JSONArrays first.
  * @author Alexis Kalderimis
  *
  */
@@ -38,7 +42,8 @@ public abstract class JSONResultProcessor extends ResultProcessor
     }
 
     /**
-     * The method a processor must implement to produce a results iterator.
+     * The method a processor must implement to produce a results iterator. Maps and collections
+     * are written as JSON objects and arrays, anything else by calling its toString() method.
      * @param it The ExportResultsIterator this iterator will use to process its data.
      * @return An iterator of objects.
      */
@@ -53,10 +58,19 @@ public abstract class JSONResultProcessor extends ResultProcessor
             output.addResultItem(Collections.EMPTY_LIST);
         }
         boolean lastHasComma = false;
+        StreamingJSONWriter json = new StreamingJSONWriter();
         while (objIter.hasNext()) {
             Object next = objIter.next();
-            List<String> outputLine = new ArrayList<String>(
-                    Arrays.asList(next.toString()));
+            List<String> outputLine = new ArrayList<String>(2);
+            if (next instanceof Map<?, ?>) {
+                json.reset();
+                outputLine.add(json.writeMap((Map<?, ?>) next).toString());
+            } else if (next instanceof Collection<?>) {
+                json.reset();
+                outputLine.add(json.writeCollection((Collection<?>) next).toString());
+            } else {
+                outputLine.add(next.toString());
+            }
             if (objIter.hasNext()) {
                 outputLine.add("");
                 lastHasComma = true;
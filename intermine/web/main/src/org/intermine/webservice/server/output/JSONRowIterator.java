@@ -13,6 +13,7 @@ package org.intermine.webservice.server.output;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import org.intermine.api.InterMineAPI;
 import org.intermine.api.results.ExportResultsIterator;
@@ -53,14 +54,22 @@ public class JSONRowIterator implements Iterator<JSONArray>
 
     @Override
     public JSONArray next() {
+        return new JSONArray(nextRow());
+    }
+
+    /**
+     * Get the next row as a list of the maps describing its cells, without copying them into
+     * JSONObjects.
+     * @return The next row.
+     */
+    public List<Map<String, Object>> nextRow() {
         List<ResultElement> row = subIter.next();
-        List<Object> jsonRow = new ArrayList<Object>();
+        List<Map<String, Object>> jsonRow = new ArrayList<Map<String, Object>>(row.size());
         for (int i = 0; i < row.size(); i++) {
             ResultElement re = row.get(i);
-            jsonRow.add(tableCellFormatter.toJSON(re));
+            jsonRow.add(tableCellFormatter.toMap(re));
         }
-        JSONArray next = new JSONArray(jsonRow);
-        return next;
+        return jsonRow;
     }
 
     @Override
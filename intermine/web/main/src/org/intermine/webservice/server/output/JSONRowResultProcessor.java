@@ -13,13 +13,12 @@ package org.intermine.webservice.server.output;
 
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import org.intermine.api.InterMineAPI;
 import org.intermine.api.results.ExportResultsIterator;
 import org.intermine.api.results.ResultElement;
 
-import org.json.JSONArray;
-
 /**
  * A result processor for result rows.
  * @author Alex Kalderimis
@@ -58,13 +57,42 @@ public class JSONRowResultProcessor extends JSONResultProcessor
 
     @Override
     protected Iterator<? extends Object> getResultsIterator(Iterator<List<ResultElement>> it) {
-        Iterator<JSONArray> jsonIter;
         if (verbosity == Verbosity.MINIMAL) {
-            jsonIter = new MinimalJsonIterator(it);
-        } else {
-            jsonIter = new JSONRowIterator((ExportResultsIterator) it, im);
+            final MinimalJsonIterator jsonIter = new MinimalJsonIterator(it);
+            return new Iterator<List<Object>>() {
+                @Override
+                public boolean hasNext() {
+                    return jsonIter.hasNext();
+                }
+
+                @Override
+                public List<Object> next() {
+                    return jsonIter.nextRow();
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
         }
-        return jsonIter;
+        final JSONRowIterator jsonIter = new JSONRowIterator((ExportResultsIterator) it, im);
+        return new Iterator<List<Map<String, Object>>>() {
+            @Override
+            public boolean hasNext() {
+                return jsonIter.hasNext();
+            }
+
+            @Override
+            public List<Map<String, Object>> next() {
+                return jsonIter.nextRow();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
     }
 
 }
@@ -35,6 +35,14 @@ public class MinimalJsonIterator implements Iterator<JSONArray>
 
     @Override
     public JSONArray next() {
+        return new JSONArray(nextRow());
+    }
+
+    /**
+     * Get the values of the next row without copying them into a JSONArray.
+     * @return The next row.
+     */
+    public List<Object> nextRow() {
         List<ResultElement> row = subIter.next();
         List<Object> jsonRow = new ArrayList<Object>();
         for (int i = 0; i < row.size(); i++) {
@@ -51,8 +59,7 @@ public class MinimalJsonIterator implements Iterator<JSONArray>
                 jsonRow.add(field);
             }
         }
-        JSONArray next = new JSONArray(jsonRow);
-        return next;
+        return jsonRow;
     }
 
     @Override
@@ -71,6 +71,11 @@ public abstract class Output
      */
     public static final int NOT_ACCEPTABLE = 406;
 
+    /**
+     * Too many requests http status code, for when a service is too busy to accept more work.
+     */
+    public static final int SC_TOO_MANY_REQUESTS = 429;
+
     /**
      * Sets the error message
      * @param message The error message.
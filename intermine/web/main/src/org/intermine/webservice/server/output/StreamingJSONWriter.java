@@ -0,0 +1,298 @@
+package org.intermine.webservice.server.output;
+
+/*
+ * Copyright (C) 2002-2017 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.json.JSONString;
+
+/**
+ * Writes maps, collections and simple values as JSON into a buffer that is reused from one
+ * result to the next, without building JSONObject and JSONArray trees first.
+ *
+ * The text is the same as <code>new JSONObject(map).toString()</code> or
+ * <code>new JSONArray(collection).toString()</code> would produce: keys come out in the order of
+ * the map (which for a HashMap is the order the JSONObject copy would have), strings are quoted
+ * and escaped the same way, numbers lose trailing zeros, and an object or array that directly
+ * holds a non-finite number is written as null.
+ *
+ * @author chenyian
+ */
+public class StreamingJSONWriter
+{
+    private static final int INITIAL_CAPACITY = 1024;
+    // don't keep a huge buffer around after an unusually large result
+    private static final int MAX_RETAINED_CAPACITY = 1024 * 1024;
+
+    private StringBuilder buffer = new StringBuilder(INITIAL_CAPACITY);
+
+    /**
+     * Empty the buffer, ready for the next result.
+     */
+    public void reset() {
+        if (buffer.capacity() > MAX_RETAINED_CAPACITY) {
+            buffer = new StringBuilder(INITIAL_CAPACITY);
+        } else {
+            buffer.setLength(0);
+        }
+    }
+
+    /**
+     * @return the text written since the last reset
+     */
+    @Override
+    public String toString() {
+        return buffer.toString();
+    }
+
+    /**
+     * Write a value. Maps are written as objects, collections and arrays as arrays, and other
+     * values as JSONObject would write them.
+     *
+     * @param value the value
+     * @return this writer
+     */
+    public StreamingJSONWriter writeValue(Object value) {
+        if (value == null || JSONObject.NULL.equals(value)) {
+            buffer.append("null");
+        } else if (value instanceof JSONString) {
+            buffer.append(String.valueOf(toJSONString((JSONString) value)));
+        } else if (value instanceof String) {
+            writeString((String) value);
+        } else if (value instanceof Integer || value instanceof Long
+                || value instanceof Short || value instanceof Byte) {
+            buffer.append(value.toString());
+        } else if (value instanceof Double || value instanceof Float) {
+            if (isFinite(value)) {
+                writeDecimal(value.toString());
+            } else {
+                // toString() of the container would have failed
+                buffer.append("null");
+            }
+        } else if (value instanceof Boolean) {
+            buffer.append(value.toString());
+        } else if (value instanceof Map<?, ?>) {
+            writeMap((Map<?, ?>) value);
+        } else if (value instanceof Collection<?>) {
+            writeCollection((Collection<?>) value);
+        } else if (value.getClass().isArray()) {
+            writeArray(value);
+        } else if (value instanceof JSONObject || value instanceof JSONArray) {
+            buffer.append(String.valueOf(value.toString()));
+        } else if (value instanceof Character || isPlatformClass(value)) {
+            writeString(value.toString());
+        } else {
+            // JSONObject would describe it as a bean
+            writeBean(value);
+        }
+        return this;
+    }
+
+    /**
+     * Write a map as a JSON object.
+     *
+     * @param map the map
+     * @return this writer
+     */
+    public StreamingJSONWriter writeMap(Map<?, ?> map) {
+        if (!canWrite(map.values())) {
+            buffer.append("null");
+            return this;
+        }
+        buffer.append('{');
+        boolean first = true;
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            if (!first) {
+                buffer.append(',');
+            }
+            first = false;
+            writeString(String.valueOf(entry.getKey()));
+            buffer.append(':');
+            writeValue(entry.getValue());
+        }
+        buffer.append('}');
+        return this;
+    }
+
+    /**
+     * Write a collection as a JSON array.
+     *
+     * @param values the values
+     * @return this writer
+     */
+    public StreamingJSONWriter writeCollection(Collection<?> values) {
+        if (!canWrite(values)) {
+            buffer.append("null");
+            return this;
+        }
+        buffer.append('[');
+        boolean first = true;
+        for (Object value : values) {
+            if (!first) {
+                buffer.append(',');
+            }
+            first = false;
+            writeValue(value);
+        }
+        buffer.append(']');
+        return this;
+    }
+
+    private void writeArray(Object array) {
+        int length = Array.getLength(array);
+        for (int i = 0; i < length; i++) {
+            if (!canWriteDirectly(Array.get(array, i))) {
+                buffer.append("null");
+                return;
+            }
+        }
+        buffer.append('[');
+        for (int i = 0; i < length; i++) {
+            if (i > 0) {
+                buffer.append(',');
+            }
+            writeValue(Array.get(array, i));
+        }
+        buffer.append(']');
+    }
+
+    // as JSONObject.numberToString(): shave off trailing zeros and the decimal point
+    private void writeDecimal(String number) {
+        int end = number.length();
+        if (number.indexOf('.') > 0 && number.indexOf('e') < 0 && number.indexOf('E') < 0) {
+            while (number.charAt(end - 1) == '0') {
+                end--;
+            }
+            if (number.charAt(end - 1) == '.') {
+                end--;
+            }
+        }
+        buffer.append(number, 0, end);
+    }
+
+    private void writeBean(Object bean) {
+        String text = null;
+        try {
+            text = new JSONObject(bean).toString();
+        } catch (RuntimeException e) {
+            // JSONObject.wrap() gives up on it too
+        }
+        buffer.append(text == null ? "null" : text);
+    }
+
+    /**
+     * Write a string as a quoted JSON string, escaped as JSONObject.quote() does it.
+     *
+     * @param string the string
+     * @return this writer
+     */
+    public StreamingJSONWriter writeString(String string) {
+        if (string == null || string.length() == 0) {
+            buffer.append("\"\"");
+            return this;
+        }
+        char b;
+        char c = 0;
+        int len = string.length();
+        buffer.append('"');
+        for (int i = 0; i < len; i++) {
+            b = c;
+            c = string.charAt(i);
+            switch (c) {
+                case '\\':
+                case '"':
+                    buffer.append('\\').append(c);
+                    break;
+                case '/':
+                    if (b == '<') {
+                        buffer.append('\\');
+                    }
+                    buffer.append(c);
+                    break;
+                case '\b':
+                    buffer.append("\\b");
+                    break;
+                case '\t':
+                    buffer.append("\\t");
+                    break;
+                case '\n':
+                    buffer.append("\\n");
+                    break;
+                case '\f':
+                    buffer.append("\\f");
+                    break;
+                case '\r':
+                    buffer.append("\\r");
+                    break;
+                default:
+                    if (c < ' ' || (c >= 0x80 && c < 0xa0) || (c >= 0x2000 && c < 0x2100)) {
+                        String hex = Integer.toHexString(c);
+                        buffer.append("\\u");
+                        for (int pad = hex.length(); pad < 4; pad++) {
+                            buffer.append('0');
+                        }
+                        buffer.append(hex);
+                    } else {
+                        buffer.append(c);
+                    }
+            }
+        }
+        buffer.append('"');
+        return this;
+    }
+
+    // Whether JSONObject.toString() or JSONArray.toString() would succeed for a container
+    // holding these values. Nested containers fail on their own, so only look one level down.
+    private static boolean canWrite(Collection<?> values) {
+        for (Object value : values) {
+            if (!canWriteDirectly(value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean canWriteDirectly(Object value) {
+        if (value instanceof Double || value instanceof Float) {
+            return isFinite(value);
+        }
+        if (value instanceof JSONString) {
+            Object text = toJSONString((JSONString) value);
+            return text instanceof String;
+        }
+        return true;
+    }
+
+    private static boolean isFinite(Object number) {
+        double d = ((Number) number).doubleValue();
+        return !(Double.isNaN(d) || Double.isInfinite(d));
+    }
+
+    private static Object toJSONString(JSONString value) {
+        try {
+            return value.toJSONString();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    // JSONObject.wrap() turns these into strings instead of describing them as beans
+    private static boolean isPlatformClass(Object value) {
+        Package objectPackage = value.getClass().getPackage();
+        String packageName = (objectPackage == null) ? "" : objectPackage.getName();
+        return packageName.startsWith("java.") || packageName.startsWith("javax.")
+            || value.getClass().getClassLoader() == null;
+    }
+}
@@ -347,6 +347,8 @@ public class QueryResultService extends AbstractQueryService
                 if (canGoFaster) {
                     // Going faster means writing to the DB. Don't do this if it is pointless.
                     ((ExportResultsIterator) it).goFaster();
+                    // and fetch the following batches while this one is written out
+                    ((ExportResultsIterator) it).prefetch();
                 }
                 processor.write(it, output);
             } finally {
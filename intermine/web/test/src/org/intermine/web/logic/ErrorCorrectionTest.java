@@ -1,10 +1,13 @@
 package org.intermine.web.logic;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.math.BigDecimal;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Random;
 
 import org.intermine.web.logic.widget.ErrorCorrection;
 import org.junit.Before;
@@ -71,6 +74,43 @@ public class ErrorCorrectionTest
         checkValues(actual, bonferroniHolm);
     }
 
+    @Test
+    public void testArrays() throws Exception {
+        Random random = new Random(5);
+        String[] terms = new String[2000];
+        double[] rawValues = new double[terms.length];
+        Map<String, BigDecimal> rawResults = new HashMap<String, BigDecimal>();
+        for (int i = 0; i < terms.length; i++) {
+            terms[i] = "T" + i;
+            // some ties and some very small values
+            rawValues[i] = (i % 10 == 0) ? 0.001 : Math.pow(random.nextDouble(), 8);
+            rawResults.put(terms[i], new BigDecimal(rawValues[i]));
+        }
+        int[] order = ErrorCorrection.sortIndexes(rawValues, terms);
+        for (int i = 1; i < order.length; i++) {
+            assertTrue(rawValues[order[i - 1]] <= rawValues[order[i]]);
+        }
+        for (ErrorCorrection.Strategy strategy : ErrorCorrection.Strategy.values()) {
+            for (double maxValue : new double[] {0.05, 1.0}) {
+                Map<String, BigDecimal> expected = ErrorCorrection.adjustPValues(strategy,
+                        rawResults, maxValue, REFERENCE_SIZE);
+                double[] actual = ErrorCorrection.adjustPValues(strategy, rawValues, order,
+                        maxValue, REFERENCE_SIZE);
+                int count = 0;
+                for (int i = 0; i < terms.length; i++) {
+                    BigDecimal p = expected.get(terms[i]);
+                    if (p == null) {
+                        assertTrue(Double.isNaN(actual[i]));
+                    } else {
+                        assertEquals(p.doubleValue(), actual[i], p.doubleValue() * 1e-12);
+                        count++;
+                    }
+                }
+                assertEquals(expected.size(), count);
+            }
+        }
+    }
+
     private void checkValues(Map<String, BigDecimal> actual, Map<String, String> expected) {
         for (Map.Entry<String, BigDecimal> entry : actual.entrySet()) {
             String adjustedPvalue = entry.getValue().toPlainString();
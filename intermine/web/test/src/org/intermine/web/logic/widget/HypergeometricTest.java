@@ -0,0 +1,66 @@
+package org.intermine.web.logic.widget;
+
+/*
+ * Copyright (C) 2002-2017 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.math3.distribution.HypergeometricDistribution;
+
+/**
+ * Compare the p-values with the ones given by commons-math.
+ */
+public class HypergeometricTest extends TestCase
+{
+    private static final double DELTA = 1e-12;
+
+    public void testSmallPopulations() {
+        for (int bigN = 1; bigN <= 30; bigN++) {
+            for (int bigM = 0; bigM <= bigN; bigM++) {
+                for (int n = 1; n <= bigN; n++) {
+                    for (int k = 0; k <= Math.min(n, bigM) + 1; k++) {
+                        checkP(k, n, bigM, bigN);
+                    }
+                }
+            }
+        }
+    }
+
+    public void testLargePopulations() {
+        Random random = new Random(17);
+        for (int i = 0; i < 20000; i++) {
+            int bigN = 1000 + random.nextInt(40000);
+            int bigM = 1 + random.nextInt(i % 2 == 0 ? 200 : bigN);
+            int n = 1 + random.nextInt(Math.min(bigN, i % 3 == 0 ? 3000 : 300));
+            int upper = Math.min(n, bigM);
+            int k = 1 + random.nextInt(upper);
+            checkP(k, n, bigM, bigN);
+        }
+    }
+
+    public void testSmallPValues() {
+        // 40 of a list of 50 in a term holding 100 of 20000 genes
+        double p = Hypergeometric.upperCumulativeProbability(40, 50, 100, 20000);
+        double expected = new HypergeometricDistribution(20000, 100, 50)
+            .upperCumulativeProbability(40);
+        assertTrue(p > 0);
+        assertEquals(1.0, p / expected, 1e-10);
+    }
+
+    private void checkP(int k, int n, int bigM, int bigN) {
+        double expected = new HypergeometricDistribution(bigN, bigM, n)
+            .upperCumulativeProbability(k);
+        double actual = Hypergeometric.upperCumulativeProbability(k, n, bigM, bigN);
+        assertEquals("k=" + k + " n=" + n + " M=" + bigM + " N=" + bigN,
+                expected, actual, DELTA);
+    }
+}
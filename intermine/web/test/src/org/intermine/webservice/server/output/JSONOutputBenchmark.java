@@ -0,0 +1,170 @@
+package org.intermine.webservice.server.output;
+
+/*
+ * Copyright (C) 2002-2017 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Compares writing results with org.json against the StreamingJSONWriter for rows shaped like
+ * the json, jsonrows and jsonobjects formats, reporting rows per second and bytes allocated per
+ * row. No database is needed, the rows are made up. Run with:
+ *
+ * <pre>java org.intermine.webservice.server.output.JSONOutputBenchmark [rows] [runs]</pre>
+ *
+ * Allocation is measured with com.sun.management.ThreadMXBean, and is reported as -1 on VMs
+ * that don't have it.
+ *
+ * @author chenyian
+ */
+public final class JSONOutputBenchmark
+{
+    private static final String[] FORMATS = new String[] {"json", "jsonrows", "jsonobjects"};
+    private static long sink = 0;
+
+    private JSONOutputBenchmark() {
+        // don't
+    }
+
+    /**
+     * @param args optionally the number of rows per run and the number of runs
+     */
+    public static void main(String[] args) {
+        int rows = (args.length > 0) ? Integer.parseInt(args[0]) : 100000;
+        int runs = (args.length > 1) ? Integer.parseInt(args[1]) : 5;
+        System.out.println("format       writer     rows/s     bytes/row");
+        for (String format : FORMATS) {
+            // the first run of each warms up the JIT
+            for (int run = 0; run <= runs; run++) {
+                boolean report = run == runs;
+                measure(format, false, rows, report);
+                measure(format, true, rows, report);
+            }
+        }
+        if (sink == 42) {
+            System.out.println();
+        }
+    }
+
+    private static void measure(String format, boolean streaming, int rows, boolean report) {
+        StreamingJSONWriter writer = new StreamingJSONWriter();
+        long allocatedBefore = getAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < rows; i++) {
+            String line;
+            if ("json".equals(format)) {
+                List<Object> row = minimalRow(i);
+                if (streaming) {
+                    writer.reset();
+                    line = writer.writeCollection(row).toString();
+                } else {
+                    line = new JSONArray(row).toString();
+                }
+            } else if ("jsonrows".equals(format)) {
+                List<Map<String, Object>> row = cellRow(i);
+                if (streaming) {
+                    writer.reset();
+                    line = writer.writeCollection(row).toString();
+                } else {
+                    line = new JSONArray(row).toString();
+                }
+            } else {
+                Map<String, Object> object = nestedObject(i);
+                if (streaming) {
+                    writer.reset();
+                    line = writer.writeMap(object).toString();
+                } else {
+                    line = new JSONObject(object).toString();
+                }
+            }
+            sink += line.length();
+        }
+        long nanos = System.nanoTime() - start;
+        long allocated = getAllocatedBytes();
+        if (report) {
+            long perRow = (allocatedBefore < 0) ? -1 : (allocated - allocatedBefore) / rows;
+            System.out.println(String.format("%-12s %-10s %-10d %d", format,
+                    streaming ? "streaming" : "org.json",
+                    Long.valueOf(rows * 1000000000L / Math.max(1, nanos)), Long.valueOf(perRow)));
+        }
+    }
+
+    private static List<Object> minimalRow(int i) {
+        List<Object> row = new ArrayList<Object>();
+        row.add("FBgn" + i);
+        row.add("gene-" + i);
+        row.add(Integer.valueOf(i * 13));
+        row.add(Double.valueOf(i / 7.0));
+        row.add("Drosophila melanogaster");
+        row.add(null);
+        return row;
+    }
+
+    private static List<Map<String, Object>> cellRow(int i) {
+        List<Map<String, Object>> row = new ArrayList<Map<String, Object>>();
+        List<Object> values = minimalRow(i);
+        for (int j = 0; j < values.size(); j++) {
+            Map<String, Object> cell = new HashMap<String, Object>();
+            cell.put("url", "/report.do?id=" + i);
+            cell.put("class", "Gene");
+            cell.put("id", Integer.valueOf(i));
+            cell.put("column", "Gene.field" + j);
+            cell.put("value", values.get(j));
+            row.add(cell);
+        }
+        return row;
+    }
+
+    private static Map<String, Object> nestedObject(int i) {
+        Map<String, Object> gene = new HashMap<String, Object>();
+        gene.put("class", "Gene");
+        gene.put("objectId", Integer.valueOf(i));
+        gene.put("primaryIdentifier", "FBgn" + i);
+        gene.put("symbol", "gene-" + i);
+        Map<String, Object> organism = new HashMap<String, Object>();
+        organism.put("class", "Organism");
+        organism.put("objectId", Integer.valueOf(1));
+        organism.put("name", "Drosophila melanogaster");
+        gene.put("organism", organism);
+        List<Map<String, Object>> transcripts = new ArrayList<Map<String, Object>>();
+        for (int j = 0; j < 10; j++) {
+            Map<String, Object> transcript = new HashMap<String, Object>();
+            transcript.put("class", "Transcript");
+            transcript.put("objectId", Integer.valueOf(i * 100 + j));
+            transcript.put("primaryIdentifier", "FBtr" + i + "-" + j);
+            transcript.put("length", Integer.valueOf(1000 + j));
+            transcripts.add(transcript);
+        }
+        gene.put("transcripts", transcripts);
+        return gene;
+    }
+
+    // com.sun.management.ThreadMXBean.getThreadAllocatedBytes(), if this VM has it
+    private static long getAllocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        try {
+            Method method = bean.getClass().getMethod("getThreadAllocatedBytes", long.class);
+            method.setAccessible(true);
+            return ((Long) method.invoke(bean, Long.valueOf(Thread.currentThread().getId())))
+                .longValue();
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package org.intermine.webservice.server.output;
+
+/*
+ * Copyright (C) 2002-2017 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Check that the StreamingJSONWriter writes the same text as org.json.
+ */
+public class StreamingJSONWriterTest extends TestCase
+{
+    private StreamingJSONWriter writer;
+
+    public void setUp() {
+        writer = new StreamingJSONWriter();
+    }
+
+    private void assertSameAsJSONObject(Map<String, Object> map) {
+        writer.reset();
+        String expected = new JSONObject(map).toString();
+        assertEquals(expected == null ? "null" : expected, writer.writeMap(map).toString());
+    }
+
+    private void assertSameAsJSONArray(List<Object> list) {
+        writer.reset();
+        String expected = new JSONArray(list).toString();
+        assertEquals(expected == null ? "null" : expected, writer.writeCollection(list).toString());
+    }
+
+    public void testValues() {
+        List<Object> row = new ArrayList<Object>();
+        row.add("plain");
+        row.add("");
+        row.add(null);
+        row.add("quote \" backslash \\ </script>"
+                + " tab\t newline\n control\u0001 \u0085 \u00a0 \u2028");
+        row.add(Integer.valueOf(-42));
+        row.add(Long.valueOf(12345678901L));
+        row.add(Short.valueOf((short) 7));
+        row.add(Double.valueOf(1.50));
+        row.add(Double.valueOf(2.0));
+        row.add(Double.valueOf(1.0E-10));
+        row.add(Float.valueOf(0.25f));
+        row.add(Boolean.TRUE);
+        row.add(new BigDecimal("3.1400"));
+        row.add(Character.valueOf('x'));
+        row.add(new Date(0));
+        row.add(new int[] {1, 2});
+        row.add(JSONObject.NULL);
+        assertSameAsJSONArray(row);
+    }
+
+    public void testNested() {
+        Map<String, Object> gene = new HashMap<String, Object>();
+        gene.put("class", "Gene");
+        gene.put("objectId", Integer.valueOf(1));
+        gene.put("symbol", "eve");
+        gene.put("length", null);
+        List<Object> proteins = new ArrayList<Object>();
+        for (int i = 0; i < 3; i++) {
+            Map<String, Object> protein = new HashMap<String, Object>();
+            protein.put("class", "Protein");
+            protein.put("objectId", Integer.valueOf(10 + i));
+            protein.put("primaryAccession", "P" + i);
+            proteins.add(protein);
+        }
+        gene.put("proteins", proteins);
+        Map<String, Object> organism = new HashMap<String, Object>();
+        organism.put("class", "Organism");
+        organism.put("name", "D. melanogaster");
+        gene.put("organism", organism);
+        assertSameAsJSONObject(gene);
+        assertSameAsJSONArray(new ArrayList<Object>(Arrays.asList(gene, organism)));
+    }
+
+    public void testKeyOrder() {
+        // enough keys to resize the map and share buckets
+        Map<String, Object> map = new HashMap<String, Object>();
+        for (int i = 0; i < 200; i++) {
+            map.put("key" + (i * 7919 % 1000), Integer.valueOf(i));
+        }
+        map.put("Aa", "collides");
+        map.put("BB", "with Aa");
+        assertSameAsJSONObject(map);
+    }
+
+    public void testNonFiniteNumbers() {
+        Map<String, Object> inner = new HashMap<String, Object>();
+        inner.put("score", Double.valueOf(Double.NaN));
+        Map<String, Object> outer = new HashMap<String, Object>();
+        outer.put("name", "x");
+        outer.put("inner", inner);
+        assertSameAsJSONObject(outer);
+        assertSameAsJSONObject(inner);
+        assertSameAsJSONArray(new ArrayList<Object>(Arrays.asList(
+                "a", Float.valueOf(Float.POSITIVE_INFINITY))));
+    }
+
+    public void testReset() {
+        writer.writeString("first");
+        writer.reset();
+        assertEquals("\"second\"", writer.writeString("second").toString());
+    }
+}